@@ -69,6 +69,7 @@
 
 #include "common/SynchronizedThreadLock.h"
 #include "executors/abstractexecutor.h"
+#include "expressions/batchexpression.h"
 #include "expressions/functionexpression.h"
 
 #include "indexes/tableindex.h"
@@ -133,6 +134,7 @@ typedef std::pair<std::string, catalog::MaterializedViewInfo*> LabeledView;
 typedef std::pair<std::string, catalog::Function*> LabeledFunction;
 typedef std::pair<std::string, StreamedTable*> LabeledStream;
 typedef std::pair<std::string, ExportTupleStream*> LabeledStreamWrapper;
+typedef std::pair<CatalogId, Table*> TableById;
 
 /**
  * The set of plan bytes is explicitly maintained in MRU-first order,
@@ -191,7 +193,11 @@ VoltDBEngine::initialize(int32_t clusterIndex,
                          int64_t tempTableMemoryLimit,
                          bool isLowestSiteId,
                          int32_t compactionThreshold,
-                         int32_t exportFlushTimeout)
+                         int32_t exportFlushTimeout,
+                         int32_t compactionBudgetMicros,
+                         bool useBTreeIndexes,
+                         bool useOpenHashIndexes,
+                         bool batchExecution)
 {
     m_clusterIndex = clusterIndex;
     m_siteId = siteId;
@@ -200,6 +206,10 @@ VoltDBEngine::initialize(int32_t clusterIndex,
     m_tempTableMemoryLimit = tempTableMemoryLimit;
     m_compactionThreshold = compactionThreshold;
     s_exportFlushTimeout = exportFlushTimeout;
+    PersistentTable::setCompactionBudgetMicros(compactionBudgetMicros);
+    TableIndexFactory::setUseBTreeIndexes(useBTreeIndexes);
+    TableIndexFactory::setUseOpenHashIndexes(useOpenHashIndexes);
+    BatchExpression::setEnabled(batchExecution);
 
     // Instantiate our catalog - it will be populated later on by load()
     m_catalog.reset(new catalog::Catalog());
@@ -2188,6 +2198,17 @@ void VoltDBEngine::tick(int64_t timeInMillis, int64_t lastCommittedSpHandle) {
     if (m_executorContext->drReplicatedStream()) {
         m_executorContext->drReplicatedStream()->periodicFlush(timeInMillis, lastCommittedSpHandle);
     }
+
+    // Continue any compaction cut short by the compaction budget. Replicated tables
+    // are shared by all sites and are only compacted on the coordinated release path.
+    if (PersistentTable::compactionBudgetMicros() > 0) {
+        BOOST_FOREACH (TableById entry, m_tables) {
+            PersistentTable* persistentTable = dynamic_cast<PersistentTable*>(entry.second);
+            if (persistentTable != NULL && !persistentTable->isReplicatedTable()) {
+                persistentTable->doBudgetedCompaction();
+            }
+        }
+    }
 }
 
 /** Bring the Export and DR system to a steady state with no pending committed data */
@@ -146,7 +146,11 @@ class __attribute__((visibility("default"))) VoltDBEngine {
                         int64_t tempTableMemoryLimit,
                         bool createDrReplicatedStream,
                         int32_t compactionThreshold = 95,
-                        int32_t exportFlushTimeout = 4*1000);
+                        int32_t exportFlushTimeout = 4*1000,
+                        int32_t compactionBudgetMicros = 0,
+                        bool useBTreeIndexes = false,
+                        bool useOpenHashIndexes = false,
+                        bool batchExecution = false);
         virtual ~VoltDBEngine();
 
         // ------------------------------------------------------------------
@@ -62,6 +62,7 @@
 #include "executors/mergereceiveexecutor.h"
 #include "executors/nestloopexecutor.h"
 #include "executors/nestloopindexexecutor.h"
+#include "executors/hashjoinexecutor.h"
 #include "executors/orderbyexecutor.h"
 #include "executors/projectionexecutor.h"
 #include "executors/receiveexecutor.h"
@@ -97,6 +98,7 @@ AbstractExecutor* getNewExecutor(VoltDBEngine *engine,
     case PLAN_NODE_TYPE_MERGERECEIVE: return new MergeReceiveExecutor(engine, abstract_node);
     case PLAN_NODE_TYPE_NESTLOOP: return new NestLoopExecutor(engine, abstract_node);
     case PLAN_NODE_TYPE_NESTLOOPINDEX: return new NestLoopIndexExecutor(engine, abstract_node);
+    case PLAN_NODE_TYPE_HASHJOIN: return new HashJoinExecutor(engine, abstract_node);
     case PLAN_NODE_TYPE_ORDERBY:
         if (isLargeQuery) {
             return new LargeOrderByExecutor(engine, abstract_node);
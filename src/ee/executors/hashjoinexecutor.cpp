@@ -0,0 +1,365 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2019 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+#include "hashjoinexecutor.h"
+
+#include "common/executorcontext.hpp"
+#include "common/ValuePeeker.hpp"
+#include "execution/ProgressMonitorProxy.h"
+#include "executors/aggregateexecutor.h"
+#include "executors/executorutil.h"
+#include "plannodes/hashjoinnode.h"
+#include "plannodes/limitnode.h"
+#include "storage/LargeTempTable.h"
+#include "storage/LargeTempTableBlock.h"
+#include "storage/tablefactory.h"
+#include "storage/tableiterator.h"
+#include "storage/temptable.h"
+#include "storage/TempTableLimits.h"
+
+#include "boost/functional/hash.hpp"
+
+using namespace std;
+using namespace voltdb;
+
+HashJoinExecutor::HashJoinExecutor(VoltDBEngine *engine, AbstractPlanNode* abstract_node)
+    : AbstractJoinExecutor(engine, abstract_node)
+    , m_limits(NULL)
+    , m_chargedBytes(0)
+{ }
+
+HashJoinExecutor::~HashJoinExecutor()
+{
+    releaseHashTable();
+}
+
+bool HashJoinExecutor::p_init(AbstractPlanNode* abstractNode,
+                              const ExecutorVector& executorVector)
+{
+    VOLT_TRACE("init HashJoin Executor");
+
+    HashJoinPlanNode* node = dynamic_cast<HashJoinPlanNode*>(m_abstractNode);
+    assert(node);
+
+    // Init parent first
+    if (!AbstractJoinExecutor::p_init(abstractNode, executorVector)) {
+        return false;
+    }
+    // The planner only produces hash joins for INNER and LEFT joins
+    assert(m_joinType == JOIN_TYPE_INNER || m_joinType == JOIN_TYPE_LEFT);
+    assert(node->getOuterHashKeys().size() == node->getInnerHashKeys().size());
+
+    m_limits = executorVector.limits();
+
+    // NULL tuples for left joins
+    p_init_null_tuples(node->getInputTable(), node->getInputTable(1));
+
+    return true;
+}
+
+bool HashJoinExecutor::hashKeys(const std::vector<AbstractExpression*>& keys,
+                                const TableTuple* outerTuple, const TableTuple* innerTuple,
+                                size_t& hash)
+{
+    hash = 0;
+    for (size_t i = 0; i < keys.size(); i++) {
+        NValue value = keys[i]->eval(outerTuple, innerTuple);
+        if (value.isNull()) {
+            return false;
+        }
+        switch (ValuePeeker::peekValueType(value)) {
+        case VALUE_TYPE_TINYINT:
+        case VALUE_TYPE_SMALLINT:
+        case VALUE_TYPE_INTEGER:
+        case VALUE_TYPE_BIGINT:
+            // The planner may pair integer keys of different widths,
+            // so hash them all as the same width.
+            boost::hash_combine(hash, ValuePeeker::peekAsRawInt64(value));
+            break;
+        default:
+            value.hashCombine(hash);
+            break;
+        }
+    }
+    return true;
+}
+
+bool HashJoinExecutor::addToHashTable(const TableTuple& innerTuple, size_t hash, bool mayFail)
+{
+    if (m_limits != NULL && m_innerTuples.size() % ENTRIES_PER_CHARGE == 0) {
+        const int chargeBytes = ENTRIES_PER_CHARGE * HASH_ENTRY_BYTES;
+        const int64_t memoryLimit = m_limits->getMemoryLimit();
+        if (mayFail && memoryLimit > 0 && m_limits->getAllocated() + chargeBytes > memoryLimit) {
+            return false;
+        }
+        // Throws if the limit is exceeded and spilling is not an option
+        m_limits->increaseAllocated(chargeBytes);
+        m_chargedBytes += chargeBytes;
+    }
+    m_innerTuples.insert(std::make_pair(hash, innerTuple.address()));
+    return true;
+}
+
+void HashJoinExecutor::releaseHashTable()
+{
+    m_innerTuples.clear();
+    if (m_chargedBytes > 0) {
+        m_limits->reduceAllocated(static_cast<int>(m_chargedBytes));
+        m_chargedBytes = 0;
+    }
+}
+
+bool HashJoinExecutor::buildHashTable(Table* innerTable, ProgressMonitorProxy& pmp)
+{
+    const std::vector<AbstractExpression*>& innerKeys =
+            static_cast<HashJoinPlanNode*>(m_abstractNode)->getInnerHashKeys();
+    TableTuple innerTuple(innerTable->schema());
+    TableIterator iterator = innerTable->iterator();
+    size_t hash;
+    while (iterator.next(innerTuple)) {
+        pmp.countdownProgress();
+        // Tuples with a NULL key never match, so there's no need to keep them.
+        if (hashKeys(innerKeys, NULL, &innerTuple, hash) &&
+                ! addToHashTable(innerTuple, hash, true)) {
+            return false;
+        }
+    }
+    return true;
+}
+
+int HashJoinExecutor::spillPartitionCount(const Table* innerTable) const
+{
+    const int64_t memoryLimit = (m_limits == NULL) ? -1 : m_limits->getMemoryLimit();
+    if (memoryLimit <= 0) {
+        // Only a large temp table input gets here without a limit to honor.
+        return 1;
+    }
+    // Aim for each partition (its tuples plus hash entries) to use no
+    // more than half of the limit, leaving the rest to the other temp
+    // tables of the fragment.
+    const int64_t bytesPerTuple = innerTable->schema()->tupleLength() + HASH_ENTRY_BYTES;
+    const int64_t budget = memoryLimit / 2;
+    int64_t partitions = (innerTable->activeTupleCount() * bytesPerTuple + budget - 1) / budget;
+    // Every partition keeps the block it is filling pinned while the inner
+    // input is split, so there can't be more of them than the block cache
+    // can hold next to the blocks already pinned and one for the scan.
+    LargeTempTableBlockCache* lttBlockCache = ExecutorContext::getExecutorContext()->lttBlockCache();
+    const int64_t freeBlocks = lttBlockCache->maxCacheSizeInBytes() / LargeTempTableBlock::BLOCK_SIZE_IN_BYTES
+            - static_cast<int64_t>(lttBlockCache->numPinnedEntries()) - 1;
+    partitions = std::min<int64_t>(partitions, std::min<int64_t>(freeBlocks, MAX_SPILL_PARTITIONS));
+    return static_cast<int>(std::max<int64_t>(1, partitions));
+}
+
+void HashJoinExecutor::partitionInnerTable(Table* innerTable,
+                                           boost::ptr_vector<LargeTempTable>& partitions,
+                                           ProgressMonitorProxy& pmp)
+{
+    const std::vector<AbstractExpression*>& innerKeys =
+            static_cast<HashJoinPlanNode*>(m_abstractNode)->getInnerHashKeys();
+    const size_t partitionCount = partitions.size();
+    TableTuple innerTuple(innerTable->schema());
+    // The inner input is not needed after this, so free its temp blocks as we go.
+    TableIterator iterator = innerTable->iteratorDeletingAsWeGo();
+    size_t hash;
+    while (iterator.next(innerTuple)) {
+        pmp.countdownProgress();
+        if (hashKeys(innerKeys, NULL, &innerTuple, hash)) {
+            partitions[hash % partitionCount].insertTuple(innerTuple);
+        }
+    }
+    for (size_t i = 0; i < partitionCount; i++) {
+        partitions[i].finishInserts();
+    }
+}
+
+void HashJoinExecutor::loadPartition(LargeTempTable* partition, ProgressMonitorProxy& pmp)
+{
+    const std::vector<AbstractExpression*>& innerKeys =
+            static_cast<HashJoinPlanNode*>(m_abstractNode)->getInnerHashKeys();
+    // Copy the partition into an ordinary temp table so that the hash
+    // table can address its tuples. Non-inlined values are copied into
+    // the temp string pool since the large temp table blocks are
+    // released as they are scanned.
+    Pool* stringPool = ExecutorContext::getTempStringPool();
+    TableTuple spilledTuple(partition->schema());
+    TableIterator spilledIterator = partition->iteratorDeletingAsWeGo();
+    while (spilledIterator.next(spilledTuple)) {
+        pmp.countdownProgress();
+        m_buildTable->insertTempTupleDeepCopy(spilledTuple, stringPool);
+    }
+
+    TableTuple innerTuple(m_buildTable->schema());
+    TableIterator iterator = m_buildTable->iterator();
+    size_t hash;
+    while (iterator.next(innerTuple)) {
+        // Keys are never NULL here: those tuples were dropped while partitioning.
+        hashKeys(innerKeys, NULL, &innerTuple, hash);
+        addToHashTable(innerTuple, hash, false);
+    }
+}
+
+void HashJoinExecutor::probeHashTable(Table* outerTable, int partition, int partitionCount,
+                                      CountingPostfilter& postfilter, TableTuple& joinTuple,
+                                      ProgressMonitorProxy& pmp)
+{
+    HashJoinPlanNode* node = static_cast<HashJoinPlanNode*>(m_abstractNode);
+    const std::vector<AbstractExpression*>& outerKeys = node->getOuterHashKeys();
+    AbstractExpression* preJoinPredicate = node->getPreJoinPredicate();
+    AbstractExpression* joinPredicate = node->getJoinPredicate();
+
+    int outer_cols = outerTable->columnCount();
+    int inner_cols = node->getInputTable(1)->columnCount();
+    TableTuple outer_tuple(outerTable->schema());
+    TableTuple inner_tuple(node->getInputTable(1)->schema());
+    const TableTuple& null_inner_tuple = m_null_inner_tuple.tuple();
+
+    // The outer input is scanned once per partition, so only the last pass
+    // may free its blocks.
+    TableIterator iterator = (partition == partitionCount - 1) ?
+            outerTable->iteratorDeletingAsWeGo() : outerTable->iterator();
+    size_t hash;
+    while (postfilter.isUnderLimit() && iterator.next(outer_tuple)) {
+        pmp.countdownProgress();
+
+        // For outer joins if outer tuple fails pre-join predicate
+        // (join expression based on the outer table only)
+        // or has a NULL key, it can't match any of inner tuples
+        bool probing = (preJoinPredicate == NULL || preJoinPredicate->eval(&outer_tuple, NULL).isTrue()) &&
+                hashKeys(outerKeys, &outer_tuple, NULL, hash);
+        if (probing ? (hash % partitionCount != static_cast<size_t>(partition)) : (partition != 0)) {
+            continue;
+        }
+
+        joinTuple.setNValues(0, outer_tuple, 0, outer_cols);
+
+        bool outerMatch = false;
+        if (probing) {
+            std::pair<InnerTupleMap::const_iterator, InnerTupleMap::const_iterator> range =
+                    m_innerTuples.equal_range(hash);
+            for (InnerTupleMap::const_iterator it = range.first;
+                    it != range.second && postfilter.isUnderLimit(); ++it) {
+                pmp.countdownProgress();
+                inner_tuple.move(it->second);
+                // The join predicate still includes the key equalities,
+                // which weeds out hash collisions.
+                if (joinPredicate == NULL || joinPredicate->eval(&outer_tuple, &inner_tuple).isTrue()) {
+                    outerMatch = true;
+                    if (postfilter.eval(&outer_tuple, &inner_tuple)) {
+                        joinTuple.setNValues(outer_cols, inner_tuple, 0, inner_cols);
+                        outputTuple(postfilter, joinTuple, pmp);
+                    }
+                }
+            }
+        }
+
+        //
+        // Left Outer Join
+        //
+        if (m_joinType == JOIN_TYPE_LEFT && !outerMatch && postfilter.isUnderLimit()) {
+            if (postfilter.eval(&outer_tuple, &null_inner_tuple)) {
+                joinTuple.setNValues(outer_cols, null_inner_tuple, 0, inner_cols);
+                outputTuple(postfilter, joinTuple, pmp);
+            }
+        }
+    }
+}
+
+bool HashJoinExecutor::p_execute(const NValueArray &params) {
+    VOLT_DEBUG("executing HashJoin...");
+
+    HashJoinPlanNode* node = dynamic_cast<HashJoinPlanNode*>(m_abstractNode);
+    assert(node);
+    assert(node->getInputTableCount() == 2);
+
+    // output table must be a temp table
+    assert(m_tmpOutputTable);
+
+    Table* outer_table = node->getInputTable();
+    assert(outer_table);
+
+    Table* inner_table = node->getInputTable(1);
+    assert(inner_table);
+
+    VOLT_TRACE ("input table left:\n %s", outer_table->debug().c_str());
+    VOLT_TRACE ("input table right:\n %s", inner_table->debug().c_str());
+
+    LimitPlanNode* limit_node = dynamic_cast<LimitPlanNode*>(node->getInlinePlanNode(PLAN_NODE_TYPE_LIMIT));
+    int limit = CountingPostfilter::NO_LIMIT;
+    int offset = CountingPostfilter::NO_OFFSET;
+    if (limit_node) {
+        limit_node->getLimitAndOffsetByReference(params, limit, offset);
+    }
+
+    ProgressMonitorProxy pmp(m_engine->getExecutorContext(), this);
+    // Init the postfilter
+    CountingPostfilter postfilter(m_tmpOutputTable, node->getWherePredicate(), limit, offset);
+
+    TableTuple join_tuple;
+    if (m_aggExec != NULL) {
+        VOLT_TRACE("Init inline aggregate...");
+        const TupleSchema * aggInputSchema = node->getTupleSchemaPreAgg();
+        join_tuple = m_aggExec->p_execute_init(params, &pmp, aggInputSchema, m_tmpOutputTable, &postfilter);
+    } else {
+        join_tuple = m_tmpOutputTable->tempTuple();
+    }
+
+    try {
+        // Tuples of a large temp table can't be addressed once their block
+        // is unpinned, so such an input always goes through the partitions.
+        if (dynamic_cast<LargeTempTable*>(inner_table) == NULL &&
+                buildHashTable(inner_table, pmp)) {
+            probeHashTable(outer_table, 0, 1, postfilter, join_tuple, pmp);
+        }
+        else {
+            releaseHashTable();
+            int partitionCount = spillPartitionCount(inner_table);
+            VOLT_DEBUG("HashJoin spilling inner table into %d partitions", partitionCount);
+            boost::ptr_vector<LargeTempTable> partitions;
+            for (int i = 0; i < partitionCount; i++) {
+                partitions.push_back(TableFactory::buildCopiedLargeTempTable("hashjoin", inner_table));
+            }
+            partitionInnerTable(inner_table, partitions, pmp);
+
+            if (m_buildTable == NULL) {
+                m_buildTable.reset(TableFactory::buildTempTable("hashjoin",
+                                                                TupleSchema::createTupleSchema(inner_table->schema()),
+                                                                inner_table->getColumnNames(),
+                                                                m_limits));
+            }
+            for (int i = 0; i < partitionCount && postfilter.isUnderLimit(); i++) {
+                loadPartition(&partitions[i], pmp);
+                probeHashTable(outer_table, i, partitionCount, postfilter, join_tuple, pmp);
+                releaseHashTable();
+                m_buildTable->deleteAllTempTuples();
+            }
+        }
+    }
+    catch (...) {
+        releaseHashTable();
+        if (m_buildTable != NULL) {
+            m_buildTable->deleteAllTempTuples();
+        }
+        throw;
+    }
+    releaseHashTable();
+
+    if (m_aggExec != NULL) {
+        m_aggExec->p_execute_finish();
+    }
+
+    return (true);
+}
@@ -0,0 +1,105 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2019 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+#ifndef HSTOREHASHJOINEXECUTOR_H
+#define HSTOREHASHJOINEXECUTOR_H
+
+#include "common/common.h"
+#include "common/valuevector.h"
+#include "executors/abstractjoinexecutor.h"
+
+#include "boost/ptr_container/ptr_vector.hpp"
+#include "boost/scoped_ptr.hpp"
+#include "boost/unordered_map.hpp"
+
+namespace voltdb {
+
+class AbstractExpression;
+class LargeTempTable;
+class TempTable;
+
+/**
+ * Executor for HashJoinPlanNode (INNER and LEFT joins).
+ *
+ * The inner input is loaded into a hash table keyed on the inner hash keys
+ * and every outer tuple probes it with the outer hash keys. The memory held
+ * by the hash table is charged to the fragment's TempTableLimits. If the
+ * table would not fit under the limit, the inner input is split by hash
+ * into large temp table partitions, which are then loaded and probed one at
+ * a time.
+ */
+class HashJoinExecutor : public AbstractJoinExecutor {
+public:
+    // Defined out of line, where TempTable is a complete type
+    HashJoinExecutor(VoltDBEngine *engine, AbstractPlanNode* abstract_node);
+    ~HashJoinExecutor();
+
+    // Approximate footprint of one hash table entry (node, bucket and key hash)
+    static const int HASH_ENTRY_BYTES = 48;
+    // Hash table entries are charged to the temp table limits in chunks of this many
+    static const int ENTRIES_PER_CHARGE = 1024;
+    // Upper bound on the number of partitions a spilled inner input is split into
+    static const int MAX_SPILL_PARTITIONS = 256;
+
+private:
+    // Maps the hash of an inner tuple's join key to the tuple's address
+    typedef boost::unordered_multimap<size_t, char*> InnerTupleMap;
+
+    bool p_init(AbstractPlanNode*, const ExecutorVector& executorVector);
+    bool p_execute(const NValueArray &params);
+
+    /**
+     * Hash the key expressions for the given tuple. Returns false if any key
+     * is NULL, in which case the tuple can not match anything.
+     */
+    static bool hashKeys(const std::vector<AbstractExpression*>& keys,
+                         const TableTuple* outerTuple, const TableTuple* innerTuple,
+                         size_t& hash);
+
+    /**
+     * Add an inner tuple to the hash table. If mayFail is set, returns false
+     * instead of throwing when the entry would exceed the temp table limit.
+     */
+    bool addToHashTable(const TableTuple& innerTuple, size_t hash, bool mayFail);
+    void releaseHashTable();
+
+    bool buildHashTable(Table* innerTable, ProgressMonitorProxy& pmp);
+    int spillPartitionCount(const Table* innerTable) const;
+    void partitionInnerTable(Table* innerTable, boost::ptr_vector<LargeTempTable>& partitions,
+                             ProgressMonitorProxy& pmp);
+    void loadPartition(LargeTempTable* partition, ProgressMonitorProxy& pmp);
+
+    /**
+     * Probe the hash table with the outer tuples that hash to the given
+     * partition. Outer tuples that can not match any inner tuple are
+     * null-padded (for LEFT joins) during the pass over partition 0.
+     */
+    void probeHashTable(Table* outerTable, int partition, int partitionCount,
+                        CountingPostfilter& postfilter, TableTuple& joinTuple,
+                        ProgressMonitorProxy& pmp);
+
+    TempTableLimits* m_limits;
+    InnerTupleMap m_innerTuples;
+    // Bytes currently charged to m_limits on behalf of m_innerTuples
+    int64_t m_chargedBytes;
+    // Holds the inner tuples of the partition being joined after a spill
+    boost::scoped_ptr<TempTable> m_buildTable;
+};
+
+}
+
+#endif
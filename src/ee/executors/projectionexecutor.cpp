@@ -44,11 +44,17 @@
  */
 
 #include "projectionexecutor.h"
+#include "common/SQLException.h"
+#include "expressions/batchexpression.h"
 #include "expressions/expressionutil.h"
 #include "plannodes/projectionnode.h"
+#include "storage/LargeTempTable.h"
 #include "storage/tableiterator.h"
 #include "storage/tablefactory.h"
 
+#include <algorithm>
+#include <cstring>
+
 namespace voltdb {
 
 bool ProjectionExecutor::p_init(AbstractPlanNode *abstractNode,
@@ -88,9 +94,34 @@ bool ProjectionExecutor::p_init(AbstractPlanNode *abstractNode,
 
     m_outputTable = dynamic_cast<AbstractTempTable*>(node->getOutputTable()); //output table should be temptable
 
+    m_batchRows = 0;
+    m_batchTupleLength = 0;
     if (!node->isInline()) {
         Table* input_table = node->getInputTable();
         m_tuple = TableTuple(input_table->schema());
+
+        // Large temp tables keep non-inlined values in their blocks, which
+        // are released behind the iterator, so their tuples cannot be copied
+        // out into a batch.
+        if (m_allTupleArray == NULL && m_allParamArray == NULL &&
+                dynamic_cast<LargeTempTable*>(input_table) == NULL) {
+            bool batched = false;
+            for (int ctr = 0; ctr < m_columnCount; ctr++) {
+                m_batchColumns.push_back(boost::shared_ptr<BatchExpression>(
+                        BatchExpression::compileProjection(expression_array[ctr], input_table->schema())));
+                batched |= m_batchColumns.back() != NULL;
+            }
+            if (batched) {
+                // Keep the copy of a batch of wide tuples to about a megabyte
+                m_batchTupleLength = input_table->schema()->tupleLength() + TUPLE_HEADER_SIZE;
+                m_batchRows = std::max(1, std::min(static_cast<int>(BatchExpression::BATCH_SIZE),
+                                                   (1 << 20) / m_batchTupleLength));
+                m_batchBuffer.reset(new char[m_batchRows * m_batchTupleLength]);
+            }
+            else {
+                m_batchColumns.clear();
+            }
+        }
     }
     return true;
 }
@@ -125,6 +156,21 @@ bool ProjectionExecutor::p_execute(const NValueArray &params) {
     //
     TableIterator iterator = input_table->iteratorDeletingAsWeGo();
     assert (m_tuple.columnCount() == input_table->columnCount());
+    if (m_batchRows > 0 && BatchExpression::isEnabled()) {
+        std::vector<BatchExpression*> bound(m_columnCount, NULL);
+        bool batched = false;
+        for (int ctr = 0; ctr < m_columnCount; ctr++) {
+            BatchExpression* column = m_batchColumns[ctr].get();
+            if (column != NULL && column->bind()) {
+                bound[ctr] = column;
+                batched = true;
+            }
+        }
+        if (batched) {
+            projectInBatches(iterator, bound);
+            return true;
+        }
+    }
     while (iterator.next(m_tuple)) {
         //
         // Project (or replace) values from input tuple
@@ -153,6 +199,56 @@ bool ProjectionExecutor::p_execute(const NValueArray &params) {
     return true;
 }
 
+void ProjectionExecutor::projectInBatches(TableIterator& iterator,
+                                          const std::vector<BatchExpression*>& bound) {
+    char* batch[BatchExpression::BATCH_SIZE];
+    int rows[BatchExpression::BATCH_SIZE];
+    for (int k = 0; k < m_batchRows; ++k) {
+        batch[k] = m_batchBuffer.get() + k * m_batchTupleLength;
+        rows[k] = k;
+    }
+    TableTuple batchTuple(m_tuple.getSchema());
+
+    while (true) {
+        int count = 0;
+        while (count < m_batchRows && iterator.next(m_tuple)) {
+            ::memcpy(batch[count++], m_tuple.address(), m_batchTupleLength);
+        }
+        if (count == 0) {
+            break;
+        }
+
+        // An error in the batch may come from a later tuple than the one
+        // the row by row loop would have failed on, so redo the batch that
+        // way to raise the same error.
+        bool rowByRow = false;
+        try {
+            for (int ctr = m_columnCount - 1; ctr >= 0; --ctr) {
+                if (bound[ctr] != NULL) {
+                    bound[ctr]->evaluate(batch, rows, count);
+                }
+            }
+        }
+        catch (const SQLException&) {
+            rowByRow = true;
+        }
+
+        for (int k = 0; k < count; ++k) {
+            batchTuple.move(batch[k]);
+            TableTuple &temp_tuple = m_outputTable->tempTuple();
+            for (int ctr = m_columnCount - 1; ctr >= 0; --ctr) {
+                if (bound[ctr] != NULL && ! rowByRow) {
+                    temp_tuple.setNValue(ctr, bound[ctr]->valueAt(k));
+                }
+                else {
+                    temp_tuple.setNValue(ctr, expression_array[ctr]->eval(&batchTuple, NULL));
+                }
+            }
+            m_outputTable->insertTempTuple(temp_tuple);
+        }
+    }
+}
+
 ProjectionExecutor::~ProjectionExecutor() {
 }
 
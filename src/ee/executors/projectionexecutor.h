@@ -48,6 +48,7 @@
 
 #include <vector>
 #include "boost/shared_array.hpp"
+#include "boost/shared_ptr.hpp"
 #include "common/common.h"
 #include "common/valuevector.h"
 #include "common/tabletuple.h"
@@ -57,7 +58,9 @@ namespace voltdb {
 
 class AbstractExpression;
 class AbstractTempTable;
+class BatchExpression;
 class Table;
+class TableIterator;
 
 /**
  *
@@ -74,6 +77,14 @@ class ProjectionExecutor : public AbstractExecutor {
         bool p_execute(const NValueArray &params);
 
     private:
+        /**
+         * Project the input a batch of tuples at a time, evaluating the
+         * columns in m_batchColumns over a whole batch.  The tuples are
+         * copied out of the input table first because deleting as we go
+         * frees its blocks behind the iterator.
+         */
+        void projectInBatches(TableIterator& iterator, const std::vector<BatchExpression*>& bound);
+
         AbstractTempTable* m_outputTable;
         int m_columnCount;
         boost::shared_array<int> m_allTupleArrayPtr;
@@ -86,6 +97,13 @@ class ProjectionExecutor : public AbstractExecutor {
 
         boost::shared_array<AbstractExpression*> expression_array_ptr;
         AbstractExpression** expression_array;
+
+        // Batch forms of the output columns, NULL for those evaluated row by row,
+        // and the buffer the tuples of a batch are copied to.
+        std::vector<boost::shared_ptr<BatchExpression> > m_batchColumns;
+        boost::shared_array<char> m_batchBuffer;
+        int m_batchRows;
+        int m_batchTupleLength;
 };
 
 }
@@ -44,8 +44,10 @@
  */
 
 #include "seqscanexecutor.h"
+#include "common/SQLException.h"
 #include "executors/aggregateexecutor.h"
 #include "executors/insertexecutor.h"
+#include "expressions/batchexpression.h"
 #include "plannodes/aggregatenode.h"
 #include "plannodes/insertnode.h"
 #include "plannodes/seqscannode.h"
@@ -54,6 +56,8 @@
 #include "storage/temptable.h"
 #include "storage/tablefactory.h"
 
+#include <algorithm>
+
 using namespace voltdb;
 
 bool SeqScanExecutor::p_init(AbstractPlanNode* abstract_node,
@@ -160,11 +164,7 @@ bool SeqScanExecutor::p_execute(const NValueArray &params) {
     // change any nodes in our expression tree to be ready for the
     // projection operations in execute
     //
-    int num_of_columns = -1;
     ProjectionPlanNode* projectionNode = dynamic_cast<ProjectionPlanNode*>(node->getInlinePlanNode(PLAN_NODE_TYPE_PROJECTION));
-    if (projectionNode != NULL) {
-        num_of_columns = static_cast<int> (projectionNode->getOutputColumnExpressions().size());
-    }
     //
     // OPTIMIZATION: NESTED LIMIT
     // How nice! We can also cut off our scanning with a nested limit!
@@ -202,8 +202,13 @@ bool SeqScanExecutor::p_execute(const NValueArray &params) {
         if (limit_node) {
             limit_node->getLimitAndOffsetByReference(params, limit, offset);
         }
+        // Persistent tables can be scanned in batches when the predicate
+        // and projection allow it; the batches then apply the predicate
+        // themselves and the postfilter only counts offset and limit.
+        const bool inBatches = bindBatchExpressions(node, input_table, projectionNode);
+
         // Initialize the postfilter
-        CountingPostfilter postfilter(m_tmpOutputTable, predicate, limit, offset);
+        CountingPostfilter postfilter(m_tmpOutputTable, inBatches ? NULL : predicate, limit, offset);
 
         ProgressMonitorProxy pmp(m_engine->getExecutorContext(), this);
         TableTuple temp_tuple;
@@ -251,7 +256,12 @@ bool SeqScanExecutor::p_execute(const NValueArray &params) {
             temp_tuple = m_tmpOutputTable->tempTuple();
         }
 
-        while (postfilter.isUnderLimit() && iterator.next(tuple))
+        if (inBatches) {
+            scanInBatches(iterator, tuple, predicate, limit_node != NULL, postfilter,
+                          projectionNode, temp_tuple, pmp);
+        }
+
+        while ( ! inBatches && postfilter.isUnderLimit() && iterator.next(tuple))
         {
 #if   defined(VOLT_TRACE_ENABLED)
             int tuple_ctr = 0;
@@ -267,26 +277,7 @@ bool SeqScanExecutor::p_execute(const NValueArray &params) {
             //
             if (postfilter.eval(&tuple, NULL))
             {
-                //
-                // Nested Projection
-                // Project (or replace) values from input tuple
-                //
-                if (projectionNode != NULL)
-                {
-                    VOLT_TRACE("inline projection...");
-                    // Project the scanned table row onto
-                    // the columns of the select list in the
-                    // select statement.
-                    for (int ctr = 0; ctr < num_of_columns; ctr++) {
-                        NValue value = projectionNode->getOutputColumnExpressions()[ctr]->eval(&tuple, NULL);
-                        temp_tuple.setNValue(ctr, value);
-                    }
-                    outputTuple(temp_tuple);
-                }
-                else
-                {
-                    outputTuple(tuple);
-                }
+                projectAndOutput(tuple, projectionNode, temp_tuple);
                 pmp.countdownProgress();
             }
         } // end while we have more tuples to scan
@@ -307,6 +298,147 @@ bool SeqScanExecutor::p_execute(const NValueArray &params) {
     return true;
 }
 
+void SeqScanExecutor::projectAndOutput(TableTuple& tuple, const ProjectionPlanNode* projectionNode,
+                                       TableTuple& temp_tuple) {
+    //
+    // Nested Projection
+    // Project (or replace) values from input tuple
+    //
+    if (projectionNode != NULL)
+    {
+        VOLT_TRACE("inline projection...");
+        // Project the scanned table row onto
+        // the columns of the select list in the
+        // select statement.
+        const std::vector<AbstractExpression*>& columns = projectionNode->getOutputColumnExpressions();
+        const int num_of_columns = static_cast<int>(columns.size());
+        for (int ctr = 0; ctr < num_of_columns; ctr++) {
+            NValue value = columns[ctr]->eval(&tuple, NULL);
+            temp_tuple.setNValue(ctr, value);
+        }
+        outputTuple(temp_tuple);
+    }
+    else
+    {
+        outputTuple(tuple);
+    }
+}
+
+bool SeqScanExecutor::bindBatchExpressions(const SeqScanPlanNode* node, const Table* input_table,
+                                           const ProjectionPlanNode* projectionNode) {
+    // Inline inserts may write to the table being scanned, which would move
+    // the tuples of a batch that has been collected but not yet output.
+    if ( ! BatchExpression::isEnabled() || ! node->isPersistentTableScan() || m_insertExec != NULL) {
+        return false;
+    }
+    const AbstractExpression* predicate = node->getPredicate();
+    const TupleSchema* schema = input_table->schema();
+    if (schema != m_batchSchema) {
+        m_batchSchema = schema;
+        m_batchPredicate.reset(BatchExpression::compilePredicate(predicate, schema));
+        m_batchProjection.clear();
+        if (projectionNode != NULL) {
+            const std::vector<AbstractExpression*>& columns = projectionNode->getOutputColumnExpressions();
+            for (size_t ctr = 0; ctr < columns.size(); ctr++) {
+                m_batchProjection.push_back(boost::shared_ptr<BatchExpression>(
+                        BatchExpression::compileProjection(columns[ctr], schema)));
+            }
+        }
+    }
+
+    if (predicate != NULL && (m_batchPredicate == NULL || ! m_batchPredicate->bind())) {
+        return false;
+    }
+    bool batched = predicate != NULL;
+    m_boundProjection.assign(m_batchProjection.size(), NULL);
+    for (size_t ctr = 0; ctr < m_batchProjection.size(); ctr++) {
+        BatchExpression* column = m_batchProjection[ctr].get();
+        if (column != NULL && column->bind()) {
+            m_boundProjection[ctr] = column;
+            batched = true;
+        }
+    }
+    return batched;
+}
+
+void SeqScanExecutor::scanInBatches(TableIterator& iterator, TableTuple& tuple,
+                                    const AbstractExpression* predicate, bool hasLimit,
+                                    CountingPostfilter& postfilter,
+                                    const ProjectionPlanNode* projectionNode,
+                                    TableTuple& temp_tuple, ProgressMonitorProxy& pmp) {
+    char* batch[BatchExpression::BATCH_SIZE];
+    int selected[BatchExpression::BATCH_SIZE];
+    const int num_of_columns = static_cast<int>(m_boundProjection.size());
+
+    // With a LIMIT the scan may stop after a few tuples, so start with small
+    // batches and grow them while the limit has not been reached.
+    int batchSize = hasLimit ? 64 : BatchExpression::BATCH_SIZE;
+    while (postfilter.isUnderLimit()) {
+        int count = 0;
+        while (count < batchSize && iterator.next(tuple)) {
+            // Progress is counted once per tuple, when it is collected
+            pmp.countdownProgress();
+            batch[count++] = tuple.address();
+        }
+        if (count == 0) {
+            break;
+        }
+        batchSize = std::min(batchSize * 2, static_cast<int>(BatchExpression::BATCH_SIZE));
+
+        int found = count;
+        try {
+            if (predicate != NULL) {
+                found = m_batchPredicate->filter(batch, count, selected);
+            }
+            else {
+                for (int k = 0; k < count; ++k) {
+                    selected[k] = k;
+                }
+            }
+            for (int ctr = 0; ctr < num_of_columns; ctr++) {
+                if (m_boundProjection[ctr] != NULL) {
+                    m_boundProjection[ctr]->evaluate(batch, selected, found);
+                }
+            }
+        }
+        catch (const SQLException&) {
+            // Some tuple of the batch raised an error, but it may not be one
+            // that the row by row scan would have reached, so redo the batch
+            // that way to raise exactly the same error, or none.
+            for (int k = 0; k < count && postfilter.isUnderLimit(); ++k) {
+                tuple.move(batch[k]);
+                if ((predicate == NULL || predicate->eval(&tuple, NULL).isTrue()) &&
+                    postfilter.eval(&tuple, NULL)) {
+                    projectAndOutput(tuple, projectionNode, temp_tuple);
+                }
+            }
+            continue;
+        }
+
+        for (int j = 0; j < found && postfilter.isUnderLimit(); ++j) {
+            tuple.move(batch[selected[j]]);
+            if ( ! postfilter.eval(&tuple, NULL)) {
+                continue;
+            }
+            if (projectionNode != NULL) {
+                const std::vector<AbstractExpression*>& columns = projectionNode->getOutputColumnExpressions();
+                for (int ctr = 0; ctr < num_of_columns; ctr++) {
+                    if (m_boundProjection[ctr] != NULL) {
+                        temp_tuple.setNValue(ctr, m_boundProjection[ctr]->valueAt(j));
+                    }
+                    else {
+                        temp_tuple.setNValue(ctr, columns[ctr]->eval(&tuple, NULL));
+                    }
+                }
+                outputTuple(temp_tuple);
+            }
+            else {
+                outputTuple(tuple);
+            }
+        }
+    }
+}
+
 /*
  * We may output a tuple to an inline aggregate or
  * inline insert node.  If there is a limit or projection, this will have
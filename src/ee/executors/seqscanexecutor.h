@@ -51,11 +51,19 @@
 #include "executors/abstractexecutor.h"
 #include "execution/VoltDBEngine.h"
 
+#include <vector>
+#include <boost/shared_ptr.hpp>
+
 namespace voltdb
 {
     class AggregateExecutorBase;
+    class BatchExpression;
     struct CountingPostfilter;
     class InsertExecutor;
+    class ProgressMonitorProxy;
+    class ProjectionPlanNode;
+    class SeqScanPlanNode;
+    class TableIterator;
 
     class SeqScanExecutor : public AbstractExecutor {
     public:
@@ -63,6 +71,7 @@ namespace voltdb
             : AbstractExecutor(engine, abstract_node)
             , m_aggExec(NULL)
             , m_insertExec(NULL)
+            , m_batchSchema(NULL)
         {}
     protected:
         bool p_init(AbstractPlanNode* abstract_node,
@@ -77,6 +86,32 @@ namespace voltdb
          */
         void outputTuple(TableTuple& tuple);
 
+        /**
+         * Apply the inline projection, if any, to a tuple that passed
+         * the predicate and output the result.
+         */
+        void projectAndOutput(TableTuple& tuple, const ProjectionPlanNode* projectionNode,
+                              TableTuple& temp_tuple);
+
+        /**
+         * Compile the predicate and inline projection for batch evaluation
+         * when the scanned table's schema is new, and bind them for this
+         * execution.  Returns false when the scan must run row by row.
+         */
+        bool bindBatchExpressions(const SeqScanPlanNode* node, const Table* input_table,
+                                  const ProjectionPlanNode* projectionNode);
+
+        /**
+         * Scan a persistent table a batch of tuples at a time, evaluating
+         * the predicate and the compiled projection columns over the
+         * whole batch before applying offset and limit in tuple order.
+         */
+        void scanInBatches(TableIterator& iterator, TableTuple& tuple,
+                           const AbstractExpression* predicate, bool hasLimit,
+                           CountingPostfilter& postfilter,
+                           const ProjectionPlanNode* projectionNode,
+                           TableTuple& temp_tuple, ProgressMonitorProxy& pmp);
+
         // These are logically local variables to p_execute.
         // But we need to share them between p_execute and
         // outputTuple, so we save them here.  They come out of
@@ -85,6 +120,14 @@ namespace voltdb
         // freeing them.
         AggregateExecutorBase* m_aggExec;
         InsertExecutor* m_insertExec;
+
+        // Batch forms of the predicate and of the inline projection columns,
+        // compiled for m_batchSchema.  A NULL entry is evaluated row by row.
+        const TupleSchema* m_batchSchema;
+        boost::shared_ptr<BatchExpression> m_batchPredicate;
+        std::vector<boost::shared_ptr<BatchExpression> > m_batchProjection;
+        // The projection columns that could be bound for the current execution
+        std::vector<BatchExpression*> m_boundProjection;
     };
 }
 
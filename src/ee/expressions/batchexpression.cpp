@@ -0,0 +1,626 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2019 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+#include "expressions/batchexpression.h"
+
+#include "common/tabletuple.h"
+#include "common/ValueFactory.hpp"
+#include "common/ValuePeeker.hpp"
+#include "expressions/abstractexpression.h"
+#include "expressions/tuplevalueexpression.h"
+
+#include <algorithm>
+#include <cfloat>
+#include <cmath>
+
+namespace voltdb {
+
+bool BatchExpression::s_enabled = false;
+
+namespace {
+
+// Same ordering as NValue::compareDoubleValue: NaNs are equal to each other and
+// smaller than every other value.
+inline int compareDoubles(double lhs, double rhs) {
+    if (std::isnan(lhs)) {
+        return std::isnan(rhs) ? VALUE_COMPARE_EQUAL : VALUE_COMPARE_LESSTHAN;
+    }
+    if (std::isnan(rhs)) {
+        return VALUE_COMPARE_GREATERTHAN;
+    }
+    if (lhs > rhs) {
+        return VALUE_COMPARE_GREATERTHAN;
+    }
+    if (lhs < rhs) {
+        return VALUE_COMPARE_LESSTHAN;
+    }
+    return VALUE_COMPARE_EQUAL;
+}
+
+inline int compareIntegers(int64_t lhs, int64_t rhs) {
+    if (lhs > rhs) {
+        return VALUE_COMPARE_GREATERTHAN;
+    }
+    if (lhs < rhs) {
+        return VALUE_COMPARE_LESSTHAN;
+    }
+    return VALUE_COMPARE_EQUAL;
+}
+
+inline bool comparisonHolds(ExpressionType op, int cmp) {
+    switch (op) {
+    case EXPRESSION_TYPE_COMPARE_EQUAL:
+        return cmp == VALUE_COMPARE_EQUAL;
+    case EXPRESSION_TYPE_COMPARE_NOTEQUAL:
+        return cmp != VALUE_COMPARE_EQUAL;
+    case EXPRESSION_TYPE_COMPARE_LESSTHAN:
+        return cmp == VALUE_COMPARE_LESSTHAN;
+    case EXPRESSION_TYPE_COMPARE_GREATERTHAN:
+        return cmp == VALUE_COMPARE_GREATERTHAN;
+    case EXPRESSION_TYPE_COMPARE_LESSTHANOREQUALTO:
+        return cmp != VALUE_COMPARE_GREATERTHAN;
+    case EXPRESSION_TYPE_COMPARE_GREATERTHANOREQUALTO:
+        return cmp != VALUE_COMPARE_LESSTHAN;
+    default:
+        assert(false);
+        return false;
+    }
+}
+
+inline bool isIntegerType(ValueType type) {
+    switch (type) {
+    case VALUE_TYPE_TINYINT:
+    case VALUE_TYPE_SMALLINT:
+    case VALUE_TYPE_INTEGER:
+    case VALUE_TYPE_BIGINT:
+    case VALUE_TYPE_TIMESTAMP:
+        return true;
+    default:
+        return false;
+    }
+}
+
+// Products of operands inside this range cannot overflow a BIGINT or produce the
+// BIGINT NULL value, so only rows outside it need the checked NValue multiply.
+const int64_t SAFE_FACTOR = INT64_C(0x7fffffff);
+
+}
+
+BatchExpression *BatchExpression::compilePredicate(const AbstractExpression *expression,
+                                                   const TupleSchema *schema) {
+    if (expression == NULL) {
+        return NULL;
+    }
+    switch (expression->getExpressionType()) {
+    case EXPRESSION_TYPE_COMPARE_EQUAL:
+    case EXPRESSION_TYPE_COMPARE_NOTEQUAL:
+    case EXPRESSION_TYPE_COMPARE_LESSTHAN:
+    case EXPRESSION_TYPE_COMPARE_GREATERTHAN:
+    case EXPRESSION_TYPE_COMPARE_LESSTHANOREQUALTO:
+    case EXPRESSION_TYPE_COMPARE_GREATERTHANOREQUALTO:
+        return compile(expression, schema, NODE_COMPARISON);
+    case EXPRESSION_TYPE_CONJUNCTION_AND:
+        return compile(expression, schema, NODE_AND);
+    case EXPRESSION_TYPE_CONJUNCTION_OR:
+        return compile(expression, schema, NODE_OR);
+    default:
+        return NULL;
+    }
+}
+
+BatchExpression *BatchExpression::compileProjection(const AbstractExpression *expression,
+                                                    const TupleSchema *schema) {
+    if (expression == NULL) {
+        return NULL;
+    }
+    switch (expression->getExpressionType()) {
+    case EXPRESSION_TYPE_OPERATOR_PLUS:
+    case EXPRESSION_TYPE_OPERATOR_MINUS:
+    case EXPRESSION_TYPE_OPERATOR_MULTIPLY:
+        return compile(expression, schema, NODE_ARITHMETIC);
+    default:
+        return NULL;
+    }
+}
+
+BatchExpression *BatchExpression::compile(const AbstractExpression *expression,
+                                          const TupleSchema *schema,
+                                          NodeKind rootKind) {
+    BatchExpression *compiled = new BatchExpression();
+    compiled->m_root = compiled->compileNode(expression, schema);
+    if (compiled->m_root == NULL || compiled->m_root->kind != rootKind) {
+        delete compiled;
+        return NULL;
+    }
+    for (int i = 0; i < BATCH_SIZE; ++i) {
+        compiled->m_identityRows[i] = i;
+    }
+    return compiled;
+}
+
+BatchExpression::~BatchExpression() {
+    for (std::vector<Node*>::iterator it = m_nodes.begin(); it != m_nodes.end(); ++it) {
+        delete *it;
+    }
+}
+
+BatchExpression::Node *BatchExpression::compileNode(const AbstractExpression *expression,
+                                                    const TupleSchema *schema) {
+    if (expression == NULL) {
+        return NULL;
+    }
+    const ExpressionType op = expression->getExpressionType();
+    NodeKind kind;
+    Node *left = NULL;
+    Node *right = NULL;
+    switch (op) {
+    case EXPRESSION_TYPE_VALUE_TUPLE: {
+        const TupleValueExpression *tve = static_cast<const TupleValueExpression*>(expression);
+        if (tve->getTupleId() != 0 || tve->getColumnId() >= schema->columnCount()) {
+            return NULL;
+        }
+        const ValueType type = schema->columnType(tve->getColumnId());
+        if ( ! isIntegerType(type) && type != VALUE_TYPE_DOUBLE) {
+            return NULL;
+        }
+        kind = NODE_COLUMN;
+        break;
+    }
+    case EXPRESSION_TYPE_VALUE_CONSTANT:
+    case EXPRESSION_TYPE_VALUE_PARAMETER:
+        kind = NODE_SCALAR;
+        break;
+    case EXPRESSION_TYPE_OPERATOR_PLUS:
+    case EXPRESSION_TYPE_OPERATOR_MINUS:
+    case EXPRESSION_TYPE_OPERATOR_MULTIPLY:
+        kind = NODE_ARITHMETIC;
+        break;
+    case EXPRESSION_TYPE_COMPARE_EQUAL:
+    case EXPRESSION_TYPE_COMPARE_NOTEQUAL:
+    case EXPRESSION_TYPE_COMPARE_LESSTHAN:
+    case EXPRESSION_TYPE_COMPARE_GREATERTHAN:
+    case EXPRESSION_TYPE_COMPARE_LESSTHANOREQUALTO:
+    case EXPRESSION_TYPE_COMPARE_GREATERTHANOREQUALTO:
+        kind = NODE_COMPARISON;
+        break;
+    case EXPRESSION_TYPE_CONJUNCTION_AND:
+        kind = NODE_AND;
+        break;
+    case EXPRESSION_TYPE_CONJUNCTION_OR:
+        kind = NODE_OR;
+        break;
+    default:
+        return NULL;
+    }
+
+    if (kind != NODE_COLUMN && kind != NODE_SCALAR) {
+        left = compileNode(expression->getLeft(), schema);
+        if (left == NULL) {
+            return NULL;
+        }
+        right = compileNode(expression->getRight(), schema);
+        if (right == NULL) {
+            return NULL;
+        }
+        const bool booleanOperands = kind == NODE_AND || kind == NODE_OR;
+        if (booleanOperands != (left->valueClass == CLASS_BOOLEAN) ||
+            booleanOperands != (right->valueClass == CLASS_BOOLEAN)) {
+            return NULL;
+        }
+    }
+
+    // Nodes are kept children first, which is the order bind() needs
+    Node *node = new Node();
+    m_nodes.push_back(node);
+    node->kind = kind;
+    node->op = op;
+    node->expression = expression;
+    node->left = left;
+    node->right = right;
+    node->columnOffset = 0;
+    node->scalarNull = true;
+    node->scalarInteger = 0;
+    node->scalarDouble = 0.0;
+    switch (kind) {
+    case NODE_COLUMN: {
+        const int columnId = static_cast<const TupleValueExpression*>(expression)->getColumnId();
+        node->valueType = schema->columnType(columnId);
+        node->valueClass = node->valueType == VALUE_TYPE_DOUBLE ? CLASS_DOUBLE : CLASS_INTEGER;
+        node->columnOffset = TUPLE_HEADER_SIZE + schema->getColumnInfo(columnId)->offset;
+        break;
+    }
+    case NODE_SCALAR:
+    case NODE_ARITHMETIC:
+        // settled by bind() once the parameter values are known
+        node->valueType = VALUE_TYPE_INVALID;
+        node->valueClass = CLASS_INTEGER;
+        break;
+    default:
+        node->valueType = VALUE_TYPE_BOOLEAN;
+        node->valueClass = CLASS_BOOLEAN;
+        break;
+    }
+    return node;
+}
+
+bool BatchExpression::bind() {
+    for (std::vector<Node*>::iterator it = m_nodes.begin(); it != m_nodes.end(); ++it) {
+        Node *node = *it;
+        switch (node->kind) {
+        case NODE_SCALAR: {
+            const NValue value = node->expression->eval(NULL, NULL);
+            const ValueType type = ValuePeeker::peekValueType(value);
+            if (isIntegerType(type)) {
+                node->valueClass = CLASS_INTEGER;
+            }
+            else if (type == VALUE_TYPE_DOUBLE) {
+                node->valueClass = CLASS_DOUBLE;
+            }
+            else {
+                return false;
+            }
+            node->valueType = type;
+            node->scalarNull = value.isNull();
+            if (node->scalarNull) {
+                break;
+            }
+            if (node->valueClass == CLASS_INTEGER) {
+                node->scalarInteger = ValuePeeker::peekAsRawInt64(value);
+            }
+            else {
+                node->scalarDouble = ValuePeeker::peekDouble(value);
+            }
+            break;
+        }
+        case NODE_ARITHMETIC:
+            if (node->left->valueType == VALUE_TYPE_TIMESTAMP ||
+                node->right->valueType == VALUE_TYPE_TIMESTAMP) {
+                return false;
+            }
+            if (node->left->valueClass == CLASS_INTEGER && node->right->valueClass == CLASS_INTEGER) {
+                node->valueClass = CLASS_INTEGER;
+                node->valueType = VALUE_TYPE_BIGINT;
+            }
+            else {
+                node->valueClass = CLASS_DOUBLE;
+                node->valueType = VALUE_TYPE_DOUBLE;
+            }
+            break;
+        case NODE_COMPARISON:
+            if ((node->left->valueType == VALUE_TYPE_TIMESTAMP) !=
+                (node->right->valueType == VALUE_TYPE_TIMESTAMP)) {
+                return false;
+            }
+            break;
+        default:
+            break;
+        }
+        allocate(node);
+    }
+    return true;
+}
+
+void BatchExpression::allocate(Node *node) {
+    if (node->valueClass == CLASS_BOOLEAN) {
+        if ( ! node->truths) {
+            node->truths.reset(new int8_t[BATCH_SIZE]);
+            node->subRows.reset(new int[BATCH_SIZE]);
+            node->subPositions.reset(new int[BATCH_SIZE]);
+        }
+        return;
+    }
+    if ( ! node->nulls) {
+        node->nulls.reset(new bool[BATCH_SIZE]);
+    }
+    if (node->valueClass == CLASS_INTEGER && ! node->integers) {
+        node->integers.reset(new int64_t[BATCH_SIZE]);
+    }
+    else if (node->valueClass == CLASS_DOUBLE && ! node->doubles) {
+        node->doubles.reset(new double[BATCH_SIZE]);
+    }
+}
+
+int BatchExpression::filter(const char * const *tuples, int count, int *selected) {
+    assert(count <= BATCH_SIZE);
+    computeTruth(m_root, tuples, m_identityRows, count);
+    const int8_t *truths = m_root->truths.get();
+    int found = 0;
+    for (int k = 0; k < count; ++k) {
+        selected[found] = k;
+        found += truths[k] == TRUTH_TRUE;
+    }
+    return found;
+}
+
+void BatchExpression::evaluate(const char * const *tuples, const int *rows, int count) {
+    assert(count <= BATCH_SIZE);
+    compute(m_root, tuples, rows, count);
+}
+
+NValue BatchExpression::valueAt(int k) const {
+    return operandValue(m_root, k);
+}
+
+NValue BatchExpression::operandValue(const Node *node, int k) {
+    if (node->valueClass == CLASS_DOUBLE) {
+        return node->nulls[k] ? NValue::getNullValue(VALUE_TYPE_DOUBLE) :
+                                ValueFactory::getDoubleValue(node->doubles[k]);
+    }
+    return node->nulls[k] ? NValue::getNullValue(VALUE_TYPE_BIGINT) :
+                            ValueFactory::getBigIntValue(node->integers[k]);
+}
+
+void BatchExpression::compute(Node *node, const char * const *tuples, const int *rows, int count) {
+    switch (node->kind) {
+    case NODE_COLUMN:
+        computeColumn(node, tuples, rows, count);
+        break;
+    case NODE_SCALAR:
+        std::fill(node->nulls.get(), node->nulls.get() + count, node->scalarNull);
+        if (node->valueClass == CLASS_INTEGER) {
+            std::fill(node->integers.get(), node->integers.get() + count, node->scalarInteger);
+        }
+        else {
+            std::fill(node->doubles.get(), node->doubles.get() + count, node->scalarDouble);
+        }
+        break;
+    case NODE_ARITHMETIC:
+        compute(node->left, tuples, rows, count);
+        compute(node->right, tuples, rows, count);
+        computeArithmetic(node, count);
+        break;
+    default:
+        computeTruth(node, tuples, rows, count);
+        break;
+    }
+}
+
+void BatchExpression::computeColumn(Node *node, const char * const *tuples, const int *rows, int count) {
+    const uint32_t offset = node->columnOffset;
+    int64_t *integers = node->integers.get();
+    bool *nulls = node->nulls.get();
+    switch (node->valueType) {
+    case VALUE_TYPE_TINYINT:
+        for (int k = 0; k < count; ++k) {
+            const int8_t value = *reinterpret_cast<const int8_t*>(tuples[rows[k]] + offset);
+            integers[k] = value;
+            nulls[k] = value == INT8_NULL;
+        }
+        break;
+    case VALUE_TYPE_SMALLINT:
+        for (int k = 0; k < count; ++k) {
+            const int16_t value = *reinterpret_cast<const int16_t*>(tuples[rows[k]] + offset);
+            integers[k] = value;
+            nulls[k] = value == INT16_NULL;
+        }
+        break;
+    case VALUE_TYPE_INTEGER:
+        for (int k = 0; k < count; ++k) {
+            const int32_t value = *reinterpret_cast<const int32_t*>(tuples[rows[k]] + offset);
+            integers[k] = value;
+            nulls[k] = value == INT32_NULL;
+        }
+        break;
+    case VALUE_TYPE_BIGINT:
+    case VALUE_TYPE_TIMESTAMP:
+        for (int k = 0; k < count; ++k) {
+            const int64_t value = *reinterpret_cast<const int64_t*>(tuples[rows[k]] + offset);
+            integers[k] = value;
+            nulls[k] = value == INT64_NULL;
+        }
+        break;
+    case VALUE_TYPE_DOUBLE: {
+        double *doubles = node->doubles.get();
+        for (int k = 0; k < count; ++k) {
+            const double value = *reinterpret_cast<const double*>(tuples[rows[k]] + offset);
+            doubles[k] = value;
+            nulls[k] = value <= DOUBLE_NULL;
+        }
+        break;
+    }
+    default:
+        assert(false);
+        break;
+    }
+}
+
+void BatchExpression::computeArithmetic(Node *node, int count) {
+    const Node *left = node->left;
+    const Node *right = node->right;
+    bool *nulls = node->nulls.get();
+    const bool *leftNulls = left->nulls.get();
+    const bool *rightNulls = right->nulls.get();
+    for (int k = 0; k < count; ++k) {
+        nulls[k] = leftNulls[k] | rightNulls[k];
+    }
+
+    if (node->valueClass == CLASS_INTEGER) {
+        const int64_t *lhs = left->integers.get();
+        const int64_t *rhs = right->integers.get();
+        int64_t *result = node->integers.get();
+        // Rows that overflow, or land on the BIGINT NULL value, are redone by the
+        // NValue operators so that they raise exactly the exception eval() would.
+        for (int k = 0; k < count; ++k) {
+            bool slow;
+            switch (node->op) {
+            case EXPRESSION_TYPE_OPERATOR_PLUS: {
+                const int64_t sum = static_cast<int64_t>(static_cast<uint64_t>(lhs[k]) +
+                                                         static_cast<uint64_t>(rhs[k]));
+                result[k] = sum;
+                slow = ((lhs[k] ^ sum) & (rhs[k] ^ sum)) < 0 || sum == INT64_NULL;
+                break;
+            }
+            case EXPRESSION_TYPE_OPERATOR_MINUS: {
+                const int64_t difference = static_cast<int64_t>(static_cast<uint64_t>(lhs[k]) -
+                                                                static_cast<uint64_t>(rhs[k]));
+                result[k] = difference;
+                slow = ((lhs[k] ^ rhs[k]) & (lhs[k] ^ difference)) < 0 || difference == INT64_NULL;
+                break;
+            }
+            default:
+                slow = lhs[k] > SAFE_FACTOR || lhs[k] < -SAFE_FACTOR ||
+                       rhs[k] > SAFE_FACTOR || rhs[k] < -SAFE_FACTOR;
+                result[k] = slow ? 0 : lhs[k] * rhs[k];
+                break;
+            }
+            if (slow && ! nulls[k]) {
+                const NValue value = slowArithmetic(node, k);
+                nulls[k] = value.isNull();
+                result[k] = nulls[k] ? 0 : ValuePeeker::peekBigInt(value);
+            }
+        }
+        return;
+    }
+
+    const double *lhs = left->doubles.get();
+    const double *rhs = right->doubles.get();
+    const int64_t *leftIntegers = left->integers.get();
+    const int64_t *rightIntegers = right->integers.get();
+    double *result = node->doubles.get();
+    for (int k = 0; k < count; ++k) {
+        const double l = left->valueClass == CLASS_DOUBLE ? lhs[k] : static_cast<double>(leftIntegers[k]);
+        const double r = right->valueClass == CLASS_DOUBLE ? rhs[k] : static_cast<double>(rightIntegers[k]);
+        double value;
+        switch (node->op) {
+        case EXPRESSION_TYPE_OPERATOR_PLUS:
+            value = l + r;
+            break;
+        case EXPRESSION_TYPE_OPERATOR_MINUS:
+            value = l - r;
+            break;
+        default:
+            value = l * r;
+            break;
+        }
+        result[k] = value;
+        // NaN, infinities and values in the DOUBLE NULL range all fail this test
+        if ( ! (value > DOUBLE_NULL && value <= DBL_MAX) && ! nulls[k]) {
+            const NValue slowValue = slowArithmetic(node, k);
+            nulls[k] = slowValue.isNull();
+            result[k] = nulls[k] ? 0.0 : ValuePeeker::peekDouble(slowValue);
+        }
+    }
+}
+
+NValue BatchExpression::slowArithmetic(const Node *node, int k) const {
+    const NValue lhs = operandValue(node->left, k);
+    const NValue rhs = operandValue(node->right, k);
+    switch (node->op) {
+    case EXPRESSION_TYPE_OPERATOR_PLUS:
+        return lhs.op_add(rhs);
+    case EXPRESSION_TYPE_OPERATOR_MINUS:
+        return lhs.op_subtract(rhs);
+    default:
+        return lhs.op_multiply(rhs);
+    }
+}
+
+void BatchExpression::computeTruth(Node *node, const char * const *tuples, const int *rows, int count) {
+    if (node->kind == NODE_COMPARISON) {
+        computeComparison(node, tuples, rows, count);
+    }
+    else {
+        computeConjunction(node, tuples, rows, count);
+    }
+}
+
+void BatchExpression::computeComparison(Node *node, const char * const *tuples, const int *rows, int count) {
+    Node *left = node->left;
+    Node *right = node->right;
+    int8_t *truths = node->truths.get();
+    int *subRows = node->subRows.get();
+    int *subPositions = node->subPositions.get();
+
+    // Like eval(), the right side is only evaluated for rows whose left side is not NULL
+    compute(left, tuples, rows, count);
+    int subCount = 0;
+    const bool *leftNulls = left->nulls.get();
+    for (int k = 0; k < count; ++k) {
+        truths[k] = TRUTH_UNKNOWN;
+        subRows[subCount] = rows[k];
+        subPositions[subCount] = k;
+        subCount += ! leftNulls[k];
+    }
+    if (subCount == 0) {
+        return;
+    }
+    compute(right, tuples, subRows, subCount);
+
+    const bool *rightNulls = right->nulls.get();
+    const int64_t *leftIntegers = left->integers.get();
+    const int64_t *rightIntegers = right->integers.get();
+    const ExpressionType op = node->op;
+    if (left->valueClass == CLASS_INTEGER && right->valueClass == CLASS_INTEGER) {
+        for (int j = 0; j < subCount; ++j) {
+            if ( ! rightNulls[j]) {
+                const int k = subPositions[j];
+                truths[k] = comparisonHolds(op, compareIntegers(leftIntegers[k], rightIntegers[j]));
+            }
+        }
+        return;
+    }
+    const double *leftDoubles = left->doubles.get();
+    const double *rightDoubles = right->doubles.get();
+    for (int j = 0; j < subCount; ++j) {
+        if ( ! rightNulls[j]) {
+            const int k = subPositions[j];
+            const double l = left->valueClass == CLASS_DOUBLE ?
+                    leftDoubles[k] : static_cast<double>(leftIntegers[k]);
+            const double r = right->valueClass == CLASS_DOUBLE ?
+                    rightDoubles[j] : static_cast<double>(rightIntegers[j]);
+            truths[k] = comparisonHolds(op, compareDoubles(l, r));
+        }
+    }
+}
+
+void BatchExpression::computeConjunction(Node *node, const char * const *tuples, const int *rows, int count) {
+    Node *left = node->left;
+    Node *right = node->right;
+    int8_t *truths = node->truths.get();
+    int *subRows = node->subRows.get();
+    int *subPositions = node->subPositions.get();
+    const bool isAnd = node->kind == NODE_AND;
+    // FALSE decides an AND and TRUE decides an OR without looking at the right side
+    const int8_t decisive = isAnd ? TRUTH_FALSE : TRUTH_TRUE;
+
+    computeTruth(left, tuples, rows, count);
+    int subCount = 0;
+    const int8_t *leftTruths = left->truths.get();
+    for (int k = 0; k < count; ++k) {
+        truths[k] = leftTruths[k];
+        subRows[subCount] = rows[k];
+        subPositions[subCount] = k;
+        subCount += leftTruths[k] != decisive;
+    }
+    if (subCount == 0) {
+        return;
+    }
+    computeTruth(right, tuples, subRows, subCount);
+
+    const int8_t *rightTruths = right->truths.get();
+    for (int j = 0; j < subCount; ++j) {
+        const int k = subPositions[j];
+        const int8_t r = rightTruths[j];
+        if (truths[k] != TRUTH_UNKNOWN || r == decisive) {
+            // left is the non decisive value, so the right side decides
+            truths[k] = r;
+        }
+        // otherwise UNKNOWN and a non decisive right side stay UNKNOWN
+    }
+}
+
+}
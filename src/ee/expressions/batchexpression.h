@@ -0,0 +1,168 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2019 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+#ifndef BATCHEXPRESSION_H
+#define BATCHEXPRESSION_H
+
+#include <vector>
+#include <stdint.h>
+#include <boost/scoped_array.hpp>
+
+#include "common/NValue.hpp"
+#include "common/TupleSchema.h"
+
+namespace voltdb {
+
+class AbstractExpression;
+
+/**
+ * A compiled form of a simple expression that is evaluated over a batch of up to
+ * BATCH_SIZE tuples at a time instead of through one virtual eval() call per node
+ * per tuple. Column references are read straight out of the tuple storage into
+ * column vectors and comparisons and arithmetic then run as tight loops over them.
+ *
+ * Only column references on fixed width numeric columns, constants, parameters,
+ * + - * arithmetic, comparisons and AND/OR are handled; compile() returns NULL for
+ * anything else and the caller keeps evaluating that expression row by row. Results
+ * are the same as eval()'s, including its NULL logic, which rows the right hand
+ * side of a comparison or conjunction is evaluated for, and the SQLExceptions raised
+ * on arithmetic overflow (rows that may overflow are handed to the NValue operators).
+ * Because a whole batch is evaluated at once an exception may come from a row that a
+ * row by row loop would never have reached, e.g. past a LIMIT, so callers re-run a
+ * batch that throws through eval() to get exactly the row by row behaviour.
+ */
+class BatchExpression {
+public:
+    static const int BATCH_SIZE = 1024;
+
+    /**
+     * Compile an expression over tuples of the given schema, or return NULL when
+     * the expression cannot be evaluated in batches. A predicate must compile to a
+     * boolean expression and a projection to an arithmetic one; column references
+     * and constants alone gain nothing over the row by row path.
+     */
+    static BatchExpression *compilePredicate(const AbstractExpression *expression, const TupleSchema *schema);
+    static BatchExpression *compileProjection(const AbstractExpression *expression, const TupleSchema *schema);
+
+    /** Batch evaluation is off unless the engine is initialized with it switched on */
+    static void setEnabled(bool enabled) {
+        s_enabled = enabled;
+    }
+
+    static bool isEnabled() {
+        return s_enabled;
+    }
+
+    ~BatchExpression();
+
+    /**
+     * Evaluate the constants and parameters of the expression for the current
+     * execution. Returns false when a parameter has a type the batch kernels do not
+     * handle, in which case the caller must use eval() for this execution.
+     */
+    bool bind();
+
+    /**
+     * Evaluate a predicate over tuples[0..count) and write the indexes of the
+     * tuples it is true for to selected, in order. Returns the number selected.
+     */
+    int filter(const char * const *tuples, int count, int *selected);
+
+    /**
+     * Evaluate a projection for the tuples tuples[rows[0..count)]. The value for
+     * tuples[rows[k]] is then available from valueAt(k).
+     */
+    void evaluate(const char * const *tuples, const int *rows, int count);
+
+    NValue valueAt(int k) const;
+
+private:
+    enum NodeKind {
+        NODE_COLUMN,
+        NODE_SCALAR,
+        NODE_ARITHMETIC,
+        NODE_COMPARISON,
+        NODE_AND,
+        NODE_OR
+    };
+
+    enum ValueClass {
+        CLASS_INTEGER,
+        CLASS_DOUBLE,
+        CLASS_BOOLEAN
+    };
+
+    // Truth values of a boolean node, following SQL three valued logic
+    static const int8_t TRUTH_FALSE = 0;
+    static const int8_t TRUTH_TRUE = 1;
+    static const int8_t TRUTH_UNKNOWN = -1;
+
+    struct Node {
+        NodeKind kind;
+        ExpressionType op;
+        ValueClass valueClass;
+        // declared type for columns and scalars, used to reject mixed TIMESTAMP operations
+        ValueType valueType;
+        const AbstractExpression *expression;
+        Node *left;
+        Node *right;
+        uint32_t columnOffset;
+
+        bool scalarNull;
+        int64_t scalarInteger;
+        double scalarDouble;
+
+        // Results for the rows of the last evaluation, by position in its row list.
+        // Plans stay cached long after they last ran, so bind() only allocates the
+        // arrays the node's kind and value class need.
+        boost::scoped_array<int64_t> integers;
+        boost::scoped_array<double> doubles;
+        boost::scoped_array<bool> nulls;
+        boost::scoped_array<int8_t> truths;
+
+        // Rows the right operand is evaluated for, and their positions in the row list
+        boost::scoped_array<int> subRows;
+        boost::scoped_array<int> subPositions;
+    };
+
+    BatchExpression() : m_root(NULL) {}
+
+    static BatchExpression *compile(const AbstractExpression *expression, const TupleSchema *schema,
+                                    NodeKind rootKind);
+    Node *compileNode(const AbstractExpression *expression, const TupleSchema *schema);
+    static void allocate(Node *node);
+
+    void compute(Node *node, const char * const *tuples, const int *rows, int count);
+    void computeColumn(Node *node, const char * const *tuples, const int *rows, int count);
+    void computeArithmetic(Node *node, int count);
+    NValue slowArithmetic(const Node *node, int k) const;
+    void computeTruth(Node *node, const char * const *tuples, const int *rows, int count);
+    void computeComparison(Node *node, const char * const *tuples, const int *rows, int count);
+    void computeConjunction(Node *node, const char * const *tuples, const int *rows, int count);
+
+    static NValue operandValue(const Node *node, int k);
+
+    std::vector<Node*> m_nodes;
+    Node *m_root;
+    int m_identityRows[BATCH_SIZE];
+
+    static bool s_enabled;
+};
+
+}
+
+#endif
@@ -51,6 +51,7 @@
 
 #include "indexes/tableindex.h"
 #include "structures/CompactingHashTable.h"
+#include "structures/OpenHashTable.h"
 
 namespace voltdb {
 
@@ -58,12 +59,13 @@ namespace voltdb {
  * Index implemented as a Hash Table Unique Map.
  * @see TableIndex
  */
-template<typename KeyType>
+template<typename KeyType,
+         template<class, class, class, class, class> class Map = CompactingHashTable>
 class CompactingHashUniqueIndex : public TableIndex
 {
     typedef typename KeyType::KeyEqualityChecker KeyEqualityChecker;
     typedef typename KeyType::KeyHasher KeyHasher;
-    typedef CompactingHashTable<KeyType, const void*, KeyHasher, KeyEqualityChecker> MapType;
+    typedef Map<KeyType, const void*, KeyHasher, KeyEqualityChecker, std::equal_to<const void*> > MapType;
     typedef typename MapType::iterator MapIterator;
 
     ~CompactingHashUniqueIndex() {};
@@ -176,7 +178,10 @@ class CompactingHashUniqueIndex : public TableIndex
         return m_entries.bytesAllocated();
     }
 
-    std::string getTypeName() const { return "CompactingHashUniqueIndex"; };
+    std::string getTypeName() const
+    {
+        return IsOpenHashTable<MapType>::value ? "OpenHashUniqueIndex" : "CompactingHashUniqueIndex";
+    };
 
     TableIndex *cloneEmptyNonCountingTreeIndex() const
     {
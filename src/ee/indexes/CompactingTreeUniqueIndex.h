@@ -53,6 +53,7 @@
 #include "common/tabletuple.h"
 #include "indexes/tableindex.h"
 #include "structures/CompactingMap.h"
+#include "structures/BTreeMap.h"
 
 namespace voltdb {
 
@@ -60,12 +61,13 @@ namespace voltdb {
  * Index implemented as a Binary Tree Unique Map.
  * @see TableIndex
  */
-template<typename KeyValuePair, bool hasRank>
+template<typename KeyValuePair, bool hasRank,
+         template<typename, typename, bool> class Map = CompactingMap>
 class CompactingTreeUniqueIndex : public TableIndex
 {
     typedef typename KeyValuePair::first_type KeyType;
     typedef typename KeyType::KeyComparator KeyComparator;
-    typedef CompactingMap<KeyValuePair, KeyComparator, hasRank> MapType;
+    typedef Map<KeyValuePair, KeyComparator, hasRank> MapType;
     typedef typename MapType::iterator MapIterator;
 
     ~CompactingTreeUniqueIndex() {};
@@ -362,11 +364,14 @@ class CompactingTreeUniqueIndex : public TableIndex
         return (ret);
     }
 
-    std::string getTypeName() const { return "CompactingTreeUniqueIndex"; };
+    std::string getTypeName() const
+    {
+        return IsBTreeMap<MapType>::value ? "BTreeUniqueIndex" : "CompactingTreeUniqueIndex";
+    };
 
     virtual TableIndex *cloneEmptyNonCountingTreeIndex() const
     {
-        return new CompactingTreeUniqueIndex<KeyValuePair, false >(TupleSchema::createTupleSchema(getKeySchema()), m_scheme);
+        return new CompactingTreeUniqueIndex<KeyValuePair, false, Map>(TupleSchema::createTupleSchema(getKeySchema()), m_scheme);
     }
 
 
@@ -56,27 +56,93 @@
 
 namespace voltdb {
 
+bool TableIndexFactory::s_useBTreeIndexes = false;
+bool TableIndexFactory::s_useOpenHashIndexes = false;
+
+/**
+ * BTreeMap copies keys into its inner nodes as separators and OpenHashTable
+ * copies keys between slot arrays when it resizes. The ownership-transferring
+ * copy of GenericPersistentKey allows neither, so those indexes stay on
+ * CompactingMap and CompactingHashTable.
+ */
+template <class TKeyType>
+struct KeyIsFreelyCopyable {
+    static const bool value = true;
+};
+
+template <std::size_t KeySize>
+struct KeyIsFreelyCopyable<GenericPersistentKey<KeySize> > {
+    static const bool value = false;
+};
+
+template <bool supported>
+struct KeyTag {};
+
 class TableIndexPicker
 {
-    template <class TKeyType>
-    TableIndex *getInstanceForKeyType() const
+    template <class TKeyType, template<typename, typename, bool> class Map>
+    TableIndex *getTreeInstanceWithMap() const
     {
         if (m_scheme.unique) {
-            if (m_type != BALANCED_TREE_INDEX) {
-                return new CompactingHashUniqueIndex<TKeyType >(m_keySchema, m_scheme);
-            } else if (m_scheme.countable) {
-                return new CompactingTreeUniqueIndex<NormalKeyValuePair<TKeyType>, true>(m_keySchema, m_scheme);
+            if (m_scheme.countable) {
+                return new CompactingTreeUniqueIndex<NormalKeyValuePair<TKeyType>, true, Map>(m_keySchema, m_scheme);
             } else {
-                return new CompactingTreeUniqueIndex<NormalKeyValuePair<TKeyType>, false>(m_keySchema, m_scheme);
+                return new CompactingTreeUniqueIndex<NormalKeyValuePair<TKeyType>, false, Map>(m_keySchema, m_scheme);
             }
+        }
+        if (m_scheme.countable) {
+            return new CompactingTreeMultiMapIndex<PointerKeyValuePair<TKeyType>, true, Map>(m_keySchema, m_scheme);
         } else {
-            if (m_type != BALANCED_TREE_INDEX) {
-                return new CompactingHashMultiMapIndex<TKeyType >(m_keySchema, m_scheme);
-            } else if (m_scheme.countable) {
-                return new CompactingTreeMultiMapIndex<PointerKeyValuePair<TKeyType>, true>(m_keySchema, m_scheme);
-            } else {
-                return new CompactingTreeMultiMapIndex<PointerKeyValuePair<TKeyType>, false>(m_keySchema, m_scheme);
-            }
+            return new CompactingTreeMultiMapIndex<PointerKeyValuePair<TKeyType>, false, Map>(m_keySchema, m_scheme);
+        }
+    }
+
+    template <class TKeyType>
+    TableIndex *getTreeInstance(KeyTag<true>) const
+    {
+        if (TableIndexFactory::useBTreeIndexes()) {
+            return getTreeInstanceWithMap<TKeyType, BTreeMap>();
+        }
+        return getTreeInstanceWithMap<TKeyType, CompactingMap>();
+    }
+
+    template <class TKeyType>
+    TableIndex *getTreeInstance(KeyTag<false>) const
+    {
+        return getTreeInstanceWithMap<TKeyType, CompactingMap>();
+    }
+
+    template <class TKeyType>
+    TableIndex *getTreeInstance() const
+    {
+        return getTreeInstance<TKeyType>(KeyTag<KeyIsFreelyCopyable<TKeyType>::value>());
+    }
+
+    template <class TKeyType>
+    TableIndex *getHashUniqueInstance(KeyTag<true>) const
+    {
+        if (TableIndexFactory::useOpenHashIndexes()) {
+            return new CompactingHashUniqueIndex<TKeyType, OpenHashTable>(m_keySchema, m_scheme);
+        }
+        return new CompactingHashUniqueIndex<TKeyType>(m_keySchema, m_scheme);
+    }
+
+    template <class TKeyType>
+    TableIndex *getHashUniqueInstance(KeyTag<false>) const
+    {
+        return new CompactingHashUniqueIndex<TKeyType>(m_keySchema, m_scheme);
+    }
+
+    template <class TKeyType>
+    TableIndex *getInstanceForKeyType() const
+    {
+        if (m_type == BALANCED_TREE_INDEX) {
+            return getTreeInstance<TKeyType>();
+        }
+        if (m_scheme.unique) {
+            return getHashUniqueInstance<TKeyType>(KeyTag<KeyIsFreelyCopyable<TKeyType>::value>());
+        } else {
+            return new CompactingHashMultiMapIndex<TKeyType >(m_keySchema, m_scheme);
         }
     }
 
@@ -178,18 +244,7 @@ public:
             return result;
         }
 
-        if (m_scheme.unique) {
-            if (m_scheme.countable) {
-                return new CompactingTreeUniqueIndex<NormalKeyValuePair<TupleKey>, true >(m_keySchema, m_scheme);
-            } else {
-                return new CompactingTreeUniqueIndex<NormalKeyValuePair<TupleKey>, false>(m_keySchema, m_scheme);
-            }
-        }
-        if (m_scheme.countable) {
-            return new CompactingTreeMultiMapIndex<PointerKeyValuePair<TupleKey>, true >(m_keySchema, m_scheme);
-        } else {
-            return new CompactingTreeMultiMapIndex<PointerKeyValuePair<TupleKey>, false>(m_keySchema, m_scheme);
-        }
+        return getTreeInstance<TupleKey>();
     }
 
     TableIndexPicker(const TupleSchema *keySchema, bool intsOnly, bool inlinesOrColumnsOnly,
@@ -59,6 +59,34 @@ class TableIndexFactory {
 public:
     static TableIndex *getInstance(const TableIndexScheme &scheme);
     static TableIndex *cloneEmptyTreeIndex(const TableIndex& pkey_index);
+
+    /**
+     * Back tree indexes created from now on with BTreeMap rather than
+     * the red-black CompactingMap.
+     */
+    static void setUseBTreeIndexes(bool useBTreeIndexes) {
+        s_useBTreeIndexes = useBTreeIndexes;
+    }
+
+    static bool useBTreeIndexes() {
+        return s_useBTreeIndexes;
+    }
+
+    /**
+     * Back unique hash indexes created from now on with the open-addressing
+     * OpenHashTable rather than the chained CompactingHashTable.
+     */
+    static void setUseOpenHashIndexes(bool useOpenHashIndexes) {
+        s_useOpenHashIndexes = useOpenHashIndexes;
+    }
+
+    static bool useOpenHashIndexes() {
+        return s_useOpenHashIndexes;
+    }
+
+private:
+    static bool s_useBTreeIndexes;
+    static bool s_useOpenHashIndexes;
 };
 
 }
@@ -40,6 +40,8 @@ vector<string> TableStats::generateTableStatsColumnNames() {
     columnNames.push_back("STRING_DATA_MEMORY");
     columnNames.push_back("TUPLE_LIMIT");
     columnNames.push_back("PERCENT_FULL");
+    columnNames.push_back("COMPACTION_RECLAIMED_MEMORY");
+    columnNames.push_back("COMPACTION_STALL_TIME");
     return columnNames;
 }
 
@@ -59,6 +61,8 @@ void TableStats::populateTableStatsSchema(
     types.push_back(VALUE_TYPE_BIGINT); columnLengths.push_back(NValue::getTupleStorageSize(VALUE_TYPE_BIGINT)); allowNull.push_back(false);inBytes.push_back(false);
     types.push_back(VALUE_TYPE_INTEGER); columnLengths.push_back(NValue::getTupleStorageSize(VALUE_TYPE_INTEGER)); allowNull.push_back(false);inBytes.push_back(false);
     types.push_back(VALUE_TYPE_INTEGER); columnLengths.push_back(NValue::getTupleStorageSize(VALUE_TYPE_INTEGER)); allowNull.push_back(false);inBytes.push_back(false);
+    types.push_back(VALUE_TYPE_BIGINT); columnLengths.push_back(NValue::getTupleStorageSize(VALUE_TYPE_BIGINT)); allowNull.push_back(false);inBytes.push_back(false);
+    types.push_back(VALUE_TYPE_BIGINT); columnLengths.push_back(NValue::getTupleStorageSize(VALUE_TYPE_BIGINT)); allowNull.push_back(false);inBytes.push_back(false);
 }
 
 TempTable* TableStats::generateEmptyTableStatsTable() {
@@ -86,7 +90,8 @@ TempTable* TableStats::generateEmptyTableStatsTable() {
 TableStats::TableStats(Table* table)
     : StatsSource(), m_table(table), m_lastTupleCount(0),
       m_lastAllocatedTupleMemory(0), m_lastOccupiedTupleMemory(0),
-      m_lastStringDataMemory(0)
+      m_lastStringDataMemory(0), m_lastCompactionReclaimedMemory(0),
+      m_lastCompactionStallMicros(0)
 {
 }
 
@@ -131,6 +136,13 @@ void TableStats::updateStatsTuple(TableTuple *tuple) {
         occupied_tuple_mem_kb = persistentTable->occupiedTupleMemory() / 1024;
     }
     int64_t string_data_mem_kb = m_table->nonInlinedMemorySize() / 1024;
+    // Memory freed by compaction in KB and time spent compacting in microseconds
+    int64_t compaction_reclaimed_kb = 0;
+    int64_t compaction_stall_micros = 0;
+    if (persistentTable) {
+        compaction_reclaimed_kb = persistentTable->compactionReclaimedMemory() / 1024;
+        compaction_stall_micros = persistentTable->compactionStallMicros();
+    }
 
     if (interval()) {
         tupleCount = tupleCount - m_lastTupleCount;
@@ -146,6 +158,13 @@ void TableStats::updateStatsTuple(TableTuple *tuple) {
         string_data_mem_kb =
             string_data_mem_kb - (m_lastStringDataMemory / 1024);
         m_lastStringDataMemory = m_table->nonInlinedMemorySize();
+        if (persistentTable) {
+            compaction_reclaimed_kb =
+                compaction_reclaimed_kb - (m_lastCompactionReclaimedMemory / 1024);
+            m_lastCompactionReclaimedMemory = persistentTable->compactionReclaimedMemory();
+            compaction_stall_micros = compaction_stall_micros - m_lastCompactionStallMicros;
+            m_lastCompactionStallMicros = persistentTable->compactionStallMicros();
+        }
     }
 
     tuple->setNValue(
@@ -166,6 +185,10 @@ void TableStats::updateStatsTuple(TableTuple *tuple) {
         percentage = static_cast<int32_t> (ceil(static_cast<double>(tupleCount) * 100.0 / tupleLimit));
     }
     tuple->setNValue(StatsSource::m_columnName2Index["PERCENT_FULL"],ValueFactory::getIntegerValue(percentage));
+    tuple->setNValue(StatsSource::m_columnName2Index["COMPACTION_RECLAIMED_MEMORY"],
+            ValueFactory::getBigIntValue(compaction_reclaimed_kb));
+    tuple->setNValue(StatsSource::m_columnName2Index["COMPACTION_STALL_TIME"],
+            ValueFactory::getBigIntValue(compaction_stall_micros));
 }
 
 /**
@@ -97,6 +97,8 @@ private:
     int64_t m_lastAllocatedTupleMemory;
     int64_t m_lastOccupiedTupleMemory;
     int64_t m_lastStringDataMemory;
+    int64_t m_lastCompactionReclaimedMemory;
+    int64_t m_lastCompactionStallMicros;
 };
 
 }
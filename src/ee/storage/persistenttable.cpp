@@ -72,6 +72,8 @@ namespace voltdb {
 
 #define TABLE_BLOCKSIZE 2097152
 
+int32_t PersistentTable::s_compactionBudgetMicros = 0;
+
    template<typename T> inline static T* partialCopyToPool(Pool* pool, const T* src, size_t partialSize) {
       return reinterpret_cast<T*>(memcpy(pool->allocate(partialSize), src, partialSize));
    }
@@ -118,6 +120,8 @@ PersistentTable::PersistentTable(int partitionColumn,
     , m_blocksWithSpace()
     , m_tableStreamer()
     , m_failedCompactionCount(0)
+    , m_compactionReclaimedMemory(0)
+    , m_compactionStallMicros(0)
     , m_invisibleTuplesPendingDeleteCount(0)
     , m_surgeon(*this)
     , m_tableForStreamIndexing(NULL)
@@ -1926,6 +1930,7 @@ bool PersistentTable::doCompactionWithinSubset(TBBucketPtrVector* bucketVector)
         }
 
         if (lightest->isEmpty()) {
+            m_compactionReclaimedMemory += m_tableAllocationSize;
             notifyBlockWasCompactedAway(lightest);
             m_data.erase(lightest->address());
             m_blocksWithSpace.erase(lightest);
@@ -1959,19 +1964,48 @@ void PersistentTable::doIdleCompaction() {
     }
 }
 
+void PersistentTable::doBudgetedCompaction() {
+    if (s_compactionBudgetMicros <= 0 || !compactionPredicate()) {
+        return;
+    }
+    if (m_tableStreamer.get() != NULL && m_tableStreamer->hasStreamType(TABLE_STREAM_RECOVERY)) {
+        return;
+    }
+    int64_t notPendingCompactions = 0;
+    int64_t pendingCompactions = 0;
+    compactWithinBudget(s_compactionBudgetMicros, notPendingCompactions, pendingCompactions);
+}
+
 bool PersistentTable::doForcedCompaction() {
     if (m_tableStreamer.get() != NULL && m_tableStreamer->hasStreamType(TABLE_STREAM_RECOVERY)) {
         LogManager::getThreadLogger(LOGGERID_SQL)->log(LOGLEVEL_INFO,
             "Deferring compaction until recovery is complete.");
         return false;
     }
-    bool hadWork1 = true;
-    bool hadWork2 = true;
     int64_t notPendingCompactions = 0;
     int64_t pendingCompactions = 0;
 
     char msg[512];
 
+    boost::posix_time::ptime startTime(boost::posix_time::microsec_clock::universal_time());
+    bool budgetExhausted = compactWithinBudget(s_compactionBudgetMicros, notPendingCompactions, pendingCompactions);
+    boost::posix_time::ptime endTime(boost::posix_time::microsec_clock::universal_time());
+    boost::posix_time::time_duration duration = endTime - startTime;
+    snprintf(msg, sizeof(msg), "Finished forced compaction of %zd non-snapshot blocks and %zd snapshot blocks with allocated tuple count %zd in %zd ms on table %s%s",
+            ((intmax_t)notPendingCompactions), ((intmax_t)pendingCompactions), ((intmax_t)allocatedTupleCount()), ((intmax_t)duration.total_milliseconds()), m_name.c_str(),
+            budgetExhausted ? ", deferring the remainder to idle compaction" : "");
+    LogManager::getThreadLogger(LOGGERID_SQL)->log(LOGLEVEL_INFO, msg);
+    return (notPendingCompactions + pendingCompactions) > 0;
+}
+
+bool PersistentTable::compactWithinBudget(int64_t budgetMicros, int64_t& notPendingCompactions,
+                                          int64_t& pendingCompactions) {
+    bool hadWork1 = true;
+    bool hadWork2 = true;
+    bool budgetExhausted = false;
+
+    char msg[512];
+
     boost::posix_time::ptime startTime(boost::posix_time::microsec_clock::universal_time());
 
     int failedCompactionCountBefore = m_failedCompactionCount;
@@ -2006,6 +2040,15 @@ bool PersistentTable::doForcedCompaction() {
             m_failedCompactionCount++;
             break;
         }
+        // Always make some progress, then stop once the budget is spent
+        if (budgetMicros > 0 && (notPendingCompactions + pendingCompactions) > 0) {
+            boost::posix_time::time_duration elapsed =
+                boost::posix_time::microsec_clock::universal_time() - startTime;
+            if (elapsed.total_microseconds() >= budgetMicros) {
+                budgetExhausted = true;
+                break;
+            }
+        }
         if (!m_blocksNotPendingSnapshot.empty() && hadWork1) {
             //std::cout << "Compacting blocks not pending snapshot " << m_blocksNotPendingSnapshot.size() << std::endl;
             hadWork1 = doCompactionWithinSubset(&m_blocksNotPendingSnapshotLoad);
@@ -2019,7 +2062,8 @@ bool PersistentTable::doForcedCompaction() {
     }
     //If compactions have been failing lately, but it didn't fail this time
     //then compaction progressed until the predicate was satisfied
-    if (failedCompactionCountBefore > 0 && failedCompactionCountBefore == m_failedCompactionCount) {
+    if (!budgetExhausted && failedCompactionCountBefore > 0 &&
+            failedCompactionCountBefore == m_failedCompactionCount) {
         snprintf(msg, sizeof(msg), "Recovered from a failed compaction scenario "
                 "and compacted to the point that the compaction predicate was "
                 "satisfied after %d failed attempts", failedCompactionCountBefore);
@@ -2027,13 +2071,11 @@ bool PersistentTable::doForcedCompaction() {
         m_failedCompactionCount = 0;
     }
 
-    assert(!compactionPredicate());
-    boost::posix_time::ptime endTime(boost::posix_time::microsec_clock::universal_time());
-    boost::posix_time::time_duration duration = endTime - startTime;
-    snprintf(msg, sizeof(msg), "Finished forced compaction of %zd non-snapshot blocks and %zd snapshot blocks with allocated tuple count %zd in %zd ms on table %s",
-            ((intmax_t)notPendingCompactions), ((intmax_t)pendingCompactions), ((intmax_t)allocatedTupleCount()), ((intmax_t)duration.total_milliseconds()), m_name.c_str());
-    LogManager::getThreadLogger(LOGGERID_SQL)->log(LOGLEVEL_INFO, msg);
-    return (notPendingCompactions + pendingCompactions) > 0;
+    assert(budgetExhausted || !compactionPredicate());
+    boost::posix_time::time_duration duration =
+        boost::posix_time::microsec_clock::universal_time() - startTime;
+    m_compactionStallMicros += duration.total_microseconds();
+    return budgetExhausted;
 }
 
 void PersistentTable::printBucketInfo() {
@@ -72,6 +72,7 @@
 #include "common/SynchronizedThreadLock.h"
 
 class CompactionTest_BasicCompaction;
+class CompactionTest_BudgetedCompaction;
 class CompactionTest_CompactionWithCopyOnWrite;
 class CopyOnWriteTest;
 
@@ -206,6 +207,7 @@ class PersistentTable : public Table, public UndoQuantumReleaseInterest,
     friend class JumpingTableIterator;
     friend class ::CopyOnWriteTest;
     friend class ::CompactionTest_BasicCompaction;
+    friend class ::CompactionTest_BudgetedCompaction;
     friend class ::CompactionTest_CompactionWithCopyOnWrite;
     friend class CoveringCellIndexTest_TableCompaction;
     friend class MaterializedViewHandler;
@@ -243,6 +245,19 @@ public:
         }
     }
 
+    /**
+     * Limit the time a single compaction pass may hold the site thread. Compaction
+     * left over when the budget runs out is picked up by doBudgetedCompaction() on
+     * the following ticks. A budget of 0 compacts to completion in one pass.
+     */
+    static void setCompactionBudgetMicros(int32_t budgetMicros) {
+        s_compactionBudgetMicros = budgetMicros;
+    }
+
+    static int32_t compactionBudgetMicros() {
+        return s_compactionBudgetMicros;
+    }
+
     // Return a table iterator by reference
     TableIterator iterator() {
         return TableIterator(this, m_data.begin());
@@ -428,6 +443,12 @@ public:
 
     void doIdleCompaction();
 
+    /**
+     * Continue compaction deferred by an exhausted compaction budget, spending at
+     * most one budget's worth of time. Does nothing when compaction is unbudgeted.
+     */
+    void doBudgetedCompaction();
+
     void printBucketInfo();
 
     void increaseStringMemCount(size_t bytes) {
@@ -440,6 +461,12 @@ public:
 
     size_t allocatedBlockCount() const { return m_data.size(); }
 
+    // Bytes of tuple blocks released by compaction since the table was created
+    int64_t compactionReclaimedMemory() const { return m_compactionReclaimedMemory; }
+
+    // Microseconds the site thread has spent compacting this table
+    int64_t compactionStallMicros() const { return m_compactionStallMicros; }
+
     // This is a testability feature not intended for use in product logic.
     int visibleTupleCount() const { return m_tupleCount - m_invisibleTuplesPendingDeleteCount; }
 
@@ -626,6 +653,11 @@ private:
 
     bool doForcedCompaction();  // Returns true if a compaction was performed
 
+    // Merge blocks until the compaction predicate is satisfied or budgetMicros has
+    // elapsed (0 for no limit). Returns true if the budget ran out first.
+    bool compactWithinBudget(int64_t budgetMicros, int64_t& notPendingCompactions,
+                             int64_t& pendingCompactions);
+
     void insertIntoAllIndexes(TableTuple* tuple);
 
     void deleteFromAllIndexes(TableTuple* tuple);
@@ -794,6 +826,12 @@ private:
 
     int m_failedCompactionCount;
 
+    int64_t m_compactionReclaimedMemory;
+
+    int64_t m_compactionStallMicros;
+
+    static int32_t s_compactionBudgetMicros;
+
     // This is a testability feature not intended for use in product logic.
     int m_invisibleTuplesPendingDeleteCount;
 
@@ -0,0 +1,890 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2019 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+#ifndef BTREEMAP_H_
+#define BTREEMAP_H_
+
+// Provides NormalKeyValuePair, setPointerValue and MAXPOINTER
+#include "CompactingMap.h"
+
+#include <cstddef>
+#include <stdint.h>
+#include <utility>
+#include <cassert>
+
+namespace voltdb {
+
+/**
+ * B+tree with the same interface as CompactingMap, so that it can be used as
+ * the backing map of the tree indexes.
+ *
+ * Entries are stored by value in wide leaf nodes which are linked together,
+ * so a range scan walks contiguous memory instead of chasing a parent, left
+ * and right pointer for every entry. Inner nodes store a copy of the smallest
+ * key of each child but the first, and when the map has rank the number of
+ * entries below each child.
+ *
+ * Differences from CompactingMap to be aware of:
+ * 1. Keys must be distinct. Inserting a key equal to an existing one returns
+ *    the existing value whether or not the map is unique. Multimap indexes
+ *    embed the tuple address in the key so this holds for them as well.
+ * 2. Keys are copied into inner nodes, so key types which transfer ownership
+ *    of memory on copy (GenericPersistentKey) can not be used.
+ * 3. Iterators are invalidated by any mutation of the map.
+ */
+template<typename KeyValuePair, typename Compare, bool hasRank=false>
+class BTreeMap {
+    typedef typename KeyValuePair::first_type Key;
+    typedef typename KeyValuePair::second_type Data;
+
+    // Nodes are sized to a handful of cache lines
+    static const int NODE_BYTES = 1024;
+    static const int LEAF_CAPACITY = (sizeof(KeyValuePair) * 8 > NODE_BYTES) ?
+            8 : static_cast<int>(NODE_BYTES / sizeof(KeyValuePair));
+    static const int INNER_CAPACITY = ((sizeof(Key) + sizeof(void*) + sizeof(int64_t)) * 8 > NODE_BYTES) ?
+            8 : static_cast<int>(NODE_BYTES / (sizeof(Key) + sizeof(void*) + sizeof(int64_t)));
+    // A node below a quarter full is merged into a sibling when the result fits in one node
+    static const int LEAF_MIN = LEAF_CAPACITY / 4;
+    static const int INNER_MIN = INNER_CAPACITY / 4;
+    // Every inner node has at least two children except transiently, so this is plenty
+    static const int MAX_DEPTH = 48;
+
+    struct Node {
+        Node(bool isLeaf) : m_isLeaf(isLeaf), m_count(0) {}
+        bool m_isLeaf;
+        // Number of entries in a leaf, number of children of an inner node
+        int m_count;
+    };
+
+    struct LeafNode : public Node {
+        LeafNode() : Node(true), m_prev(NULL), m_next(NULL) {}
+        LeafNode *m_prev;
+        LeafNode *m_next;
+        // One spare slot so that an entry can be inserted before the leaf is split
+        KeyValuePair m_slots[LEAF_CAPACITY + 1];
+    };
+
+    struct InnerNode : public Node {
+        InnerNode() : Node(false) {}
+        // m_keys[i] is the smallest key in the subtree under m_children[i + 1]
+        Key m_keys[INNER_CAPACITY];
+        Node *m_children[INNER_CAPACITY + 1];
+        // Number of entries under each child, only maintained when the map has rank
+        int64_t m_subtreeCounts[INNER_CAPACITY + 1];
+    };
+
+    struct PathEntry {
+        InnerNode *m_node;
+        int m_childIndex;
+    };
+
+    int64_t m_count;
+    Node *m_root;
+    int64_t m_leafCount;
+    int64_t m_innerCount;
+    bool m_unique;
+
+    // Three way comparison function object, as for CompactingMap
+    Compare m_comper;
+
+public:
+    class iterator {
+        friend class BTreeMap<KeyValuePair, Compare, hasRank>;
+    protected:
+        LeafNode *m_leaf;
+        int m_slot;
+        iterator(LeafNode *leaf, int slot) : m_leaf(leaf), m_slot(slot) {}
+    public:
+        iterator() : m_leaf(NULL), m_slot(0) {}
+        iterator(const iterator &iter) : m_leaf(iter.m_leaf), m_slot(iter.m_slot) {}
+        const Key &key() const { return m_leaf->m_slots[m_slot].getKey(); }
+        const Data &value() const { return m_leaf->m_slots[m_slot].getValue(); }
+        void setValue(const Data &value) { m_leaf->m_slots[m_slot].setValue(value); }
+        void moveNext() {
+            if (++m_slot == m_leaf->m_count) {
+                m_leaf = m_leaf->m_next;
+                m_slot = 0;
+            }
+        }
+        void movePrev() {
+            if (m_slot > 0) {
+                --m_slot;
+                return;
+            }
+            m_leaf = m_leaf->m_prev;
+            if (m_leaf != NULL) {
+                m_slot = m_leaf->m_count - 1;
+            }
+        }
+        bool isEnd() const { return m_leaf == NULL; }
+        bool equals(const iterator &iter) const {
+            if (isEnd()) {
+                return iter.isEnd();
+            }
+            return m_leaf == iter.m_leaf && m_slot == iter.m_slot;
+        }
+    };
+
+    BTreeMap(bool unique, Compare comper);
+    ~BTreeMap();
+
+    bool insert(std::pair<Key, Data> value) { return (insert(value.first, value.second) == NULL); };
+    // Returns NULL on success or the value already stored under the key
+    const Data *insert(const Key &key, const Data &data);
+    bool erase(const Key &key);
+    bool erase(iterator &iter);
+
+    iterator find(const Key &key) const;
+    iterator findRank(int64_t ith) const;
+    int64_t size() const { return m_count; }
+    iterator begin() const;
+    iterator rbegin() const;
+
+    iterator lowerBound(const Key &key) const;
+    iterator upperBound(const Key &key) const;
+
+    std::pair<iterator, iterator> equalRange(const Key &key) const
+    {
+        return std::pair<iterator, iterator>(lowerBound(key), upperBound(key));
+    }
+
+    size_t bytesAllocated() const
+    {
+        return static_cast<size_t>(m_leafCount * sizeof(LeafNode) + m_innerCount * sizeof(InnerNode));
+    }
+
+    // Must pass a key that already in map, or else return -1
+    int64_t rankLower(const Key& key) const;
+    int64_t rankUpper(const Key& key) const;
+
+    /**
+     * For debugging: verify ordering, separators, leaf links and subtree counts. SLOW.
+     */
+    bool verify() const;
+
+private:
+    LeafNode *descend(const Key &key, PathEntry *path, int &depth) const;
+    int leafLowerBound(const LeafNode *leaf, const Key &key) const;
+    int leafUpperBound(const LeafNode *leaf, const Key &key) const;
+    int innerUpperBound(const InnerNode *inner, const Key &key) const;
+    int64_t countBelow(const Key &key, bool inclusive) const;
+    static iterator normalize(LeafNode *leaf, int slot);
+    static int64_t subtreeCount(const Node *node);
+
+    void splitLeaf(LeafNode *leaf, PathEntry *path, int depth);
+    void splitInner(InnerNode *node, PathEntry *path, int level);
+    void insertChild(PathEntry *path, int level, const Key &separator, Node *child, int64_t childCount);
+    void eraseAt(LeafNode *leaf, int pos, PathEntry *path, int depth);
+    void removeChild(PathEntry *path, int level);
+    void rebalanceInner(PathEntry *path, int level);
+    void removeSeparator(InnerNode *parent, int rightIndex);
+    void updateMinSeparator(PathEntry *path, int level, const Key &newMin);
+    void freeNode(Node *node);
+
+    int64_t verify(const Node *node, const Key *lower, const Key *upper, int depth, int &leafDepth) const;
+};
+
+template<typename KeyValuePair, typename Compare, bool hasRank>
+BTreeMap<KeyValuePair, Compare, hasRank>::BTreeMap(bool unique, Compare comper)
+    : m_count(0),
+      m_root(new LeafNode()),
+      m_leafCount(1),
+      m_innerCount(0),
+      m_unique(unique),
+      m_comper(comper)
+{ }
+
+template<typename KeyValuePair, typename Compare, bool hasRank>
+BTreeMap<KeyValuePair, Compare, hasRank>::~BTreeMap()
+{
+    freeNode(m_root);
+}
+
+template<typename KeyValuePair, typename Compare, bool hasRank>
+void BTreeMap<KeyValuePair, Compare, hasRank>::freeNode(Node *node)
+{
+    if (node->m_isLeaf) {
+        delete static_cast<LeafNode*>(node);
+        return;
+    }
+    InnerNode *inner = static_cast<InnerNode*>(node);
+    for (int i = 0; i < inner->m_count; ++i) {
+        freeNode(inner->m_children[i]);
+    }
+    delete inner;
+}
+
+template<typename KeyValuePair, typename Compare, bool hasRank>
+typename BTreeMap<KeyValuePair, Compare, hasRank>::iterator
+BTreeMap<KeyValuePair, Compare, hasRank>::normalize(LeafNode *leaf, int slot)
+{
+    // Only the root leaf can be empty, and then its next pointer is NULL
+    if (slot == leaf->m_count) {
+        return iterator(leaf->m_next, 0);
+    }
+    return iterator(leaf, slot);
+}
+
+template<typename KeyValuePair, typename Compare, bool hasRank>
+int64_t BTreeMap<KeyValuePair, Compare, hasRank>::subtreeCount(const Node *node)
+{
+    if (node->m_isLeaf) {
+        return node->m_count;
+    }
+    const InnerNode *inner = static_cast<const InnerNode*>(node);
+    int64_t count = 0;
+    for (int i = 0; i < inner->m_count; ++i) {
+        count += inner->m_subtreeCounts[i];
+    }
+    return count;
+}
+
+template<typename KeyValuePair, typename Compare, bool hasRank>
+int BTreeMap<KeyValuePair, Compare, hasRank>::leafLowerBound(const LeafNode *leaf, const Key &key) const
+{
+    int lo = 0;
+    int hi = leaf->m_count;
+    while (lo < hi) {
+        int mid = (lo + hi) >> 1;
+        if (m_comper(leaf->m_slots[mid].getKey(), key) < 0) {
+            lo = mid + 1;
+        }
+        else {
+            hi = mid;
+        }
+    }
+    return lo;
+}
+
+template<typename KeyValuePair, typename Compare, bool hasRank>
+int BTreeMap<KeyValuePair, Compare, hasRank>::leafUpperBound(const LeafNode *leaf, const Key &key) const
+{
+    int lo = 0;
+    int hi = leaf->m_count;
+    while (lo < hi) {
+        int mid = (lo + hi) >> 1;
+        if (m_comper(leaf->m_slots[mid].getKey(), key) <= 0) {
+            lo = mid + 1;
+        }
+        else {
+            hi = mid;
+        }
+    }
+    return lo;
+}
+
+// Number of separators less than or equal to key, which is the index of the
+// only child that can hold both key and the first entry greater than key.
+template<typename KeyValuePair, typename Compare, bool hasRank>
+int BTreeMap<KeyValuePair, Compare, hasRank>::innerUpperBound(const InnerNode *inner, const Key &key) const
+{
+    int lo = 0;
+    int hi = inner->m_count - 1;
+    while (lo < hi) {
+        int mid = (lo + hi) >> 1;
+        if (m_comper(inner->m_keys[mid], key) <= 0) {
+            lo = mid + 1;
+        }
+        else {
+            hi = mid;
+        }
+    }
+    return lo;
+}
+
+template<typename KeyValuePair, typename Compare, bool hasRank>
+typename BTreeMap<KeyValuePair, Compare, hasRank>::LeafNode *
+BTreeMap<KeyValuePair, Compare, hasRank>::descend(const Key &key, PathEntry *path, int &depth) const
+{
+    Node *node = m_root;
+    depth = 0;
+    while (!node->m_isLeaf) {
+        InnerNode *inner = static_cast<InnerNode*>(node);
+        int childIndex = innerUpperBound(inner, key);
+        assert(depth < MAX_DEPTH);
+        path[depth].m_node = inner;
+        path[depth].m_childIndex = childIndex;
+        ++depth;
+        node = inner->m_children[childIndex];
+    }
+    return static_cast<LeafNode*>(node);
+}
+
+template<typename KeyValuePair, typename Compare, bool hasRank>
+typename BTreeMap<KeyValuePair, Compare, hasRank>::iterator
+BTreeMap<KeyValuePair, Compare, hasRank>::begin() const
+{
+    if (m_count == 0) {
+        return iterator();
+    }
+    Node *node = m_root;
+    while (!node->m_isLeaf) {
+        node = static_cast<InnerNode*>(node)->m_children[0];
+    }
+    return iterator(static_cast<LeafNode*>(node), 0);
+}
+
+template<typename KeyValuePair, typename Compare, bool hasRank>
+typename BTreeMap<KeyValuePair, Compare, hasRank>::iterator
+BTreeMap<KeyValuePair, Compare, hasRank>::rbegin() const
+{
+    if (m_count == 0) {
+        return iterator();
+    }
+    Node *node = m_root;
+    while (!node->m_isLeaf) {
+        InnerNode *inner = static_cast<InnerNode*>(node);
+        node = inner->m_children[inner->m_count - 1];
+    }
+    return iterator(static_cast<LeafNode*>(node), node->m_count - 1);
+}
+
+template<typename KeyValuePair, typename Compare, bool hasRank>
+typename BTreeMap<KeyValuePair, Compare, hasRank>::iterator
+BTreeMap<KeyValuePair, Compare, hasRank>::find(const Key &key) const
+{
+    PathEntry path[MAX_DEPTH];
+    int depth;
+    LeafNode *leaf = descend(key, path, depth);
+    int pos = leafLowerBound(leaf, key);
+    if (pos < leaf->m_count && m_comper(leaf->m_slots[pos].getKey(), key) == 0) {
+        return iterator(leaf, pos);
+    }
+    return iterator();
+}
+
+template<typename KeyValuePair, typename Compare, bool hasRank>
+typename BTreeMap<KeyValuePair, Compare, hasRank>::iterator
+BTreeMap<KeyValuePair, Compare, hasRank>::lowerBound(const Key &key) const
+{
+    PathEntry path[MAX_DEPTH];
+    int depth;
+    LeafNode *leaf = descend(key, path, depth);
+    return normalize(leaf, leafLowerBound(leaf, key));
+}
+
+template<typename KeyValuePair, typename Compare, bool hasRank>
+typename BTreeMap<KeyValuePair, Compare, hasRank>::iterator
+BTreeMap<KeyValuePair, Compare, hasRank>::upperBound(const Key &key) const
+{
+    Key tmpKey(key);
+    setPointerValue(tmpKey, MAXPOINTER);
+    PathEntry path[MAX_DEPTH];
+    int depth;
+    LeafNode *leaf = descend(tmpKey, path, depth);
+    return normalize(leaf, leafUpperBound(leaf, tmpKey));
+}
+
+template<typename KeyValuePair, typename Compare, bool hasRank>
+const typename BTreeMap<KeyValuePair, Compare, hasRank>::Data *
+BTreeMap<KeyValuePair, Compare, hasRank>::insert(const Key &key, const Data &data)
+{
+    PathEntry path[MAX_DEPTH];
+    int depth;
+    LeafNode *leaf = descend(key, path, depth);
+    int pos = leafLowerBound(leaf, key);
+    if (pos < leaf->m_count && m_comper(leaf->m_slots[pos].getKey(), key) == 0) {
+        return &leaf->m_slots[pos].getValue();
+    }
+
+    for (int i = leaf->m_count; i > pos; --i) {
+        leaf->m_slots[i] = leaf->m_slots[i - 1];
+    }
+    leaf->m_slots[pos].setKeyValuePair(key, data);
+    ++leaf->m_count;
+    ++m_count;
+    if (hasRank) {
+        for (int d = 0; d < depth; ++d) {
+            ++path[d].m_node->m_subtreeCounts[path[d].m_childIndex];
+        }
+    }
+
+    if (leaf->m_count > LEAF_CAPACITY) {
+        splitLeaf(leaf, path, depth);
+    }
+    return NULL;
+}
+
+template<typename KeyValuePair, typename Compare, bool hasRank>
+void BTreeMap<KeyValuePair, Compare, hasRank>::splitLeaf(LeafNode *leaf, PathEntry *path, int depth)
+{
+    LeafNode *right = new LeafNode();
+    ++m_leafCount;
+    int keep = leaf->m_count / 2;
+    for (int i = keep; i < leaf->m_count; ++i) {
+        right->m_slots[i - keep] = leaf->m_slots[i];
+    }
+    right->m_count = leaf->m_count - keep;
+    leaf->m_count = keep;
+
+    right->m_next = leaf->m_next;
+    if (right->m_next != NULL) {
+        right->m_next->m_prev = right;
+    }
+    right->m_prev = leaf;
+    leaf->m_next = right;
+
+    insertChild(path, depth, right->m_slots[0].getKey(), right, right->m_count);
+}
+
+template<typename KeyValuePair, typename Compare, bool hasRank>
+void BTreeMap<KeyValuePair, Compare, hasRank>::splitInner(InnerNode *node, PathEntry *path, int level)
+{
+    InnerNode *right = new InnerNode();
+    ++m_innerCount;
+    int keep = node->m_count / 2;
+    // The separator between the halves moves up to the parent
+    Key separator(node->m_keys[keep - 1]);
+    int64_t rightCount = 0;
+    for (int i = keep; i < node->m_count; ++i) {
+        right->m_children[i - keep] = node->m_children[i];
+        right->m_subtreeCounts[i - keep] = node->m_subtreeCounts[i];
+        rightCount += node->m_subtreeCounts[i];
+    }
+    for (int i = keep; i < node->m_count - 1; ++i) {
+        right->m_keys[i - keep] = node->m_keys[i];
+    }
+    right->m_count = node->m_count - keep;
+    node->m_count = keep;
+
+    insertChild(path, level, separator, right, rightCount);
+}
+
+// Add child to the right of the node at path[level] in its parent
+template<typename KeyValuePair, typename Compare, bool hasRank>
+void BTreeMap<KeyValuePair, Compare, hasRank>::insertChild(PathEntry *path, int level, const Key &separator,
+                                                           Node *child, int64_t childCount)
+{
+    if (level == 0) {
+        InnerNode *root = new InnerNode();
+        ++m_innerCount;
+        root->m_children[0] = m_root;
+        root->m_children[1] = child;
+        root->m_keys[0] = separator;
+        root->m_count = 2;
+        if (hasRank) {
+            root->m_subtreeCounts[0] = subtreeCount(m_root);
+            root->m_subtreeCounts[1] = childCount;
+        }
+        m_root = root;
+        return;
+    }
+
+    InnerNode *parent = path[level - 1].m_node;
+    int index = path[level - 1].m_childIndex;
+    for (int i = parent->m_count; i > index + 1; --i) {
+        parent->m_children[i] = parent->m_children[i - 1];
+        parent->m_subtreeCounts[i] = parent->m_subtreeCounts[i - 1];
+    }
+    for (int i = parent->m_count - 1; i > index; --i) {
+        parent->m_keys[i] = parent->m_keys[i - 1];
+    }
+    parent->m_keys[index] = separator;
+    parent->m_children[index + 1] = child;
+    if (hasRank) {
+        parent->m_subtreeCounts[index + 1] = childCount;
+        parent->m_subtreeCounts[index] -= childCount;
+    }
+    ++parent->m_count;
+
+    if (parent->m_count > INNER_CAPACITY) {
+        splitInner(parent, path, level - 1);
+    }
+}
+
+template<typename KeyValuePair, typename Compare, bool hasRank>
+bool BTreeMap<KeyValuePair, Compare, hasRank>::erase(const Key &key)
+{
+    PathEntry path[MAX_DEPTH];
+    int depth;
+    LeafNode *leaf = descend(key, path, depth);
+    int pos = leafLowerBound(leaf, key);
+    if (pos == leaf->m_count || m_comper(leaf->m_slots[pos].getKey(), key) != 0) {
+        return false;
+    }
+    eraseAt(leaf, pos, path, depth);
+    return true;
+}
+
+template<typename KeyValuePair, typename Compare, bool hasRank>
+bool BTreeMap<KeyValuePair, Compare, hasRank>::erase(iterator &iter)
+{
+    assert(!iter.isEnd());
+    // Keys are distinct so the path to the entry is found by its key
+    return erase(iter.key());
+}
+
+template<typename KeyValuePair, typename Compare, bool hasRank>
+void BTreeMap<KeyValuePair, Compare, hasRank>::eraseAt(LeafNode *leaf, int pos, PathEntry *path, int depth)
+{
+    for (int i = pos; i < leaf->m_count - 1; ++i) {
+        leaf->m_slots[i] = leaf->m_slots[i + 1];
+    }
+    --leaf->m_count;
+    --m_count;
+    if (hasRank) {
+        for (int d = 0; d < depth; ++d) {
+            --path[d].m_node->m_subtreeCounts[path[d].m_childIndex];
+        }
+    }
+    if (depth == 0) {
+        // The root leaf is allowed to be empty
+        return;
+    }
+
+    if (leaf->m_count == 0) {
+        if (leaf->m_prev != NULL) {
+            leaf->m_prev->m_next = leaf->m_next;
+        }
+        if (leaf->m_next != NULL) {
+            leaf->m_next->m_prev = leaf->m_prev;
+        }
+        delete leaf;
+        --m_leafCount;
+        removeChild(path, depth - 1);
+        return;
+    }
+
+    if (pos == 0) {
+        updateMinSeparator(path, depth, leaf->m_slots[0].getKey());
+    }
+    if (leaf->m_count >= LEAF_MIN) {
+        return;
+    }
+
+    InnerNode *parent = path[depth - 1].m_node;
+    int index = path[depth - 1].m_childIndex;
+    LeafNode *left = NULL;
+    LeafNode *right = NULL;
+    if (index + 1 < parent->m_count &&
+            leaf->m_count + parent->m_children[index + 1]->m_count <= LEAF_CAPACITY) {
+        left = leaf;
+        right = static_cast<LeafNode*>(parent->m_children[index + 1]);
+        ++index;
+    }
+    else if (index > 0 && leaf->m_count + parent->m_children[index - 1]->m_count <= LEAF_CAPACITY) {
+        left = static_cast<LeafNode*>(parent->m_children[index - 1]);
+        right = leaf;
+    }
+    else {
+        return;
+    }
+
+    for (int i = 0; i < right->m_count; ++i) {
+        left->m_slots[left->m_count + i] = right->m_slots[i];
+    }
+    left->m_count += right->m_count;
+    left->m_next = right->m_next;
+    if (left->m_next != NULL) {
+        left->m_next->m_prev = left;
+    }
+    delete right;
+    --m_leafCount;
+
+    removeSeparator(parent, index);
+    rebalanceInner(path, depth - 1);
+}
+
+// Fold the child at rightIndex, which has been merged into its left sibling, out of parent
+template<typename KeyValuePair, typename Compare, bool hasRank>
+void BTreeMap<KeyValuePair, Compare, hasRank>::removeSeparator(InnerNode *parent, int rightIndex)
+{
+    assert(rightIndex > 0);
+    if (hasRank) {
+        parent->m_subtreeCounts[rightIndex - 1] += parent->m_subtreeCounts[rightIndex];
+    }
+    for (int i = rightIndex; i < parent->m_count - 1; ++i) {
+        parent->m_children[i] = parent->m_children[i + 1];
+        parent->m_subtreeCounts[i] = parent->m_subtreeCounts[i + 1];
+    }
+    for (int i = rightIndex - 1; i < parent->m_count - 2; ++i) {
+        parent->m_keys[i] = parent->m_keys[i + 1];
+    }
+    --parent->m_count;
+}
+
+// Remove the child at path[level], which has already been freed, from its parent
+template<typename KeyValuePair, typename Compare, bool hasRank>
+void BTreeMap<KeyValuePair, Compare, hasRank>::removeChild(PathEntry *path, int level)
+{
+    InnerNode *parent = path[level].m_node;
+    int index = path[level].m_childIndex;
+    if (parent->m_count == 1) {
+        // The root always has at least two children, so this is never the root
+        assert(level > 0);
+        delete parent;
+        --m_innerCount;
+        removeChild(path, level - 1);
+        return;
+    }
+
+    if (index == 0) {
+        // The smallest key under parent is now the smallest key under its second child
+        Key newMin(parent->m_keys[0]);
+        for (int i = 0; i < parent->m_count - 1; ++i) {
+            parent->m_children[i] = parent->m_children[i + 1];
+            parent->m_subtreeCounts[i] = parent->m_subtreeCounts[i + 1];
+        }
+        for (int i = 0; i < parent->m_count - 2; ++i) {
+            parent->m_keys[i] = parent->m_keys[i + 1];
+        }
+        --parent->m_count;
+        updateMinSeparator(path, level, newMin);
+    }
+    else {
+        for (int i = index; i < parent->m_count - 1; ++i) {
+            parent->m_children[i] = parent->m_children[i + 1];
+            parent->m_subtreeCounts[i] = parent->m_subtreeCounts[i + 1];
+        }
+        for (int i = index - 1; i < parent->m_count - 2; ++i) {
+            parent->m_keys[i] = parent->m_keys[i + 1];
+        }
+        --parent->m_count;
+    }
+    rebalanceInner(path, level);
+}
+
+// Merge the inner node at path[level] with a sibling if it has become too small
+template<typename KeyValuePair, typename Compare, bool hasRank>
+void BTreeMap<KeyValuePair, Compare, hasRank>::rebalanceInner(PathEntry *path, int level)
+{
+    InnerNode *node = path[level].m_node;
+    if (level == 0) {
+        if (node->m_count == 1) {
+            m_root = node->m_children[0];
+            delete node;
+            --m_innerCount;
+        }
+        return;
+    }
+    if (node->m_count >= INNER_MIN) {
+        return;
+    }
+
+    InnerNode *parent = path[level - 1].m_node;
+    int index = path[level - 1].m_childIndex;
+    InnerNode *left = NULL;
+    InnerNode *right = NULL;
+    if (index + 1 < parent->m_count &&
+            node->m_count + parent->m_children[index + 1]->m_count <= INNER_CAPACITY) {
+        left = node;
+        right = static_cast<InnerNode*>(parent->m_children[index + 1]);
+        ++index;
+    }
+    else if (index > 0 && node->m_count + parent->m_children[index - 1]->m_count <= INNER_CAPACITY) {
+        left = static_cast<InnerNode*>(parent->m_children[index - 1]);
+        right = node;
+    }
+    else {
+        return;
+    }
+
+    // The parent's separator is the smallest key under right
+    left->m_keys[left->m_count - 1] = parent->m_keys[index - 1];
+    for (int i = 0; i < right->m_count - 1; ++i) {
+        left->m_keys[left->m_count + i] = right->m_keys[i];
+    }
+    for (int i = 0; i < right->m_count; ++i) {
+        left->m_children[left->m_count + i] = right->m_children[i];
+        left->m_subtreeCounts[left->m_count + i] = right->m_subtreeCounts[i];
+    }
+    left->m_count += right->m_count;
+    delete right;
+    --m_innerCount;
+
+    removeSeparator(parent, index);
+    rebalanceInner(path, level - 1);
+}
+
+// The smallest key under the node at path[level] changed, update the separator which refers to it
+template<typename KeyValuePair, typename Compare, bool hasRank>
+void BTreeMap<KeyValuePair, Compare, hasRank>::updateMinSeparator(PathEntry *path, int level, const Key &newMin)
+{
+    for (int d = level - 1; d >= 0; --d) {
+        if (path[d].m_childIndex > 0) {
+            path[d].m_node->m_keys[path[d].m_childIndex - 1] = newMin;
+            return;
+        }
+    }
+}
+
+// Number of entries whose key, regardless of the tuple pointer, is less than
+// (or less than or equal to if inclusive) key.
+template<typename KeyValuePair, typename Compare, bool hasRank>
+int64_t BTreeMap<KeyValuePair, Compare, hasRank>::countBelow(const Key &key, bool inclusive) const
+{
+    int64_t count = 0;
+    const Node *node = m_root;
+    while (!node->m_isLeaf) {
+        const InnerNode *inner = static_cast<const InnerNode*>(node);
+        int lo = 0;
+        int hi = inner->m_count - 1;
+        while (lo < hi) {
+            int mid = (lo + hi) >> 1;
+            int cmp = m_comper.compareWithoutPointer(inner->m_keys[mid], key);
+            if (cmp < 0 || (inclusive && cmp == 0)) {
+                lo = mid + 1;
+            }
+            else {
+                hi = mid;
+            }
+        }
+        for (int i = 0; i < lo; ++i) {
+            count += inner->m_subtreeCounts[i];
+        }
+        node = inner->m_children[lo];
+    }
+    const LeafNode *leaf = static_cast<const LeafNode*>(node);
+    int lo = 0;
+    int hi = leaf->m_count;
+    while (lo < hi) {
+        int mid = (lo + hi) >> 1;
+        int cmp = m_comper.compareWithoutPointer(leaf->m_slots[mid].getKey(), key);
+        if (cmp < 0 || (inclusive && cmp == 0)) {
+            lo = mid + 1;
+        }
+        else {
+            hi = mid;
+        }
+    }
+    return count + lo;
+}
+
+template<typename KeyValuePair, typename Compare, bool hasRank>
+int64_t BTreeMap<KeyValuePair, Compare, hasRank>::rankLower(const Key& key) const
+{
+    if (!hasRank || find(key).isEnd()) {
+        return -1;
+    }
+    return countBelow(key, false) + 1;
+}
+
+template<typename KeyValuePair, typename Compare, bool hasRank>
+int64_t BTreeMap<KeyValuePair, Compare, hasRank>::rankUpper(const Key& key) const
+{
+    if (!hasRank) {
+        return -1;
+    }
+    if (m_unique) {
+        return rankLower(key);
+    }
+    if (find(key).isEnd()) {
+        return -1;
+    }
+    return countBelow(key, true);
+}
+
+template<typename KeyValuePair, typename Compare, bool hasRank>
+typename BTreeMap<KeyValuePair, Compare, hasRank>::iterator
+BTreeMap<KeyValuePair, Compare, hasRank>::findRank(int64_t ith) const
+{
+    if (!hasRank || ith < 1 || ith > m_count) {
+        return iterator();
+    }
+    int64_t remaining = ith;
+    Node *node = m_root;
+    while (!node->m_isLeaf) {
+        InnerNode *inner = static_cast<InnerNode*>(node);
+        int i = 0;
+        while (remaining > inner->m_subtreeCounts[i]) {
+            remaining -= inner->m_subtreeCounts[i];
+            ++i;
+        }
+        node = inner->m_children[i];
+    }
+    return iterator(static_cast<LeafNode*>(node), static_cast<int>(remaining - 1));
+}
+
+template<typename KeyValuePair, typename Compare, bool hasRank>
+bool BTreeMap<KeyValuePair, Compare, hasRank>::verify() const
+{
+    int leafDepth = -1;
+    if (verify(m_root, NULL, NULL, 0, leafDepth) != m_count) {
+        return false;
+    }
+    // The leaf chain must visit every entry in order
+    int64_t visited = 0;
+    iterator prev;
+    for (iterator it = begin(); !it.isEnd(); it.moveNext()) {
+        if (!prev.isEnd() && m_comper(prev.key(), it.key()) >= 0) {
+            return false;
+        }
+        prev = it;
+        ++visited;
+    }
+    return visited == m_count;
+}
+
+template<typename KeyValuePair, typename Compare, bool hasRank>
+int64_t BTreeMap<KeyValuePair, Compare, hasRank>::verify(const Node *node, const Key *lower, const Key *upper,
+                                                        int depth, int &leafDepth) const
+{
+    if (node->m_isLeaf) {
+        const LeafNode *leaf = static_cast<const LeafNode*>(node);
+        if (leafDepth == -1) {
+            leafDepth = depth;
+        }
+        if (leafDepth != depth || (leaf->m_count == 0 && node != m_root)) {
+            return -1;
+        }
+        // The separator to the left of a node must be its smallest key
+        if (lower != NULL && m_comper(leaf->m_slots[0].getKey(), *lower) != 0) {
+            return -1;
+        }
+        for (int i = 0; i < leaf->m_count; ++i) {
+            if (upper != NULL && m_comper(leaf->m_slots[i].getKey(), *upper) >= 0) {
+                return -1;
+            }
+            if (i > 0 && m_comper(leaf->m_slots[i - 1].getKey(), leaf->m_slots[i].getKey()) >= 0) {
+                return -1;
+            }
+        }
+        return leaf->m_count;
+    }
+    const InnerNode *inner = static_cast<const InnerNode*>(node);
+    if (inner->m_count < 1 || (node == m_root && inner->m_count < 2)) {
+        return -1;
+    }
+    int64_t total = 0;
+    for (int i = 0; i < inner->m_count; ++i) {
+        const Key *childLower = (i == 0) ? lower : &inner->m_keys[i - 1];
+        const Key *childUpper = (i == inner->m_count - 1) ? upper : &inner->m_keys[i];
+        int64_t childCount = verify(inner->m_children[i], childLower, childUpper, depth + 1, leafDepth);
+        if (childCount < 0 || (hasRank && childCount != inner->m_subtreeCounts[i])) {
+            return -1;
+        }
+        total += childCount;
+    }
+    return total;
+}
+
+/**
+ * Lets code which is templated on its map type tell the two tree maps apart
+ */
+template<typename MapType>
+struct IsBTreeMap {
+    static const bool value = false;
+};
+
+template<typename KeyValuePair, typename Compare, bool hasRank>
+struct IsBTreeMap<BTreeMap<KeyValuePair, Compare, hasRank> > {
+    static const bool value = true;
+};
+
+} // namespace voltdb
+
+#endif // BTREEMAP_H_
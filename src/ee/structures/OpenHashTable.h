@@ -0,0 +1,515 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2019 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+#ifndef OPENHASHTABLE_H_
+#define OPENHASHTABLE_H_
+
+#include <algorithm>
+#include <cstdlib>
+#include <utility>
+#include <cassert>
+#include <cstdio>
+#include <functional>
+#include <boost/functional/hash.hpp>
+#include <stdint.h>
+#ifdef __SSE2__
+#include <emmintrin.h>
+#endif
+
+namespace voltdb {
+
+    /**
+     * OpenHashTable is an open-addressing alternative to CompactingHashTable for unique maps,
+     * laid out after the "Swiss table" design: key/value slots are kept in one flat array and
+     * every slot has a control byte holding 7 bits of its key's hash (or an empty/deleted
+     * marker). Slots are probed 16 at a time by comparing a whole group of control bytes with
+     * a single SSE2 compare, so a point lookup usually touches one cache line of control bytes
+     * and the one slot whose key actually matches, instead of walking a bucket chain.
+     *
+     * Growing or shrinking never rehashes the whole table at once. A resize allocates the new
+     * slot array and then each following insert or erase moves at most
+     * MIGRATION_SLOTS_PER_OPERATION slots of the old array into it, so no single operation
+     * pays for more than a bounded slice of the rehash. Lookups consult both arrays until the
+     * migration is complete.
+     *
+     * Only unique maps are supported; keys must be cheap to copy since a resize moves them.
+     * The interface mirrors the subset of CompactingHashTable used by unique hash indexes.
+     */
+    template<class K, class T, class H = boost::hash<K>, class EK = std::equal_to<K>, class ET = std::equal_to<T> >
+    class OpenHashTable {
+    public:
+        typedef K Key;            // key type
+        typedef T Data;           // value type
+        typedef H Hasher;         // hash a value to a uint64_t
+        typedef EK KeyEqChecker;  // compare two keys
+        typedef ET DataEqChecker; // compare two values
+
+        // slots probed together, one control byte each
+        static const uint64_t GROUP_WIDTH = 16;
+        // slot count of an empty table, must be a power of two multiple of GROUP_WIDTH
+        static const uint64_t INITIAL_CAPACITY = 64;
+        // resize when 7/8 of the slots are live or deleted
+        // (a grown table will be 7/16 full)
+        static const uint64_t MAX_LOAD_NUMERATOR = 7;
+        static const uint64_t MAX_LOAD_DENOMINATOR = 8;
+        // shrink when the table is less than 1/16 full
+        static const uint64_t MIN_LOAD_DENOMINATOR = 16;
+        // old slots moved into the new array by each insert or erase during a resize
+        static const uint64_t MIGRATION_SLOTS_PER_OPERATION = 256;
+
+    protected:
+        // control byte values; a live slot holds the low 7 bits of its hash (0..127)
+        static const int8_t CTRL_EMPTY = -128;
+        static const int8_t CTRL_DELETED = -2;
+
+        struct Slot {
+            Key key;
+            Data value;
+        };
+
+        /** One slot array with its control bytes */
+        struct Storage {
+            int8_t *ctrl;
+            Slot *slots;
+            uint64_t capacity;
+            uint64_t live;
+            uint64_t deleted;
+
+            Storage() : ctrl(NULL), slots(NULL), capacity(0), live(0), deleted(0) {}
+        };
+
+        Storage m_current;          // where inserts go
+        Storage m_old;              // array being migrated away from, or empty
+        uint64_t m_migrateCursor;   // next slot of m_old to migrate
+        uint64_t m_count;           // number of items in the hash
+        Hasher m_hasher;            // instance of the hashing function
+        KeyEqChecker m_keyEq;       // instance of the key eq checker
+        DataEqChecker m_dataEq;     // instance of the value eq checker
+
+    public:
+
+        /**
+         * Iterator over the (at most one) value found for a key
+         */
+        class iterator {
+            friend class OpenHashTable;
+        protected:
+            Slot *m_slot;
+
+            iterator(const Slot *slot) : m_slot(const_cast<Slot*>(slot)) {}
+
+        public:
+            iterator() : m_slot(NULL) {}
+            iterator(const iterator &iter) : m_slot(iter.m_slot) {}
+
+            Key &key() const { return m_slot->key; }
+            Data &value() const { return m_slot->value; }
+            void setValue(const Data &value) { m_slot->value = value; }
+
+            // keys are unique, so there is never a next value for the key
+            void moveNext() { m_slot = NULL; }
+            bool isEnd() const { return (!m_slot); }
+            bool equals(iterator &iter) const { return m_slot == iter.m_slot; }
+        };
+
+        /** Constructor allows passing in instances for the hasher and eq checkers */
+        OpenHashTable(bool unique, Hasher hasher = Hasher(), KeyEqChecker keyEq = KeyEqChecker(), DataEqChecker dataEq = DataEqChecker());
+        ~OpenHashTable();
+
+        /** simple find */
+        iterator find(const Key &key) const;
+        /** find an exact key/value match */
+        iterator find(const Key &key, const Data &value) const;
+        /** simple insert, returns the existing value on a key conflict */
+        const Data *insert(const Key &key, const Data &value);
+        /** delete by key */
+        bool erase(const Key &key);
+        /** delete by kv pair */
+        bool erase(const Key &key, const Data &value);
+        /** delete from iterator */
+        bool erase(iterator &iter);
+        /** STL-ish size() method */
+        size_t size() const { return m_count; }
+
+        /** Return bytes used for this index */
+        size_t bytesAllocated() const { return storageBytes(m_current) + storageBytes(m_old); }
+
+        /** Is a resize still being migrated? This is used in testing. */
+        bool isMigrating() const { return m_old.slots != NULL; }
+        /** Slot count of the array inserts go to. This is used in testing. */
+        uint64_t capacity() const { return m_current.capacity; }
+
+        /** verification for debugging and testing */
+        bool verify();
+
+    protected:
+        static size_t storageBytes(const Storage &storage) {
+            return storage.capacity * (sizeof(Slot) + sizeof(int8_t));
+        }
+
+        /**
+         * Spread the hasher's output over all 64 bits; the boost hashes of integer keys are
+         * close to the identity and would otherwise collide in both the group index and the
+         * control byte.
+         */
+        uint64_t hashOf(const Key &key) const {
+            uint64_t hash = m_hasher(key);
+            hash ^= hash >> 33;
+            hash *= 0xff51afd7ed558ccdULL;
+            hash ^= hash >> 33;
+            hash *= 0xc4ceb9fe1a85ec53ULL;
+            hash ^= hash >> 33;
+            return hash;
+        }
+
+        static int8_t ctrlOf(uint64_t hash) { return static_cast<int8_t>(hash & 0x7F); }
+
+        /** Bit i is set when control byte i of the group equals value */
+        static uint32_t matchByte(const int8_t *group, int8_t value) {
+#ifdef __SSE2__
+            __m128i ctrl = _mm_loadu_si128(reinterpret_cast<const __m128i*>(group));
+            return static_cast<uint32_t>(_mm_movemask_epi8(_mm_cmpeq_epi8(ctrl, _mm_set1_epi8(value))));
+#else
+            uint32_t mask = 0;
+            for (uint32_t i = 0; i < GROUP_WIDTH; ++i) {
+                if (group[i] == value) {
+                    mask |= 1u << i;
+                }
+            }
+            return mask;
+#endif
+        }
+
+        /** Bit i is set when slot i of the group is empty or deleted */
+        static uint32_t matchFree(const int8_t *group) {
+#ifdef __SSE2__
+            __m128i ctrl = _mm_loadu_si128(reinterpret_cast<const __m128i*>(group));
+            return static_cast<uint32_t>(_mm_movemask_epi8(ctrl));
+#else
+            uint32_t mask = 0;
+            for (uint32_t i = 0; i < GROUP_WIDTH; ++i) {
+                if (group[i] < 0) {
+                    mask |= 1u << i;
+                }
+            }
+            return mask;
+#endif
+        }
+
+        static void allocate(Storage &storage, uint64_t capacity);
+        static void release(Storage &storage);
+
+        /** find the slot holding key, or NULL */
+        Slot *find(const Storage &storage, const Key &key, uint64_t hash) const;
+        /** put a key known not to be in the storage into its first free slot */
+        void insert(Storage &storage, const Key &key, const Data &value, uint64_t hash);
+        /** mark a slot deleted */
+        static void remove(Storage &storage, Slot *slot);
+
+        /** move the next slice of the old array, if any, into the current one */
+        void migrateStep();
+        /** see if the table needs to grow, shrink or drop its deleted slots */
+        void checkLoadFactor();
+        /** start moving everything into a new array of the given capacity */
+        void resize(uint64_t newCapacity);
+        /** smallest capacity holding count items at half the maximum load */
+        static uint64_t capacityFor(uint64_t count);
+    };
+
+    ///////////////////////////////////////////
+    //
+    // OPEN HASH TABLE CODE
+    //
+    ///////////////////////////////////////////
+
+    template<class K, class T, class H, class EK, class ET>
+    OpenHashTable<K, T, H, EK, ET>::OpenHashTable(bool unique, Hasher hasher, KeyEqChecker keyEq, DataEqChecker dataEq)
+    : m_migrateCursor(0),
+    m_count(0),
+    m_hasher(hasher),
+    m_keyEq(keyEq),
+    m_dataEq(dataEq)
+    {
+        assert(unique);
+        allocate(m_current, INITIAL_CAPACITY);
+    }
+
+    template<class K, class T, class H, class EK, class ET>
+    OpenHashTable<K, T, H, EK, ET>::~OpenHashTable() {
+        release(m_current);
+        release(m_old);
+    }
+
+    template<class K, class T, class H, class EK, class ET>
+    void OpenHashTable<K, T, H, EK, ET>::allocate(Storage &storage, uint64_t capacity) {
+        assert(capacity % GROUP_WIDTH == 0);
+        assert((capacity & (capacity - 1)) == 0);
+        storage.ctrl = new int8_t[capacity];
+        for (uint64_t i = 0; i < capacity; ++i) {
+            storage.ctrl[i] = CTRL_EMPTY;
+        }
+        storage.slots = new Slot[capacity];
+        storage.capacity = capacity;
+        storage.live = 0;
+        storage.deleted = 0;
+    }
+
+    template<class K, class T, class H, class EK, class ET>
+    void OpenHashTable<K, T, H, EK, ET>::release(Storage &storage) {
+        delete[] storage.ctrl;
+        delete[] storage.slots;
+        storage = Storage();
+    }
+
+    template<class K, class T, class H, class EK, class ET>
+    typename OpenHashTable<K, T, H, EK, ET>::Slot *OpenHashTable<K, T, H, EK, ET>::find(const Storage &storage, const Key &key, uint64_t hash) const {
+        const int8_t ctrl = ctrlOf(hash);
+        const uint64_t groupMask = storage.capacity / GROUP_WIDTH - 1;
+        uint64_t group = (hash >> 7) & groupMask;
+        // triangular probing visits every group once when the group count is a power of two
+        for (uint64_t probe = 0; probe <= groupMask; ++probe) {
+            const int8_t *groupCtrl = storage.ctrl + group * GROUP_WIDTH;
+            for (uint32_t match = matchByte(groupCtrl, ctrl); match != 0; match &= match - 1) {
+                Slot *slot = storage.slots + group * GROUP_WIDTH + __builtin_ctz(match);
+                if (m_keyEq(slot->key, key)) {
+                    return slot;
+                }
+            }
+            // a key is never placed past a group with an empty slot
+            if (matchByte(groupCtrl, CTRL_EMPTY) != 0) {
+                return NULL;
+            }
+            group = (group + probe + 1) & groupMask;
+        }
+        return NULL;
+    }
+
+    template<class K, class T, class H, class EK, class ET>
+    void OpenHashTable<K, T, H, EK, ET>::insert(Storage &storage, const Key &key, const Data &value, uint64_t hash) {
+        const uint64_t groupMask = storage.capacity / GROUP_WIDTH - 1;
+        uint64_t group = (hash >> 7) & groupMask;
+        for (uint64_t probe = 0; probe <= groupMask; ++probe) {
+            uint32_t available = matchFree(storage.ctrl + group * GROUP_WIDTH);
+            if (available != 0) {
+                uint64_t index = group * GROUP_WIDTH + __builtin_ctz(available);
+                if (storage.ctrl[index] == CTRL_DELETED) {
+                    --storage.deleted;
+                }
+                storage.ctrl[index] = ctrlOf(hash);
+                storage.slots[index].key = key;
+                storage.slots[index].value = value;
+                ++storage.live;
+                return;
+            }
+            group = (group + probe + 1) & groupMask;
+        }
+        // the load factor check keeps free slots in every array
+        assert(false);
+    }
+
+    template<class K, class T, class H, class EK, class ET>
+    void OpenHashTable<K, T, H, EK, ET>::remove(Storage &storage, Slot *slot) {
+        uint64_t index = slot - storage.slots;
+        assert(index < storage.capacity);
+        assert(storage.ctrl[index] >= 0);
+        storage.ctrl[index] = CTRL_DELETED;
+        storage.slots[index] = Slot();
+        --storage.live;
+        ++storage.deleted;
+    }
+
+    template<class K, class T, class H, class EK, class ET>
+    typename OpenHashTable<K, T, H, EK, ET>::iterator OpenHashTable<K, T, H, EK, ET>::find(const Key &key) const {
+        uint64_t hash = hashOf(key);
+        Slot *slot = find(m_current, key, hash);
+        if (slot == NULL && isMigrating()) {
+            slot = find(m_old, key, hash);
+        }
+        return iterator(slot);
+    }
+
+    template<class K, class T, class H, class EK, class ET>
+    typename OpenHashTable<K, T, H, EK, ET>::iterator OpenHashTable<K, T, H, EK, ET>::find(const Key &key, const Data &value) const {
+        iterator iter = find(key);
+        if (iter.isEnd() || !m_dataEq(iter.value(), value)) {
+            return iterator();
+        }
+        return iter;
+    }
+
+    template<class K, class T, class H, class EK, class ET>
+    const typename OpenHashTable<K, T, H, EK, ET>::Data *OpenHashTable<K, T, H, EK, ET>::insert(const Key &key, const Data &value) {
+        // migrate first so the slot found below stays put
+        migrateStep();
+
+        uint64_t hash = hashOf(key);
+        Slot *slot = find(m_current, key, hash);
+        if (slot == NULL && isMigrating()) {
+            slot = find(m_old, key, hash);
+        }
+        if (slot != NULL) {
+            return &slot->value;
+        }
+
+        insert(m_current, key, value, hash);
+        ++m_count;
+        checkLoadFactor();
+        return NULL;
+    }
+
+    template<class K, class T, class H, class EK, class ET>
+    bool OpenHashTable<K, T, H, EK, ET>::erase(const Key &key) {
+        iterator iter = find(key);
+        return erase(iter);
+    }
+
+    template<class K, class T, class H, class EK, class ET>
+    bool OpenHashTable<K, T, H, EK, ET>::erase(const Key &key, const Data &value) {
+        iterator iter = find(key, value);
+        return erase(iter);
+    }
+
+    template<class K, class T, class H, class EK, class ET>
+    bool OpenHashTable<K, T, H, EK, ET>::erase(iterator &iter) {
+        if (iter.isEnd()) {
+            return false;
+        }
+        if (iter.m_slot >= m_current.slots && iter.m_slot < m_current.slots + m_current.capacity) {
+            remove(m_current, iter.m_slot);
+        }
+        else {
+            remove(m_old, iter.m_slot);
+        }
+        iter.m_slot = NULL;
+        --m_count;
+
+        migrateStep();
+        checkLoadFactor();
+        return true;
+    }
+
+    template<class K, class T, class H, class EK, class ET>
+    void OpenHashTable<K, T, H, EK, ET>::migrateStep() {
+        if ( ! isMigrating()) {
+            return;
+        }
+        uint64_t end = std::min(m_migrateCursor + MIGRATION_SLOTS_PER_OPERATION, m_old.capacity);
+        for (; m_migrateCursor < end; ++m_migrateCursor) {
+            if (m_old.ctrl[m_migrateCursor] >= 0) {
+                Slot *slot = m_old.slots + m_migrateCursor;
+                insert(m_current, slot->key, slot->value, hashOf(slot->key));
+                // leave a deleted marker so probes for keys not yet migrated continue past it
+                remove(m_old, slot);
+            }
+        }
+        if (m_migrateCursor == m_old.capacity) {
+            assert(m_old.live == 0);
+            release(m_old);
+        }
+    }
+
+    template<class K, class T, class H, class EK, class ET>
+    uint64_t OpenHashTable<K, T, H, EK, ET>::capacityFor(uint64_t count) {
+        uint64_t capacity = INITIAL_CAPACITY;
+        while (count * MAX_LOAD_DENOMINATOR * 2 > capacity * MAX_LOAD_NUMERATOR) {
+            capacity *= 2;
+        }
+        return capacity;
+    }
+
+    template<class K, class T, class H, class EK, class ET>
+    void OpenHashTable<K, T, H, EK, ET>::checkLoadFactor() {
+        uint64_t used = m_current.live + m_current.deleted;
+        if (used * MAX_LOAD_DENOMINATOR >= m_current.capacity * MAX_LOAD_NUMERATOR) {
+            // grows when full of live slots, rehashes in place when full of deleted ones
+            resize(capacityFor(m_count));
+        }
+        else if (m_count * MIN_LOAD_DENOMINATOR < m_current.capacity &&
+                 m_current.capacity > INITIAL_CAPACITY && ! isMigrating()) {
+            resize(capacityFor(m_count));
+        }
+    }
+
+    template<class K, class T, class H, class EK, class ET>
+    void OpenHashTable<K, T, H, EK, ET>::resize(uint64_t newCapacity) {
+        // Migration moves at least MIGRATION_SLOTS_PER_OPERATION slots per operation, which
+        // finishes long before the new array can fill up. Finishing one here only happens
+        // when a shrink is immediately followed by enough inserts to grow again.
+        while (isMigrating()) {
+            migrateStep();
+        }
+        m_old = m_current;
+        allocate(m_current, newCapacity);
+        m_migrateCursor = 0;
+        migrateStep();
+    }
+
+    template<class K, class T, class H, class EK, class ET>
+    bool OpenHashTable<K, T, H, EK, ET>::verify() {
+        const Storage *storages[] = { &m_current, &m_old };
+        size_t manualCount = 0;
+
+        for (int s = 0; s < 2; ++s) {
+            const Storage &storage = *storages[s];
+            uint64_t live = 0, deleted = 0;
+            for (uint64_t i = 0; i < storage.capacity; ++i) {
+                if (storage.ctrl[i] == CTRL_DELETED) {
+                    ++deleted;
+                    continue;
+                }
+                if (storage.ctrl[i] == CTRL_EMPTY) {
+                    continue;
+                }
+                ++live;
+                const Key &key = storage.slots[i].key;
+                if (storage.ctrl[i] != ctrlOf(hashOf(key))) {
+                    printf("Slot control byte doesn't match its key's hash.\n");
+                    return false;
+                }
+                if (find(key).m_slot != storage.slots + i) {
+                    printf("Key not found in its own slot.\n");
+                    return false;
+                }
+            }
+            if (live != storage.live || deleted != storage.deleted) {
+                printf("Live or deleted slot count doesn't match the control bytes.\n");
+                return false;
+            }
+            manualCount += live;
+        }
+
+        if (manualCount != m_count) {
+            printf("Live slot count doesn't match the table size.\n");
+            return false;
+        }
+        return true;
+    }
+
+    /** Lets index classes tell which hash table backs them */
+    template<typename HashTable>
+    struct IsOpenHashTable {
+        static const bool value = false;
+    };
+
+    template<class K, class T, class H, class EK, class ET>
+    struct IsOpenHashTable<OpenHashTable<K, T, H, EK, ET> > {
+        static const bool value = true;
+    };
+
+} // namespace voltdb
+
+#endif // OPENHASHTABLE_H_
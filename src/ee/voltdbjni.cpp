@@ -270,7 +270,11 @@ SHAREDLIB_JNIEXPORT jint JNICALL Java_org_voltdb_jni_ExecutionEngine_nativeIniti
     jlong tempTableMemory,
     jboolean createDrReplicatedStream,
     jint compactionThreshold,
-    jint exportFlushTimeout)
+    jint exportFlushTimeout,
+    jint compactionBudgetMicros,
+    jboolean useBTreeIndexes,
+    jboolean useOpenHashIndexes,
+    jboolean batchExecution)
 {
     VOLT_DEBUG("nativeInitialize() start");
     VoltDBEngine *engine = castToEngine(enginePtr);
@@ -299,7 +303,11 @@ SHAREDLIB_JNIEXPORT jint JNICALL Java_org_voltdb_jni_ExecutionEngine_nativeIniti
                            tempTableMemory,
                            createDrReplicatedStream,
                            static_cast<int32_t>(compactionThreshold),
-                           exportFlushTimeout);
+                           exportFlushTimeout,
+                           static_cast<int32_t>(compactionBudgetMicros),
+                           useBTreeIndexes,
+                           useOpenHashIndexes,
+                           batchExecution);
         VOLT_DEBUG("initialize succeeded");
         return org_voltdb_jni_ExecutionEngine_ERRORCODE_SUCCESS;
     }
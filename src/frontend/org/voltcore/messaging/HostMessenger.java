@@ -1861,6 +1861,18 @@ public class HostMessenger implements SocketJoiner.JoinHandler, InterfaceToMesse
         return m_network.getIOStats(interval, picoNetworks);
     }
 
+    public Map<Long, Pair<String, long[]>>
+        getReactorStats(final boolean interval) throws InterruptedException {
+        final ImmutableMultimap<Integer, ForeignHost> fhosts = m_foreignHosts;
+        ArrayList<IOStatsIntf> picoNetworks = new ArrayList<IOStatsIntf>();
+
+        for (ForeignHost fh : fhosts.values()) {
+            picoNetworks.add(fh.m_network);
+        }
+
+        return m_network.getReactorStats(interval, picoNetworks);
+    }
+
     /**
      * Cut the network connection between two hostids immediately
      * Useful for simulating network partitions
@@ -73,6 +73,13 @@ public abstract class NIOWriteStreamBase {
         }
     }
 
+    /*
+     * Total bytes written so far, for the owning network thread's reactor counters
+     */
+    long getBytesWritten() {
+        return m_bytesWritten;
+    }
+
     /*
      * Return the number of messages waiting to be written to the network
      */
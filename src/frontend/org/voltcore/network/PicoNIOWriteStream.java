@@ -21,7 +21,9 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.GatheringByteChannel;
 import java.util.ArrayDeque;
+import java.util.Arrays;
 
+import org.voltcore.utils.DBBPool.BBContainer;
 import org.voltcore.utils.DeferredSerialization;
 
 /**
@@ -37,6 +39,22 @@ public class PicoNIOWriteStream extends NIOWriteStreamBase {
      */
     private final ArrayDeque<DeferredSerialization> m_queuedWrites = new ArrayDeque<DeferredSerialization>();
 
+    /*
+     * Most buffers handed to one gathering write, well under IOV_MAX
+     */
+    private static final int MAX_GATHER_BUFFERS = 64;
+
+    /**
+     * Flipped buffers taken off m_queuedBuffers and not yet completely written
+     */
+    private final ArrayDeque<BBContainer> m_gatherBuffers = new ArrayDeque<BBContainer>();
+    private final ByteBuffer[] m_gatherArray = new ByteBuffer[MAX_GATHER_BUFFERS];
+
+    /**
+     * Number of write calls on the channel that wrote something
+     */
+    protected long m_writeCalls = 0;
+
     /*
      * Return the number of messages waiting to be written to the network
      */
@@ -49,7 +67,11 @@ public class PicoNIOWriteStream extends NIOWriteStreamBase {
     @Override
     public boolean isEmpty()
     {
-        return super.isEmpty() && m_queuedWrites.isEmpty();
+        return super.isEmpty() && m_queuedWrites.isEmpty() && m_gatherBuffers.isEmpty();
+    }
+
+    long getWriteCalls() {
+        return m_writeCalls;
     }
 
     @Override
@@ -64,6 +86,10 @@ public class PicoNIOWriteStream extends NIOWriteStreamBase {
     @Override
     synchronized void shutdown() {
         super.shutdown();
+        BBContainer c = null;
+        while ((c = m_gatherBuffers.poll()) != null) {
+            c.discard();
+        }
         DeferredSerialization ds = null;
         while ((ds = m_queuedWrites.poll()) != null) {
             ds.cancel();
@@ -74,7 +100,8 @@ public class PicoNIOWriteStream extends NIOWriteStreamBase {
     protected void updateQueued(int queued, boolean noBackpressureSignal) {}
 
     /**
-     * Drain pending buffers one at a time into the socket
+     * Drain pending buffers into the socket, handing up to MAX_GATHER_BUFFERS of them
+     * to each gathering write
      * @param channel
      * @return
      * @throws IOException
@@ -84,28 +111,32 @@ public class PicoNIOWriteStream extends NIOWriteStreamBase {
         int bytesWritten = 0;
         long rc = 0;
         do {
+            while (m_gatherBuffers.size() < MAX_GATHER_BUFFERS && !m_queuedBuffers.isEmpty()) {
+                final BBContainer c = m_queuedBuffers.poll();
+                c.b().flip();
+                m_gatherBuffers.offer(c);
+            }
+
             /*
              * Nothing to write
              */
-            if (m_currentWriteBuffer == null && m_queuedBuffers.isEmpty()) {
+            if (m_gatherBuffers.isEmpty()) {
                 break;
             }
 
-            ByteBuffer buffer = null;
-            if (m_currentWriteBuffer == null) {
-                m_currentWriteBuffer = m_queuedBuffers.poll();
-                buffer = m_currentWriteBuffer.b();
-                buffer.flip();
-            } else {
-                buffer = m_currentWriteBuffer.b();
+            int count = 0;
+            for (BBContainer c : m_gatherBuffers) {
+                m_gatherArray[count++] = c.b();
+            }
+            rc = channel.write(m_gatherArray, 0, count);
+            Arrays.fill(m_gatherArray, 0, count, null);
+            if (rc > 0) {
+                m_writeCalls++;
             }
 
-            rc = channel.write(buffer);
-
-            //Discard the buffer back to a pool if no data remains
-            if (!buffer.hasRemaining()) {
-                m_currentWriteBuffer.discard();
-                m_currentWriteBuffer = null;
+            //Discard buffers back to a pool if no data remains
+            while (!m_gatherBuffers.isEmpty() && !m_gatherBuffers.peek().b().hasRemaining()) {
+                m_gatherBuffers.poll().discard();
                 m_messagesWritten++;
             }
             bytesWritten += rc;
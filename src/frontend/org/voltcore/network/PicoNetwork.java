@@ -79,6 +79,7 @@ import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.Future;
 import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
 
 import org.voltcore.logging.VoltLogger;
 import org.voltcore.network.VoltNetworkPool.IOStatsIntf;
@@ -117,6 +118,23 @@ public class PicoNetwork implements Runnable, Connection, IOStatsIntf
     private String m_threadName;
     private Set<Long> m_verbotenThreads;
 
+    /** Select loop counters reported as a row of IOSTATS reactor stats */
+    private final ReactorCounters m_counters = new ReactorCounters();
+
+    /*
+     * Opt-in write coalescing. When enabled, messages queued for the peer are held for up to
+     * PICONETWORK_COALESCE_MICROS after the first one arrives, or until PICONETWORK_COALESCE_BYTES
+     * of them are queued, and then serialized and written together. The thread polls the selector
+     * without blocking while writes are held, so the window is meant to be a few microseconds.
+     */
+    private static final long COALESCE_WINDOW_NANOS =
+            TimeUnit.MICROSECONDS.toNanos(Long.getLong("PICONETWORK_COALESCE_MICROS", 0));
+    private static final int COALESCE_BYTES = Integer.getInteger("PICONETWORK_COALESCE_BYTES", 1024 * 32);
+
+    // Only touched by the network thread. A start time of 0 means nothing is being held.
+    private long m_coalesceStartNanos = 0;
+    private int m_coalesceBytes = 0;
+
     /**
      * Start this VoltNetwork's thread. populate the verbotenThreads set
      * with the id of the thread that is created
@@ -198,6 +216,7 @@ public class PicoNetwork implements Runnable, Connection, IOStatsIntf
                 } else {
                     m_selector.select();
                 }
+                m_counters.selectWakeups++;
 
                 m_hadWork = false;
                 Runnable task = null;
@@ -205,8 +224,13 @@ public class PicoNetwork implements Runnable, Connection, IOStatsIntf
                     m_hadWork = true;
                     task.run();
                 }
+                final long startNanos = System.nanoTime();
                 dispatchReadStream();
-                drainWriteStream();
+                if (!holdWritesForCoalescing()) {
+                    drainWriteStream();
+                }
+                m_counters.callbacks++;
+                m_counters.callbackNanos += System.nanoTime() - startNanos;
             }
         } catch (CancelledKeyException e) {
             networkLog.warn(
@@ -289,11 +313,47 @@ public class PicoNetwork implements Runnable, Connection, IOStatsIntf
         return read;
     }
 
+    /*
+     * Account for a write queued while coalescing is enabled
+     */
+    private void coalesceQueuedWrite(int serializedSize) {
+        if (m_coalesceStartNanos == 0) {
+            m_coalesceStartNanos = System.nanoTime();
+        }
+        m_coalesceBytes += serializedSize;
+    }
+
+    /*
+     * Keep queued writes back while the coalescing window is open and there isn't a full
+     * batch yet. Polls the selector instead of blocking so the window is checked again
+     * on the next loop.
+     */
+    private boolean holdWritesForCoalescing() {
+        if (m_coalesceStartNanos == 0 || m_shouldStop || m_coalesceBytes >= COALESCE_BYTES) {
+            return false;
+        }
+        if (System.nanoTime() - m_coalesceStartNanos >= COALESCE_WINDOW_NANOS) {
+            return false;
+        }
+        m_hadWork = true;
+        return true;
+    }
+
     protected void drainWriteStream() throws IOException {
+        if (m_coalesceStartNanos != 0) {
+            m_counters.coalesceNanos += System.nanoTime() - m_coalesceStartNanos;
+            m_coalesceStartNanos = 0;
+            m_coalesceBytes = 0;
+        }
+
         /*
          * Drain the write stream
          */
-        if (m_writeStream.serializeQueuedWrites(m_pool) != 0) m_hadWork = true;
+        final int serialized = m_writeStream.serializeQueuedWrites(m_pool);
+        if (serialized != 0) {
+            m_hadWork = true;
+            m_counters.messagesWritten += serialized;
+        }
         if (m_writeStream.drainTo(m_sc) > 0) m_hadWork = true;
         if (m_writeStream.isEmpty()) {
             disableWriteSelection();
@@ -412,6 +472,22 @@ public class PicoNetwork implements Runnable, Connection, IOStatsIntf
             return retval;
     }
 
+    @Override
+    public Future<Pair<String, long[]>> getReactorStats(final boolean interval) {
+        FutureTask<Pair<String, long[]>> ft = new FutureTask<Pair<String, long[]>>(new Callable<Pair<String, long[]>>() {
+            @Override
+            public Pair<String, long[]> call() throws Exception {
+                m_counters.bytesRead = m_readStream.getBytesRead(false);
+                m_counters.bytesWritten = m_writeStream.getBytesWritten();
+                m_counters.writes = m_writeStream.getWriteCalls();
+                return Pair.of(m_thread.getName(), m_counters.snapshot(m_thread.getId(), 1, interval));
+            }
+        });
+        m_tasks.offer(ft);
+        m_selector.wakeup();
+        return ft;
+    }
+
     @Override
     public Future<Map<Long, Pair<String, long[]>>> getIOStats(final boolean interval) {
         Callable<Map<Long, Pair<String, long[]>>> task = new Callable<Map<Long, Pair<String, long[]>>>() {
@@ -516,6 +592,15 @@ public class PicoNetwork implements Runnable, Connection, IOStatsIntf
         m_tasks.offer(new Runnable() {
             @Override
             public void run() {
+                if (COALESCE_WINDOW_NANOS != 0) {
+                    int size = 0;
+                    try {
+                        size = ds.getSerializedSize();
+                    } catch (IOException e) {
+                        // Reported again when the write is serialized
+                    }
+                    coalesceQueuedWrite(size);
+                }
                 m_writeStream.enqueue(ds);
             }
         });
@@ -526,6 +611,9 @@ public class PicoNetwork implements Runnable, Connection, IOStatsIntf
         m_tasks.offer(new Runnable() {
             @Override
             public void run() {
+                if (COALESCE_WINDOW_NANOS != 0) {
+                    coalesceQueuedWrite(buf.remaining());
+                }
                 m_writeStream.enqueue(buf);
             }
         });
@@ -0,0 +1,57 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2019 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltcore.network;
+
+/**
+ * Select loop counters for a single network thread. Only the owning thread updates
+ * them; callbackNanos is volatile so {@link VoltNetworkPool} can sample it to place
+ * and rebalance connections. See {@link VoltNetworkPool.IOStatsIntf#getReactorStats}
+ * for the layout produced by {@link #snapshot}.
+ */
+final class ReactorCounters {
+    long selectWakeups = 0;
+    long callbacks = 0;
+    volatile long callbackNanos = 0;
+    long bytesRead = 0;
+    long bytesWritten = 0;
+    // Only counted by the pico network threads of foreign host connections
+    long messagesWritten = 0;
+    long writes = 0;
+    long coalesceNanos = 0;
+
+    /*
+     * Cumulative values at the last interval snapshot, same order as the
+     * interval columns of the snapshot
+     */
+    private final long[] m_last = new long[8];
+
+    long[] snapshot(long threadId, int connections, boolean interval) {
+        final long current[] = new long[] { selectWakeups, callbacks, callbackNanos, bytesRead, bytesWritten,
+                                            messagesWritten, writes, coalesceNanos };
+        final long retval[] = new long[VoltNetworkPool.REACTOR_STAT_COUNT];
+        retval[VoltNetworkPool.REACTOR_THREAD_ID] = threadId;
+        retval[VoltNetworkPool.REACTOR_CONNECTIONS] = connections;
+        for (int ii = 0; ii < current.length; ii++) {
+            retval[VoltNetworkPool.REACTOR_SELECT_WAKEUPS + ii] = interval ? current[ii] - m_last[ii] : current[ii];
+        }
+        if (interval) {
+            System.arraycopy(current, 0, m_last, 0, current.length);
+        }
+        return retval;
+    }
+}
@@ -68,6 +68,9 @@ public class TLSPicoNIOWriteStream extends PicoNIOWriteStream {
                 ledger = m_tlsEncryptionAdapter.drainEncryptedMessages(channel);
                 totalWritten += ledger.bytesWritten;
                 m_messagesWritten += ledger.messagesWritten;
+                if (ledger.bytesWritten > 0) {
+                    m_writeCalls++;
+                }
             } while (ledger.bytesWritten > 0);
         } finally {
             if (totalWritten > 0) {
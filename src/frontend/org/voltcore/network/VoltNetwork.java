@@ -70,6 +70,9 @@ import java.nio.channels.ClosedChannelException;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -110,6 +113,9 @@ class VoltNetwork implements Runnable, IOStatsIntf
 
     private final NinjaKeySet m_ninjaSelectedKeys;
 
+    /** Select loop counters reported as a row of IOSTATS reactor stats */
+    private final ReactorCounters m_counters = new ReactorCounters();
+
     /**
      * Start this VoltNetwork's thread;
      */
@@ -240,6 +246,11 @@ class VoltNetwork implements Runnable, IOStatsIntf
             public void run() {
                 VoltPort port = (VoltPort)c;
                 assert(c != null);
+                if (port.m_network != VoltNetwork.this) {
+                    // The port was moved to another network after this was queued
+                    port.m_network.unregisterChannel(port);
+                    return;
+                }
                 SelectionKey selectionKey = port.getKey();
 
                 try {
@@ -314,6 +325,7 @@ class VoltNetwork implements Runnable, IOStatsIntf
                         LatencyWatchdog.pet();
 
                         final int readyKeys = m_selector.select();
+                        m_counters.selectWakeups++;
 
                         /*
                          * Run the task queue immediately after selection to catch
@@ -382,6 +394,10 @@ class VoltNetwork implements Runnable, IOStatsIntf
     }
 
     void installInterests(VoltPort port) {
+        if (port.m_network != this) {
+            port.m_network.addToChangeList(port);
+            return;
+        }
         try {
             if (port.isRunning()) {
                 assert(false) : "Shouldn't be running since it is all single threaded now?";
@@ -415,6 +431,13 @@ class VoltNetwork implements Runnable, IOStatsIntf
     }
 
     private void callPort(final VoltPort port) {
+        if (port.m_network != this) {
+            port.m_network.addToChangeList(port, true);
+            return;
+        }
+        final long startNanos = System.nanoTime();
+        final long bytesReadBefore = port.getTotalBytesRead();
+        final long bytesWrittenBefore = port.getTotalBytesWritten();
         try {
             port.lockForHandlingWork();
             port.getKey().interestOps(0);
@@ -437,9 +460,111 @@ class VoltNetwork implements Runnable, IOStatsIntf
             }
         } finally {
             installInterests(port);
+            final long callbackNanos = System.nanoTime() - startNanos;
+            port.m_callbackNanos += callbackNanos;
+            m_counters.callbacks++;
+            m_counters.callbackNanos += callbackNanos;
+            m_counters.bytesRead += port.getTotalBytesRead() - bytesReadBefore;
+            m_counters.bytesWritten += port.getTotalBytesWritten() - bytesWrittenBefore;
+        }
+    }
+
+    /**
+     * Hand ports whose recent callback time adds up to about fraction of this network's
+     * recent callback time over to target, at most maxPorts of them. The choice is made
+     * on this network's thread and the ports are registered with target's selector on
+     * target's thread.
+     */
+    void shedLoadTo(final VoltNetwork target, final double fraction, final int maxPorts) {
+        queueTask(new Runnable() {
+            @Override
+            public void run() {
+                shedLoadToImpl(target, fraction, maxPorts);
+            }
+        });
+    }
+
+    private void shedLoadToImpl(VoltNetwork target, double fraction, int maxPorts) {
+        if (m_shouldStop || target.isStopping()) {
+            return;
+        }
+        final ArrayList<VoltPort> candidates = new ArrayList<VoltPort>();
+        long totalNanos = 0;
+        for (VoltPort port : m_ports) {
+            final long recentNanos = port.sampleCallbackNanos();
+            totalNanos += recentNanos;
+            if (recentNanos > 0 && port.canMigrate()) {
+                candidates.add(port);
+            }
+        }
+        long remainingNanos = (long)(totalNanos * fraction);
+        if (remainingNanos <= 0 || candidates.isEmpty()) {
+            return;
+        }
+        Collections.sort(candidates, new Comparator<VoltPort>() {
+            @Override
+            public int compare(VoltPort a, VoltPort b) {
+                return Long.compare(b.m_recentCallbackNanos, a.m_recentCallbackNanos);
+            }
+        });
+
+        int moved = 0;
+        for (VoltPort port : candidates) {
+            if (moved >= maxPorts || remainingNanos <= 0) {
+                break;
+            }
+            // A port carrying more than the whole imbalance would just move the hot spot
+            if (port.m_recentCallbackNanos >= remainingNanos * 2) {
+                continue;
+            }
+            migrate(port, target);
+            remainingNanos -= port.m_recentCallbackNanos;
+            moved++;
+        }
+        if (moved > 0 && networkLog.isDebugEnabled()) {
+            networkLog.debug("Moved " + moved + " connections from " + networkThreadName + " to " + target.networkThreadName);
+        }
+    }
+
+    private void migrate(VoltPort port, VoltNetwork target) {
+        final SelectionKey oldKey = port.getKey();
+        // Holding the port lock keeps setInterests from queueing work for either network mid move
+        synchronized (port.m_lock) {
+            oldKey.attach(null);
+            oldKey.cancel();
+            m_ports.remove(port);
+            m_numPorts.decrementAndGet();
+            port.m_network = target;
+            port.m_pool = target.m_pool;
+            target.adoptPort(port);
         }
     }
 
+    /**
+     * Register a port that was moved from another network. The port counts toward
+     * numPorts immediately so placement decisions see it before the task runs.
+     */
+    private void adoptPort(final VoltPort port) {
+        m_numPorts.incrementAndGet();
+        queueTask(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    port.rekey(port.m_channel.register(m_selector, port.interestOps(), port));
+                    m_ports.add(port);
+                } catch (ClosedChannelException e) {
+                    // Closed while in transit, finish the job the old network would have done
+                    m_numPorts.decrementAndGet();
+                    try {
+                        port.unregistering();
+                    } finally {
+                        port.unregistered();
+                    }
+                }
+            }
+        });
+    }
+
     /** Set the selected interest set on the port and run it. */
     protected void invokeCallbacks(ThreadLocalRandom r) {
         final Set<SelectionKey> selectedKeys = m_selector.selectedKeys();
@@ -452,24 +577,26 @@ class VoltNetwork implements Runnable, IOStatsIntf
             itInx++;
         }
         while(itInx < keyCount) {
+            // Advance the index before the null check so a key detached by
+            // unregistration or migration doesn't run the iterator off the end
             final Object obj = it.next().attachment();
+            itInx++;
             if (obj == null) {
                 continue;
             }
             final VoltPort port = (VoltPort)obj;
             callPort(port);
-            itInx++;
         }
         itInx = 0;
         it = selectedKeys.iterator();
         while(itInx < startInx) {
             final Object obj = it.next().attachment();
+            itInx++;
             if (obj == null) {
                 continue;
             }
             final VoltPort port = (VoltPort)obj;
             callPort(port);
-            itInx++;
         }
         selectedKeys.clear();
     }
@@ -552,6 +679,25 @@ class VoltNetwork implements Runnable, IOStatsIntf
         return ft;
     }
 
+    @Override
+    public Future<Pair<String, long[]>> getReactorStats(final boolean interval) {
+        FutureTask<Pair<String, long[]>> ft = new FutureTask<Pair<String, long[]>>(new Callable<Pair<String, long[]>>() {
+            @Override
+            public Pair<String, long[]> call() throws Exception {
+                final long threadId = m_thread == null ? -1 : m_thread.getId();
+                return Pair.of(networkThreadName, m_counters.snapshot(threadId, m_ports.size(), interval));
+            }
+        });
+        m_tasks.offer(ft);
+        m_selector.wakeup();
+        return ft;
+    }
+
+    /** Total time spent in port callbacks, sampled by the pool to judge how busy this network is */
+    long getCallbackNanos() {
+        return m_counters.callbackNanos;
+    }
+
     Long getThreadId() {
         return m_thread.getId();
     }
@@ -30,27 +30,66 @@ import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 import javax.net.ssl.SSLEngine;
 
 import org.voltcore.logging.VoltLogger;
+import org.voltcore.utils.CoreUtils;
 import org.voltcore.utils.Pair;
 
 public class VoltNetworkPool {
 
     public interface IOStatsIntf {
         Future<Map<Long, Pair<String, long[]>>> getIOStats(final boolean interval);
+
+        /**
+         * Counters for the select loop thread behind this instance, paired with the thread name.
+         * Indexed by the REACTOR_* constants, everything but the thread id and the connection
+         * count is reset by interval requests.
+         */
+        Future<Pair<String, long[]>> getReactorStats(final boolean interval);
     }
 
+    public static final int REACTOR_THREAD_ID = 0;
+    public static final int REACTOR_CONNECTIONS = 1;
+    public static final int REACTOR_SELECT_WAKEUPS = 2;
+    public static final int REACTOR_CALLBACKS = 3;
+    public static final int REACTOR_CALLBACK_NANOS = 4;
+    public static final int REACTOR_BYTES_READ = 5;
+    public static final int REACTOR_BYTES_WRITTEN = 6;
+    public static final int REACTOR_MESSAGES_WRITTEN = 7;
+    public static final int REACTOR_WRITES = 8;
+    public static final int REACTOR_COALESCE_NANOS = 9;
+    static final int REACTOR_STAT_COUNT = 10;
+
+    /*
+     * Every interval the pool compares how long each network spent in callbacks and, if one
+     * was busier than REBALANCE_BUSY_PERCENT of the interval and more than twice as busy as
+     * the least busy one, has it hand some of its connections over. Rebalancing is off unless
+     * NETWORK_REBALANCE_INTERVAL_MS is set to a positive interval.
+     */
+    private static final long REBALANCE_INTERVAL_MS = Long.getLong("NETWORK_REBALANCE_INTERVAL_MS", 0);
+    private static final int REBALANCE_BUSY_PERCENT = Integer.getInteger("NETWORK_REBALANCE_BUSY_PERCENT", 50);
+    private static final int MAX_MIGRATIONS_PER_REBALANCE = 32;
+
     private static final VoltLogger m_logger = new VoltLogger(VoltNetworkPool.class.getName());
 
     private final VoltNetwork m_networks[];
     private final AtomicLong m_nextNetwork = new AtomicLong();
     public final String m_poolName;
 
+    // Callback time of each network over the last rebalance interval, read by registerChannel
+    private final AtomicLongArray m_recentCallbackNanos;
+    // Only touched by the rebalancer thread
+    private final long m_lastCallbackNanos[];
+    private long m_lastRebalanceNanos;
+    private ScheduledThreadPoolExecutor m_rebalancer;
+
     public VoltNetworkPool() {
         this(1, 1, null, "");
     }
@@ -74,15 +113,35 @@ public class VoltNetworkPool {
                 m_networks[ii] = new VoltNetwork(ii+startThreadId, coreBindIds.poll(), poolName);
             }
         }
+        m_recentCallbackNanos = new AtomicLongArray(m_networks.length);
+        m_lastCallbackNanos = new long[m_networks.length];
     }
 
     public void start() {
         for (VoltNetwork vn : m_networks) {
             vn.start();
         }
+        if (m_networks.length > 1 && REBALANCE_INTERVAL_MS > 0) {
+            m_lastRebalanceNanos = System.nanoTime();
+            m_rebalancer = CoreUtils.getScheduledThreadPoolExecutor(
+                    "Volt " + m_poolName + " Network Rebalancer", 1, CoreUtils.SMALL_STACK_SIZE);
+            m_rebalancer.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        rebalance();
+                    } catch (Throwable t) {
+                        m_logger.warn("Error rebalancing network connections", t);
+                    }
+                }
+            }, REBALANCE_INTERVAL_MS, REBALANCE_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        }
     }
 
     public void shutdown() throws InterruptedException {
+        if (m_rebalancer != null) {
+            m_rebalancer.shutdownNow();
+        }
         for (VoltNetwork vn : m_networks) {
             vn.shutdown();
         }
@@ -103,16 +162,63 @@ public class VoltNetworkPool {
             final ReverseDNSPolicy dns,
             final CipherExecutor cipherService,
             final SSLEngine sslEngine) throws IOException {
-        //Start with a round robin base policy
-        VoltNetwork vn = m_networks[(int)(m_nextNetwork.getAndIncrement() % m_networks.length)];
-        //Then do a load based policy which is a little racy
+        return pickNetwork().registerChannel(channel, handler, interestOps, dns, cipherService, sslEngine);
+    }
+
+    /**
+     * Start with a round robin base policy, then prefer the network that spent the least
+     * time in callbacks over the last rebalance interval, in steps of a tenth of the interval,
+     * and among equally busy ones the one with the fewest ports. A little racy.
+     */
+    private VoltNetwork pickNetwork() {
+        final long intervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(REBALANCE_INTERVAL_MS, 1));
+        int best = (int)(m_nextNetwork.getAndIncrement() % m_networks.length);
+        long bestBusy = m_recentCallbackNanos.get(best) * 10 / intervalNanos;
+        for (int ii = 0; ii < m_networks.length; ii++) {
+            if (ii == best) continue;
+            final long busy = m_recentCallbackNanos.get(ii) * 10 / intervalNanos;
+            if (busy < bestBusy ||
+                    (busy == bestBusy && m_networks[best].numPorts() > m_networks[ii].numPorts())) {
+                best = ii;
+                bestBusy = busy;
+            }
+        }
+        return m_networks[best];
+    }
+
+    /**
+     * Have the busiest network hand connections to the least busy one when the gap is large.
+     * The busy network picks which connections to give up since only it knows their load.
+     */
+    void rebalance() {
+        final long now = System.nanoTime();
+        final long elapsedNanos = now - m_lastRebalanceNanos;
+        m_lastRebalanceNanos = now;
+
+        int busiest = 0;
+        int idlest = 0;
         for (int ii = 0; ii < m_networks.length; ii++) {
-            if (m_networks[ii] == vn) continue;
-            if (vn.numPorts() > m_networks[ii].numPorts()) {
-                vn = m_networks[ii];
+            final long callbackNanos = m_networks[ii].getCallbackNanos();
+            m_recentCallbackNanos.set(ii, callbackNanos - m_lastCallbackNanos[ii]);
+            m_lastCallbackNanos[ii] = callbackNanos;
+            if (m_recentCallbackNanos.get(ii) > m_recentCallbackNanos.get(busiest)) {
+                busiest = ii;
+            }
+            if (m_recentCallbackNanos.get(ii) < m_recentCallbackNanos.get(idlest)) {
+                idlest = ii;
             }
         }
-        return vn.registerChannel(channel, handler, interestOps, dns, cipherService, sslEngine);
+
+        final long busiestNanos = m_recentCallbackNanos.get(busiest);
+        final long idlestNanos = m_recentCallbackNanos.get(idlest);
+        if (busiest == idlest ||
+                busiestNanos * 100 < elapsedNanos * REBALANCE_BUSY_PERCENT ||
+                busiestNanos < idlestNanos * 2) {
+            return;
+        }
+        // Aim for both networks to end up with the average of the two
+        final double fraction = (busiestNanos - idlestNanos) / 2.0 / busiestNanos;
+        m_networks[busiest].shedLoadTo(m_networks[idlest], fraction, MAX_MIGRATIONS_PER_REBALANCE);
     }
 
     public List<Long> getThreadIds() {
@@ -159,6 +265,35 @@ public class VoltNetworkPool {
         return retval;
     }
 
+    /**
+     * Reactor counters for each network in the pool plus the provided pico networks,
+     * keyed by thread id. Networks that don't answer in time are left out.
+     */
+    public Map<Long, Pair<String, long[]>>
+        getReactorStats(final boolean interval, List<IOStatsIntf> picoNetworks) throws InterruptedException {
+        HashMap<Long, Pair<String, long[]>> retval = new HashMap<Long, Pair<String, long[]>>();
+
+        LinkedList<Future<Pair<String, long[]>>> statTasks = new LinkedList<Future<Pair<String, long[]>>>();
+        for (VoltNetwork vn : m_networks) {
+            statTasks.add(vn.getReactorStats(interval));
+        }
+        for (IOStatsIntf pn : picoNetworks) {
+            statTasks.add(pn.getReactorStats(interval));
+        }
+
+        for (Future<Pair<String, long[]>> statsFuture : statTasks) {
+            try {
+                Pair<String, long[]> stats = statsFuture.get(500, TimeUnit.MILLISECONDS);
+                retval.put(stats.getSecond()[REACTOR_THREAD_ID], stats);
+            } catch (TimeoutException e) {
+                m_logger.warn("Timed out retrieving reactor stats from network thread, probably harmless", e);
+            } catch (ExecutionException e) {
+                m_logger.warn("Error retrieving reactor stats from network thread", e);
+            }
+        }
+        return retval;
+    }
+
     public Set<Connection> getConnections() {
         List<Future<Set<Connection>>> futures = new ArrayList<>(m_networks.length);
         for (VoltNetwork vn : m_networks) {
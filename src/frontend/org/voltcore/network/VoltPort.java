@@ -31,14 +31,14 @@ import org.voltcore.logging.VoltLogger;
 /** Encapsulates a socket registration for a VoltNetwork */
 public class VoltPort implements Connection
 {
-    /** The network this port participates in */
-    protected final VoltNetwork m_network;
+    /** The network this port participates in, changes if the pool moves the port to another reactor */
+    protected volatile VoltNetwork m_network;
 
     protected static final VoltLogger networkLog = new VoltLogger("NETWORK");
 
     public static final int MAX_MESSAGE_LENGTH = 52428800;
 
-    protected final NetworkDBBPool m_pool;
+    protected volatile NetworkDBBPool m_pool;
 
     /** The currently selected operations on this port. */
     private int m_readyOps = 0;
@@ -76,6 +76,14 @@ public class VoltPort implements Connection
     protected long m_messagesRead = 0;
     private long m_lastMessagesRead = 0;
 
+    /*
+     * Time the owning network spent in callbacks for this port, and the portion
+     * of it since the network last looked for ports to hand to another reactor
+     */
+    long m_callbackNanos = 0;
+    private long m_lastSampledCallbackNanos = 0;
+    long m_recentCallbackNanos = 0;
+
     /*
      * This variable will be changed to the actual hostname some time later. It
      * is not guaranteed on how long it will take to do the reverse DNS lookup.
@@ -304,6 +312,42 @@ public class VoltPort implements Connection
         }
     }
 
+    /**
+     * Install the key from the selector of the network the port was moved to.
+     * Unlike setKey the read and write streams are kept.
+     */
+    void rekey(SelectionKey key) {
+        m_selectionKey = key;
+    }
+
+    /**
+     * Record the callback time accrued since the last call in m_recentCallbackNanos and return it
+     */
+    long sampleCallbackNanos() {
+        m_recentCallbackNanos = m_callbackNanos - m_lastSampledCallbackNanos;
+        m_lastSampledCallbackNanos = m_callbackNanos;
+        return m_recentCallbackNanos;
+    }
+
+    /**
+     * Only plain ports are moved between networks. TLS ports can have encrypt and
+     * decrypt work outstanding on the cipher service between callbacks, and handlers
+     * marked {@link NetworkThreadBound} keep per thread state, so both stay on the
+     * network they were registered with.
+     */
+    boolean canMigrate() {
+        return getClass() == VoltPort.class && !(m_handler instanceof NetworkThreadBound) &&
+                !m_running && !m_isDead && !m_isShuttingDown;
+    }
+
+    long getTotalBytesRead() {
+        return m_readStream == null ? 0 : m_readStream.getBytesRead(false);
+    }
+
+    long getTotalBytesWritten() {
+        return m_writeStream == null ? 0 : m_writeStream.getBytesWritten();
+    }
+
     /** Return the nio selection key underlying this port. */
     public SelectionKey getKey() {
         return m_selectionKey;
@@ -0,0 +1,185 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2019 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltcore.utils;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.voltcore.logging.VoltLogger;
+
+import com.google_voltpatches.common.util.concurrent.AbstractListeningExecutorService;
+
+/**
+ * Runs tasks one at a time, in submission order, on threads borrowed from a shared
+ * executor. Many of these can be multiplexed onto one small pool in place of a single
+ * thread executor each. Only one task of a given instance runs at any time and each
+ * task sees the effects of the ones before it, even when they ran on a different thread.
+ *
+ * After {@link #MAX_TASKS_PER_TURN} tasks the instance gives its borrowed thread back
+ * and queues up again behind the other users of the shared executor.
+ *
+ * Shutdown behaves like ThreadPoolExecutor: queued tasks still run, new ones are rejected.
+ */
+public class SerialExecutorService extends AbstractListeningExecutorService {
+    private static final VoltLogger LOG = new VoltLogger("HOST");
+
+    static final int MAX_TASKS_PER_TURN = 32;
+
+    private final Executor m_executor;
+    private final String m_name;
+
+    // All guarded by this
+    private final ArrayDeque<Runnable> m_tasks = new ArrayDeque<Runnable>();
+    // True while a drain is queued on or running in m_executor
+    private boolean m_draining = false;
+    private boolean m_shutdown = false;
+
+    private final Runnable m_drain = new Runnable() {
+        @Override
+        public void run() {
+            drain();
+        }
+    };
+
+    /**
+     * @param executor  shared executor the tasks are run on
+     * @param name      thread name used while running this instance's tasks
+     */
+    public SerialExecutorService(Executor executor, String name) {
+        m_executor = executor;
+        m_name = name;
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        synchronized (this) {
+            if (m_shutdown) {
+                throw new RejectedExecutionException(m_name + " has been shut down");
+            }
+            m_tasks.add(command);
+            if (m_draining) {
+                return;
+            }
+            m_draining = true;
+        }
+        try {
+            m_executor.execute(m_drain);
+        } catch (RejectedExecutionException e) {
+            synchronized (this) {
+                m_tasks.removeLastOccurrence(command);
+                m_draining = false;
+                notifyAll();
+            }
+            throw e;
+        }
+    }
+
+    private void drain() {
+        final Thread thread = Thread.currentThread();
+        final String threadName = thread.getName();
+        thread.setName(m_name);
+        try {
+            for (int ii = 0; ii < MAX_TASKS_PER_TURN; ii++) {
+                final Runnable task;
+                synchronized (this) {
+                    task = m_tasks.poll();
+                    if (task == null) {
+                        m_draining = false;
+                        notifyAll();
+                        return;
+                    }
+                }
+                try {
+                    task.run();
+                } catch (Throwable t) {
+                    LOG.error("Exception thrown in " + m_name, t);
+                }
+            }
+        } finally {
+            thread.setName(threadName);
+        }
+
+        // Let the other users of the shared executor have a turn
+        try {
+            m_executor.execute(m_drain);
+        } catch (RejectedExecutionException e) {
+            final List<Runnable> dropped = drainQueue();
+            LOG.warn("Shared executor rejected " + m_name + ", dropping " + dropped.size() + " tasks");
+            synchronized (this) {
+                m_draining = false;
+                notifyAll();
+            }
+        }
+    }
+
+    private synchronized List<Runnable> drainQueue() {
+        final List<Runnable> retval = new ArrayList<Runnable>(m_tasks);
+        m_tasks.clear();
+        return retval;
+    }
+
+    /**
+     * Number of tasks waiting to run, not counting one that is currently running
+     */
+    public synchronized int getQueueDepth() {
+        return m_tasks.size();
+    }
+
+    @Override
+    public synchronized void shutdown() {
+        m_shutdown = true;
+        notifyAll();
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        synchronized (this) {
+            m_shutdown = true;
+            notifyAll();
+        }
+        return drainQueue();
+    }
+
+    @Override
+    public synchronized boolean isShutdown() {
+        return m_shutdown;
+    }
+
+    @Override
+    public synchronized boolean isTerminated() {
+        return m_shutdown && !m_draining && m_tasks.isEmpty();
+    }
+
+    @Override
+    public synchronized boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        long remainingNanos = unit.toNanos(timeout);
+        final long deadline = System.nanoTime() + remainingNanos;
+        while (!isTerminated()) {
+            if (remainingNanos <= 0) {
+                return false;
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, remainingNanos);
+            remainingNanos = deadline - System.nanoTime();
+        }
+        return true;
+    }
+}
@@ -0,0 +1,72 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2019 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.voltdb.VoltTable.ColumnInfo;
+
+/**
+ * Reports, per partition, the transactions this node's client interface is still waiting on
+ * and how long the oldest of them has been outstanding. Like {@link LiveClientsStats}, the
+ * numbers are pulled from the client interface at collection time rather than pushed here.
+ * Multi-partition, short circuit read and NT procedure work is reported under the pseudo
+ * partition ids the client interface uses for them.
+ */
+public class ClientInFlightStats extends StatsSource
+{
+    private Map<Integer, long[]> m_inFlightStats = new HashMap<Integer, long[]>();
+
+    public ClientInFlightStats() {
+        super(false);
+    }
+
+    @Override
+    protected void populateColumnSchema(ArrayList<ColumnInfo> columns) {
+        super.populateColumnSchema(columns);
+        columns.add(new ColumnInfo("PARTITION_ID", VoltType.INTEGER));
+        columns.add(new ColumnInfo("OUTSTANDING_TRANSACTIONS", VoltType.BIGINT));
+        columns.add(new ColumnInfo("OLDEST_TRANSACTION_AGE", VoltType.BIGINT));
+    }
+
+    @Override
+    protected void updateStatsRow(Object rowKey, Object[] rowValues) {
+        final long[] counters = m_inFlightStats.get(rowKey);
+
+        rowValues[columnNameToIndex.get("PARTITION_ID")] = rowKey;
+        rowValues[columnNameToIndex.get("OUTSTANDING_TRANSACTIONS")] = counters[0];
+        rowValues[columnNameToIndex.get("OLDEST_TRANSACTION_AGE")] =
+                TimeUnit.NANOSECONDS.toMillis(counters[1]);
+        super.updateStatsRow(rowKey, rowValues);
+    }
+
+    @Override
+    protected Iterator<Object> getStatsRowKeyIterator(boolean interval)
+    {
+        m_inFlightStats = new HashMap<Integer, long[]>();
+        ClientInterface ci = VoltDB.instance().getClientInterface();
+        if (ci != null) {
+            m_inFlightStats.putAll(ci.getInFlightStats());
+        }
+        return new ArrayList<Object>(m_inFlightStats.keySet()).iterator();
+    }
+}
@@ -63,6 +63,7 @@ import org.voltcore.messaging.VoltMessage;
 import org.voltcore.network.CipherExecutor;
 import org.voltcore.network.Connection;
 import org.voltcore.network.NIOReadStream;
+import org.voltcore.network.NetworkThreadBound;
 import org.voltcore.network.QueueMonitor;
 import org.voltcore.network.ReverseDNSPolicy;
 import org.voltcore.network.VoltNetworkPool;
@@ -86,6 +87,7 @@ import org.voltdb.catalog.SnapshotSchedule;
 import org.voltdb.client.ClientAuthScheme;
 import org.voltdb.client.ClientResponse;
 import org.voltdb.client.ProcedureCallback;
+import org.voltdb.client.ResultEncoding;
 import org.voltdb.client.TLSHandshaker;
 import org.voltdb.common.Constants;
 import org.voltdb.dtxn.InitiatorStats.InvocationInfo;
@@ -100,6 +102,7 @@ import org.voltdb.messaging.Iv2InitiateTaskMessage;
 import org.voltdb.messaging.LocalMailbox;
 import org.voltdb.messaging.MigratePartitionLeaderMessage;
 import org.voltdb.security.AuthenticationRequest;
+import org.voltdb.utils.CompressionService;
 import org.voltdb.utils.MiscUtils;
 import org.voltdb.utils.VoltTrace;
 
@@ -776,8 +779,12 @@ public class ClientInterface implements SnapshotDaemon.DaemonInitiator {
 
     }
 
-    /** A port that reads client procedure invocations and writes responses */
-    public class ClientInputHandler extends VoltProtocolHandler implements AdmissionControlGroup.ACGMember, InvocationClientHandler {
+    /**
+     * A port that reads client procedure invocations and writes responses. Its handle manager
+     * and admission control group belong to the network thread it was registered on.
+     */
+    public class ClientInputHandler extends VoltProtocolHandler
+            implements AdmissionControlGroup.ACGMember, InvocationClientHandler, NetworkThreadBound {
         public static final int MAX_READ = 8192 * 4;
 
         private Connection m_connection;
@@ -977,12 +984,14 @@ public class ClientInterface implements SnapshotDaemon.DaemonInitiator {
             if (response.isMispartitioned() || response.isMisrouted()) {
                 // If the transaction is restarted, don't send a response to the client yet.
                 if (restartTransaction(clientData.m_messageSize, clientData.m_creationTimeNanos)) {
+                    cihm.releaseInFlight(clientData);
                     return DeferredSerialization.EMPTY_MESSAGE_LENGTH;
                 }
             }
 
             final long now = System.nanoTime();
             final long delta = now - clientData.m_creationTimeNanos;
+            final long clientHandle = clientData.m_clientHandle;
 
             /*
              * Log initiator stats
@@ -997,12 +1006,15 @@ public class ClientInterface implements SnapshotDaemon.DaemonInitiator {
             final VoltTrace.TraceEventBatch traceLog = VoltTrace.log(VoltTrace.Category.CI);
             if (traceLog != null) {
                 traceLog.add(() -> VoltTrace.endAsync("recvtxn",
-                                                      clientData.m_clientHandle,
+                                                      clientHandle,
                                                       "status", Byte.toString(clientResponse.getStatus()),
                                                       "statusString", clientResponse.getStatusString()));
             }
 
-            clientResponse.setClientHandle(clientData.m_clientHandle);
+            // The in-flight record goes back to the CIHM pool, don't touch it past this point
+            cihm.releaseInFlight(clientData);
+
+            clientResponse.setClientHandle(clientHandle);
             clientResponse.setClusterRoundtrip((int)TimeUnit.NANOSECONDS.toMillis(delta));
             clientResponse.setHashes(null); // not part of wire protocol
 
@@ -1210,9 +1222,31 @@ public class ClientInterface implements SnapshotDaemon.DaemonInitiator {
 
                     //Can be null on hangup
                     if (cihm != null) {
-                        //Pass it to the network thread like a ninja
-                        //Only the network can use the CIHM
-                        cihm.connection.writeStream().fastEnqueue(new ClientResponseWork(response, cihm, procedure));
+                        final ClientResponseWork work = new ClientResponseWork(response, cihm, procedure);
+                        final ClientResponseImpl clientResponse = response.getClientResponseData();
+                        final byte resultEncoding = cihm.getResultEncoding();
+                        if (resultEncoding != 0 && !response.isMispartitioned() && !response.isMisrouted() &&
+                                clientResponse.hasEncodableResults()) {
+                            // Encoding the results is too much work for the network thread,
+                            // it only writes them once they are encoded
+                            CompressionService.submitCompressionTask(() -> {
+                                try {
+                                    clientResponse.encodeResults(resultEncoding);
+                                }
+                                catch (RuntimeException e) {
+                                    log.warn("Failed to encode result tables, sending them plain", e);
+                                }
+                                finally {
+                                    cihm.connection.writeStream().fastEnqueue(work);
+                                }
+                                return null;
+                            });
+                        }
+                        else {
+                            //Pass it to the network thread like a ninja
+                            //Only the network can use the CIHM
+                            cihm.connection.writeStream().fastEnqueue(work);
+                        }
                         Iv2Trace.logFinishTransaction(response, m_mailbox.getHSId());
                     }
                 }
@@ -1363,6 +1397,7 @@ public class ClientInterface implements SnapshotDaemon.DaemonInitiator {
             response.flattenToBuffer(buf);
             buf.flip();
             c.writeStream().enqueue(buf);
+            cihm.releaseInFlight(inFlight);
         }
 
         if (cihm.repairCallback != null) {
@@ -1514,6 +1549,13 @@ public class ClientInterface implements SnapshotDaemon.DaemonInitiator {
             authLog.info(errorMessage);
             return errorResponse(ccxn, task.clientHandle, ClientResponse.UNEXPECTED_FAILURE, errorMessage, null, false);
         }
+        if (ResultEncoding.isValid(task.getResultEncoding())) {
+            // The client can decode encoded results, use them for the rest of the connection
+            final ClientInterfaceHandleManager cihm = m_cihm.get(ccxn.connectionId());
+            if (cihm != null && cihm.getResultEncoding() != task.getResultEncoding()) {
+                cihm.setResultEncoding(task.getResultEncoding());
+            }
+        }
 
         final ClientResponseImpl errResp = m_dispatcher.dispatch(task, handler, ccxn, user, null, false);
 
@@ -1996,6 +2038,22 @@ public class ClientInterface implements SnapshotDaemon.DaemonInitiator {
         return client_stats;
     }
 
+    /**
+     * @return a map of partition id to {outstanding transaction count, age in nanoseconds of
+     * the oldest outstanding transaction} summed over all connections, including the internal
+     * adapters. The MP, short circuit read and NT procedure work is reported under the
+     * pseudo partition ids used in the client interface handles.
+     */
+    public Map<Integer, long[]> getInFlightStats()
+    {
+        final Map<Integer, long[]> stats = new HashMap<Integer, long[]>();
+        final long now = System.nanoTime();
+        for (ClientInterfaceHandleManager cihm : m_cihm.values()) {
+            cihm.collectInFlightStats(now, stats);
+        }
+        return stats;
+    }
+
     public SnapshotDaemon getSnapshotDaemon() {
         return m_snapshotDaemon;
     }
@@ -18,11 +18,8 @@
 package org.voltdb;
 
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 
 import org.voltcore.logging.VoltLogger;
 import org.voltcore.network.Connection;
@@ -55,7 +52,12 @@ public class ClientInterfaceHandleManager
     static final long PART_ID_SHIFT = 48;
     static final long SEQNUM_MAX = (1L << PART_ID_SHIFT) - 1L;
 
+    // Upper bound on the number of released Iv2InFlight records kept for reuse
+    static final int MAX_POOLED_IN_FLIGHTS = 256;
+
     private long m_outstandingTxns;
+    private Iv2InFlight m_freeInFlights = null;
+    private int m_freeInFlightCount = 0;
     public final boolean isAdmin;
     public final Connection connection;
     public final ClientInterfaceRepairCallback repairCallback;
@@ -63,6 +65,8 @@ public class ClientInterfaceHandleManager
     final AdmissionControlGroup m_acg;
 
     private volatile boolean m_wantsTopologyUpdates = false;
+    // result table encodings the client asked for, see ResultEncoding
+    private volatile byte m_resultEncoding = 0;
 
     private ImmutableMap<Integer, PartitionInFlightTracker> m_trackerMap
         = new Builder<Integer, PartitionInFlightTracker>().build();
@@ -86,16 +90,32 @@ public class ClientInterfaceHandleManager
         }
     }
 
+    /**
+     * Client information for an outstanding invocation. Instances are pooled by
+     * the handle manager: a record returned by {@link #findHandle(long)},
+     * {@link #removeHandle(long)} or {@link #removeHandlesForPartitionAndInitiator(Integer, Long)}
+     * belongs to the caller until it is handed back with {@link #releaseInFlight(Iv2InFlight)}.
+     * Records that are never released are simply left to the garbage collector.
+     */
     static class Iv2InFlight
     {
-        final long m_ciHandle;
-        final long m_clientHandle;
-        final int m_messageSize;
-        final long m_creationTimeNanos;
-        final String m_procName;
-        final long m_initiatorHSId;
+        long m_ciHandle;
+        long m_clientHandle;
+        int m_messageSize;
+        long m_creationTimeNanos;
+        String m_procName;
+        long m_initiatorHSId;
+        // Next record in the free list while pooled
+        private Iv2InFlight m_nextFree;
+
         Iv2InFlight(long ciHandle, long clientHandle,
                 int messageSize, long creationTimeNanos, String procName, long initiatorHSId)
+        {
+            init(ciHandle, clientHandle, messageSize, creationTimeNanos, procName, initiatorHSId);
+        }
+
+        private void init(long ciHandle, long clientHandle,
+                int messageSize, long creationTimeNanos, String procName, long initiatorHSId)
         {
             m_ciHandle = ciHandle;
             m_clientHandle = clientHandle;
@@ -106,13 +126,133 @@ public class ClientInterfaceHandleManager
         }
     }
 
+    /**
+     * Outstanding invocations for one partition, kept in an open addressing table of
+     * primitive handles so that neither the lookup nor the insertion allocates.
+     * Handles are issued with consecutive sequence numbers, so the home slot of a handle
+     * is simply its sequence number modulo the capacity. As long as responses arrive
+     * roughly in order, every handle sits in its home slot and the table behaves like
+     * a ring buffer; late responses fall back to linear probing.
+     */
     static class PartitionInFlightTracker {
+        private static final int INITIAL_CAPACITY = 64;
+
         private final HandleGenerator m_generator;
-        private final Map<Long, Iv2InFlight> m_inFlights = new HashMap<Long, Iv2InFlight>();
+        private long[] m_handles = new long[INITIAL_CAPACITY];
+        private Iv2InFlight[] m_inFlights = new Iv2InFlight[INITIAL_CAPACITY];
+        private int m_size = 0;
 
         private PartitionInFlightTracker(int partitionId) {
             m_generator = new HandleGenerator(partitionId);
         }
+
+        int size() {
+            return m_size;
+        }
+
+        void put(Iv2InFlight inFlight) {
+            // Keep the load factor at or below one half so probe sequences stay short
+            if ((m_size + 1) * 2 > m_inFlights.length) {
+                resize(m_inFlights.length * 2);
+            }
+            insert(m_handles, m_inFlights, inFlight);
+            m_size++;
+        }
+
+        Iv2InFlight remove(long ciHandle) {
+            final int mask = m_inFlights.length - 1;
+            int slot = (int)(ciHandle & mask);
+            Iv2InFlight inFlight;
+            while ((inFlight = m_inFlights[slot]) != null) {
+                if (m_handles[slot] == ciHandle) {
+                    deleteSlot(slot, mask);
+                    m_size--;
+                    return inFlight;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return null;
+        }
+
+        void collectAll(List<Iv2InFlight> out) {
+            for (Iv2InFlight inFlight : m_inFlights) {
+                if (inFlight != null) {
+                    out.add(inFlight);
+                }
+            }
+        }
+
+        /**
+         * Add every tracked invocation which matches (or, if <code>matching</code> is false,
+         * does not match) the given initiator to <code>out</code>. The table is not modified.
+         */
+        void collect(long initiatorHSId, boolean matching, List<Iv2InFlight> out) {
+            for (Iv2InFlight inFlight : m_inFlights) {
+                if (inFlight != null && (inFlight.m_initiatorHSId == initiatorHSId) == matching) {
+                    out.add(inFlight);
+                }
+            }
+        }
+
+        /**
+         * @return the creation time of the oldest tracked invocation or {@link Long#MAX_VALUE}
+         * if there is none. This may be called from a thread other than the one that owns the
+         * tracker, in which case the result is only approximate.
+         */
+        long oldestCreationTimeNanos() {
+            final Iv2InFlight[] inFlights = m_inFlights;
+            long oldest = Long.MAX_VALUE;
+            for (Iv2InFlight inFlight : inFlights) {
+                if (inFlight != null && inFlight.m_creationTimeNanos < oldest) {
+                    oldest = inFlight.m_creationTimeNanos;
+                }
+            }
+            return oldest;
+        }
+
+        private void resize(int capacity) {
+            long[] handles = new long[capacity];
+            Iv2InFlight[] inFlights = new Iv2InFlight[capacity];
+            for (Iv2InFlight inFlight : m_inFlights) {
+                if (inFlight != null) {
+                    insert(handles, inFlights, inFlight);
+                }
+            }
+            m_handles = handles;
+            m_inFlights = inFlights;
+        }
+
+        private static void insert(long[] handles, Iv2InFlight[] inFlights, Iv2InFlight inFlight) {
+            final int mask = inFlights.length - 1;
+            int slot = (int)(inFlight.m_ciHandle & mask);
+            while (inFlights[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+            handles[slot] = inFlight.m_ciHandle;
+            inFlights[slot] = inFlight;
+        }
+
+        /**
+         * Empty a slot using backward shift deletion: later entries of the same probe
+         * run are moved up into the hole so that no tombstones are needed.
+         */
+        private void deleteSlot(int hole, int mask) {
+            int slot = hole;
+            while (true) {
+                slot = (slot + 1) & mask;
+                if (m_inFlights[slot] == null) {
+                    break;
+                }
+                int home = (int)(m_handles[slot] & mask);
+                // The entry may move only if the hole lies on its probe path
+                if (((slot - home) & mask) >= ((slot - hole) & mask)) {
+                    m_handles[hole] = m_handles[slot];
+                    m_inFlights[hole] = m_inFlights[slot];
+                    hole = slot;
+                }
+            }
+            m_inFlights[hole] = null;
+        }
     }
 
     ClientInterfaceHandleManager(boolean isAdmin, Connection connection, ClientInterfaceRepairCallback repairCallback, AdmissionControlGroup acg)
@@ -148,6 +288,14 @@ public class ClientInterfaceHandleManager
                 return super.removeHandle(ciHandle);
             }
             @Override
+            synchronized void releaseInFlight(Iv2InFlight inFlight) {
+                super.releaseInFlight(inFlight);
+            }
+            @Override
+            synchronized void collectInFlightStats(long nowNanos, Map<Integer, long[]> stats) {
+                super.collectInFlightStats(nowNanos, stats);
+            }
+            @Override
             synchronized long getOutstandingTxns() {
                 return super.getOutstandingTxns();
             }
@@ -206,10 +354,19 @@ public class ClientInterfaceHandleManager
         }
 
         long ciHandle = tracker.m_generator.getNextHandle();
-        Iv2InFlight inFlight = new Iv2InFlight(ciHandle, clientHandle, messageSize,
-                                               creationTimeNanos, procName, initiatorHSId);
+        Iv2InFlight inFlight = m_freeInFlights;
+        if (inFlight != null) {
+            m_freeInFlights = inFlight.m_nextFree;
+            m_freeInFlightCount--;
+            inFlight.m_nextFree = null;
+            inFlight.init(ciHandle, clientHandle, messageSize,
+                          creationTimeNanos, procName, initiatorHSId);
+        } else {
+            inFlight = new Iv2InFlight(ciHandle, clientHandle, messageSize,
+                                       creationTimeNanos, procName, initiatorHSId);
+        }
 
-        tracker.m_inFlights.put(ciHandle, inFlight);
+        tracker.put(inFlight);
 
         m_outstandingTxns++;
         m_acg.increaseBackpressure(messageSize);
@@ -235,7 +392,7 @@ public class ClientInterfaceHandleManager
             return null;
         }
 
-        Iv2InFlight inFlight = partitionStuff.m_inFlights.remove(ciHandle);
+        Iv2InFlight inFlight = partitionStuff.remove(ciHandle);
         if (inFlight != null) {
             m_acg.reduceBackpressure(inFlight.m_messageSize);
             m_outstandingTxns--;
@@ -262,7 +419,7 @@ public class ClientInterfaceHandleManager
             return null;
         }
 
-        Iv2InFlight inFlight = partitionStuff.m_inFlights.remove(ciHandle);
+        Iv2InFlight inFlight = partitionStuff.remove(ciHandle);
         if (inFlight != null) {
             m_acg.reduceBackpressure(inFlight.m_messageSize);
             m_outstandingTxns--;
@@ -272,6 +429,51 @@ public class ClientInterfaceHandleManager
         return null;
     }
 
+    /**
+     * Return a record obtained from {@link #findHandle(long)}, {@link #removeHandle(long)} or
+     * {@link #removeHandlesForPartitionAndInitiator(Integer, Long)} for reuse. The caller
+     * must not touch the record afterwards.
+     */
+    void releaseInFlight(Iv2InFlight inFlight)
+    {
+        assert(!shouldCheckThreadIdAssertion() || m_expectedThreadId == Thread.currentThread().getId());
+        if (m_freeInFlightCount < MAX_POOLED_IN_FLIGHTS) {
+            // Drop the procedure name reference so a pooled record pins nothing
+            inFlight.m_procName = null;
+            inFlight.m_nextFree = m_freeInFlights;
+            m_freeInFlights = inFlight;
+            m_freeInFlightCount++;
+        }
+    }
+
+    /**
+     * Add the in-flight invocations of this connection to <code>stats</code>, which maps
+     * a partition id (including the MP, short circuit read and NT procedure pseudo partitions)
+     * to {outstanding transaction count, age in nanoseconds of the oldest outstanding handle}.
+     * The stats thread reads the trackers without synchronizing with the network thread,
+     * so the numbers are approximate in the same way {@link #getOutstandingTxns()} is.
+     */
+    void collectInFlightStats(long nowNanos, Map<Integer, long[]> stats)
+    {
+        for (Map.Entry<Integer, PartitionInFlightTracker> e : m_trackerMap.entrySet()) {
+            PartitionInFlightTracker tracker = e.getValue();
+            int count = tracker.size();
+            if (count <= 0) {
+                continue;
+            }
+            long[] partitionStats = stats.get(e.getKey());
+            if (partitionStats == null) {
+                partitionStats = new long[2];
+                stats.put(e.getKey(), partitionStats);
+            }
+            partitionStats[0] += count;
+            long oldest = tracker.oldestCreationTimeNanos();
+            if (oldest != Long.MAX_VALUE) {
+                partitionStats[1] = Math.max(partitionStats[1], nowNanos - oldest);
+            }
+        }
+    }
+
     /** Return a map of ConnectionId::(adminmode, txn count) */
     long getOutstandingTxns()
     {
@@ -287,7 +489,9 @@ public class ClientInterfaceHandleManager
     void freeOutstandingTxns() {
         assert(!shouldCheckThreadIdAssertion() || m_expectedThreadId == Thread.currentThread().getId());
         for (PartitionInFlightTracker tracker : m_trackerMap.values()) {
-            for (Iv2InFlight inflight : tracker.m_inFlights.values()) {
+            List<Iv2InFlight> inFlights = new ArrayList<Iv2InFlight>(tracker.size());
+            tracker.collectAll(inFlights);
+            for (Iv2InFlight inflight : inFlights) {
                 m_outstandingTxns--;
                 m_acg.reduceBackpressure(inflight.m_messageSize);
             }
@@ -297,18 +501,16 @@ public class ClientInterfaceHandleManager
     private void collectAndRemovePartitionInFlightRequests(Integer partitionId, Long initiatorHSId, List<Iv2InFlight> retval) {
         PartitionInFlightTracker partitionStuff = m_trackerMap.get(partitionId);
         if (partitionStuff != null) {
-            Iterator<Entry<Long, Iv2InFlight>> iter = partitionStuff.m_inFlights.entrySet().iterator();
-            while (iter.hasNext()) {
-                Entry<Long, Iv2InFlight> entry = iter.next();
-                if (entry.getValue().m_initiatorHSId != initiatorHSId) {
-                    if (tmLog.isTraceEnabled()) {
-                        tmLog.trace("cleared response for handle " + entry.getKey());
-                    }
-                    iter.remove();
-                    retval.add(entry.getValue());
-                    m_outstandingTxns--;
-                    m_acg.reduceBackpressure(entry.getValue().m_messageSize);
+            int first = retval.size();
+            partitionStuff.collect(initiatorHSId, false, retval);
+            for (int i = first; i < retval.size(); i++) {
+                Iv2InFlight inFlight = retval.get(i);
+                if (tmLog.isTraceEnabled()) {
+                    tmLog.trace("cleared response for handle " + inFlight.m_ciHandle);
                 }
+                partitionStuff.remove(inFlight.m_ciHandle);
+                m_outstandingTxns--;
+                m_acg.reduceBackpressure(inFlight.m_messageSize);
             }
         }
     }
@@ -346,6 +548,14 @@ public class ClientInterfaceHandleManager
         return m_wantsTopologyUpdates;
     }
 
+    public void setResultEncoding(byte resultEncoding) {
+        m_resultEncoding = resultEncoding;
+    }
+
+    public byte getResultEncoding() {
+        return m_resultEncoding;
+    }
+
     public static int getPartIdFromHandle(long handle)
     {
         // SHORT_CIRCUIT_PART_ID has 15 bits
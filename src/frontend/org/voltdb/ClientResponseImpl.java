@@ -27,6 +27,7 @@ import org.json_voltpatches.JSONStringer;
 import org.voltcore.utils.Pair;
 import org.voltdb.client.ClientResponse;
 import org.voltdb.client.ClientUtils;
+import org.voltdb.client.ResultEncoding;
 import org.voltdb.common.Constants;
 import org.voltdb.utils.SerializationHelper;
 
@@ -45,6 +46,9 @@ public class ClientResponseImpl implements ClientResponse, JSONString {
     private byte encodedAppStatusString[];
     private VoltTable[] results = new VoltTable[0];
     private int[] m_hashes = null;
+    // encoding of the encoded result tables, null where a table is sent plain
+    private byte m_resultEncoding = 0;
+    private byte[][] m_encodedResults = null;
 
     private int clusterRoundTripTime = 0;
     private int clientRoundTripTime = 0;
@@ -59,6 +63,9 @@ public class ClientResponseImpl implements ClientResponse, JSONString {
     static final String JSON_TYPE_KEY = "type";
     static final String JSON_EXCEPTION_KEY = "exception";
 
+    // Result tables smaller than this are sent as they are
+    static final int MIN_ENCODED_RESULT_SIZE = Integer.getInteger("MIN_ENCODED_RESULT_SIZE", 16 * 1024);
+
     // Error string returned when a replayed clog transaction is ignored or a replayed DR
     // transaction is a duplicate
     public static final String IGNORED_TRANSACTION = "Ignored replayed transaction";
@@ -129,6 +136,7 @@ public class ClientResponseImpl implements ClientResponse, JSONString {
 
         this.status = status;
         this.results = results;
+        this.m_encodedResults = null;
         this.statusString = statusString;
         this.setProperly = true;
     }
@@ -168,6 +176,45 @@ public class ClientResponseImpl implements ClientResponse, JSONString {
         return m_hashes;
     }
 
+    /**
+     * @return true if some result table is large enough to be encoded
+     */
+    public boolean hasEncodableResults() {
+        for (VoltTable vt : results) {
+            if (vt.getSerializedSize() >= MIN_ENCODED_RESULT_SIZE) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Encode the large result tables, for a client which asked for it.
+     * This is where all the encoding work is done, so don't call it on a
+     * network thread. Serialization then only writes the encoded tables.
+     *
+     * @param encoding  {@link ResultEncoding} flags, 0 to send plain tables
+     */
+    public void encodeResults(byte encoding) {
+        m_resultEncoding = encoding;
+        m_encodedResults = null;
+        if (encoding == 0) {
+            return;
+        }
+        byte[][] encodedResults = new byte[results.length][];
+        boolean encoded = false;
+        for (int i = 0; i < results.length; i++) {
+            if (results[i].getSerializedSize() >= MIN_ENCODED_RESULT_SIZE) {
+                encodedResults[i] = ResultEncoding.encode(results[i], encoding);
+                encoded |= encodedResults[i] != null;
+            }
+        }
+        // Plain tables don't need the per table encoding byte
+        if (encoded) {
+            m_encodedResults = encodedResults;
+        }
+    }
+
     public void initFromBuffer(ByteBuffer buf) throws IOException {
         buf.get();//Skip version byte
         clientHandle = buf.getLong();
@@ -201,15 +248,22 @@ public class ClientResponseImpl implements ClientResponse, JSONString {
         if (tableCount < 0) {
             throw new IOException("Table count is negative: " + tableCount);
         }
+        final boolean encodedResults = (presentFields & (1 << 3)) != 0;
         results = new VoltTable[tableCount];
         for (int i = 0; i < tableCount; i++) {
+            final byte encoding = encodedResults ? buf.get() : 0;
             int tableSize = buf.getInt();
             final int originalLimit = buf.limit();
             buf.limit(buf.position() + tableSize);
             final ByteBuffer slice = buf.slice();
             buf.position(buf.position() + tableSize);
             buf.limit(originalLimit);
-            results[i] = new VoltTable(slice, false);
+            if (encoding != 0) {
+                results[i] = ResultEncoding.decode(slice, encoding);
+            }
+            else {
+                results[i] = new VoltTable(slice, false);
+            }
         }
         setProperly = true;
     }
@@ -235,8 +289,16 @@ public class ClientResponseImpl implements ClientResponse, JSONString {
             msgsize += 2; // short array len
             msgsize += m_hashes.length * 4; // array of ints
         }
-        for (VoltTable vt : results) {
-            msgsize += vt.getSerializedSize();
+        if (m_encodedResults != null) {
+            msgsize += results.length; // encoding of each table
+        }
+        for (int i = 0; i < results.length; i++) {
+            if (m_encodedResults != null && m_encodedResults[i] != null) {
+                msgsize += 4 + m_encodedResults[i].length;
+            }
+            else {
+                msgsize += results[i].getSerializedSize();
+            }
         }
 
         return msgsize;
@@ -259,6 +321,9 @@ public class ClientResponseImpl implements ClientResponse, JSONString {
         if (m_hashes != null) {
             presentFields |= 1 << 4;
         }
+        if (m_encodedResults != null) {
+            presentFields |= 1 << 3;
+        }
         buf.put(presentFields);
         buf.put(status);
         if (statusString != null) {
@@ -279,9 +344,20 @@ public class ClientResponseImpl implements ClientResponse, JSONString {
             }
         }
         buf.putShort((short) results.length);
-        for (VoltTable vt : results)
+        for (int i = 0; i < results.length; i++)
         {
-            vt.flattenToBuffer(buf);
+            if (m_encodedResults == null) {
+                results[i].flattenToBuffer(buf);
+            }
+            else if (m_encodedResults[i] == null) {
+                buf.put((byte) 0);
+                results[i].flattenToBuffer(buf);
+            }
+            else {
+                buf.put(m_resultEncoding);
+                buf.putInt(m_encodedResults[i].length);
+                buf.put(m_encodedResults[i]);
+            }
         }
         return buf;
     }
@@ -390,5 +466,6 @@ public class ClientResponseImpl implements ClientResponse, JSONString {
 
     public void dropResultTable() {
         results = new VoltTable[] {};
+        m_encodedResults = null;
     }
 }
@@ -44,6 +44,7 @@ import org.voltcore.utils.Bits;
 import org.voltcore.utils.CoreUtils;
 import org.voltcore.utils.DBBPool;
 import org.voltcore.utils.DBBPool.BBContainer;
+import org.voltcore.utils.Pair;
 import org.voltdb.messaging.FastSerializer;
 import org.voltdb.sysprocs.saverestore.SnapshotUtil;
 import org.voltdb.utils.CompressionService;
@@ -100,6 +101,9 @@ public class DefaultSnapshotDataTarget implements SnapshotDataTarget {
     @SuppressWarnings("unused")
     private final String m_tableName;
 
+    private final CompressionService.Codec m_codec;
+    private final int m_compressionLevel;
+
     private final AtomicInteger m_outstandingWriteTasks = new AtomicInteger(0);
     private final ReentrantLock m_outstandingWriteTasksLock = new ReentrantLock();
     private final Condition m_noMoreOutstandingWriteTasksCondition =
@@ -130,6 +134,25 @@ public class DefaultSnapshotDataTarget implements SnapshotDataTarget {
         }
     }
 
+    /*
+     * Codec used for native snapshots which don't ask for one, as codec[:level], e.g. lz4:1
+     */
+    public static final Pair<CompressionService.Codec, Integer> SNAPSHOT_COMPRESSION;
+
+    static {
+        Pair<CompressionService.Codec, Integer> codec = Pair.of(CompressionService.Codec.SNAPPY, 0);
+        String spec = System.getProperty("SNAPSHOT_COMPRESSION");
+        if (spec != null) {
+            try {
+                codec = CompressionService.Codec.parse(spec);
+                SNAP_LOG.info("Compressing snapshots with " + spec);
+            } catch (IllegalArgumentException e) {
+                SNAP_LOG.warn("Invalid snapshot compression \"" + spec + "\", Snappy will be used: " + e.getMessage());
+            }
+        }
+        SNAPSHOT_COMPRESSION = codec;
+    }
+
     public static final UnsynchronizedRateLimiter SNAPSHOT_RATELIMITER =
             UnsynchronizedRateLimiter.create(SNAPSHOT_RATELIMIT_MEGABYTES * 1024.0 * 1024.0, 1, TimeUnit.SECONDS);
 
@@ -163,7 +186,39 @@ public class DefaultSnapshotDataTarget implements SnapshotDataTarget {
                 schemaTable,
                 txnId,
                 timestamp,
-                new int[] { 0, 0, 0, 2 });
+                SNAPSHOT_COMPRESSION.getFirst(),
+                SNAPSHOT_COMPRESSION.getSecond());
+    }
+
+    public DefaultSnapshotDataTarget(
+            final File file,
+            final int hostId,
+            final String clusterName,
+            final String databaseName,
+            final String tableName,
+            final int numPartitions,
+            final boolean isReplicated,
+            final List<Integer> partitionIds,
+            final VoltTable schemaTable,
+            final long txnId,
+            final long timestamp,
+            CompressionService.Codec codec,
+            int compressionLevel) throws IOException {
+        this(
+                file,
+                hostId,
+                clusterName,
+                databaseName,
+                tableName,
+                numPartitions,
+                isReplicated,
+                partitionIds,
+                schemaTable,
+                txnId,
+                timestamp,
+                new int[] { 0, 0, 0, 2 },
+                codec,
+                compressionLevel);
     }
 
     public DefaultSnapshotDataTarget(
@@ -180,9 +235,44 @@ public class DefaultSnapshotDataTarget implements SnapshotDataTarget {
             final long timestamp,
             int version[]
             ) throws IOException {
+        this(
+                file,
+                hostId,
+                clusterName,
+                databaseName,
+                tableName,
+                numPartitions,
+                isReplicated,
+                partitionIds,
+                schemaTable,
+                txnId,
+                timestamp,
+                version,
+                SNAPSHOT_COMPRESSION.getFirst(),
+                SNAPSHOT_COMPRESSION.getSecond());
+    }
+
+    public DefaultSnapshotDataTarget(
+            final File file,
+            final int hostId,
+            final String clusterName,
+            final String databaseName,
+            final String tableName,
+            final int numPartitions,
+            final boolean isReplicated,
+            final List<Integer> partitionIds,
+            final VoltTable schemaTable,
+            final long txnId,
+            final long timestamp,
+            int version[],
+            CompressionService.Codec codec,
+            int compressionLevel
+            ) throws IOException {
         String hostname = CoreUtils.getHostnameOrAddress();
         m_file = file;
         m_tableName = tableName;
+        m_codec = codec;
+        m_compressionLevel = compressionLevel;
         m_fos = new FileOutputStream(file);
         m_channel = m_fos.getChannel();
         m_needsFinalClose = !isReplicated;
@@ -205,6 +295,7 @@ public class DefaultSnapshotDataTarget implements SnapshotDataTarget {
             stringer.keySymbolValuePair("tableName", tableName.toUpperCase());
             stringer.keySymbolValuePair("isReplicated", isReplicated);
             stringer.keySymbolValuePair("isCompressed", true);
+            stringer.keySymbolValuePair("compressionCodec", codec.name());
             stringer.keySymbolValuePair("checksumType", "CRC32C");
             stringer.keySymbolValuePair("timestamp", timestamp);
             /*
@@ -445,7 +536,7 @@ public class DefaultSnapshotDataTarget implements SnapshotDataTarget {
              * that is 16 bytes, but 4 of those are done by CompressionService
              */
             cont.b().position(12);
-            compressionTask = CompressionService.compressAndCRC32cBufferAsync(tupleData, cont);
+            compressionTask = CompressionService.compressAndCRC32cBufferAsync(tupleData, cont, m_codec, m_compressionLevel);
         }
         final Future<BBContainer> compressionTaskFinal = compressionTask;
 
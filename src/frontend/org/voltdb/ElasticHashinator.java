@@ -22,6 +22,7 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.lang.Thread.State;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.HashSet;
@@ -39,6 +40,7 @@ import org.json_voltpatches.JSONException;
 import org.json_voltpatches.JSONStringer;
 import org.voltcore.utils.Bits;
 import org.voltcore.utils.Pair;
+import org.voltdb.client.HashinatorLite;
 import org.voltdb.utils.CompressionService;
 
 import sun.misc.Cleaner;
@@ -76,6 +78,12 @@ public class ElasticHashinator extends TheHashinator {
      */
     private final long m_tokens;
     private final int m_tokenCount;
+    /*
+     * Partition for each slice of the ring, or -1 where a token splits the slice,
+     * see HashinatorLite.buildPartitionLookup
+     */
+    private final int m_partitionLookup[];
+    private static final int LOOKUP_SHIFT = 32 - HashinatorLite.LOOKUP_BITS;
 
     // Provide a hook for the GC
     @SuppressWarnings("unused")
@@ -127,6 +135,7 @@ public class ElasticHashinator extends TheHashinator {
                 : updateRaw(configBytes));
         m_tokens = p.getFirst();
         m_tokenCount = p.getSecond();
+        m_partitionLookup = HashinatorLite.buildPartitionLookup(m_tokens, m_tokenCount);
         m_cleaner = Cleaner.create(this, new Deallocator(m_tokens, m_tokenCount * 8));
         m_configBytes = !cooked ? Suppliers.ofInstance(configBytes) : m_configBytesSupplier;
         m_cookedBytes = cooked ? Suppliers.ofInstance(configBytes) : m_cookedBytesSupplier;
@@ -166,6 +175,7 @@ public class ElasticHashinator extends TheHashinator {
             ii++;
         }
         m_tokenCount = tokens.size();
+        m_partitionLookup = HashinatorLite.buildPartitionLookup(m_tokens, m_tokenCount);
         m_configBytes = m_configBytesSupplier;
         m_cookedBytes = m_cookedBytesSupplier;
     }
@@ -282,6 +292,12 @@ public class ElasticHashinator extends TheHashinator {
      * it wraps around to the last token in the ring closest to Long.MAX_VALUE
      */
     public int partitionForToken(int hash) {
+        if (m_partitionLookup != null) {
+            final int partition = m_partitionLookup[hash >>> LOOKUP_SHIFT];
+            if (partition >= 0) {
+                return partition;
+            }
+        }
         long token = getTokenPtr(hash);
         return Bits.unsafe.getInt(token + 4);
     }
@@ -343,6 +359,29 @@ public class ElasticHashinator extends TheHashinator {
         return partitionForToken(token);
     }
 
+    @Override
+    public void getHashedPartitionsForLongs(long[] values, int[] partitions) {
+        Preconditions.checkArgument(partitions.length >= values.length);
+        // Same little endian layout VoltType.valueToBytes produces, without a buffer per key
+        final ByteBuffer buf = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+        for (int ii = 0; ii < values.length; ii++) {
+            if (values[ii] == Long.MIN_VALUE) {
+                partitions[ii] = 0;
+            } else {
+                buf.putLong(0, values[ii]);
+                partitions[ii] = partitionForToken(MurmurHash3.hash3_x64_128(buf, 0, 8, 0));
+            }
+        }
+    }
+
+    @Override
+    public void getHashedPartitionsForBytes(byte[][] values, int[] partitions) {
+        Preconditions.checkArgument(partitions.length >= values.length);
+        for (int ii = 0; ii < values.length; ii++) {
+            partitions[ii] = hashinateBytes(values[ii]);
+        }
+    }
+
     @Override
     public HashinatorConfig pGetCurrentConfig() {
         return new HashinatorConfig(m_configBytes.get(), m_tokens, m_tokenCount) {
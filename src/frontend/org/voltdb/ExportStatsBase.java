@@ -39,10 +39,11 @@ public class ExportStatsBase extends StatsSource {
         public final long m_maxLatency;
         public final long m_queueGap;
         public final String m_status;
+        public final int m_taskQueueDepth;
 
         public ExportStatsRow(int partitionId, int siteId, String sourceName, String exportTarget, String exportingRole,
                 long tupleCount, long tuplesPending, long lastQueuedTimestamp, long lastAckedTimestamp,
-                long averageLatency, long maxLatency, long queueGap, String status) {
+                long averageLatency, long maxLatency, long queueGap, String status, int taskQueueDepth) {
             m_partitionId = partitionId;
             m_siteId = siteId;
             m_sourceName = sourceName;
@@ -56,6 +57,7 @@ public class ExportStatsBase extends StatsSource {
             m_maxLatency = maxLatency;
             m_queueGap = queueGap;
             m_status = status;
+            m_taskQueueDepth = taskQueueDepth;
         }
     }
 
@@ -79,6 +81,8 @@ public class ExportStatsBase extends StatsSource {
         public static final String MAX_LATENCY = "MAX_LATENCY";
         public static final String QUEUE_GAP = "QUEUE_GAP";
         public static final String STATUS = "STATUS";
+        // tasks waiting for the source's turn on the shared export executor
+        public static final String TASK_QUEUE_DEPTH = "TASK_QUEUE_DEPTH";
     }
 
     /* Constructor */
@@ -103,6 +107,7 @@ public class ExportStatsBase extends StatsSource {
         columns.add(new ColumnInfo(Columns.MAX_LATENCY, VoltType.BIGINT));
         columns.add(new ColumnInfo(Columns.QUEUE_GAP, VoltType.BIGINT));
         columns.add(new ColumnInfo(Columns.STATUS, VoltType.STRING));
+        columns.add(new ColumnInfo(Columns.TASK_QUEUE_DEPTH, VoltType.INTEGER));
     }
 
     @Override
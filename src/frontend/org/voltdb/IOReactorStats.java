@@ -0,0 +1,87 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2019 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.voltcore.network.VoltNetworkPool;
+import org.voltcore.utils.Pair;
+import org.voltdb.VoltTable.ColumnInfo;
+
+/**
+ * One row per network thread: the server network pool threads and the pico network
+ * threads of the foreign host connections. Returned as the second table of IOSTATS.
+ * CALLBACK_TIME is in nanoseconds. MESSAGES_WRITTEN, WRITES and COALESCE_TIME (nanoseconds
+ * writes were held back to coalesce them) are only counted for foreign host connections.
+ */
+public class IOReactorStats extends StatsSource {
+    private Map<Long, Pair<String, long[]>> m_reactorStats =
+        new HashMap<Long, Pair<String, long[]>>();
+
+    public IOReactorStats() {
+        super(false);
+    }
+
+    @Override
+    protected void populateColumnSchema(ArrayList<ColumnInfo> columns) {
+        super.populateColumnSchema(columns);
+        columns.add(new ColumnInfo("THREAD_ID", VoltType.BIGINT));
+        columns.add(new ColumnInfo("THREAD_NAME", VoltType.STRING));
+        columns.add(new ColumnInfo("CONNECTIONS", VoltType.INTEGER));
+        columns.add(new ColumnInfo("SELECT_WAKEUPS", VoltType.BIGINT));
+        columns.add(new ColumnInfo("CALLBACKS", VoltType.BIGINT));
+        columns.add(new ColumnInfo("CALLBACK_TIME", VoltType.BIGINT));
+        columns.add(new ColumnInfo("BYTES_READ", VoltType.BIGINT));
+        columns.add(new ColumnInfo("BYTES_WRITTEN", VoltType.BIGINT));
+        columns.add(new ColumnInfo("MESSAGES_WRITTEN", VoltType.BIGINT));
+        columns.add(new ColumnInfo("WRITES", VoltType.BIGINT));
+        columns.add(new ColumnInfo("COALESCE_TIME", VoltType.BIGINT));
+    }
+
+    @Override
+    protected void updateStatsRow(Object rowKey, Object[] rowValues) {
+        final Pair<String, long[]> info = m_reactorStats.get(rowKey);
+        final long[] counters = info.getSecond();
+
+        rowValues[columnNameToIndex.get("THREAD_ID")] = rowKey;
+        rowValues[columnNameToIndex.get("THREAD_NAME")] = info.getFirst();
+        rowValues[columnNameToIndex.get("CONNECTIONS")] = (int)counters[VoltNetworkPool.REACTOR_CONNECTIONS];
+        rowValues[columnNameToIndex.get("SELECT_WAKEUPS")] = counters[VoltNetworkPool.REACTOR_SELECT_WAKEUPS];
+        rowValues[columnNameToIndex.get("CALLBACKS")] = counters[VoltNetworkPool.REACTOR_CALLBACKS];
+        rowValues[columnNameToIndex.get("CALLBACK_TIME")] = counters[VoltNetworkPool.REACTOR_CALLBACK_NANOS];
+        rowValues[columnNameToIndex.get("BYTES_READ")] = counters[VoltNetworkPool.REACTOR_BYTES_READ];
+        rowValues[columnNameToIndex.get("BYTES_WRITTEN")] = counters[VoltNetworkPool.REACTOR_BYTES_WRITTEN];
+        rowValues[columnNameToIndex.get("MESSAGES_WRITTEN")] = counters[VoltNetworkPool.REACTOR_MESSAGES_WRITTEN];
+        rowValues[columnNameToIndex.get("WRITES")] = counters[VoltNetworkPool.REACTOR_WRITES];
+        rowValues[columnNameToIndex.get("COALESCE_TIME")] = counters[VoltNetworkPool.REACTOR_COALESCE_NANOS];
+        super.updateStatsRow(rowKey, rowValues);
+    }
+
+    @Override
+    protected Iterator<Object> getStatsRowKeyIterator(boolean interval) {
+        try {
+            m_reactorStats = VoltDB.instance().getHostMessenger().getReactorStats(interval);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+        return new ArrayList<Object>(m_reactorStats.keySet()).iterator();
+    }
+}
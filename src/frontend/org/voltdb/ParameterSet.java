@@ -67,6 +67,16 @@ public class ParameterSet implements JSONString {
     // memoized serialized size (start assuming valid size for empty ParameterSet)
     private final int m_serializedSize;
 
+    /*
+     * Only set for a ParameterSet created by fromByteBufferNoCopy(). The parameters
+     * stay in the serialized buffer and each one is decoded from its offset the first
+     * time it is asked for. Serializing the set copies the original bytes back out.
+     * m_decoded is guarded by this and is dropped once every parameter is decoded.
+     */
+    private final ByteBuffer m_serializedParams;
+    private final int[] m_paramOffsets;
+    private boolean[] m_decoded;
+
     public static ParameterSet emptyParameterSet() {
         return EMPTY;
     }
@@ -330,11 +340,84 @@ public class ParameterSet implements JSONString {
         return new ParameterSet(params, size, encodedStrings, encodedStringArrays);
     }
 
+    /**
+     * Read a ParameterSet without decoding any of the parameters. The buffer is
+     * advanced past the set, which keeps a slice of it and decodes each parameter
+     * on first access. The bytes must not be modified while the set is in use.
+     */
+    public static ParameterSet fromByteBufferNoCopy(ByteBuffer buffer) throws IOException {
+        final ByteBuffer serialized = buffer.slice();
+
+        short count = serialized.getShort();
+        if (count < 0) {
+            throw new IllegalArgumentException("Invalid parameter length " + count + " for ParameterSet." );
+        }
+        if (count == 0) {
+            buffer.position(buffer.position() + serialized.position());
+            return EMPTY;
+        }
+        int[] offsets = new int[count];
+        for (int i = 0; i < count; ++i) {
+            offsets[i] = serialized.position();
+            skipOneParameter(serialized);
+        }
+
+        final int size = serialized.position();
+        serialized.flip();
+        buffer.position(buffer.position() + size);
+
+        return new ParameterSet(serialized, offsets);
+    }
+
     private ParameterSet(Object[] params, int serializedSize, byte[][] encodedStrings, byte[][][] encodedStringArrays) {
         m_params = params;
         m_serializedSize = serializedSize;
         m_encodedStrings = encodedStrings;
         m_encodedStringArrays = encodedStringArrays;
+        m_serializedParams = null;
+        m_paramOffsets = null;
+        m_decoded = null;
+    }
+
+    private ParameterSet(ByteBuffer serializedParams, int[] paramOffsets) {
+        m_params = new Object[paramOffsets.length];
+        m_serializedSize = serializedParams.limit();
+        m_encodedStrings = null;
+        m_encodedStringArrays = null;
+        m_serializedParams = serializedParams;
+        m_paramOffsets = paramOffsets;
+        m_decoded = new boolean[paramOffsets.length];
+    }
+
+    private synchronized Object decodeParam(int index) {
+        if (m_decoded != null && !m_decoded[index]) {
+            final ByteBuffer dup = m_serializedParams.duplicate();
+            dup.position(m_paramOffsets[index]);
+            try {
+                m_params[index] = readOneParameter(dup).value;
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to decode parameter " + index, e);
+            }
+            m_decoded[index] = true;
+        }
+        return m_params[index];
+    }
+
+    /*
+     * @return all of the parameters, decoding the ones not accessed yet
+     */
+    private Object[] params() {
+        if (m_serializedParams != null) {
+            synchronized (this) {
+                if (m_decoded != null) {
+                    for (int i = 0; i < m_params.length; ++i) {
+                        decodeParam(i);
+                    }
+                    m_decoded = null;
+                }
+            }
+        }
+        return m_params;
     }
 
     static Object limitType(Object o) {
@@ -347,6 +430,9 @@ public class ParameterSet implements JSONString {
     }
 
     public Object getParam(int index) {
+        if (m_serializedParams != null) {
+            return decodeParam(index);
+        }
         return m_params[index];
     }
 
@@ -359,7 +445,7 @@ public class ParameterSet implements JSONString {
      * @return
      */
     public Object[] toArray() {
-        return m_params.clone();
+        return params().clone();
     }
 
     public int size() {
@@ -386,7 +472,7 @@ public class ParameterSet implements JSONString {
             throw new RuntimeException("Invalid partition parameter requested.");
         }
         for (int i = 0; i < partitionIndex; ++i) {
-            readOneParameter(unserializedParams);
+            skipOneParameter(unserializedParams);
         }
         OneParamInfo opi = readOneParameter(unserializedParams);
         unserializedParams.rewind();
@@ -506,11 +592,12 @@ public class ParameterSet implements JSONString {
 
     @Override
     public String toString() {
+        final Object[] params = params();
         StringBuilder b = new StringBuilder();
         b.append("ParameterSet:");
-        for (int i = 0; i < m_params.length; ++i) {
-            b.append(",param[" + i + "]=" + (m_params[i] == null ? "NULL"
-                    : m_params[i].toString() + "(" + m_params[i].getClass().getName() + ")"));
+        for (int i = 0; i < params.length; ++i) {
+            b.append(",param[" + i + "]=" + (params[i] == null ? "NULL"
+                    : params[i].toString() + "(" + params[i].getClass().getName() + ")"));
         }
         return new String(b);
     }
@@ -520,7 +607,7 @@ public class ParameterSet implements JSONString {
         JSONStringer js = new JSONStringer();
         try {
             js.array();
-            for (Object o : m_params) {
+            for (Object o : params()) {
                 if(o instanceof Double) {
                     Double dval = (Double) o;
                     if (dval.isNaN()) {
@@ -697,7 +784,120 @@ public class ParameterSet implements JSONString {
         return retval;
     }
 
+    /*
+     * Step over one serialized parameter reading only its type and length prefixes,
+     * so strings, varbinaries and arrays are not copied out of the buffer.
+     */
+    static private void skipOneParameter(ByteBuffer in) throws IOException {
+        final int start = in.position();
+        byte nextTypeByte = in.get();
+        if (nextTypeByte == ARRAY) {
+            VoltType elementType;
+            byte etype = in.get();
+            try {
+                elementType = VoltType.get(etype);
+            } catch (AssertionError ae) {
+                throw new RuntimeException("ParameterSet doesn't support type " + etype);
+            }
+            switch (elementType) {
+                case TINYINT: {
+                    final int count = in.getInt();
+                    if (count > VoltType.MAX_VALUE_LENGTH) {
+                        throw new IOException("Array length is greater then the max of 1 megabyte " + count);
+                    }
+                    skipBytes(in, count);
+                    break;
+                }
+                case SMALLINT:
+                case INTEGER:
+                case BIGINT:
+                case FLOAT:
+                case TIMESTAMP:
+                case DECIMAL:
+                case GEOGRAPHY_POINT:
+                    skipBytes(in, readArrayCount(in) * elementType.getLengthInBytesForFixedTypesWithoutCheck());
+                    break;
+                case STRING:
+                case VARBINARY:
+                case GEOGRAPHY:
+                    for (int i = readArrayCount(in); i > 0; --i) {
+                        final int len = in.getInt();
+                        if (len != VoltType.NULL_STRING_LENGTH) {
+                            skipBytes(in, len);
+                        }
+                    }
+                    break;
+                case VOLTTABLE:
+                    for (int i = readArrayCount(in); i > 0; --i) {
+                        skipBytes(in, in.getInt());
+                    }
+                    break;
+                default:
+                    in.position(start);
+                    readOneParameter(in);
+                    break;
+            }
+            return;
+        }
+
+        VoltType nextType;
+        try {
+            nextType = VoltType.get(nextTypeByte);
+        } catch (AssertionError ae) {
+            throw new RuntimeException("ParameterSet doesn't support type " + nextTypeByte);
+        }
+        switch (nextType) {
+            case NULL:
+                break;
+            case TINYINT:
+            case SMALLINT:
+            case INTEGER:
+            case BIGINT:
+            case FLOAT:
+            case TIMESTAMP:
+            case DECIMAL:
+            case GEOGRAPHY_POINT:
+            case BOOLEAN:
+                skipBytes(in, nextType.getLengthInBytesForFixedTypesWithoutCheck());
+                break;
+            case STRING:
+            case VARBINARY:
+            case GEOGRAPHY: {
+                final int len = in.getInt();
+                if (len != VoltType.NULL_STRING_LENGTH) {
+                    skipBytes(in, len);
+                }
+                break;
+            }
+            case VOLTTABLE:
+                skipBytes(in, in.getInt());
+                break;
+            default:
+                throw new RuntimeException("ParameterSet doesn't support type " + nextType);
+        }
+    }
+
+    static private int readArrayCount(ByteBuffer in) throws IOException {
+        final int count = in.getShort();
+        if (count < 0) {
+            throw new IOException("Array length is negative " + count);
+        }
+        return count;
+    }
+
+    static private void skipBytes(ByteBuffer in, int length) throws IOException {
+        if (length < 0 || length > in.remaining()) {
+            throw new IOException("Invalid parameter length " + length + " with " + in.remaining() +
+                    " bytes remaining");
+        }
+        in.position(in.position() + length);
+    }
+
     public void flattenToBuffer(ByteBuffer buf) throws IOException {
+        if (m_serializedParams != null) {
+            buf.put(m_serializedParams.duplicate());
+            return;
+        }
 
         buf.putShort((short)m_params.length);
 
@@ -960,7 +1160,7 @@ public class ParameterSet implements JSONString {
             return false;
         }
         ParameterSet other = (ParameterSet) obj;
-        return Arrays.deepEquals(m_params, other.m_params);
+        return Arrays.deepEquals(params(), other.params());
     }
 
     /* (non-Javadoc)
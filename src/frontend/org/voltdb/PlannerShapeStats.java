@@ -0,0 +1,139 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2019 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.voltdb.VoltTable.ColumnInfo;
+
+import com.google_voltpatches.common.cache.Cache;
+import com.google_voltpatches.common.cache.CacheBuilder;
+
+/**
+ * The ad hoc statement shapes which had to be fully planned most often, one row per shape.
+ * A shape is a statement with its constants parameterized, SQL_TEXT is the latest statement
+ * seen with that shape. CACHE2_HITS counts the times the shape was found in the parameterized
+ * plan cache instead. Counts are since the shape started being tracked; the least recently
+ * seen shapes are dropped beyond MAX_TRACKED_SHAPES. Returned as the second table of PLANNER.
+ */
+public class PlannerShapeStats extends StatsSource {
+    // number of shapes reported
+    static final int TOP_SHAPES = Integer.getInteger("PLANNER_STATS_TOP_SHAPES", 10);
+    static final int MAX_TRACKED_SHAPES = 1000;
+    static final int MAX_SQL_TEXT_LENGTH = 1024;
+
+    private static class ShapeCounts {
+        volatile String m_sqlText;
+        final AtomicLong m_misses = new AtomicLong();
+        final AtomicLong m_hits = new AtomicLong();
+    }
+
+    private final Cache<String, ShapeCounts> m_shapes =
+            CacheBuilder.newBuilder().maximumSize(MAX_TRACKED_SHAPES).build();
+
+    // shapes picked for the rows of the current stats request
+    private Map<Object, ShapeCounts> m_topShapes = new HashMap<Object, ShapeCounts>();
+
+    public PlannerShapeStats() {
+        super(false);
+    }
+
+    /**
+     * Record a statement that had to be fully planned.
+     *
+     * @param parsedToken  the parameterized statement, as used for the level 2 cache
+     * @param sql          the statement text
+     */
+    public void recordMiss(String parsedToken, String sql) {
+        shapeCounts(parsedToken, sql).m_misses.incrementAndGet();
+    }
+
+    /**
+     * Record a statement whose plan came from the level 2 cache.
+     */
+    public void recordHit(String parsedToken, String sql) {
+        // only shapes which have missed are interesting
+        ShapeCounts counts = m_shapes.getIfPresent(parsedToken);
+        if (counts != null) {
+            counts.m_sqlText = sql;
+            counts.m_hits.incrementAndGet();
+        }
+    }
+
+    private ShapeCounts shapeCounts(String parsedToken, String sql) {
+        ShapeCounts counts = m_shapes.getIfPresent(parsedToken);
+        if (counts == null) {
+            ShapeCounts newCounts = new ShapeCounts();
+            counts = m_shapes.asMap().putIfAbsent(parsedToken, newCounts);
+            if (counts == null) {
+                counts = newCounts;
+            }
+        }
+        counts.m_sqlText = sql;
+        return counts;
+    }
+
+    @Override
+    protected void populateColumnSchema(ArrayList<ColumnInfo> columns) {
+        super.populateColumnSchema(columns);
+        columns.add(new ColumnInfo("SQL_TEXT", VoltType.STRING));
+        columns.add(new ColumnInfo("CACHE_MISSES", VoltType.BIGINT));
+        columns.add(new ColumnInfo("CACHE2_HITS", VoltType.BIGINT));
+    }
+
+    @Override
+    protected void updateStatsRow(Object rowKey, Object[] rowValues) {
+        final ShapeCounts counts = m_topShapes.get(rowKey);
+        String sqlText = counts.m_sqlText;
+        if (sqlText.length() > MAX_SQL_TEXT_LENGTH) {
+            sqlText = sqlText.substring(0, MAX_SQL_TEXT_LENGTH);
+        }
+        rowValues[columnNameToIndex.get("SQL_TEXT")] = sqlText;
+        rowValues[columnNameToIndex.get("CACHE_MISSES")] = counts.m_misses.get();
+        rowValues[columnNameToIndex.get("CACHE2_HITS")] = counts.m_hits.get();
+        super.updateStatsRow(rowKey, rowValues);
+    }
+
+    @Override
+    protected Iterator<Object> getStatsRowKeyIterator(boolean interval) {
+        // snapshot the counts, they keep changing while sorting
+        final Map<String, Long> misses = new HashMap<String, Long>();
+        final Map<Object, ShapeCounts> shapes = new HashMap<Object, ShapeCounts>();
+        for (Map.Entry<String, ShapeCounts> shape : m_shapes.asMap().entrySet()) {
+            misses.put(shape.getKey(), shape.getValue().m_misses.get());
+            shapes.put(shape.getKey(), shape.getValue());
+        }
+        List<String> parsedTokens = new ArrayList<String>(misses.keySet());
+        Collections.sort(parsedTokens, new Comparator<String>() {
+            @Override
+            public int compare(String o1, String o2) {
+                return Long.compare(misses.get(o2), misses.get(o1));
+            }
+        });
+
+        m_topShapes = shapes;
+        return new ArrayList<Object>(parsedTokens.subList(0, Math.min(TOP_SHAPES, parsedTokens.size()))).iterator();
+    }
+}
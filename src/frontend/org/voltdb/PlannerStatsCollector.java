@@ -25,7 +25,8 @@ import org.voltcore.utils.CoreUtils;
 import org.voltdb.VoltTable.ColumnInfo;
 
 /**
- * Collects global cache use stats
+ * Collects global cache use stats. The global (site -1) collector is shared by
+ * every ad hoc planner thread, so updates and reads are synchronized.
  */
 public class PlannerStatsCollector extends StatsSource {
 
@@ -96,9 +97,21 @@ public class PlannerStatsCollector extends StatsSource {
     long m_lastCacheMisses = 0;
 
     /**
-     * Time of last planning start
+     * Cache 1 evictions
      */
-    Long m_currentStartTime = null;
+    long m_cache1Evictions = 0;
+    long m_lastCache1Evictions = 0;
+
+    /**
+     * Cache 2 evictions
+     */
+    long m_cache2Evictions = 0;
+    long m_lastCache2Evictions = 0;
+
+    /**
+     * Time of last planning start, per planner thread
+     */
+    final ThreadLocal<Long> m_currentStartTime = new ThreadLocal<Long>();
 
     /**
      * Total amount of planning time
@@ -168,7 +181,7 @@ public class PlannerStatsCollector extends StatsSource {
     /**
      * Used to update EE cache stats without changing tracked time
      */
-    public void updateEECacheStats(long eeCacheSize, long hits, long misses, int partitionId) {
+    public synchronized void updateEECacheStats(long eeCacheSize, long hits, long misses, int partitionId) {
         m_cache1Level = eeCacheSize;
         m_cache1Hits += hits;
         m_cacheMisses += misses;
@@ -182,7 +195,7 @@ public class PlannerStatsCollector extends StatsSource {
      */
     public void startStatsCollection() {
         if (getInvocations() % m_collectionFrequency == 0) {
-            m_currentStartTime = System.nanoTime();
+            m_currentStartTime.set(System.nanoTime());
         }
     }
 
@@ -194,9 +207,10 @@ public class PlannerStatsCollector extends StatsSource {
      * @param cacheUse     where the planned statement came from
      * @param partitionId  partition id
      */
-    public void endStatsCollection(long cache1Size, long cache2Size, CacheUse cacheUse, long partitionId) {
-        if (m_currentStartTime != null) {
-            long delta = System.nanoTime() - m_currentStartTime;
+    public synchronized void endStatsCollection(long cache1Size, long cache2Size, CacheUse cacheUse, long partitionId) {
+        final Long startTime = m_currentStartTime.get();
+        if (startTime != null) {
+            long delta = System.nanoTime() - startTime;
             if (delta < 0) {
                 if (Math.abs(delta) > 1000000000) {
                     log.info("Planner statistics recorded a negative planning time larger than one second: " +
@@ -210,7 +224,7 @@ public class PlannerStatsCollector extends StatsSource {
                 m_lastMinPlanningTime = Math.min(delta, m_lastMinPlanningTime);
                 m_lastMaxPlanningTime = Math.max(delta, m_lastMaxPlanningTime);
             }
-            m_currentStartTime = null;
+            m_currentStartTime.remove();
         }
 
         m_cache1Level = cache1Size;
@@ -235,6 +249,19 @@ public class PlannerStatsCollector extends StatsSource {
         m_partitionId = partitionId;
     }
 
+    /**
+     * Called after planning with the eviction counts of the ad hoc plan caches.
+     *
+     * @param cache1Evictions  plans evicted from level 1 cache since startup
+     * @param cache2Evictions  plans evicted from level 2 cache since startup
+     */
+    public synchronized void endStatsCollection(long cache1Size, long cache2Size,
+            long cache1Evictions, long cache2Evictions, CacheUse cacheUse, long partitionId) {
+        m_cache1Evictions = cache1Evictions;
+        m_cache2Evictions = cache2Evictions;
+        endStatsCollection(cache1Size, cache2Size, cacheUse, partitionId);
+    }
+
     /**
      * Update the rowValues array with the latest statistical information.
      * This method is overrides the super class version
@@ -242,7 +269,7 @@ public class PlannerStatsCollector extends StatsSource {
      * @param values Values of each column of the row of stats. Used as output.
      */
     @Override
-    protected void updateStatsRow(Object rowKey, Object rowValues[]) {
+    protected synchronized void updateStatsRow(Object rowKey, Object rowValues[]) {
         super.updateStatsRow(rowKey, rowValues);
 
         rowValues[columnNameToIndex.get("PARTITION_ID")] = m_partitionId;
@@ -255,6 +282,8 @@ public class PlannerStatsCollector extends StatsSource {
         long cache2Hits  = m_cache2Hits;
         long cacheMisses = m_cacheMisses;
         long failureCount = m_failures;
+        long cache1Evictions = m_cache1Evictions;
+        long cache2Evictions = m_cache2Evictions;
 
         if (m_interval) {
             totalTimedExecutionTime = m_totalPlanningTime - m_lastTimedPlanningTime;
@@ -283,6 +312,12 @@ public class PlannerStatsCollector extends StatsSource {
             failureCount = m_failures - m_lastFailures;
             m_lastFailures = m_failures;
 
+            cache1Evictions = m_cache1Evictions - m_lastCache1Evictions;
+            m_lastCache1Evictions = m_cache1Evictions;
+
+            cache2Evictions = m_cache2Evictions - m_lastCache2Evictions;
+            m_lastCache2Evictions = m_cache2Evictions;
+
             m_lastInvocations = m_invocations;
         }
 
@@ -302,6 +337,8 @@ public class PlannerStatsCollector extends StatsSource {
             rowValues[columnNameToIndex.get("PLAN_TIME_AVG")] = 0L;
         }
         rowValues[columnNameToIndex.get("FAILURES")] = failureCount;
+        rowValues[columnNameToIndex.get("CACHE1_EVICTIONS")] = cache1Evictions;
+        rowValues[columnNameToIndex.get("CACHE2_EVICTIONS")] = cache2Evictions;
     }
 
     /**
@@ -322,6 +359,8 @@ public class PlannerStatsCollector extends StatsSource {
         columns.add(new ColumnInfo("PLAN_TIME_MAX", VoltType.BIGINT));
         columns.add(new ColumnInfo("PLAN_TIME_AVG", VoltType.BIGINT));
         columns.add(new ColumnInfo("FAILURES",      VoltType.BIGINT));
+        columns.add(new ColumnInfo("CACHE1_EVICTIONS", VoltType.BIGINT));
+        columns.add(new ColumnInfo("CACHE2_EVICTIONS", VoltType.BIGINT));
     }
 
     @Override
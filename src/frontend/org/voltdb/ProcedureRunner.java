@@ -60,6 +60,7 @@ import org.voltdb.iv2.MpTransactionState;
 import org.voltdb.iv2.Site;
 import org.voltdb.iv2.UniqueIdGenerator;
 import org.voltdb.jni.ExecutionEngine;
+import org.voltdb.jni.FragmentResultBufferPool;
 import org.voltdb.messaging.FastDeserializer;
 import org.voltdb.messaging.FragmentTaskMessage;
 import org.voltdb.messaging.Iv2InitiateTaskMessage;
@@ -1625,6 +1626,10 @@ public class ProcedureRunner {
                 // If this is the first or final batch, skip the copy of the
                 // underlying byte array
                 rawDataBuff = fragResult.buffer();
+            } else if (FragmentResultBufferPool.ENABLED) {
+                // Move the results out of the shared buffer into site owned direct memory
+                // which is reclaimed when the procedure completes
+                rawDataBuff = getExecutionEngine().getFragmentResultPool().copyFrom(fragResult.buffer(), totalSize);
             } else {
                 rawDataBuff = fragResult.readBuffer(totalSize);
             }
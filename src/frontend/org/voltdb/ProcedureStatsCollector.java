@@ -109,6 +109,16 @@ public class ProcedureStatsCollector extends SiteStatsSource {
         m_isUAC = (m_procName != null) && (m_procName.startsWith(UpdateCore.class.getName()));
     }
 
+    /**
+     * Give back the budget of the execution time histograms of this procedure and its
+     * statements, called once this collector is no longer registered.
+     */
+    public void releaseHistograms() {
+        for (StatementStats stmtStats : m_stmtStatsMap.values()) {
+            stmtStats.releaseHistograms();
+        }
+    }
+
     // This is not the *real* invocation count, but a fuzzy one we keep to sample 5% of
     // calls without modifying any state. We *only* modify state when a procedure completes.
     AtomicLong fuzzyInvocationCounter = new AtomicLong(0);
@@ -168,6 +178,7 @@ public class ProcedureStatsCollector extends SiteStatsSource {
         m_procStatsData.m_maxExecutionTime = Math.max(duration, m_procStatsData.m_maxExecutionTime);
         m_procStatsData.m_incrMinExecutionTime = Math.min(duration, m_procStatsData.m_incrMinExecutionTime);
         m_procStatsData.m_incrMaxExecutionTime = Math.max(duration, m_procStatsData.m_incrMaxExecutionTime);
+        m_procStatsData.recordExecutionTime(duration);
 
         m_procStatsData.m_totalResultSize += statsToken.resultSize;
         m_procStatsData.m_minResultSize = Math.min(statsToken.resultSize, m_procStatsData.m_minResultSize);
@@ -256,6 +267,7 @@ public class ProcedureStatsCollector extends SiteStatsSource {
         dataToUpdate.m_maxExecutionTime = Math.max(duration, dataToUpdate.m_maxExecutionTime);
         dataToUpdate.m_incrMinExecutionTime = Math.min(duration, dataToUpdate.m_incrMinExecutionTime);
         dataToUpdate.m_incrMaxExecutionTime = Math.max(duration, dataToUpdate.m_incrMaxExecutionTime);
+        dataToUpdate.recordExecutionTime(duration);
 
         // sampled size statistics
         dataToUpdate.m_totalResultSize += resultSize;
@@ -300,8 +312,10 @@ public class ProcedureStatsCollector extends SiteStatsSource {
         int minParameterSetSize = currRow.getMinParameterSetSize();
         int maxParameterSetSize = currRow.getMaxParameterSetSize();
         long totalParameterSetSize = currRow.getTotalParameterSetSize();
+        long[] executionTimePercentiles;
 
         if (m_incremental) {
+            executionTimePercentiles = currRow.getIncrementalExecutionTimePercentilesAndReset();
             abortCount -= currRow.getLastAbortCountAndReset();
             failureCount -= currRow.getLastFailureCountAndReset();
             totalTimedExecutionTime -= currRow.getLastTotalTimedExecutionTimeAndReset();
@@ -317,6 +331,8 @@ public class ProcedureStatsCollector extends SiteStatsSource {
             // Other numbers depend on them for correct behavior.
             invocations -= currRow.getLastInvocationsAndReset();
             timedInvocations -= currRow.getLastTimedInvocationsAndReset();
+        } else {
+            executionTimePercentiles = currRow.getExecutionTimePercentiles();
         }
 
         rowValues[columnNameToIndex.get("INVOCATIONS")] = invocations;
@@ -342,6 +358,13 @@ public class ProcedureStatsCollector extends SiteStatsSource {
         rowValues[columnNameToIndex.get("MIN_PARAMETER_SET_SIZE")] = minParameterSetSize;
         rowValues[columnNameToIndex.get("MAX_PARAMETER_SET_SIZE")] = maxParameterSetSize;
         rowValues[columnNameToIndex.get("TRANSACTIONAL")] = (byte) (m_isTransactional ? 1 : 0);
+        // null unless histograms are enabled
+        if (executionTimePercentiles != null) {
+            rowValues[columnNameToIndex.get("P50_EXECUTION_TIME")] = executionTimePercentiles[0];
+            rowValues[columnNameToIndex.get("P95_EXECUTION_TIME")] = executionTimePercentiles[1];
+            rowValues[columnNameToIndex.get("P99_EXECUTION_TIME")] = executionTimePercentiles[2];
+            rowValues[columnNameToIndex.get("P999_EXECUTION_TIME")] = executionTimePercentiles[3];
+        }
     }
 
     /**
@@ -368,6 +391,10 @@ public class ProcedureStatsCollector extends SiteStatsSource {
         columns.add(new VoltTable.ColumnInfo("ABORTS", VoltType.BIGINT));
         columns.add(new VoltTable.ColumnInfo("FAILURES", VoltType.BIGINT));
         columns.add(new VoltTable.ColumnInfo("TRANSACTIONAL", VoltType.TINYINT));
+        columns.add(new VoltTable.ColumnInfo("P50_EXECUTION_TIME", VoltType.BIGINT));
+        columns.add(new VoltTable.ColumnInfo("P95_EXECUTION_TIME", VoltType.BIGINT));
+        columns.add(new VoltTable.ColumnInfo("P99_EXECUTION_TIME", VoltType.BIGINT));
+        columns.add(new VoltTable.ColumnInfo("P999_EXECUTION_TIME", VoltType.BIGINT));
     }
 
     @Override
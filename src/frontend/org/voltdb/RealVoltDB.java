@@ -1340,6 +1340,8 @@ public class RealVoltDB implements VoltDBInterface, RestoreAgent.Callback, HostM
             m_ioStats = new IOStats();
             getStatsAgent().registerStatsSource(StatsSelector.IOSTATS,
                     0, m_ioStats);
+            getStatsAgent().registerStatsSource(StatsSelector.IOSTATSREACTOR,
+                    0, new IOReactorStats());
             m_memoryStats = new MemoryStats();
             getStatsAgent().registerStatsSource(StatsSelector.MEMORY,
                     0, m_memoryStats);
@@ -1350,6 +1352,7 @@ public class RealVoltDB implements VoltDBInterface, RestoreAgent.Callback, HostM
             m_initiatorStats = new InitiatorStats(m_myHostId);
             m_liveClientsStats = new LiveClientsStats();
             getStatsAgent().registerStatsSource(StatsSelector.LIVECLIENTS, 0, m_liveClientsStats);
+            getStatsAgent().registerStatsSource(StatsSelector.CLIENTINFLIGHT, 0, new ClientInFlightStats());
 
             m_latencyStats = new LatencyStats();
             getStatsAgent().registerStatsSource(StatsSelector.LATENCY, 0, m_latencyStats);
@@ -1619,6 +1622,7 @@ public class RealVoltDB implements VoltDBInterface, RestoreAgent.Callback, HostM
             m_clientInterface.initializeSnapshotDaemon(m_messenger, m_globalServiceElector);
             TTLManager.initialze();
             getStatsAgent().registerStatsSource(StatsSelector.TTL, 0, TTLManager.instance());
+            getStatsAgent().registerStatsSource(StatsSelector.TTLPARTITIONS, 0, TTLManager.instance().getPartitionStats());
             // Start elastic join service
             try {
                 if (m_config.m_isEnterprise) {
@@ -438,26 +438,12 @@ SnapshotCompletionInterest, Promotable
                 @Override
                 public void handleResponse(ClientResponse res)
                 {
-                    boolean failure = false;
-                    if (res.getStatus() != ClientResponse.SUCCESS) {
-                        failure = true;
-                    }
-
-                    VoltTable[] results = res.getResults();
-                    if (results == null || results.length != 1) {
-                        failure = true;
-                    }
-
-                    while (!failure && results[0].advanceRow()) {
-                        String resultStatus = results[0].getString("RESULT");
-                        if (!resultStatus.equalsIgnoreCase("success")) {
-                            failure = true;
-                        }
-                    }
-
-                    if (failure) {
-                        for (VoltTable result : results) {
-                            LOG.fatal(result);
+                    if (!isRestoreSuccessful(res)) {
+                        VoltTable[] results = res.getResults();
+                        if (results != null) {
+                            for (VoltTable result : results) {
+                                LOG.fatal(result);
+                            }
                         }
                         VoltDB.crashGlobalVoltDB("Failed to restore from snapshot: " +
                                 res.getStatusString(), false, null);
@@ -473,6 +459,33 @@ SnapshotCompletionInterest, Promotable
                 }
             };
 
+    /**
+     * @return true if every table was restored. Only the first result table has
+     * a RESULT column, the tables after it (e.g. the per table throughput) are
+     * informational.
+     */
+    static boolean isRestoreSuccessful(ClientResponse res)
+    {
+        if (res.getStatus() != ClientResponse.SUCCESS) {
+            return false;
+        }
+
+        VoltTable[] results = res.getResults();
+        if (results == null || results.length < 1) {
+            return false;
+        }
+
+        boolean success = true;
+        while (success && results[0].advanceRow()) {
+            String resultStatus = results[0].getString("RESULT");
+            if (!resultStatus.equalsIgnoreCase("success")) {
+                success = false;
+            }
+        }
+        results[0].resetRowPosition();
+        return success;
+    }
+
     public RestoreAgent(HostMessenger hostMessenger, SnapshotCompletionMonitor snapshotMonitor,
                         Callback callback, StartAction action, boolean clEnabled,
                         String clPath, String clSnapshotPath,
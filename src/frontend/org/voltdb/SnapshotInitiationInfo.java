@@ -23,6 +23,7 @@ import org.json_voltpatches.JSONException;
 import org.json_voltpatches.JSONObject;
 import org.voltdb.sysprocs.saverestore.SnapshotPathType;
 import org.voltdb.sysprocs.saverestore.SnapshotUtil;
+import org.voltdb.utils.CompressionService;
 
 /**
  * Encapsulate the parameters provided to @SnapshotSave needed to initiate a snapshot.
@@ -156,6 +157,9 @@ public class SnapshotInitiationInfo
      *   as blocking.  true/false will be interpreted as you'd expect
      *
      *   format: one of 'native' or 'csv'.
+     *
+     *   (optional) compression: codec[:level] used for the blocks of a native snapshot,
+     *   'snappy' (the default), 'lz4' (fast) or 'lz4:1' (high compression).
      */
     private boolean parseJsonParams(Object[] params) throws Exception
     {
@@ -248,6 +252,13 @@ public class SnapshotInitiationInfo
             throw new Exception("@SnapshotSave format param is a " + m_format +
                     " and should be one of [\"native\" | \"csv\"]");
         }
+        if (jsObj.has(SnapshotUtil.JSON_COMPRESSION)) {
+            try {
+                CompressionService.Codec.parse(jsObj.getString(SnapshotUtil.JSON_COMPRESSION));
+            } catch (IllegalArgumentException e) {
+                throw new Exception("@SnapshotSave compression param is invalid: " + e.getMessage());
+            }
+        }
         m_data = (String)params[0];
         return checkValidity;
     }
@@ -148,7 +148,7 @@ public class SnapshotSiteProcessor {
      */
     public static final int m_snapshotBufferLength = (1024 * 1024 * 2) + Short.MAX_VALUE;
     public static final int m_snapshotBufferCompressedLen =
-        CompressionService.maxCompressedLength(m_snapshotBufferLength);
+        CompressionService.maxCompressedLengthOfAnyCodec(m_snapshotBufferLength);
 
     /**
      * Limit the number of buffers that are outstanding at any given time
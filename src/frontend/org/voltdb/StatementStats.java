@@ -19,6 +19,10 @@ package org.voltdb;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.HdrHistogram_voltpatches.AbstractHistogram;
+import org.HdrHistogram_voltpatches.Histogram;
 
 /**
  * Record statistics for each statement in the stored procedure.
@@ -32,6 +36,60 @@ public final class StatementStats {
     StatsData m_coordinatorTask = null;
     StatsData m_workerTask;
 
+    /**
+     * Keep a histogram of the sampled execution times of each statement, off by default.
+     * The histograms on this host share a memory budget. Statements first sampled after it
+     * is used up report no percentiles, until the statistics holding histograms are dropped
+     * on a catalog update. Only tests change these.
+     */
+    static boolean s_histogramsEnabled = Boolean.getBoolean("PROCEDURE_LATENCY_HISTOGRAMS");
+    static long s_histogramMemoryLimit =
+            Long.getLong("PROCEDURE_LATENCY_HISTOGRAMS_MAX_MB", 64) * 1024 * 1024;
+    // nanoseconds with a microsecond resolution, up to an hour
+    static final long HISTOGRAM_LOWEST_VALUE = 1000L;
+    static final long HISTOGRAM_HIGHEST_VALUE = 60L * 60L * 1000000000L;
+    static final int HISTOGRAM_SIGNIFICANT_DIGITS = 2;
+    // reported as P50_EXECUTION_TIME, P95_EXECUTION_TIME, P99_EXECUTION_TIME and P999_EXECUTION_TIME
+    static final double[] PERCENTILES = { 50D, 95D, 99D, 99.9D };
+
+    static final long HISTOGRAM_FOOTPRINT =
+            new Histogram(HISTOGRAM_LOWEST_VALUE, HISTOGRAM_HIGHEST_VALUE, HISTOGRAM_SIGNIFICANT_DIGITS)
+                    .getEstimatedFootprintInBytes();
+    private static final AtomicLong s_histogramMemory = new AtomicLong(0);
+
+    /**
+     * @return a new execution time histogram, or null if they are disabled or over budget
+     */
+    static AbstractHistogram allocateHistogram() {
+        if (!s_histogramsEnabled) {
+            return null;
+        }
+        while (true) {
+            final long used = s_histogramMemory.get();
+            if (used + HISTOGRAM_FOOTPRINT > s_histogramMemoryLimit) {
+                return null;
+            }
+            if (s_histogramMemory.compareAndSet(used, used + HISTOGRAM_FOOTPRINT)) {
+                return new Histogram(HISTOGRAM_LOWEST_VALUE, HISTOGRAM_HIGHEST_VALUE, HISTOGRAM_SIGNIFICANT_DIGITS);
+            }
+        }
+    }
+
+    static long getHistogramMemory() {
+        return s_histogramMemory.get();
+    }
+
+    /**
+     * Give back the budget of the histograms of this statement, called when the statistics
+     * source holding it is dropped. Nothing is recorded into them afterwards.
+     */
+    void releaseHistograms() {
+        m_workerTask.releaseHistograms();
+        if (m_coordinatorTask != null) {
+            m_coordinatorTask.releaseHistograms();
+        }
+    }
+
     public StatementStats(String stmtName, boolean hasCoordinatorTask) {
         m_stmtName = stmtName;
         m_workerTask = new StatsData();
@@ -144,6 +202,37 @@ public final class StatementStats {
         return retval;
     }
 
+    // Like the min/max, the percentiles of the coordinator and the worker tasks are added up as an approximation.
+    private long[] getExecutionTimePercentiles(AbstractHistogram workerTimes, AbstractHistogram coordinatorTimes) {
+        if (workerTimes == null) {
+            return null;
+        }
+        if (coordinatorTimes != null && coordinatorTimes.getTotalCount() == 0) {
+            coordinatorTimes = null;
+        }
+        long[] retval = new long[PERCENTILES.length];
+        for (int i = 0; i < PERCENTILES.length; i++) {
+            retval[i] = workerTimes.getValueAtPercentile(PERCENTILES[i]);
+            if (coordinatorTimes != null) {
+                retval[i] += coordinatorTimes.getValueAtPercentile(PERCENTILES[i]);
+            }
+        }
+        return retval;
+    }
+
+    /**
+     * @return the execution time at each of PERCENTILES, or null if no histogram is kept
+     */
+    public long[] getExecutionTimePercentiles() {
+        return getExecutionTimePercentiles(m_workerTask.getExecutionTimes(false),
+                m_coordinatorTask == null ? null : m_coordinatorTask.getExecutionTimes(false));
+    }
+
+    public long[] getIncrementalExecutionTimePercentilesAndReset() {
+        return getExecutionTimePercentiles(m_workerTask.getExecutionTimes(true),
+                m_coordinatorTask == null ? null : m_coordinatorTask.getExecutionTimes(true));
+    }
+
     public long getAbortCount() {
         return m_workerTask.m_abortCount;
     }
@@ -441,5 +530,58 @@ public final class StatementStats {
          */
         long m_totalParameterSetSize = 0;
         long m_lastTotalParameterSetSize = 0;
+
+        /**
+         * Histogram of the timed execution times, allocated on the first timed invocation
+         * when histograms are enabled. The copy taken at the last interval poll is allocated
+         * on the first one.
+         */
+        AbstractHistogram m_executionTimes = null;
+        AbstractHistogram m_lastExecutionTimes = null;
+        // set once the budget of the histograms is given back, no more are allocated
+        volatile boolean m_histogramsReleased = false;
+
+        void recordExecutionTime(long duration) {
+            if (m_executionTimes == null) {
+                if (!s_histogramsEnabled || m_histogramsReleased || (m_executionTimes = allocateHistogram()) == null) {
+                    return;
+                }
+            }
+            m_executionTimes.recordValue(Math.min(duration, HISTOGRAM_HIGHEST_VALUE));
+        }
+
+        void releaseHistograms() {
+            if (m_histogramsReleased) {
+                return;
+            }
+            m_histogramsReleased = true;
+            long released = 0;
+            if (m_executionTimes != null) {
+                released += HISTOGRAM_FOOTPRINT;
+            }
+            if (m_lastExecutionTimes != null) {
+                released += HISTOGRAM_FOOTPRINT;
+            }
+            s_histogramMemory.addAndGet(-released);
+        }
+
+        /**
+         * @return the execution times since the start, or since the last interval poll if incremental
+         */
+        AbstractHistogram getExecutionTimes(boolean incremental) {
+            if (m_executionTimes == null || !incremental) {
+                return m_executionTimes;
+            }
+            AbstractHistogram intervalTimes = m_executionTimes.copy();
+            if (m_lastExecutionTimes != null) {
+                intervalTimes.subtract(m_lastExecutionTimes);
+                m_lastExecutionTimes.reset();
+            } else if (m_histogramsReleased || (m_lastExecutionTimes = allocateHistogram()) == null) {
+                // no budget left to tell the intervals apart
+                return null;
+            }
+            m_lastExecutionTimes.add(m_executionTimes);
+            return intervalTimes;
+        }
     }
 }
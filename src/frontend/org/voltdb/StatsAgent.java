@@ -310,8 +310,19 @@ public class StatsAgent extends OpsAgent
      */
     public void notifyOfCatalogUpdate() {
         m_procedureInfo = getProcedureInformationfoSupplier();
-        m_registeredStatsSources.put(StatsSelector.PROCEDURE,
-                new NonBlockingHashMap<Long, NonBlockingHashSet<StatsSource>>());
+        Map<Long, NonBlockingHashSet<StatsSource>> droppedSources =
+                m_registeredStatsSources.put(StatsSelector.PROCEDURE,
+                        new NonBlockingHashMap<Long, NonBlockingHashSet<StatsSource>>());
+        // The dropped procedure statistics give back the memory budget of their histograms
+        if (droppedSources != null) {
+            for (NonBlockingHashSet<StatsSource> sources : droppedSources.values()) {
+                for (StatsSource source : sources) {
+                    if (source instanceof ProcedureStatsCollector) {
+                        ((ProcedureStatsCollector) source).releaseHistograms();
+                    }
+                }
+            }
+        }
     }
 
     @Override
@@ -504,7 +515,10 @@ public class StatsAgent extends OpsAgent
             stats = collectStats(StatsSelector.CPU, interval);
             break;
         case IOSTATS:
-            stats = collectStats(StatsSelector.IOSTATS, interval);
+            stats = collectIOStats(interval);
+            break;
+        case IOSTATSREACTOR:
+            stats = collectStats(StatsSelector.IOSTATSREACTOR, interval);
             break;
         case INITIATOR:
             stats = collectStats(StatsSelector.INITIATOR, interval);
@@ -529,11 +543,17 @@ public class StatsAgent extends OpsAgent
             stats = collectStats(StatsSelector.QUEUE, interval);
             break;
         case PLANNER:
-            stats = collectStats(StatsSelector.PLANNER, interval);
+            stats = collectPlannerStats(interval);
+            break;
+        case PLANNERSHAPES:
+            stats = collectStats(StatsSelector.PLANNERSHAPES, interval);
             break;
         case LIVECLIENTS:
             stats = collectStats(StatsSelector.LIVECLIENTS, interval);
             break;
+        case CLIENTINFLIGHT:
+            stats = collectStats(StatsSelector.CLIENTINFLIGHT, interval);
+            break;
         case LATENCY:
             stats = collectStats(StatsSelector.LATENCY, false);
             break;
@@ -574,8 +594,14 @@ public class StatsAgent extends OpsAgent
         case GC:
             stats = collectStats(StatsSelector.GC, interval);
             break;
+        case MPIREADPOOL:
+            stats = collectStats(StatsSelector.MPIREADPOOL, interval);
+            break;
         case TTL:
-            stats = collectStats(StatsSelector.TTL, interval);
+            stats = collectTTLStats(interval);
+            break;
+        case TTLPARTITIONS:
+            stats = collectStats(StatsSelector.TTLPARTITIONS, interval);
             break;
         case EXPORT:
             stats = collectStats(StatsSelector.EXPORT, interval);
@@ -608,6 +634,46 @@ public class StatsAgent extends OpsAgent
         return stats;
     }
 
+    private VoltTable[] collectIOStats(boolean interval)
+    {
+        VoltTable[] connectionStats = collectStats(StatsSelector.IOSTATS, interval);
+        VoltTable[] reactorStats = collectStats(StatsSelector.IOSTATSREACTOR, interval);
+        if (connectionStats == null || reactorStats == null) {
+            return connectionStats;
+        }
+        VoltTable[] stats = new VoltTable[2];
+        stats[0] = connectionStats[0];
+        stats[1] = reactorStats[0];
+        return stats;
+    }
+
+    private VoltTable[] collectPlannerStats(boolean interval)
+    {
+        VoltTable[] plannerStats = collectStats(StatsSelector.PLANNER, interval);
+        VoltTable[] shapeStats = collectStats(StatsSelector.PLANNERSHAPES, interval);
+        // shape stats are registered with the first ad hoc planner
+        if (plannerStats == null || shapeStats == null) {
+            return plannerStats;
+        }
+        VoltTable[] stats = new VoltTable[2];
+        stats[0] = plannerStats[0];
+        stats[1] = shapeStats[0];
+        return stats;
+    }
+
+    private VoltTable[] collectTTLStats(boolean interval)
+    {
+        VoltTable[] ttlStats = collectStats(StatsSelector.TTL, interval);
+        VoltTable[] partitionStats = collectStats(StatsSelector.TTLPARTITIONS, interval);
+        if (ttlStats == null || partitionStats == null) {
+            return ttlStats;
+        }
+        VoltTable[] stats = new VoltTable[2];
+        stats[0] = ttlStats[0];
+        stats[1] = partitionStats[0];
+        return stats;
+    }
+
     private VoltTable[] collectDRConsumerStats() {
         VoltTable[] stats = null;
 
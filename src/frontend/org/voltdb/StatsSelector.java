@@ -28,9 +28,12 @@ public enum StatsSelector {
     LATENCY_HISTOGRAM,
     PARTITIONCOUNT,
     IOSTATS,
+    IOSTATSREACTOR,   // internal, returned as the second table of IOSTATS
     MEMORY,           // info about node's memory usage
     LIVECLIENTS,      // info about the currently connected clients
+    CLIENTINFLIGHT,   // per partition outstanding client transactions and their age
     PLANNER,          // info about planner and EE performance and cache usage
+    PLANNERSHAPES,    // internal, returned as the second table of PLANNER
     MANAGEMENT,       // Returns pretty much everything
     PROCEDUREPROFILE, // performs an aggregation of the procedure statistics
     SNAPSHOTSTATUS,
@@ -55,10 +58,12 @@ public enum StatsSelector {
 
     TOPO,           // return leader and site info for iv2
     TTL,            // return time to live info
+    TTLPARTITIONS,  // internal, returned as the second table of TTL
     REBALANCE,      // return elastic rebalance progress
     KSAFETY,        // return ksafety coverage information
     CPU,            // return CPU Stats
     GC,             // return GC Stats
+    MPIREADPOOL,    // occupancy and wait times of the MP read-only site pool
 
     COMMANDLOG,     // return number of outstanding bytes and txns on this node
     IMPORTER,       // synonym as IMPORT for backward compatibility
@@ -72,6 +72,9 @@ public class StoredProcedureInvocation implements JSONString {
 
     private int m_batchTimeout = BatchTimeoutOverrideType.NO_TIMEOUT;
     private boolean m_allPartition = false;
+    // result encodings the client can decode, only used by the client interface
+    // of the connection and not serialized
+    private byte m_resultEncoding = 0;
 
     public StoredProcedureInvocation getShallowCopy()
     {
@@ -92,6 +95,7 @@ public class StoredProcedureInvocation implements JSONString {
 
         copy.m_batchTimeout = m_batchTimeout;
         copy.m_allPartition = m_allPartition;
+        copy.m_resultEncoding = m_resultEncoding;
 
         return copy;
     }
@@ -185,6 +189,10 @@ public class StoredProcedureInvocation implements JSONString {
         return m_allPartition;
     }
 
+    public byte getResultEncoding() {
+        return m_resultEncoding;
+    }
+
     /** Read into an serialized parameter buffer to extract a single parameter */
     Object getParameterAtIndex(int partitionIndex) {
         try {
@@ -408,6 +416,7 @@ public class StoredProcedureInvocation implements JSONString {
         // set these to defaults so old versions don't worry about them
         m_batchTimeout = BatchTimeoutOverrideType.NO_TIMEOUT;
         m_allPartition = false;
+        m_resultEncoding = 0;
 
         switch (type) {
             case ORIGINAL:
@@ -490,6 +499,9 @@ public class StoredProcedureInvocation implements JSONString {
                 // note this always returns true as it's just a flag
                 m_allPartition = ProcedureInvocationExtensions.readAllPartition(buf);
                 break;
+            case ProcedureInvocationExtensions.RESULT_ENCODING:
+                m_resultEncoding = ProcedureInvocationExtensions.readResultEncoding(buf);
+                break;
             default:
                 ProcedureInvocationExtensions.skipUnknownExtension(buf);
                 break;
@@ -506,7 +518,8 @@ public class StoredProcedureInvocation implements JSONString {
         params = new FutureTask<ParameterSet>(new Callable<ParameterSet>() {
             @Override
             public ParameterSet call() throws Exception {
-                return ParameterSet.fromByteBuffer(duplicate);
+                // parameters are decoded out of serializedParams as they are accessed
+                return ParameterSet.fromByteBufferNoCopy(duplicate);
             }
         });
     }
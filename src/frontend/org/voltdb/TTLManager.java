@@ -25,10 +25,12 @@ import java.util.Random;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 
 import org.hsqldb_voltpatches.TimeToLiveVoltDB;
@@ -41,10 +43,12 @@ import org.voltdb.catalog.TimeToLive;
 import org.voltdb.client.ClientResponse;
 import org.voltdb.client.ProcedureCallback;
 import org.voltdb.iv2.MpTransactionState;
+import org.voltdb.types.TimestampType;
 import org.voltdb.utils.CatalogUtil;
 
 //schedule and process time-to-live feature via @LowImpactDeleteNT. The host with smallest host id
-//will get the task done.
+//will get the task done. Partitioned tables are nibbled by @NibbleDeleteSP on every partition
+//independently, see PartitionDeleter.
 public class TTLManager extends StatsSource{
 
     //exception is thrown if  DR consumer gets a chunk of larger than 50MB
@@ -55,6 +59,14 @@ public class TTLManager extends StatsSource{
     static final int CHUNK_SIZE = Integer.getInteger("TIME_TO_LIVE_CHUNK_SIZE", 1000);
     static final int TIMEOUT = Integer.getInteger("TIME_TO_LIVE_TIMEOUT", 2000);
     static final int LOG_SUPPRESSION_INTERVAL_SECONDS = 60;
+    //delete from the partitions of a partitioned table in parallel instead of through @LowImpactDeleteNT, off by default
+    static final boolean PARALLEL = Boolean.valueOf(System.getProperty("TIME_TO_LIVE_PARALLEL", "false"));
+    //target execution time of one delete on a partition, the batch size is adapted to it
+    static final int LATENCY_BUDGET = Integer.getInteger("TIME_TO_LIVE_LATENCY_BUDGET", 20);
+    //largest adapted batch size, as a multiple of the batch size of the table
+    static final int MAX_BATCH_FACTOR = Integer.getInteger("TIME_TO_LIVE_MAX_BATCH_FACTOR", 10);
+    //window over which the delete rate is measured
+    static final int RATE_WINDOW = 5 * INTERVAL;
     public static class TTLStats {
         final String tableName;
         long rowsLeft = 0L;
@@ -63,16 +75,60 @@ public class TTLManager extends StatsSource{
         //will be reset if this node fails and another node takes over
         //TTL control
         long rowsDeleted = 0L;
+        //rows deleted by the last round of the task, whether by one @LowImpactDeleteNT
+        //or by the partition deletes which ran during the round
         long rowsLastDeleted = 0L;
+        long roundRows = 0L;
         Timestamp ts;
+
+        //rows deleted per second over the last complete RATE_WINDOW
+        long rowsPerSecond = 0L;
+        long windowStart = 0L;
+        long windowRows = 0L;
+
         public TTLStats(String tableName) {
             this.tableName = tableName;
         }
-        public void update(long rowDeleted, long rowsLeft, long lastExecutionTimestamp) {
+        public synchronized void update(long rowDeleted, long rowsLeft, long lastExecutionTimestamp) {
             this.rowsLastDeleted = rowDeleted;
+            record(rowDeleted, rowsLeft, lastExecutionTimestamp);
+        }
+
+        //a delete on one partition, counted toward the current round
+        synchronized void updatePartition(long rowDeleted, long rowsLeft, long lastExecutionTimestamp) {
+            roundRows += rowDeleted;
+            record(rowDeleted, rowsLeft, lastExecutionTimestamp);
+        }
+
+        //a new round of partition deletes starts
+        synchronized void completeRound() {
+            rowsLastDeleted = roundRows;
+            roundRows = 0;
+        }
+
+        private void record(long rowDeleted, long rowsLeft, long lastExecutionTimestamp) {
             this.rowsLeft = rowsLeft;
             this.rowsDeleted += rowDeleted;
             ts = new Timestamp(lastExecutionTimestamp);
+
+            if (windowStart == 0) {
+                windowStart = lastExecutionTimestamp;
+            }
+            windowRows += rowDeleted;
+            final long window = lastExecutionTimestamp - windowStart;
+            if (window >= RATE_WINDOW) {
+                rowsPerSecond = windowRows * 1000 / window;
+                windowStart = lastExecutionTimestamp;
+                windowRows = 0;
+            }
+        }
+
+        //seconds to delete the rows left at the current rate, -1 if nothing is being deleted
+        synchronized long getBacklogSeconds() {
+            if (rowsLeft == 0) {
+                return 0;
+            }
+            return rowsPerSecond == 0 ? -1 : rowsLeft / rowsPerSecond;
         }
         @Override
         public String toString() {
@@ -86,10 +142,13 @@ public class TTLManager extends StatsSource{
         final TTLStats stats;
         AtomicReference<TimeToLive> ttlRef;
         AtomicBoolean canceled = new AtomicBoolean(false);
-        public TTLTask(String table, TimeToLive timeToLive, TTLStats ttlStats) {
+        //deleters by partition id when the partitions are nibbled in parallel, null otherwise
+        final Map<Integer, PartitionDeleter> deleters;
+        public TTLTask(String table, TimeToLive timeToLive, TTLStats ttlStats, boolean parallel) {
             tableName = table;
             ttlRef = new AtomicReference<>(timeToLive);
             stats = ttlStats;
+            deleters = parallel ? new ConcurrentHashMap<>() : null;
         }
 
         @Override
@@ -102,7 +161,11 @@ public class TTLManager extends StatsSource{
             }
             ClientInterface cl = voltdb.getClientInterface();
             if (!canceled.get() && cl != null && cl.isAcceptingConnections()) {
-                performDelete(cl, this);
+                if (deleters != null) {
+                    performPartitionDeletes(cl, this);
+                } else {
+                    performDelete(cl, this);
+                }
             }
         }
 
@@ -152,6 +215,162 @@ public class TTLManager extends StatsSource{
         String getColumnName() {
             return ttlRef.get().getTtlcolumn().getName();
         }
+
+        //the value to compare with, in a table as @NibbleDeleteSP takes it
+        VoltTable getParameter() {
+            final VoltType type = VoltType.get((byte)ttlRef.get().getTtlcolumn().getType());
+            VoltTable parameter = new VoltTable(new ColumnInfo("col1", type));
+            if (type == VoltType.TIMESTAMP) {
+                parameter.addRow(new TimestampType(getValue()));
+            } else {
+                parameter.addRow(getValue());
+            }
+            return parameter;
+        }
+
+        long getRowsLeft() {
+            long rowsLeft = 0;
+            for (PartitionDeleter deleter : deleters.values()) {
+                rowsLeft += deleter.rowsLeft;
+            }
+            return rowsLeft;
+        }
+
+        long getMaxLag(long now) {
+            long lag = 0;
+            if (deleters != null) {
+                for (PartitionDeleter deleter : deleters.values()) {
+                    lag = Math.max(lag, deleter.getLag(now));
+                }
+            }
+            return lag;
+        }
+    }
+
+    /**
+     * Deletes the expired rows of one partition of a table with @NibbleDeleteSP. Started by the
+     * TTL task of the table every INTERVAL, it keeps deleting while rows are left, at most
+     * MAX_FREQUENCY times per INTERVAL. The batch size starts at the BATCH_SIZE of the table
+     * and is adapted so a delete takes about LATENCY_BUDGET milliseconds. Only one delete of
+     * a partition is in flight at a time.
+     */
+    class PartitionDeleter implements ProcedureCallback {
+        final TTLTask task;
+        final int partitionId;
+        volatile int partitionKey;
+        volatile ClientInterface cl;
+        final AtomicBoolean inFlight = new AtomicBoolean(false);
+
+        volatile int batchSize;
+        //lowered when a batch is too big for a DR buffer
+        volatile int drBatchLimit = Integer.MAX_VALUE;
+        long startTime;
+        long startNanos;
+
+        final AtomicLong rowsDeleted = new AtomicLong();
+        volatile long rowsLeft = 0;
+        volatile long lastLatency = 0;
+        //the last time there was nothing left to delete
+        volatile long caughtUpTime = System.currentTimeMillis();
+
+        PartitionDeleter(TTLTask task, int partitionId) {
+            this.task = task;
+            this.partitionId = partitionId;
+            batchSize = task.getBatchSize();
+        }
+
+        void start(ClientInterface cl, int partitionKey) {
+            this.cl = cl;
+            this.partitionKey = partitionKey;
+            if (inFlight.compareAndSet(false, true)) {
+                delete();
+            }
+        }
+
+        private void delete() {
+            startTime = System.currentTimeMillis();
+            startNanos = System.nanoTime();
+            cl.getDispatcher().getInternelAdapterNT().callProcedure(cl.getInternalUser(), true, 1000 * 120, this,
+                    "@NibbleDeleteSP", new Object[] {partitionKey, task.tableName, task.getColumnName(), "<=",
+                            task.getParameter(), (long) batchSize});
+        }
+
+        long getLag(long now) {
+            return rowsLeft == 0 ? 0 : now - caughtUpTime;
+        }
+
+        @Override
+        public void clientCallback(ClientResponse resp) throws Exception {
+            final long now = System.currentTimeMillis();
+            lastLatency = (System.nanoTime() - startNanos) / 1000000;
+            if (resp.getStatus() != ClientResponse.SUCCESS) {
+                final String error = resp.getStatusString();
+                if (error != null && error.indexOf(TTLManager.DR_LIMIT_MSG) > -1) {
+                    drLimitHit();
+                }
+                hostLog.rateLimitedLog(LOG_SUPPRESSION_INTERVAL_SECONDS, Level.WARN, null,
+                        "Fail to execute TTL on table: %s, column: %s, partition: %d, status: %s",
+                        task.tableName, task.getColumnName(), partitionId, error);
+                inFlight.set(false);
+                return;
+            }
+
+            VoltTable t = resp.getResults()[0];
+            t.advanceRow();
+            final long deleted = t.getLong("DELETED_ROWS");
+            rowsLeft = t.getLong("LEFT_ROWS");
+            rowsDeleted.addAndGet(deleted);
+            if (rowsLeft == 0) {
+                caughtUpTime = now;
+            }
+            adaptBatchSize(deleted);
+            task.stats.updatePartition(deleted, task.getRowsLeft(), now);
+
+            if (rowsLeft == 0 || deleted == 0 || task.canceled.get()) {
+                // caught up, or jammed, the next round of the task starts again
+                inFlight.set(false);
+                return;
+            }
+            final ScheduledThreadPoolExecutor executor = m_timeToLiveExecutor;
+            if (executor == null) {
+                inFlight.set(false);
+                return;
+            }
+            // bound the rate to MAX_FREQUENCY deletes per INTERVAL
+            final long pace = INTERVAL / Math.max(1, task.getMaxFrequency());
+            try {
+                executor.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        delete();
+                    }
+                }, Math.max(0, startTime + pace - now), TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                inFlight.set(false);
+            }
+        }
+
+        void drLimitHit() {
+            // Unlike @LowImpactDeleteNT the batch size isn't fixed, keep going with smaller ones
+            if (batchSize > 1) {
+                drBatchLimit = batchSize / 2;
+                batchSize = drBatchLimit;
+            }
+        }
+
+        //resize the batch after a delete of deleted rows which took lastLatency
+        void adaptBatchSize(long deleted) {
+            final long maxBatchSize = Math.min(drBatchLimit, (long) task.getBatchSize() * MAX_BATCH_FACTOR);
+            long newBatchSize = batchSize;
+            if (lastLatency > LATENCY_BUDGET) {
+                // over budget, shrink in proportion
+                newBatchSize = batchSize * LATENCY_BUDGET / lastLatency;
+            } else if (deleted >= batchSize && lastLatency < LATENCY_BUDGET / 2) {
+                // a full batch well within budget
+                newBatchSize = batchSize * 2L;
+            }
+            batchSize = (int) Math.max(1, Math.min(maxBatchSize, newBatchSize));
+        }
     }
 
     private static class DummyIterator implements Iterator<Object> {
@@ -182,6 +401,7 @@ public class TTLManager extends StatsSource{
     private final Map<String, TTLTask> m_tasks = new ConcurrentHashMap<>();
     private final Map<String, ScheduledFuture<?>> m_futures = new ConcurrentHashMap<>();
     private final Map<String, TTLStats> m_stats = new ConcurrentHashMap<>();
+    private final TTLPartitionStats m_partitionStats = new TTLPartitionStats(this);
 
     public static void initialze() {
         if (m_self == null) {
@@ -203,6 +423,14 @@ public class TTLManager extends StatsSource{
         return m_self;
     }
 
+    public TTLPartitionStats getPartitionStats() {
+        return m_partitionStats;
+    }
+
+    Map<String, TTLTask> getTasks() {
+        return m_tasks;
+    }
+
     /**
      * schedule TTL tasks per configurations
      * @param ttlTables A list of tables for TTL
@@ -251,7 +479,7 @@ public class TTLManager extends StatsSource{
                     stats = new TTLStats(t.getTypeName());
                     m_stats.put(t.getTypeName(), stats);
                 }
-                task = new TTLTask(t.getTypeName(), ttl, stats);
+                task = new TTLTask(t.getTypeName(), ttl, stats, PARALLEL && !t.getIsreplicated());
                 m_tasks.put(t.getTypeName(), task);
                 m_futures.put(t.getTypeName(),
                               m_timeToLiveExecutor.scheduleAtFixedRate(task,
@@ -290,6 +518,9 @@ public class TTLManager extends StatsSource{
         columns.add(new ColumnInfo("ROWS_DELETED_LAST_ROUND", VoltType.BIGINT));
         columns.add(new ColumnInfo("ROWS_REMAINING", VoltType.BIGINT));
         columns.add(new ColumnInfo("LAST_DELETE_TIMESTAMP", VoltType.TIMESTAMP));
+        columns.add(new ColumnInfo("ROWS_PER_SECOND", VoltType.BIGINT));
+        columns.add(new ColumnInfo("BACKLOG_SECONDS", VoltType.BIGINT));
+        columns.add(new ColumnInfo("MAX_PARTITION_LAG", VoltType.BIGINT));
     }
 
     @Override
@@ -303,13 +534,38 @@ public class TTLManager extends StatsSource{
     protected void updateStatsRow(Object rowKey, Object[] rowValues) {
         TTLStats stats = m_stats.get(rowKey);
         if (stats != null) {
-            rowValues[columnNameToIndex.get("TIMESTAMP")] = System.currentTimeMillis();
-            rowValues[columnNameToIndex.get("TABLE_NAME")] = rowKey;
-            rowValues[columnNameToIndex.get("ROWS_DELETED")] = stats.rowsDeleted;
-            rowValues[columnNameToIndex.get("ROWS_DELETED_LAST_ROUND")] = stats.rowsLastDeleted;
-            rowValues[columnNameToIndex.get("ROWS_REMAINING")] = stats.rowsLeft;
-            rowValues[columnNameToIndex.get("LAST_DELETE_TIMESTAMP")] = stats.ts;
+            final long now = System.currentTimeMillis();
+            TTLTask task = m_tasks.get(rowKey);
+            synchronized (stats) {
+                rowValues[columnNameToIndex.get("TIMESTAMP")] = now;
+                rowValues[columnNameToIndex.get("TABLE_NAME")] = rowKey;
+                rowValues[columnNameToIndex.get("ROWS_DELETED")] = stats.rowsDeleted;
+                rowValues[columnNameToIndex.get("ROWS_DELETED_LAST_ROUND")] = stats.rowsLastDeleted;
+                rowValues[columnNameToIndex.get("ROWS_REMAINING")] = stats.rowsLeft;
+                rowValues[columnNameToIndex.get("LAST_DELETE_TIMESTAMP")] = stats.ts;
+                rowValues[columnNameToIndex.get("ROWS_PER_SECOND")] = stats.rowsPerSecond;
+                rowValues[columnNameToIndex.get("BACKLOG_SECONDS")] = stats.getBacklogSeconds();
+            }
+            rowValues[columnNameToIndex.get("MAX_PARTITION_LAG")] = task == null ? 0L : task.getMaxLag(now);
+        }
+    }
+
+    protected void performPartitionDeletes(ClientInterface cl, TTLTask task) {
+        task.stats.completeRound();
+        // start a delete on the partitions which are not deleting already, without waiting for them
+        Set<Integer> partitions = new HashSet<>();
+        VoltTable keys = TheHashinator.getPartitionKeys(VoltType.INTEGER);
+        while (keys.advanceRow()) {
+            final int partitionId = (int) keys.getLong(0);
+            partitions.add(partitionId);
+            PartitionDeleter deleter = task.deleters.get(partitionId);
+            if (deleter == null) {
+                deleter = new PartitionDeleter(task, partitionId);
+                task.deleters.put(partitionId, deleter);
+            }
+            deleter.start(cl, (int) keys.getLong(1));
         }
+        task.deleters.keySet().retainAll(partitions);
     }
 
     protected void performDelete(ClientInterface cl, TTLTask task) {
@@ -0,0 +1,84 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2019 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.voltdb.VoltTable.ColumnInfo;
+
+/**
+ * The progress of time-to-live deletes on each partition of the partitioned TTL tables, one row per
+ * table and partition. BATCH_SIZE is the batch size currently adapted to the latency budget, LAST_LATENCY
+ * the milliseconds the last delete took and LAG the milliseconds since the partition had no expired rows
+ * left. Only reported by the host running TTL, returned as the second table of TTL.
+ */
+public class TTLPartitionStats extends StatsSource {
+
+    private final TTLManager m_manager;
+
+    // deleters picked for the rows of the current stats request
+    private Map<Object, TTLManager.PartitionDeleter> m_deleters = new HashMap<Object, TTLManager.PartitionDeleter>();
+
+    TTLPartitionStats(TTLManager manager) {
+        super(false);
+        m_manager = manager;
+    }
+
+    @Override
+    protected void populateColumnSchema(ArrayList<ColumnInfo> columns) {
+        columns.add(new ColumnInfo("TIMESTAMP", VoltType.BIGINT));
+        columns.add(new ColumnInfo("TABLE_NAME", VoltType.STRING));
+        columns.add(new ColumnInfo("PARTITION_ID", VoltType.INTEGER));
+        columns.add(new ColumnInfo("BATCH_SIZE", VoltType.INTEGER));
+        columns.add(new ColumnInfo("ROWS_DELETED", VoltType.BIGINT));
+        columns.add(new ColumnInfo("ROWS_REMAINING", VoltType.BIGINT));
+        columns.add(new ColumnInfo("LAST_LATENCY", VoltType.BIGINT));
+        columns.add(new ColumnInfo("LAG", VoltType.BIGINT));
+    }
+
+    @Override
+    protected void updateStatsRow(Object rowKey, Object[] rowValues) {
+        final TTLManager.PartitionDeleter deleter = m_deleters.get(rowKey);
+        final long now = System.currentTimeMillis();
+        rowValues[columnNameToIndex.get("TIMESTAMP")] = now;
+        rowValues[columnNameToIndex.get("TABLE_NAME")] = deleter.task.tableName;
+        rowValues[columnNameToIndex.get("PARTITION_ID")] = deleter.partitionId;
+        rowValues[columnNameToIndex.get("BATCH_SIZE")] = deleter.batchSize;
+        rowValues[columnNameToIndex.get("ROWS_DELETED")] = deleter.rowsDeleted.get();
+        rowValues[columnNameToIndex.get("ROWS_REMAINING")] = deleter.rowsLeft;
+        rowValues[columnNameToIndex.get("LAST_LATENCY")] = deleter.lastLatency;
+        rowValues[columnNameToIndex.get("LAG")] = deleter.getLag(now);
+    }
+
+    @Override
+    protected Iterator<Object> getStatsRowKeyIterator(boolean interval) {
+        final Map<Object, TTLManager.PartitionDeleter> deleters = new HashMap<Object, TTLManager.PartitionDeleter>();
+        for (TTLManager.TTLTask task : m_manager.getTasks().values()) {
+            if (task.deleters != null) {
+                for (TTLManager.PartitionDeleter deleter : task.deleters.values()) {
+                    deleters.put(task.tableName + ":" + deleter.partitionId, deleter);
+                }
+            }
+        }
+        m_deleters = deleters;
+        return new ArrayList<Object>(deleters.keySet()).iterator();
+    }
+}
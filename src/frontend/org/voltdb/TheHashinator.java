@@ -31,6 +31,7 @@ import org.voltcore.utils.Pair;
 import org.voltdb.dtxn.UndoAction;
 import org.voltdb.sysprocs.saverestore.HashinatorSnapshotData;
 
+import com.google_voltpatches.common.base.Preconditions;
 import com.google_voltpatches.common.base.Supplier;
 import com.google_voltpatches.common.base.Suppliers;
 import com.google_voltpatches.common.base.Throwables;
@@ -304,6 +305,51 @@ public abstract class TheHashinator {
         return pHashToPartition(partitionParamType, partitionValue);
     }
 
+    /**
+     * Hash a batch of integer partition keys to partitions in one call, with the same result
+     * as calling getHashedPartitionForParameter(VoltType.BIGINT, values[i]) for each key.
+     * Long.MIN_VALUE is the null BIGINT and goes to partition 0.
+     *
+     * @param values      keys to hash
+     * @param partitions  receives the partition of each key, at least as long as values
+     */
+    public void getHashedPartitionsForLongs(long[] values, int[] partitions) {
+        Preconditions.checkArgument(partitions.length >= values.length);
+        for (int ii = 0; ii < values.length; ii++) {
+            partitions[ii] = pHashToPartition(VoltType.BIGINT, values[ii]);
+        }
+    }
+
+    /**
+     * Hash a batch of string (UTF-8 encoded) or varbinary partition keys to partitions in one
+     * call, with the same result as calling getHashedPartitionForParameter for each key.
+     * A null key goes to partition 0.
+     *
+     * @param values      keys to hash
+     * @param partitions  receives the partition of each key, at least as long as values
+     */
+    public void getHashedPartitionsForBytes(byte[][] values, int[] partitions) {
+        Preconditions.checkArgument(partitions.length >= values.length);
+        for (int ii = 0; ii < values.length; ii++) {
+            partitions[ii] = pHashToPartition(VoltType.VARBINARY, values[ii]);
+        }
+    }
+
+    /**
+     * Batch form of getPartitionForParameter for integer keys, see getHashedPartitionsForLongs
+     */
+    public static void getPartitionsForLongs(long[] values, int[] partitions) {
+        instance.get().getSecond().getHashedPartitionsForLongs(values, partitions);
+    }
+
+    /**
+     * Batch form of getPartitionForParameter for string and varbinary keys,
+     * see getHashedPartitionsForBytes
+     */
+    public static void getPartitionsForBytes(byte[][] values, int[] partitions) {
+        instance.get().getSecond().getHashedPartitionsForBytes(values, partitions);
+    }
+
     /**
      * Update the hashinator in a thread safe manner with a newer version of the hash function.
      * A version number must be provided and the new config will only be used if it is greater than
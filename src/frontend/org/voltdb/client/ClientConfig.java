@@ -70,6 +70,7 @@ public class ClientConfig {
     boolean m_topologyChangeAware = false;
     boolean m_enableSSL = false;
     String m_sslPropsFile = null;
+    byte m_resultEncoding = 0;
 
     //For unit testing. This should really be in Environment class we should assemble all such there.
     public static final boolean ENABLE_SSL_FOR_TEST = Boolean.valueOf(
@@ -355,6 +356,24 @@ public class ClientConfig {
         m_useClientAffinity = on;
     }
 
+    /**
+     * <p>Ask the servers to encode large result tables before sending them. String columns are
+     * dictionary encoded and repeated values are run-length encoded, optionally followed by
+     * block compression. The client decodes the tables before returning them.</p>
+     *
+     * <p>This trades CPU on both ends for fewer bytes on the wire, which pays off for large
+     * results with many repeated values over slow links. Servers which don't support it
+     * send plain tables.</p>
+     *
+     * @param compress Also compress the encoded tables.
+     */
+    public void enableResultEncoding(boolean compress) {
+        m_resultEncoding = ResultEncoding.DICTIONARY;
+        if (compress) {
+            m_resultEncoding |= ResultEncoding.COMPRESSED;
+        }
+    }
+
     /**
      * <p>Attempts to connect to all nodes in the cluster</p>
      * <p>Defaults to false.</p>
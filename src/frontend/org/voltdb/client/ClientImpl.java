@@ -22,6 +22,7 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
@@ -90,6 +91,8 @@ public final class ClientImpl implements Client {
     private final byte m_passwordHash[];
     private final ClientAuthScheme m_hashScheme;
     private final SslContext m_sslContext;
+    // result table encodings asked of the server, 0 for none
+    private final byte m_resultEncoding;
 
 
     /**
@@ -158,6 +161,7 @@ public final class ClientImpl implements Client {
         }
 
         m_hashScheme = config.m_hashScheme;
+        m_resultEncoding = config.m_resultEncoding;
         if (config.m_cleartext) {
             m_passwordHash = ConnectionUtil.getHashedPassword(m_hashScheme, config.m_password);
         } else {
@@ -319,7 +323,7 @@ public final class ClientImpl implements Client {
     {
         long handle = m_handle.getAndIncrement();
         ProcedureInvocation invocation
-            = new ProcedureInvocation(handle, batchTimeout, allPartition, procName, parameters);
+            = new ProcedureInvocation(handle, batchTimeout, allPartition, m_resultEncoding, procName, parameters);
         long nanos = unit.toNanos(clientTimeout);
         return internalSyncCallProcedure(nanos, invocation);
     }
@@ -414,7 +418,7 @@ public final class ClientImpl implements Client {
 
         long handle = m_handle.getAndIncrement();
         ProcedureInvocation invocation
-                = new ProcedureInvocation(handle, batchTimeout, allPartition, procName, parameters);
+                = new ProcedureInvocation(handle, batchTimeout, allPartition, m_resultEncoding, procName, parameters);
 
         if (m_isShutdown) {
             return false;
@@ -1016,6 +1020,11 @@ public final class ClientImpl implements Client {
 
     }
 
+    //Hidden method for partitioning a key in its serialized form without boxing it
+    public long getPartitionForBytes(ByteBuffer key, int offset, int length) {
+        return m_distributer.getPartitionForBytes(key, offset, length);
+    }
+
     @Override
     public VoltBulkLoader getNewBulkLoader(String tableName, int maxBatchSize, boolean upsertMode, BulkLoaderFailureCallBack failureCallback) throws Exception
     {
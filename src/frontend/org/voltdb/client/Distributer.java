@@ -72,6 +72,7 @@ import org.voltdb.common.Constants;
 
 import com.google_voltpatches.common.base.Throwables;
 import com.google_voltpatches.common.collect.ImmutableList;
+import com.google_voltpatches.common.collect.ImmutableMap;
 import com.google_voltpatches.common.collect.ImmutableSet;
 import com.google_voltpatches.common.collect.ImmutableSortedMap;
 import com.google_voltpatches.common.collect.Maps;
@@ -86,6 +87,9 @@ import jsr166y.ThreadLocalRandom;
  *
  *   It is safe to synchronized on an individual connection and then the distributer, but it is always unsafe
  *   to synchronized on the distributer and then an individual connection.
+ *
+ *   Invocations are routed against an immutable RoutingSnapshot and only take the distributer lock
+ *   to report backpressure. Anything that changes the connections or topology must publish a new snapshot.
  */
 class Distributer {
 
@@ -103,7 +107,7 @@ class Distributer {
     private final CopyOnWriteArrayList<NodeConnection> m_connections =
             new CopyOnWriteArrayList<>();
 
-    private final ArrayList<ClientStatusListenerExt> m_listeners = new ArrayList<>();
+    private final CopyOnWriteArrayList<ClientStatusListenerExt> m_listeners = new CopyOnWriteArrayList<>();
 
     //Selector and connection handling, does all work in blocking selection thread
     private final VoltNetworkPool m_network;
@@ -111,7 +115,7 @@ class Distributer {
     private final SslContext m_sslContext;
 
     // Temporary until a distribution/affinity algorithm is written
-    private int m_nextConnection = 0;
+    private final AtomicInteger m_nextConnection = new AtomicInteger(0);
 
     private final boolean m_useMultipleThreads;
     private final boolean m_useClientAffinity;
@@ -134,9 +138,36 @@ class Distributer {
         }
     }
 
+    /**
+     * Immutable view of the connections and client affinity topology used to route invocations.
+     * Writers update the mutable topology maps while holding the distributer lock and then publish
+     * a new snapshot so that queue() can route without taking any lock.
+     */
+    private static final class RoutingSnapshot {
+        private final NodeConnection[] connections;
+        private final HashinatorLite hashinator;
+        private final ImmutableMap<Integer, NodeConnection> partitionMasters;
+        private final ImmutableMap<Integer, NodeConnection[]> partitionReplicas;
+
+        private RoutingSnapshot(NodeConnection[] connections,
+                HashinatorLite hashinator,
+                Map<Integer, NodeConnection> partitionMasters,
+                Map<Integer, NodeConnection[]> partitionReplicas) {
+            this.connections = connections;
+            this.hashinator = hashinator;
+            this.partitionMasters = ImmutableMap.copyOf(partitionMasters);
+            this.partitionReplicas = ImmutableMap.copyOf(partitionReplicas);
+        }
+    }
+
+    // Mutable topology, only accessed while holding the distributer lock
     private final Map<Integer, NodeConnection> m_partitionMasters = new HashMap<>();
     private final Map<Integer, NodeConnection[]> m_partitionReplicas = new HashMap<>();
     private final Map<Integer, NodeConnection> m_hostIdToConnection = new HashMap<>();
+    private final AtomicReference<RoutingSnapshot> m_routing = new AtomicReference<>(
+            new RoutingSnapshot(new NodeConnection[0], null,
+                    Collections.<Integer, NodeConnection>emptyMap(),
+                    Collections.<Integer, NodeConnection[]>emptyMap()));
     private final AtomicReference<ImmutableSortedMap<String, Procedure>> m_procedureInfo =
                                 new AtomicReference<ImmutableSortedMap<String, Procedure>>();
     private final AtomicReference<ImmutableSet<Integer>> m_partitionKeys = new AtomicReference<ImmutableSet<Integer>>();
@@ -144,13 +175,14 @@ class Distributer {
     private final AtomicReference<ClientResponse> m_partitionUpdateStatus = new AtomicReference<ClientResponse>();
 
     //This is the instance of the Hashinator we picked from TOPO used only for client affinity.
+    //Only accessed while holding the distributer lock, readers use the routing snapshot.
     private HashinatorLite m_hashinator = null;
     //This is a global timeout that will be used if a per-procedure timeout is not provided with the procedure call.
     private final long m_procedureCallTimeoutNanos;
     private static final long MINIMUM_LONG_RUNNING_SYSTEM_CALL_TIMEOUT_MS = 30 * 60 * 1000; // 30 minutes
     private final long m_connectionResponseTimeoutNanos;
-    private final Map<Integer, ClientAffinityStats> m_clientAffinityStats =
-        new HashMap<>();
+    private final ConcurrentMap<Integer, ClientAffinityStats> m_clientAffinityStats =
+        new ConcurrentHashMap<>();
 
     public final RateLimiter m_rateLimiter = new RateLimiter();
 
@@ -201,12 +233,17 @@ class Distributer {
                 return;
             }
             try {
+                boolean updated = false;
                 synchronized (Distributer.this) {
                     VoltTable results[] = clientResponse.getResults();
                     if (results != null && results.length > 1) {
-                        updateAffinityTopology(results);
+                        updated = updateAffinityTopology(results);
                     }
                 }
+                // Queues work on a connection, so it must not hold the distributer lock
+                if (updated) {
+                    refreshPartitionKeys(true);
+                }
             }
             catch (Exception e) {
                 e.printStackTrace();
@@ -320,11 +357,8 @@ class Distributer {
         @Override
         public void run() {
             try {
-                // make a threadsafe copy of all connections
-                ArrayList<NodeConnection> connections = new ArrayList<>();
-                synchronized (Distributer.this) {
-                    connections.addAll(m_connections);
-                }
+                // the routing snapshot is an immutable copy of all connections
+                final NodeConnection[] connections = m_routing.get().connections;
 
                 final long nowNanos = System.nanoTime();
 
@@ -795,6 +829,7 @@ class Distributer {
                 }
 
                 m_connections.remove(this);
+                publishRoutingSnapshot();
                 //Notify listeners that a connection has been lost
                 for (ClientStatusListenerExt s : m_listeners) {
                     s.connectionLost(
@@ -1046,6 +1081,7 @@ class Distributer {
             m_buildString = (String)socketChannelAndInstanceIdAndBuildString[2];
 
             m_connections.add(cxn);
+            publishRoutingSnapshot();
         }
 
         if (m_useClientAffinity) {
@@ -1146,11 +1182,13 @@ class Distributer {
         boolean backpressure = true;
 
         /*
-         * Synchronization is necessary to ensure that m_connections is not modified
-         * as well as to ensure that backpressure is reported correctly
+         * Route against an immutable snapshot of the connections and topology so that
+         * concurrent callers don't serialize on the distributer lock
          */
-        synchronized (this) {
-            final int totalConnections = m_connections.size();
+        {
+            final RoutingSnapshot routing = m_routing.get();
+            final NodeConnection[] connections = routing.connections;
+            final int totalConnections = connections.length;
 
             if (totalConnections == 0) {
                 throw new NoConnectionsException("No connections.");
@@ -1161,7 +1199,7 @@ class Distributer {
              * routing, but backpressure will be managed anyways. This is where we guess partition based on client
              * affinity and known topology (hashinator initialized).
              */
-            if (m_useClientAffinity && (m_hashinator != null)) {
+            if (m_useClientAffinity && (routing.hashinator != null)) {
                 final ImmutableSortedMap<String, Procedure> procedures = m_procedureInfo.get();
                 Procedure procedureInfo = null;
                 if (procedures != null) {
@@ -1175,7 +1213,7 @@ class Distributer {
                         // User may have passed too few parameters to allow dispatching.
                         // Avoid an indexing error here to fall through to the proper ProcCallException.
                             (procedureInfo.partitionParameter < invocation.getPassedParamCount())) {
-                        hashedPartition = m_hashinator.getHashedPartitionForParameter(
+                        hashedPartition = routing.hashinator.getHashedPartitionForParameter(
                                 procedureInfo.partitionParameterType,
                                 invocation.getPartitionParamValue(procedureInfo.partitionParameter));
                     }
@@ -1184,7 +1222,7 @@ class Distributer {
                      * This is probably slower for SAFE consistency.
                      */
                     if (!procedureInfo.multiPart && procedureInfo.readOnly && m_sendReadsToReplicasBytDefaultIfCAEnabled) {
-                        NodeConnection partitionReplicas[] = m_partitionReplicas.get(hashedPartition);
+                        NodeConnection partitionReplicas[] = routing.partitionReplicas.get(hashedPartition);
                         if (partitionReplicas != null && partitionReplicas.length > 0) {
                             cxn = partitionReplicas[ThreadLocalRandom.current().nextInt(partitionReplicas.length)];
                             if (cxn.hadBackPressure()) {
@@ -1204,7 +1242,7 @@ class Distributer {
                         /*
                          * For writes or SAFE reads, this is the best way to go
                          */
-                        cxn = m_partitionMasters.get(hashedPartition);
+                        cxn = routing.partitionMasters.get(hashedPartition);
                         if (cxn != null && !cxn.hadBackPressure() || ignoreBackpressure) {
                             backpressure = false;
                         }
@@ -1219,7 +1257,10 @@ class Distributer {
                 ClientAffinityStats stats = m_clientAffinityStats.get(hashedPartition);
                 if (stats == null) {
                     stats = new ClientAffinityStats(hashedPartition, 0, 0, 0, 0);
-                    m_clientAffinityStats.put(hashedPartition, stats);
+                    ClientAffinityStats existing = m_clientAffinityStats.putIfAbsent(hashedPartition, stats);
+                    if (existing != null) {
+                        stats = existing;
+                    }
                 }
                 if (cxn != null) {
                     if (procedureInfo != null && procedureInfo.readOnly) {
@@ -1240,9 +1281,11 @@ class Distributer {
                     }
                 }
             }
+            boolean roundRobin = false;
             if (cxn == null) {
+                roundRobin = true;
                 for (int i=0; i < totalConnections; ++i) {
-                    cxn = m_connections.get(Math.abs(++m_nextConnection % totalConnections));
+                    cxn = connections[Math.abs(m_nextConnection.incrementAndGet() % totalConnections)];
                     if (!cxn.hadBackPressure() || ignoreBackpressure) {
                         // serialize and queue the invocation
                         backpressure = false;
@@ -1252,15 +1295,33 @@ class Distributer {
             }
 
             if (backpressure) {
-                cxn = null;
-                for (ClientStatusListenerExt s : m_listeners) {
-                    s.backpressure(true);
+                /*
+                 * Synchronization on Distributer.this orders this report with offBackPressure().
+                 * Backpressure may have ended since the check above, so only report it if the
+                 * connection(s) considered are still backpressured to avoid a lost wakeup.
+                 * If not, the caller will simply retry.
+                 */
+                synchronized (this) {
+                    boolean stillBackpressured = true;
+                    if (roundRobin) {
+                        for (NodeConnection nc : connections) {
+                            stillBackpressured &= nc.hadBackPressure();
+                        }
+                    } else {
+                        stillBackpressured = cxn.hadBackPressure();
+                    }
+                    if (stillBackpressured) {
+                        for (ClientStatusListenerExt s : m_listeners) {
+                            s.backpressure(true);
+                        }
+                    }
                 }
+                cxn = null;
             }
         }
 
         /*
-         * Do the heavy weight serialization outside the synchronized block.
+         * Do the heavy weight serialization after routing.
          * createWork synchronizes on an individual connection which allows for more concurrency
          */
         if (cxn != null) {
@@ -1378,11 +1439,9 @@ class Distributer {
     Map<Integer, ClientAffinityStats> getAffinityStatsSnapshot()
     {
         Map<Integer, ClientAffinityStats> retval = new HashMap<>();
-        // these get modified under this lock in queue()
-        synchronized(this) {
-            for (Entry<Integer, ClientAffinityStats> e : m_clientAffinityStats.entrySet()) {
-                retval.put(e.getKey(), (ClientAffinityStats)e.getValue().clone());
-            }
+        // each entry is cloned under its own lock since queue() updates them concurrently
+        for (Entry<Integer, ClientAffinityStats> e : m_clientAffinityStats.entrySet()) {
+            retval.put(e.getKey(), (ClientAffinityStats)e.getValue().clone());
         }
         return retval;
     }
@@ -1422,7 +1481,10 @@ class Distributer {
         return Collections.unmodifiableMap(connectedHostIPAndPortMap);
     }
 
-    private void updateAffinityTopology(VoltTable tables[]) {
+    /**
+     * @return true if the topology was updated, the partition keys should then be refreshed
+     */
+    private boolean updateAffinityTopology(VoltTable tables[]) {
         //First table contains the description of partition ids master/slave relationships
         VoltTable vt = tables[0];
 
@@ -1439,7 +1501,7 @@ class Distributer {
             if (!advanced) {
                 System.err.println("Topology description received from Volt was incomplete " +
                                    "performance will be lower because transactions can't be routed at this client");
-                return;
+                return false;
             }
             m_hashinator = new HashinatorLite(
                     tables[1].getVarbinary("HASHCONFIG"),
@@ -1471,10 +1533,21 @@ class Distributer {
                 m_partitionMasters.put(partition, m_hostIdToConnection.get(leaderHostId));
             }
         }
+        publishRoutingSnapshot();
         if (m_topologyChangeAware) {
             m_unconnectedHosts.set(ImmutableSet.copyOf(unconnected));
         }
-        refreshPartitionKeys(true);
+        return true;
+    }
+
+    /**
+     * Publish a new routing snapshot reflecting the current connections and topology.
+     * Must be called while holding the distributer lock after any change to either.
+     */
+    private void publishRoutingSnapshot() {
+        assert(Thread.holdsLock(this));
+        m_routing.set(new RoutingSnapshot(m_connections.toArray(new NodeConnection[0]),
+                m_hashinator, m_partitionMasters, m_partitionReplicas));
     }
 
     private void updateProcedurePartitioning(VoltTable vt) {
@@ -1525,7 +1598,7 @@ class Distributer {
      * @return
      */
     public boolean isHashinatorInitialized() {
-        return (m_hashinator != null);
+        return (m_routing.get().hashinator != null);
     }
 
     /**
@@ -1536,10 +1609,19 @@ class Distributer {
      * @return
      */
     public long getPartitionForParameter(byte typeValue, Object value) {
-        if (m_hashinator == null) {
+        final HashinatorLite hashinator = m_routing.get().hashinator;
+        if (hashinator == null) {
+            return -1;
+        }
+        return hashinator.getHashedPartitionForParameter(typeValue, value);
+    }
+
+    long getPartitionForBytes(ByteBuffer key, int offset, int length) {
+        final HashinatorLite hashinator = m_routing.get().hashinator;
+        if (hashinator == null) {
             return -1;
         }
-        return m_hashinator.getHashedPartitionForParameter(typeValue, value);
+        return hashinator.getHashedPartitionForBytes(key, offset, length);
     }
 
     private ByteBuffer serializeSPI(ProcedureInvocation pi) throws IOException {
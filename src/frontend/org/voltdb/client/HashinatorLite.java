@@ -20,6 +20,7 @@ package org.voltdb.client;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.zip.InflaterOutputStream;
 
 import org.apache.cassandra_voltpatches.MurmurHash3;
@@ -57,6 +58,13 @@ public class HashinatorLite {
     private long m_etokens = 0;
     private int m_etokenCount;
 
+    /*
+     * Direct lookup from the top LOOKUP_BITS of a hash to its partition, see buildPartitionLookup
+     */
+    public static final int LOOKUP_BITS = 16;
+    private static final int LOOKUP_SHIFT = 32 - LOOKUP_BITS;
+    private final int m_partitionLookup[];
+
     /**
      * Initialize TheHashinator with the specified implementation class and configuration.
      * The starting version number will be 0.
@@ -65,6 +73,47 @@ public class HashinatorLite {
         Pair<Long, Integer> p = (cooked ? updateCooked(configBytes) : updateRaw(configBytes));
         m_etokens = p.getFirst();
         m_etokenCount = p.getSecond();
+        m_partitionLookup = buildPartitionLookup(m_etokens, m_etokenCount);
+    }
+
+    /**
+     * Build a table with one entry for each of the 2^LOOKUP_BITS equal slices of the ring,
+     * indexed by the top bits of the hash. An entry holds the partition when a single token
+     * covers the whole slice and -1 when a token starts somewhere inside it, in which case
+     * the hash still has to be searched for. Shared with ElasticHashinator.
+     *
+     * @param tokens      pointer to the token/partition pairs, sorted by token
+     * @param tokenCount  number of pairs
+     * @return the table, or null if the ring doesn't start at Integer.MIN_VALUE or repeats a
+     *         token, neither of which a valid ring does
+     */
+    public static int[] buildPartitionLookup(long tokens, int tokenCount) {
+        if (tokenCount == 0 || Bits.unsafe.getInt(tokens) != Integer.MIN_VALUE) {
+            return null;
+        }
+        for (int ii = 1; ii < tokenCount; ii++) {
+            if (Bits.unsafe.getInt(tokens + ii * 8) <= Bits.unsafe.getInt(tokens + (ii - 1) * 8)) {
+                return null;
+            }
+        }
+
+        final int lookup[] = new int[1 << LOOKUP_BITS];
+        final int sliceMask = (1 << LOOKUP_SHIFT) - 1;
+        int token = 0;
+        // Walk the slices in ring (signed) order alongside the tokens
+        for (long slice = 0; slice < lookup.length; slice++) {
+            final int low = (int)((slice << LOOKUP_SHIFT) + Integer.MIN_VALUE);
+            final int high = low + sliceMask;
+            while (token + 1 < tokenCount && Bits.unsafe.getInt(tokens + (token + 1) * 8) <= low) {
+                token++;
+            }
+            if (token + 1 < tokenCount && Bits.unsafe.getInt(tokens + (token + 1) * 8) <= high) {
+                lookup[low >>> LOOKUP_SHIFT] = -1;
+            } else {
+                lookup[low >>> LOOKUP_SHIFT] = Bits.unsafe.getInt(tokens + token * 8 + 4);
+            }
+        }
+        return lookup;
     }
 
     public HashinatorLite(int numPartitions) {
@@ -176,6 +225,12 @@ public class HashinatorLite {
      * Long.MAX_VALUE
      */
     public int partitionForToken(int hash) {
+        if (m_partitionLookup != null) {
+            final int partition = m_partitionLookup[hash >>> LOOKUP_SHIFT];
+            if (partition >= 0) {
+                return partition;
+            }
+        }
         long token = getTokenPtr(hash);
         return Bits.unsafe.getInt(token + 4);
     }
@@ -196,8 +251,7 @@ public class HashinatorLite {
 
         ByteBuffer buf = ByteBuffer.wrap(bytes);
         final int hash = MurmurHash3.hash3_x64_128(buf, 0, bytes.length, 0);
-        long token = getTokenPtr(hash);
-        return Bits.unsafe.getInt(token + 4);
+        return partitionForToken(hash);
     }
 
     private long getTokenPtr(int hash) {
@@ -270,6 +324,62 @@ public class HashinatorLite {
         return hashToPartition(partitionParamType, partitionValue);
     }
 
+    /**
+     * Batch form of getHashedPartitionForParameter for integer keys. partitions[i] is set to the
+     * partition of Long.valueOf(values[i]), so Long.MIN_VALUE (null) goes to partition 0.
+     *
+     * @param values      keys to hash
+     * @param partitions  receives the partition of each key, at least as long as values
+     */
+    public void getHashedPartitionsForLongs(long[] values, int[] partitions) {
+        Preconditions.checkArgument(partitions.length >= values.length);
+        // Same little endian layout VoltType.valueToBytes produces, without a buffer per key
+        final ByteBuffer buf = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+        for (int ii = 0; ii < values.length; ii++) {
+            if (values[ii] == Long.MIN_VALUE) {
+                partitions[ii] = 0;
+            } else {
+                buf.putLong(0, values[ii]);
+                partitions[ii] = partitionForToken(MurmurHash3.hash3_x64_128(buf, 0, 8, 0));
+            }
+        }
+    }
+
+    /**
+     * Batch form of getHashedPartitionForParameter for string (UTF-8 encoded) and varbinary
+     * keys. A null key goes to partition 0.
+     *
+     * @param values      keys to hash
+     * @param partitions  receives the partition of each key, at least as long as values
+     */
+    public void getHashedPartitionsForBytes(byte[][] values, int[] partitions) {
+        Preconditions.checkArgument(partitions.length >= values.length);
+        for (int ii = 0; ii < values.length; ii++) {
+            final byte bytes[] = values[ii];
+            if (bytes == null) {
+                partitions[ii] = 0;
+            } else {
+                partitions[ii] = partitionForToken(
+                        MurmurHash3.hash3_x64_128(ByteBuffer.wrap(bytes), 0, bytes.length, 0));
+            }
+        }
+    }
+
+    /**
+     * Partition of a key that is already in the {@link VoltType#valueToBytes(Object)} form,
+     * hashed in place so callers can keep keys in a reusable buffer.
+     *
+     * @param key     buffer holding the key
+     * @param offset  absolute offset of the key in the buffer
+     * @param length  length of the key, negative for a null key which goes to partition 0
+     */
+    public int getHashedPartitionForBytes(ByteBuffer key, int offset, int length) {
+        if (length < 0) {
+            return 0;
+        }
+        return partitionForToken(MurmurHash3.hash3_x64_128(key, offset, length, 0));
+    }
+
     // copy and pasted code below from the compression service
     // to avoid linking all that jazz into the client code
 
@@ -47,6 +47,7 @@ import java.nio.ByteBuffer;
 public abstract class ProcedureInvocationExtensions {
     public static final byte BATCH_TIMEOUT = 1;  // batch timeout
     public static final byte ALL_PARTITION = 2; // whether proc is part of run-everywhere
+    public static final byte RESULT_ENCODING = 3; // result table encodings the client can decode
 
     private static final int INTEGER_SIZE = 4;
 
@@ -87,6 +88,21 @@ public abstract class ProcedureInvocationExtensions {
         return true;
     }
 
+    public static void writeResultEncodingWithTypeByte(ByteBuffer buf, byte encoding) {
+        buf.put(RESULT_ENCODING);
+        writeLength(buf, 1);
+        buf.put(encoding);
+    }
+
+    public static byte readResultEncoding(ByteBuffer buf) {
+        int len = readLength(buf);
+        if (len != 1) {
+            throw new IllegalStateException(
+                    "Result encoding extension serialization length expected to be 1");
+        }
+        return buf.get();
+    }
+
     public static void skipUnknownExtension(ByteBuffer buf) {
         int len = readLength(buf);
         buf.position(buf.position() + len); // skip ahead
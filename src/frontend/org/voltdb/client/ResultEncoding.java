@@ -0,0 +1,470 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2019 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.client;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.voltdb.PrivateVoltTableFactory;
+import org.voltdb.VoltTable;
+import org.voltdb.VoltType;
+
+/**
+ * Helper class for the optional encoding of result tables sent to clients that asked
+ * for it with {@link ClientConfig#enableResultEncoding(boolean)}.
+ *
+ * With DICTIONARY, the rows of the table are stored column by column. Each column is
+ * stored as plain values, as runs of repeated values, or, for variable length columns,
+ * as a dictionary of distinct values followed by runs of dictionary codes. Whichever is
+ * smallest is picked. Values keep their usual table serialization, counts, run lengths
+ * and codes are unsigned varints. The table header is stored unchanged in front.
+ *
+ * With COMPRESSED, the table, encoded or not, is deflated and preceded by its int length.
+ *
+ * An encoded table that is not smaller than the table itself is not used.
+ */
+public abstract class ResultEncoding {
+    public static final byte DICTIONARY = 1;  // column wise dictionary and run-length encoding
+    public static final byte COMPRESSED = 2;  // block compression
+    static final byte ALL = DICTIONARY | COMPRESSED;
+
+    // how each column is stored
+    private static final byte PLAIN = 0;
+    private static final byte RUN_LENGTH = 1;
+    private static final byte DICTIONARY_RUN_LENGTH = 2;
+
+    // columns with more distinct values are not dictionary encoded
+    static final int MAX_DICTIONARY_SIZE = 1 << 16;
+
+    public static boolean isValid(byte encoding) {
+        return encoding != 0 && (encoding & ~ALL) == 0;
+    }
+
+    /**
+     * Encode a table.
+     *
+     * @return the encoded table or null if it would not be smaller than the table
+     */
+    public static byte[] encode(VoltTable table, byte encoding) {
+        assert(isValid(encoding));
+        ByteBuffer dup = PrivateVoltTableFactory.getTableDataReference(table);
+        byte raw[] = new byte[dup.limit()];
+        dup.get(raw);
+
+        byte encoded[] = raw;
+        if ((encoding & DICTIONARY) != 0) {
+            encoded = encodeColumns(raw);
+        }
+        if ((encoding & COMPRESSED) != 0) {
+            encoded = deflate(encoded);
+        }
+        return encoded.length < raw.length ? encoded : null;
+    }
+
+    /**
+     * Decode a table encoded by {@link #encode(VoltTable, byte)}.
+     *
+     * @param buf  the encoded table, from position to limit
+     */
+    public static VoltTable decode(ByteBuffer buf, byte encoding) throws IOException {
+        if (!isValid(encoding)) {
+            throw new IOException("Unknown result table encoding: " + encoding);
+        }
+        byte table[] = new byte[buf.remaining()];
+        buf.get(table);
+        try {
+            if ((encoding & COMPRESSED) != 0) {
+                table = inflate(table);
+            }
+            if ((encoding & DICTIONARY) != 0) {
+                table = decodeColumns(table);
+            }
+        }
+        catch (RuntimeException e) {
+            throw new IOException("Malformed encoded result table", e);
+        }
+        return PrivateVoltTableFactory.createVoltTableFromBuffer(ByteBuffer.wrap(table), false);
+    }
+
+    /*
+     * A value in a serialized table, used as dictionary key.
+     */
+    private static final class Value {
+        final byte m_bytes[];
+        final int m_offset;
+        final int m_length;
+        final int m_hash;
+
+        Value(byte bytes[], int offset, int length) {
+            m_bytes = bytes;
+            m_offset = offset;
+            m_length = length;
+            int hash = 1;
+            for (int ii = offset; ii < offset + length; ii++) {
+                hash = 31 * hash + bytes[ii];
+            }
+            m_hash = hash;
+        }
+
+        @Override
+        public int hashCode() {
+            return m_hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Value)) {
+                return false;
+            }
+            Value other = (Value) o;
+            return m_hash == other.m_hash &&
+                    sameBytes(m_bytes, m_offset, m_length, other.m_bytes, other.m_offset, other.m_length);
+        }
+    }
+
+    private static boolean sameBytes(byte a[], int aOffset, int aLength, byte b[], int bOffset, int bLength) {
+        if (aLength != bLength) {
+            return false;
+        }
+        for (int ii = 0; ii < aLength; ii++) {
+            if (a[aOffset + ii] != b[bOffset + ii]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static VoltType[] columnTypes(ByteBuffer table) {
+        VoltType types[] = new VoltType[table.getShort(5)];
+        for (int ii = 0; ii < types.length; ii++) {
+            types[ii] = VoltType.get(table.get(7 + ii));
+        }
+        return types;
+    }
+
+    // length of the value at offset, variable length values are preceded by an int length, -1 for null
+    private static int valueLength(ByteBuffer table, int offset, VoltType type) {
+        if (type.isVariableLength()) {
+            return 4 + Math.max(0, table.getInt(offset));
+        }
+        return type.getLengthInBytesForFixedTypesWithoutCheck();
+    }
+
+    private static byte[] encodeColumns(byte raw[]) {
+        final ByteBuffer table = ByteBuffer.wrap(raw);
+        final int rowStart = table.getInt(0) + 4;
+        final int rowCount = table.getInt(rowStart);
+        final VoltType types[] = columnTypes(table);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length / 2);
+        out.write(raw, 0, rowStart);
+        writeVarInt(out, rowCount);
+
+        // offset of the next value of each row, the columns are encoded in order
+        final int cursors[] = new int[rowCount];
+        int position = rowStart + 4;
+        for (int row = 0; row < rowCount; row++) {
+            cursors[row] = position + 4;
+            position += 4 + table.getInt(position);
+        }
+
+        for (VoltType type : types) {
+            encodeColumn(out, table, type, cursors);
+        }
+        return out.toByteArray();
+    }
+
+    private static void encodeColumn(ByteArrayOutputStream out, ByteBuffer table, VoltType type, int cursors[]) {
+        final byte raw[] = table.array();
+        final int rowCount = cursors.length;
+
+        // size the column in each encoding
+        long plainBytes = 0;
+        long runBytes = 0;      // the run lengths
+        long runValueBytes = 0; // the value of each run
+        long codeBytes = 0;     // the dictionary code of each run
+        long dictionaryBytes = 0;
+        int runs = 0;
+        HashMap<Value, Integer> dictionary = type.isVariableLength() ? new HashMap<Value, Integer>() : null;
+        ArrayList<Value> dictionaryValues = new ArrayList<Value>();
+        int runStart = 0;
+        for (int row = 0; row < rowCount; row++) {
+            plainBytes += valueLength(table, cursors[row], type);
+            if (row + 1 < rowCount && sameValue(table, type, cursors[row + 1], cursors[runStart])) {
+                continue;
+            }
+            // this row ends a run
+            final int length = valueLength(table, cursors[runStart], type);
+            runs++;
+            runBytes += varIntSize(row + 1 - runStart);
+            runValueBytes += length;
+            if (dictionary != null) {
+                Value value = new Value(raw, cursors[runStart], length);
+                Integer code = dictionary.get(value);
+                if (code == null) {
+                    code = dictionary.size();
+                    dictionary.put(value, code);
+                    dictionaryValues.add(value);
+                    dictionaryBytes += length;
+                    if (dictionary.size() > MAX_DICTIONARY_SIZE) {
+                        dictionary = null;
+                    }
+                }
+                codeBytes += varIntSize(code);
+            }
+            runStart = row + 1;
+        }
+
+        final long runLengthSize = varIntSize(runs) + runBytes + runValueBytes;
+        final long dictionarySize = dictionary == null ? Long.MAX_VALUE :
+            varIntSize(dictionary.size()) + dictionaryBytes + varIntSize(runs) + runBytes + codeBytes;
+
+        if (dictionarySize < runLengthSize && dictionarySize < plainBytes) {
+            out.write(DICTIONARY_RUN_LENGTH);
+            writeVarInt(out, dictionaryValues.size());
+            for (Value value : dictionaryValues) {
+                out.write(raw, value.m_offset, value.m_length);
+            }
+            writeVarInt(out, runs);
+            writeRuns(out, table, type, cursors, dictionary);
+        }
+        else if (runLengthSize < plainBytes) {
+            out.write(RUN_LENGTH);
+            writeVarInt(out, runs);
+            writeRuns(out, table, type, cursors, null);
+        }
+        else {
+            out.write(PLAIN);
+            for (int row = 0; row < rowCount; row++) {
+                out.write(raw, cursors[row], valueLength(table, cursors[row], type));
+            }
+        }
+
+        // move on to the next column
+        for (int row = 0; row < rowCount; row++) {
+            cursors[row] += valueLength(table, cursors[row], type);
+        }
+    }
+
+    private static boolean sameValue(ByteBuffer table, VoltType type, int offset, int otherOffset) {
+        return sameBytes(table.array(), offset, valueLength(table, offset, type),
+                table.array(), otherOffset, valueLength(table, otherOffset, type));
+    }
+
+    // each run is its length followed by its value, or its dictionary code
+    private static void writeRuns(ByteArrayOutputStream out, ByteBuffer table, VoltType type, int cursors[],
+            HashMap<Value, Integer> codes) {
+        final byte raw[] = table.array();
+        int runStart = 0;
+        for (int row = 1; row <= cursors.length; row++) {
+            if (row == cursors.length || !sameValue(table, type, cursors[row], cursors[runStart])) {
+                writeVarInt(out, row - runStart);
+                int length = valueLength(table, cursors[runStart], type);
+                if (codes == null) {
+                    out.write(raw, cursors[runStart], length);
+                }
+                else {
+                    writeVarInt(out, codes.get(new Value(raw, cursors[runStart], length)));
+                }
+                runStart = row;
+            }
+        }
+    }
+
+    private static byte[] decodeColumns(byte encoded[]) throws IOException {
+        final ByteBuffer in = ByteBuffer.wrap(encoded);
+        final int rowStart = in.getInt(0) + 4;
+        final VoltType types[] = columnTypes(in);
+        in.position(rowStart);
+        final int rowCount = readVarInt(in);
+
+        // offset of each value in the encoded table, column by column
+        final int offsets[][] = new int[types.length][rowCount];
+        long tableSize = rowStart + 4 + 4L * rowCount;
+        for (int column = 0; column < types.length; column++) {
+            final VoltType type = types[column];
+            final int columnOffsets[] = offsets[column];
+            final byte encoding = in.get();
+            int row = 0;
+            switch (encoding) {
+            case PLAIN:
+                for (; row < rowCount; row++) {
+                    columnOffsets[row] = in.position();
+                    int length = valueLength(in, in.position(), type);
+                    skip(in, length);
+                    tableSize += length;
+                }
+                break;
+            case RUN_LENGTH: {
+                final int runs = readVarInt(in);
+                for (int run = 0; run < runs; run++) {
+                    final int runLength = readVarInt(in);
+                    final int offset = in.position();
+                    int length = valueLength(in, offset, type);
+                    skip(in, length);
+                    row = fillRun(columnOffsets, row, runLength, offset);
+                    tableSize += (long) length * runLength;
+                }
+                break;
+            }
+            case DICTIONARY_RUN_LENGTH: {
+                final int dictionary[] = new int[readVarInt(in)];
+                for (int code = 0; code < dictionary.length; code++) {
+                    dictionary[code] = in.position();
+                    skip(in, valueLength(in, in.position(), type));
+                }
+                final int runs = readVarInt(in);
+                for (int run = 0; run < runs; run++) {
+                    final int runLength = readVarInt(in);
+                    final int offset = dictionary[readVarInt(in)];
+                    row = fillRun(columnOffsets, row, runLength, offset);
+                    tableSize += (long) valueLength(in, offset, type) * runLength;
+                }
+                break;
+            }
+            default:
+                throw new IOException("Unknown column encoding: " + encoding);
+            }
+            if (row != rowCount) {
+                throw new IOException("Column " + column + " has " + row + " values, expected " + rowCount);
+            }
+        }
+        if (tableSize > Integer.MAX_VALUE) {
+            throw new IOException("Decoded result table is too large: " + tableSize);
+        }
+
+        final ByteBuffer out = ByteBuffer.allocate((int) tableSize);
+        out.put(encoded, 0, rowStart);
+        out.putInt(rowCount);
+        for (int row = 0; row < rowCount; row++) {
+            final int rowLengthPosition = out.position();
+            out.putInt(0);
+            for (int column = 0; column < types.length; column++) {
+                int offset = offsets[column][row];
+                out.put(encoded, offset, valueLength(in, offset, types[column]));
+            }
+            out.putInt(rowLengthPosition, out.position() - rowLengthPosition - 4);
+        }
+        assert(!out.hasRemaining());
+        return out.array();
+    }
+
+    private static int fillRun(int columnOffsets[], int row, int runLength, int offset) throws IOException {
+        if (runLength > columnOffsets.length - row) {
+            throw new IOException("Run of " + runLength + " values past the end of the column");
+        }
+        for (int ii = 0; ii < runLength; ii++) {
+            columnOffsets[row++] = offset;
+        }
+        return row;
+    }
+
+    private static void skip(ByteBuffer in, int length) {
+        in.position(in.position() + length);
+    }
+
+    private static byte[] deflate(byte input[]) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(input);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(input.length / 4 + 64);
+            out.write(input.length >>> 24);
+            out.write(input.length >>> 16);
+            out.write(input.length >>> 8);
+            out.write(input.length);
+            byte chunk[] = new byte[64 * 1024];
+            while (!deflater.finished()) {
+                int length = deflater.deflate(chunk);
+                out.write(chunk, 0, length);
+            }
+            return out.toByteArray();
+        }
+        finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte input[]) throws IOException {
+        final int length = ByteBuffer.wrap(input).getInt();
+        if (length < 0) {
+            throw new IOException("Negative inflated result table length: " + length);
+        }
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(input, 4, input.length - 4);
+            byte output[] = new byte[length];
+            int inflated = 0;
+            while (inflated < length && !inflater.finished()) {
+                int count = inflater.inflate(output, inflated, length - inflated);
+                if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                inflated += count;
+            }
+            if (inflated != length || !inflater.finished()) {
+                throw new IOException("Inflated result table is not " + length + " bytes");
+            }
+            return output;
+        }
+        catch (DataFormatException e) {
+            throw new IOException("Malformed compressed result table", e);
+        }
+        finally {
+            inflater.end();
+        }
+    }
+
+    private static int varIntSize(long value) {
+        int size = 1;
+        while ((value >>>= 7) != 0) {
+            size++;
+        }
+        return size;
+    }
+
+    private static void writeVarInt(ByteArrayOutputStream out, int value) {
+        assert(value >= 0);
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static int readVarInt(ByteBuffer in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            byte b = in.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                if (value < 0) {
+                    break;
+                }
+                return value;
+            }
+        }
+        throw new IOException("Malformed count in encoded result table");
+    }
+}
@@ -260,6 +260,69 @@ public class PerPartitionTable {
         }
     }
 
+    // Callback for a single row of a failed VoltBulkLoaderWriter batch
+    private class FailedRowCallback implements ProcedureCallback {
+        final VoltBulkLoader m_loader;
+        final Object m_rowHandle;
+        final VoltTable m_row;
+
+        FailedRowCallback(VoltBulkLoader loader, Object rowHandle, VoltTable row) {
+            m_loader = loader;
+            m_rowHandle = rowHandle;
+            m_row = row;
+        }
+
+        @Override
+        public void clientCallback(ClientResponse response) throws Exception {
+            if (response.getStatus() == ClientResponse.CONNECTION_LOST && m_autoReconnect) {
+                m_es.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            sendTable(FailedRowCallback.this, m_row);
+                        } catch (Exception e) {
+                            loaderLog.error("Failed to re-insert failed batch", e);
+                        }
+                    }
+                });
+                return;
+            }
+            else if (response.getStatus() != ClientResponse.SUCCESS) {
+                m_loader.m_notificationCallBack.failureCallback(m_rowHandle, rowValues(), response);
+            }
+
+            m_loader.m_loaderCompletedCnt.incrementAndGet();
+            m_loader.m_outstandingRowCount.decrementAndGet();
+        }
+
+        // The failure callback gets the row back as objects, like the rows given to insertRow
+        private Object[] rowValues() {
+            Object[] values = new Object[m_columnTypes.length];
+            m_row.resetRowPosition();
+            m_row.advanceRow();
+            for (int i = 0; i < values.length; i++) {
+                values[i] = m_row.get(i, m_columnTypes[i]);
+                if (m_row.wasNull()) {
+                    values[i] = null;
+                }
+            }
+            return values;
+        }
+    }
+
+    /**
+     * Row by row counterpart of reinsertFailed() for a failed batch of a VoltBulkLoaderWriter.
+     * Each row is copied out of the batch, so the batch may be reused once this returns.
+     */
+    void reinsertFailed(VoltBulkLoader loader, VoltTable batch, Object[] rowHandles) throws Exception {
+        batch.resetRowPosition();
+        for (int i = 0; batch.advanceRow(); i++) {
+            VoltTable row = new VoltTable(m_columnInfo);
+            row.add(batch);
+            sendTable(new FailedRowCallback(loader, rowHandles[i], row), row);
+        }
+    }
+
     private PartitionProcedureCallback buildTable() {
         ArrayList<VoltBulkLoaderRow> buf = new ArrayList<VoltBulkLoaderRow>(m_minBatchTriggerSize);
         m_partitionRowQueue.drainTo(buf, m_minBatchTriggerSize);
@@ -298,7 +361,15 @@ public class PerPartitionTable {
         if (toSend.getRowCount() <= 0) {
             return;
         }
+        sendTable(callback, toSend);
+        toSend.clearRowData();
+    }
 
+    /**
+     * Submit a table without clearing it afterwards, for callers that own the table's buffer
+     * until the response arrives.
+     */
+    void sendTable(ProcedureCallback callback, VoltTable toSend) throws Exception {
         if (m_autoReconnect) {
             while (true) {
                 try {
@@ -322,7 +393,6 @@ public class PerPartitionTable {
                 callback.clientCallback(r);
             }
         }
-        toSend.clearRowData();
     }
 
     private void load(ProcedureCallback callback, VoltTable toSend) throws Exception {
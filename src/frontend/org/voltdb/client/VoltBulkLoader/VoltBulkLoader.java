@@ -21,6 +21,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
@@ -107,6 +108,8 @@ public class VoltBulkLoader {
     final AtomicLong m_outstandingRowCount = new AtomicLong(0);
     //Number of rows for which we have received a definitive success or failure.
     final AtomicLong m_loaderCompletedCnt = new AtomicLong(0);
+    //Writers appending rows for this loader, flushed with it
+    final List<VoltBulkLoaderWriter> m_writers = new CopyOnWriteArrayList<VoltBulkLoaderWriter>();
 
     // Constructor allocated through the Client to ensure consistency of VoltBulkLoaderGlobals
     public VoltBulkLoader(BulkLoaderState vblGlobals, String tableName, int maxBatchSize,
@@ -347,6 +350,20 @@ public class VoltBulkLoader {
         m_outstandingRowCount.incrementAndGet();
     }
 
+    /**
+     * <p>Create a writer which appends rows to this VoltBulkLoader without an object per row or
+     * per value, see {@link VoltBulkLoaderWriter}. Each thread inserting rows needs its own
+     * writer. Failed rows are reported to the same BulkLoaderFailureCallBack as the rows given
+     * to insertRow.</p>
+     *
+     * @return A new writer, flushed along with this VoltBulkLoader until it is closed
+     */
+    public VoltBulkLoaderWriter createWriter() {
+        VoltBulkLoaderWriter writer = new VoltBulkLoaderWriter(this);
+        m_writers.add(writer);
+        return writer;
+    }
+
     /**
      * Called to asynchronously force the VoltBulkLoader to submit all the partially full batches
      * in all partitions of the table to the Client for insert. To wait for all rows to be processed,
@@ -354,6 +371,9 @@ public class VoltBulkLoader {
      * instances working on the same table and using the same instance of Client.
      */
     public void flush() throws ExecutionException, InterruptedException {
+        for (VoltBulkLoaderWriter writer : m_writers) {
+            writer.flush();
+        }
         for (int i = m_firstPartitionTable; i <= m_lastPartitionTable; i++) {
             m_partitionTable[i].flushAllTableQueues();
         }
@@ -367,6 +387,9 @@ public class VoltBulkLoader {
      * @throws java.lang.InterruptedException
      */
     public synchronized void drain() throws InterruptedException {
+        for (VoltBulkLoaderWriter writer : m_writers) {
+            writer.flush();
+        }
         // Wait for number of PerPartitionTables we are using and the Failure Processor
         for (int i=m_firstPartitionTable; i<=m_lastPartitionTable; i++) {
             try {
@@ -400,6 +423,7 @@ public class VoltBulkLoader {
         // Remove this VoltBulkLoader from the active set.
         synchronized (m_vblGlobals) {
             drain();
+            m_writers.clear();
 
             List<VoltBulkLoader> loaderList = m_vblGlobals.m_TableNameToLoader.get(m_tableName);
             if (loaderList.size() == 1) {
@@ -0,0 +1,599 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2019 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.client.VoltBulkLoader;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.voltcore.logging.VoltLogger;
+import org.voltdb.ClientResponseImpl;
+import org.voltdb.PrivateVoltTableFactory;
+import org.voltdb.VoltOverflowException;
+import org.voltdb.VoltTable;
+import org.voltdb.VoltType;
+import org.voltdb.VoltTypeException;
+import org.voltdb.client.ClientImpl;
+import org.voltdb.client.ClientResponse;
+import org.voltdb.client.ProcedureCallback;
+import org.voltdb.types.GeographyPointValue;
+import org.voltdb.types.GeographyValue;
+import org.voltdb.types.TimestampType;
+import org.voltdb.types.VoltDecimalHelper;
+import org.voltdb.utils.Encoder;
+
+/**
+ * Appends rows for a {@link VoltBulkLoader} straight into the serialized tables sent to the
+ * database, one pending batch per partition, instead of the {@link VoltBulkLoaderRow} and
+ * boxed values {@link VoltBulkLoader#insertRow(Object, Object...)} needs for every row.
+ * The values of a row are added in column order with the typed add methods, then the row is
+ * completed with {@link #endRow(Object)}:
+ *
+ * <pre>
+ * VoltBulkLoaderWriter writer = bulkLoader.createWriter();
+ * while (...) {
+ *     writer.addLong(id);
+ *     writer.addString(name);
+ *     writer.endRow(rowHandle);
+ * }
+ * writer.close();
+ * </pre>
+ *
+ * A batch is submitted by the thread which fills it up to the batch size of the loader,
+ * partially filled batches are submitted by {@link VoltBulkLoader#flush()},
+ * {@link VoltBulkLoader#drain()} and the periodic flush of the loader. The buffer of a batch
+ * is reused once the database has answered it. The rows of a failed batch are inserted again
+ * one at a time and the ones which still fail are given to the
+ * {@link BulkLoaderFailureCallBack} of the loader, with their values read back from the batch.
+ *
+ * A writer must only be used by one thread, each thread feeding a loader creates its own.
+ * A value of the wrong type for its column throws a {@link VoltTypeException} and discards
+ * the values already added for the row, as does {@link #discardRow()}.
+ */
+public class VoltBulkLoaderWriter {
+    private static final VoltLogger loaderLog = new VoltLogger("LOADER");
+
+    // A batch this big is submitted even if it has fewer rows than the batch size
+    static final int MAX_BATCH_BYTES = 1024 * 1024;
+
+    final VoltBulkLoader m_loader;
+    final ClientImpl m_clientImpl;
+    final VoltType[] m_columnTypes;
+    //Index of partitioned column in table, -1 for a MP table
+    final int m_partitionedColumnIndex;
+    //Serialized table header without the row count
+    final byte[] m_schema;
+
+    //Values of the row being added
+    private ByteBuffer m_row = ByteBuffer.allocate(1024);
+    private int m_column = 0;
+    //Partitioning value of the row being added, in m_row or in m_integerKey
+    private boolean m_keyInRow;
+    private int m_keyOffset;
+    private int m_keyLength;
+    private final ByteBuffer m_integerKey = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+
+    //Batch being filled for each partition, indexed like the PerPartitionTables of the loader
+    private final Batch[] m_batches;
+    //Answered batches ready to be filled again
+    private final ConcurrentLinkedQueue<Batch> m_freeBatches = new ConcurrentLinkedQueue<Batch>();
+
+    /**
+     * Rows of one partition serialized in the VoltTable format. It is its own callback,
+     * from the time it is submitted until its buffer is released.
+     */
+    private class Batch implements ProcedureCallback {
+        PerPartitionTable m_table;
+        ByteBuffer m_buf;
+        Object[] m_rowHandles = new Object[64];
+        int m_rowCount = 0;
+        VoltTable m_sent;
+
+        Batch() {
+            m_buf = ByteBuffer.allocate(Math.max(8192, m_schema.length * 2));
+            m_buf.put(m_schema);
+            m_buf.putInt(0);
+        }
+
+        void append(ByteBuffer row, Object rowHandle) {
+            final int rowLength = row.remaining();
+            if (m_buf.remaining() < rowLength + 4) {
+                ByteBuffer buf = ByteBuffer.allocate(Math.max(m_buf.capacity() * 2,
+                        m_buf.position() + rowLength + 4));
+                m_buf.flip();
+                buf.put(m_buf);
+                m_buf = buf;
+            }
+            m_buf.putInt(rowLength);
+            m_buf.put(row);
+            if (m_rowCount == m_rowHandles.length) {
+                m_rowHandles = Arrays.copyOf(m_rowHandles, m_rowCount * 2);
+            }
+            m_rowHandles[m_rowCount++] = rowHandle;
+        }
+
+        void send() throws InterruptedException {
+            m_buf.putInt(m_schema.length, m_rowCount);
+            m_sent = PrivateVoltTableFactory.createVoltTableFromByteArray(m_buf.array(), 0, m_buf.position());
+            try {
+                m_table.sendTable(this, m_sent);
+            } catch (InterruptedException e) {
+                throw e;
+            } catch (Exception e) {
+                loaderLog.error("Failed to load batch", e);
+                clientCallback(new ClientResponseImpl(ClientResponse.UNEXPECTED_FAILURE,
+                        new VoltTable[0], e.getMessage()));
+            }
+        }
+
+        // Called by Client to inform us of the status of the bulk insert.
+        @Override
+        public void clientCallback(final ClientResponse response) {
+            final int rowCount = m_rowCount;
+            if (response.getStatus() != ClientResponse.SUCCESS) {
+                // Insert the rows one at a time to find the ones which fail.
+                m_table.m_es.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            m_table.reinsertFailed(m_loader, m_sent, m_rowHandles);
+                        } catch (Exception e) {
+                            loaderLog.error("Failed to re-insert failed batch", e);
+                        } finally {
+                            release();
+                        }
+                    }
+                });
+            }
+            else {
+                final BulkLoaderSuccessCallback successCallback = m_table.m_successCallback;
+                if (successCallback != null) {
+                    m_table.m_es.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            for (int i = 0; i < rowCount; i++) {
+                                successCallback.success(m_rowHandles[i], response);
+                            }
+                            release();
+                        }
+                    });
+                }
+                else {
+                    release();
+                }
+                m_loader.m_loaderCompletedCnt.addAndGet(rowCount);
+                m_loader.m_outstandingRowCount.addAndGet(-1 * rowCount);
+            }
+        }
+
+        private void release() {
+            m_buf.position(m_schema.length + 4);
+            Arrays.fill(m_rowHandles, 0, m_rowCount, null);
+            m_rowCount = 0;
+            m_sent = null;
+            m_table = null;
+            m_freeBatches.offer(this);
+        }
+    }
+
+    // Created through VoltBulkLoader.createWriter() so the loader can flush it
+    VoltBulkLoaderWriter(VoltBulkLoader loader) {
+        m_loader = loader;
+        m_clientImpl = loader.m_clientImpl;
+        m_columnTypes = loader.m_columnTypes;
+        m_partitionedColumnIndex = loader.m_partitionedColumnIndex;
+        m_schema = PrivateVoltTableFactory.getSchemaBytes(new VoltTable(loader.m_colInfo));
+        m_batches = new Batch[loader.m_partitionTable.length];
+    }
+
+    /**
+     * Add a SQL NULL for the next column.
+     */
+    public void addNull() {
+        final VoltType type = nextColumnType();
+        ensureRowCapacity(16);
+        switch (type) {
+        case TINYINT:
+            m_row.put(VoltType.NULL_TINYINT);
+            break;
+        case SMALLINT:
+            m_row.putShort(VoltType.NULL_SMALLINT);
+            break;
+        case INTEGER:
+            m_row.putInt(VoltType.NULL_INTEGER);
+            break;
+        case TIMESTAMP:
+        case BIGINT:
+            m_row.putLong(VoltType.NULL_BIGINT);
+            break;
+        case FLOAT:
+            m_row.putDouble(VoltType.NULL_FLOAT);
+            break;
+        case STRING:
+        case GEOGRAPHY:
+        case VARBINARY:
+            m_row.putInt(-1);
+            break;
+        case GEOGRAPHY_POINT:
+            GeographyPointValue.serializeNull(m_row);
+            break;
+        case DECIMAL:
+            VoltDecimalHelper.serializeNull(m_row);
+            break;
+        default:
+            throw typeMismatch("NULL", type);
+        }
+        if (m_column == m_partitionedColumnIndex) {
+            m_keyLength = -1;
+        }
+        m_column++;
+    }
+
+    /**
+     * Add the value of the next column, which is an integer, TIMESTAMP (in microseconds
+     * since the epoch) or FLOAT column.
+     */
+    public void addLong(long value) {
+        final VoltType type = nextColumnType();
+        ensureRowCapacity(8);
+        switch (type) {
+        case TINYINT:
+            if (value <= Byte.MIN_VALUE || value > Byte.MAX_VALUE) {
+                throw overflow(type);
+            }
+            m_row.put((byte) value);
+            break;
+        case SMALLINT:
+            if (value <= Short.MIN_VALUE || value > Short.MAX_VALUE) {
+                throw overflow(type);
+            }
+            m_row.putShort((short) value);
+            break;
+        case INTEGER:
+            if (value <= Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+                throw overflow(type);
+            }
+            m_row.putInt((int) value);
+            break;
+        case BIGINT:
+        case TIMESTAMP:
+            m_row.putLong(value);
+            break;
+        case FLOAT:
+            m_row.putDouble(value);
+            break;
+        default:
+            throw typeMismatch("long", type);
+        }
+        if (m_column == m_partitionedColumnIndex) {
+            // Long.MIN_VALUE is the BIGINT NULL, the others can't get here
+            if (value == VoltType.NULL_BIGINT) {
+                m_keyLength = -1;
+            }
+            else {
+                m_integerKey.putLong(0, value);
+                m_keyInRow = false;
+                m_keyOffset = 0;
+                m_keyLength = 8;
+            }
+        }
+        m_column++;
+    }
+
+    /**
+     * Add the value of the next column, which is a FLOAT column.
+     */
+    public void addDouble(double value) {
+        final VoltType type = nextColumnType();
+        if (type != VoltType.FLOAT) {
+            throw typeMismatch("double", type);
+        }
+        ensureRowCapacity(8);
+        m_row.putDouble(value);
+        m_column++;
+    }
+
+    /**
+     * Add the value of the next column, which is a DECIMAL column. A null value is a SQL NULL.
+     */
+    public void addDecimal(BigDecimal value) {
+        if (value == null) {
+            addNull();
+            return;
+        }
+        final VoltType type = nextColumnType();
+        if (type != VoltType.DECIMAL) {
+            throw typeMismatch("BigDecimal", type);
+        }
+        ensureRowCapacity(16);
+        final int pos = m_row.position();
+        try {
+            VoltDecimalHelper.serializeBigDecimal(value, m_row);
+        } catch (RuntimeException e) {
+            m_row.position(pos);
+            discardRow();
+            throw e;
+        }
+        m_column++;
+    }
+
+    /**
+     * Add the value of the next column, which is a TIMESTAMP column. A null value is a SQL NULL.
+     */
+    public void addTimestamp(TimestampType value) {
+        if (value == null) {
+            addNull();
+            return;
+        }
+        final VoltType type = nextColumnType();
+        if (type != VoltType.TIMESTAMP) {
+            throw typeMismatch("TimestampType", type);
+        }
+        ensureRowCapacity(8);
+        m_row.putLong(value.getTime());
+        m_column++;
+    }
+
+    /**
+     * Add the value of the next column, which is a VARCHAR column or a VARBINARY column given
+     * as hex. A null value is a SQL NULL.
+     */
+    public void addString(String value) {
+        if (value == null) {
+            addNull();
+            return;
+        }
+        final VoltType type = nextColumnType();
+        if (type == VoltType.VARBINARY) {
+            addBytes(Encoder.hexDecode(value));
+            return;
+        }
+        if (type != VoltType.STRING) {
+            throw typeMismatch("String", type);
+        }
+
+        // Encode as UTF-8 straight into the row, the same bytes as String.getBytes()
+        final int length = value.length();
+        ensureRowCapacity(4 + length * 3);
+        final byte[] row = m_row.array();
+        final int start = m_row.position() + 4;
+        int pos = start;
+        for (int i = 0; i < length; i++) {
+            final char c = value.charAt(i);
+            if (c < 0x80) {
+                row[pos++] = (byte) c;
+            }
+            else if (c < 0x800) {
+                row[pos++] = (byte) (0xC0 | (c >> 6));
+                row[pos++] = (byte) (0x80 | (c & 0x3F));
+            }
+            else if (Character.isHighSurrogate(c) && i + 1 < length
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                final int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                row[pos++] = (byte) (0xF0 | (codePoint >> 18));
+                row[pos++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                row[pos++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                row[pos++] = (byte) (0x80 | (codePoint & 0x3F));
+            }
+            else if (Character.isSurrogate(c)) {
+                // unpaired surrogates are replaced, as String.getBytes() does
+                row[pos++] = '?';
+            }
+            else {
+                row[pos++] = (byte) (0xE0 | (c >> 12));
+                row[pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                row[pos++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        putVariableLength(start, pos - start);
+    }
+
+    /**
+     * Add the value of the next column, which is a VARBINARY column or a VARCHAR column given
+     * as UTF-8. A null value is a SQL NULL.
+     */
+    public void addBytes(byte[] value) {
+        if (value == null) {
+            addNull();
+            return;
+        }
+        final VoltType type = nextColumnType();
+        if (type != VoltType.VARBINARY && type != VoltType.STRING) {
+            throw typeMismatch("byte[]", type);
+        }
+        ensureRowCapacity(4 + value.length);
+        final int start = m_row.position() + 4;
+        System.arraycopy(value, 0, m_row.array(), start, value.length);
+        putVariableLength(start, value.length);
+    }
+
+    /**
+     * Add the value of the next column, which is a GEOGRAPHY_POINT column. A null value is a
+     * SQL NULL.
+     */
+    public void addGeographyPoint(GeographyPointValue value) {
+        if (value == null) {
+            addNull();
+            return;
+        }
+        final VoltType type = nextColumnType();
+        if (type != VoltType.GEOGRAPHY_POINT) {
+            throw typeMismatch("GeographyPointValue", type);
+        }
+        ensureRowCapacity(GeographyPointValue.getLengthInBytes());
+        value.flattenToBuffer(m_row);
+        m_column++;
+    }
+
+    /**
+     * Add the value of the next column, which is a GEOGRAPHY column. A null value is a SQL NULL.
+     */
+    public void addGeography(GeographyValue value) {
+        if (value == null) {
+            addNull();
+            return;
+        }
+        final VoltType type = nextColumnType();
+        if (type != VoltType.GEOGRAPHY) {
+            throw typeMismatch("GeographyValue", type);
+        }
+        final int length = value.getLengthInBytes();
+        ensureRowCapacity(4 + length);
+        m_row.putInt(length);
+        value.flattenToBuffer(m_row);
+        m_column++;
+    }
+
+    /**
+     * Complete the row, adding it to the batch of its partition. The batch is submitted if
+     * this fills it up, which may block like {@link VoltBulkLoader#insertRow(Object, Object...)}
+     * while the Client is backpressured or reconnecting.
+     *
+     * @param rowHandle User supplied object used to distinguish failed insert attempts
+     * @throws java.lang.InterruptedException
+     */
+    public void endRow(Object rowHandle) throws InterruptedException {
+        if (m_column != m_columnTypes.length) {
+            final int values = m_column;
+            discardRow();
+            throw new IllegalStateException("Error: endRow received incorrect number of columns; " +
+                    values + " found, " + m_columnTypes.length + " expected");
+        }
+        final int partitionId;
+        if (m_partitionedColumnIndex == -1) {
+            partitionId = m_loader.m_firstPartitionTable;
+        }
+        else {
+            partitionId = (int) m_clientImpl.getPartitionForBytes(m_keyInRow ? m_row : m_integerKey,
+                    m_keyOffset, m_keyLength);
+            if (partitionId < 0) {
+                discardRow();
+                throw new IllegalStateException("VoltBulkLoaderWriter unable to partition rows due to uninitialized Client.");
+            }
+        }
+        m_row.flip();
+        try {
+            appendRow(partitionId, rowHandle);
+        } finally {
+            discardRow();
+        }
+    }
+
+    /**
+     * Drop the values already added for the row being written, for a caller which fails to
+     * produce the rest of them.
+     */
+    public void discardRow() {
+        m_row.clear();
+        m_column = 0;
+    }
+
+    /**
+     * Submit the partially filled batches of this writer. To wait for their rows to be
+     * processed use {@link VoltBulkLoader#drain()}.
+     * @throws java.lang.InterruptedException
+     */
+    public synchronized void flush() throws InterruptedException {
+        for (int i = 0; i < m_batches.length; i++) {
+            final Batch batch = m_batches[i];
+            if (batch != null) {
+                m_batches[i] = null;
+                batch.send();
+            }
+        }
+    }
+
+    /**
+     * Submit the partially filled batches and stop flushing this writer with the loader.
+     * The loader stays open.
+     * @throws java.lang.InterruptedException
+     */
+    public void close() throws InterruptedException {
+        flush();
+        m_loader.m_writers.remove(this);
+    }
+
+    // Synchronized with flush(), which runs on the periodic flush thread of the loader
+    private synchronized void appendRow(int partitionId, Object rowHandle) throws InterruptedException {
+        Batch batch = m_batches[partitionId];
+        if (batch == null) {
+            batch = m_freeBatches.poll();
+            if (batch == null) {
+                batch = new Batch();
+            }
+            batch.m_table = m_loader.m_partitionTable[partitionId];
+            m_batches[partitionId] = batch;
+        }
+        batch.append(m_row, rowHandle);
+        m_loader.m_outstandingRowCount.incrementAndGet();
+        if (batch.m_rowCount >= batch.m_table.m_minBatchTriggerSize ||
+                batch.m_buf.position() >= MAX_BATCH_BYTES) {
+            m_batches[partitionId] = null;
+            batch.send();
+        }
+    }
+
+    private void putVariableLength(int start, int length) {
+        if (length > VoltType.MAX_VALUE_LENGTH) {
+            discardRow();
+            throw new VoltOverflowException("Value in VoltBulkLoaderWriter larger than allowed max " +
+                    VoltType.humanReadableSize(VoltType.MAX_VALUE_LENGTH));
+        }
+        m_row.putInt(length);
+        m_row.position(start + length);
+        if (m_column == m_partitionedColumnIndex) {
+            m_keyInRow = true;
+            m_keyOffset = start;
+            m_keyLength = length;
+        }
+        m_column++;
+    }
+
+    private VoltType nextColumnType() {
+        if (m_column >= m_columnTypes.length) {
+            discardRow();
+            throw new IllegalStateException("Error: row already has a value for each of the " +
+                    m_columnTypes.length + " columns");
+        }
+        return m_columnTypes[m_column];
+    }
+
+    private void ensureRowCapacity(int bytes) {
+        if (m_row.remaining() < bytes) {
+            ByteBuffer row = ByteBuffer.allocate(Math.max(m_row.capacity() * 2, m_row.position() + bytes));
+            m_row.flip();
+            row.put(m_row);
+            m_row = row;
+        }
+    }
+
+
+    private VoltTypeException typeMismatch(String valueType, VoltType columnType) {
+        final int column = m_column;
+        discardRow();
+        return new VoltTypeException("Value for column " + column + " is type " + valueType +
+                " when type " + columnType + " was expected.");
+    }
+
+    private VoltTypeException overflow(VoltType columnType) {
+        discardRow();
+        return new VoltTypeException("Cast to " + columnType + " would overflow");
+    }
+}
@@ -18,12 +18,11 @@
 package org.voltdb.compiler;
 
 import java.io.Serializable;
-import java.util.ArrayList;
-import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.Timer;
 import java.util.TimerTask;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.voltdb.common.Constants;
 import org.voltdb.planner.BoundPlan;
@@ -31,6 +30,10 @@ import org.voltdb.utils.Encoder;
 
 import com.google_voltpatches.common.cache.Cache;
 import com.google_voltpatches.common.cache.CacheBuilder;
+import com.google_voltpatches.common.cache.CacheStats;
+import com.google_voltpatches.common.cache.RemovalListener;
+import com.google_voltpatches.common.cache.RemovalNotification;
+import com.google_voltpatches.common.cache.Weigher;
 
 /**
  * Keep a cache two level cache of plans generated by the Ad Hoc
@@ -43,6 +46,9 @@ import com.google_voltpatches.common.cache.CacheBuilder;
  * statement mapped to core parameterized plans. These parameterized
  * plans need parameter values and sql literals in order to be
  * actually used.
+ *
+ * Both levels are safe for concurrent use by several planner threads
+ * without any lock on the cache as a whole.
  */
 public class AdHocCompilerCache implements Serializable {
     private static final long serialVersionUID = 1L;
@@ -82,23 +88,24 @@ public class AdHocCompilerCache implements Serializable {
     // max cache size for parameterized plans
     final long MAX_LITERAL_MEM  = Long.getLong("ADHOC_COMPILER_CACHE_MAX_LITERAL_MEM_BYTES", 32*1024*1024);
     final int MAX_CORE_ENTRIES;
+    // number of independently locked segments in each cache, eviction is LRU within a segment
+    static final int CONCURRENCY_LEVEL = Integer.getInteger("ADHOC_COMPILER_CACHE_CONCURRENCY", 16);
 
     /** cache of literals to full plans */
-    final Map<String, AdHocPlannedStatement> m_literalCache;
+    final Cache<String, AdHocPlannedStatement> m_literalCache;
     /** cache of parameterized plan descriptions to one or more core parameterized plans,
      *  each plan optionally has its own requirements for which parameters need to be bound
-     *  to what values to enable its specialized (expression-indexed) plan. */
-    final Map<String, List<BoundPlan> > m_coreCache;
-
-    // placeholder stats used during development that may/may not survive
-    long m_literalHits = 0;
-    long m_literalQueries = 0;
-    long m_literalInsertions = 0;
-    long m_literalEvictions = 0;
-    long m_planHits = 0;
-    long m_planQueries = 0;
-    long m_planInsertions = 0;
-    long m_planEvictions = 0;
+     *  to what values to enable its specialized (expression-indexed) plan.
+     *  The lists are copy on write so readers never see one being extended. */
+    final Cache<String, CopyOnWriteArrayList<BoundPlan> > m_coreCache;
+
+    // insertions are not counted by the caches themselves
+    final AtomicLong m_literalInsertions = new AtomicLong();
+    final AtomicLong m_planInsertions = new AtomicLong();
+
+    // evictions from every cache instance, so they keep counting up across catalog changes
+    private static final AtomicLong s_literalEvictions = new AtomicLong();
+    private static final AtomicLong s_planEvictions = new AtomicLong();
 
     /** {@see this#startPeriodicStatsPrinting() } */
     Timer m_statsTimer = null;
@@ -120,123 +127,71 @@ public class AdHocCompilerCache implements Serializable {
         MAX_LITERAL_ENTRIES = maxLiteralEntries;
         MAX_CORE_ENTRIES = maxCoreEntries;
 
-        // an LRU cache map
-        m_literalCache = new AdHocStatementCache(MAX_LITERAL_ENTRIES, MAX_LITERAL_MEM);
-
-        // an LRU cache map
-        m_coreCache = new LinkedHashMap<String, List<BoundPlan> >(MAX_CORE_ENTRIES * 2, .75f, true) {
-            private static final long serialVersionUID = 1L;
-
-            // This method is called just after a new entry has been added
-            @Override
-            public boolean removeEldestEntry(Map.Entry<String, List<BoundPlan> > eldest) {
-                if (size() > MAX_CORE_ENTRIES) {
-                    ++m_planEvictions;
-                    return true;
-                }
-                return false;
-            }
-
-        };
-    }
-
-    // define a LinkedHashMap based LRU cache bounds by both entry number and entry value on-heap size
-    // without changing Map.Entry, only works for value of type AdHocPlannedStatement
-    // only extend put, remove,clear and removeEldestEntry methods to account weight
-    public class AdHocStatementCache extends LinkedHashMap<String, AdHocPlannedStatement>{
-       private static final long serialVersionUID = 2988383448026641836L;
-        private final int maxEntries;
-        private final long maxMemory; // in bytes
-        private long currentMemory;   // in bytes
-
-        public AdHocStatementCache() {
-            // default max entry of 1000
-            // default max value size of 32MB
-            this(1000, 32 * 1024 * 1024);
-        }
-
-        public AdHocStatementCache(final int maxEntries) {
-            this(maxEntries, 32 * 1024 * 1024);
-        }
-
-        public AdHocStatementCache(final int maxEntries, final long maxMemory) {
-            // set accessOrder to true for LRU
-            super(maxEntries * 2, .75f, true);
-            this.maxEntries = maxEntries;
-            this.maxMemory = maxMemory;
-            this.currentMemory = 0;
-        }
-
-        // This method is called just after a new entry has been added
-        @Override
-        public boolean removeEldestEntry(final Map.Entry<String, AdHocPlannedStatement> eldest) {
-            if ((size() > maxEntries) || (this.currentMemory > this.maxMemory))  {
-                ++m_literalEvictions;
-                this.currentMemory -= eldest.getValue().getSerializedSize();
-                return true;
-            }
-            return false;
-        }
-
-        @Override
-        public AdHocPlannedStatement put(String key, AdHocPlannedStatement value) {
-            this.currentMemory += value.getSerializedSize();
-            return super.put(key,value);
-        }
-
-        @Override
-        public AdHocPlannedStatement remove(Object key) {
-            AdHocPlannedStatement value = super.remove(key);
-            if (value != null) {
-                this.currentMemory -= value.getSerializedSize();
-            }
-            return value;
-        }
-
-        @Override
-        public void clear() {
-            super.clear();
-            this.currentMemory = 0;
-        }
+        // Bounded by memory. Every entry weighs at least its share of the memory limit,
+        // which also keeps the number of entries within MAX_LITERAL_ENTRIES.
+        final int minLiteralWeight = (int) Math.min(Integer.MAX_VALUE,
+                (MAX_LITERAL_MEM + MAX_LITERAL_ENTRIES - 1) / MAX_LITERAL_ENTRIES);
+        // The limit is split between the segments, keep room for 20 entries in each
+        // as the cache does itself when bounded by size.
+        m_literalCache = CacheBuilder.newBuilder()
+                .concurrencyLevel(Math.max(1, Math.min(CONCURRENCY_LEVEL, MAX_LITERAL_ENTRIES / 20)))
+                .maximumWeight(MAX_LITERAL_MEM)
+                .weigher(new Weigher<String, AdHocPlannedStatement>() {
+                    @Override
+                    public int weigh(String sql, AdHocPlannedStatement plan) {
+                        return Math.max(plan.getSerializedSize(), minLiteralWeight);
+                    }
+                })
+                .removalListener(new RemovalListener<String, AdHocPlannedStatement>() {
+                    @Override
+                    public void onRemoval(RemovalNotification<String, AdHocPlannedStatement> notification) {
+                        if (notification.wasEvicted()) {
+                            s_literalEvictions.incrementAndGet();
+                        }
+                    }
+                })
+                .recordStats()
+                .build();
+
+        m_coreCache = CacheBuilder.newBuilder()
+                .concurrencyLevel(CONCURRENCY_LEVEL)
+                .maximumSize(MAX_CORE_ENTRIES)
+                .removalListener(new RemovalListener<String, CopyOnWriteArrayList<BoundPlan> >() {
+                    @Override
+                    public void onRemoval(RemovalNotification<String, CopyOnWriteArrayList<BoundPlan> > notification) {
+                        if (notification.wasEvicted()) {
+                            s_planEvictions.incrementAndGet();
+                        }
+                    }
+                })
+                .recordStats()
+                .build();
     }
 
     /**
      * Stats printing method used during development.
      * Probably shouldn't live past real stats integration.
      */
-    synchronized void printStats() {
+    void printStats() {
+        CacheStats literalStats = m_literalCache.stats();
+        CacheStats planStats = m_coreCache.stats();
         String line1 = String.format("CACHE STATS - Literals: Hits %d/%d (%.1f%%), Inserts %d Evictions %d\n",
-                m_literalHits, m_literalQueries, (m_literalHits * 100.0) / m_literalQueries,
-                m_literalInsertions, m_literalEvictions);
+                literalStats.hitCount(), literalStats.requestCount(), literalStats.hitRate() * 100.0,
+                m_literalInsertions.get(), literalStats.evictionCount());
         String line2 = String.format("CACHE STATS - Plans:    Hits %d/%d (%.1f%%), Inserts %d Evictions %d\n",
-                m_planHits, m_planQueries, (m_planHits * 100.0) /m_planQueries,
-                m_planInsertions, m_planEvictions);
+                planStats.hitCount(), planStats.requestCount(), planStats.hitRate() * 100.0,
+                m_planInsertions.get(), planStats.evictionCount());
 
         System.out.print(line1 + line2);
         System.out.flush();
-
-        // reset these
-        m_literalHits = 0;
-        m_literalQueries = 0;
-        m_literalInsertions = 0;
-        m_literalEvictions = 0;
-        m_planHits = 0;
-        m_planQueries = 0;
-        m_planInsertions = 0;
-        m_planEvictions = 0;
     }
 
     /**
      * @param sql SQL literal
      * @return full, ready-to-go plan
      */
-    public synchronized AdHocPlannedStatement getWithSQL(String sql) {
-        ++m_literalQueries;
-        AdHocPlannedStatement retval = m_literalCache.get(sql);
-        if (retval != null) {
-            ++m_literalHits;
-        }
-        return retval;
+    public AdHocPlannedStatement getWithSQL(String sql) {
+        return m_literalCache.getIfPresent(sql);
     }
 
     /**
@@ -244,13 +199,8 @@ public class AdHocCompilerCache implements Serializable {
      * SQL statement
      * @return A CorePlan that needs parameter values to run.
      */
-    public synchronized List<BoundPlan> getWithParsedToken(String parsedToken) {
-        ++m_planQueries;
-        List<BoundPlan> retval = m_coreCache.get(parsedToken);
-        if (retval != null) {
-            ++m_planHits;
-        }
-        return retval;
+    public List<BoundPlan> getWithParsedToken(String parsedToken) {
+        return m_coreCache.getIfPresent(parsedToken);
     }
 
     /**
@@ -271,7 +221,7 @@ public class AdHocCompilerCache implements Serializable {
      * @param hasUserQuestionMarkParameters is user provided parameterized query
      * @param hasAutoParameterizedException is the auto parameterized query has parameter exception
      */
-    public synchronized void put(String sql,
+    public void put(String sql,
                                  String parsedToken,
                                  AdHocPlannedStatement planIn,
                                  String[] extractedLiterals,
@@ -296,47 +246,49 @@ public class AdHocCompilerCache implements Serializable {
             BoundPlan matched = null;
             BoundPlan unmatched = new BoundPlan(planIn.core, planIn.parameterBindings(extractedLiterals));
             // deal with the parameterized plan cache first
-            List<BoundPlan> boundVariants = m_coreCache.get(parsedToken);
+            CopyOnWriteArrayList<BoundPlan> boundVariants = m_coreCache.getIfPresent(parsedToken);
             if (boundVariants == null) {
-                boundVariants = new ArrayList<BoundPlan>();
-                m_coreCache.put(parsedToken, boundVariants);
-                // Note that there is an edge case in which more than one plan is getting counted as one
-                // "plan insertion". This only happens when two different plans arose from the same parameterized
-                // query (token) because one invocation used the correct constants to trigger an expression index and
-                // another invocation did not.  These are not counted separately (which would have to happen below
-                // after each call to boundVariants.add) because they are not evicted separately.
-                // It seems saner to use consistent units when counting insertions vs. evictions.
-                ++m_planInsertions;
-            } else {
-                for (BoundPlan boundPlan : boundVariants) {
-                    if (boundPlan.equals(unmatched)) {
-                        matched = boundPlan;
-                        break;
-                    }
+                CopyOnWriteArrayList<BoundPlan> newVariants = new CopyOnWriteArrayList<BoundPlan>();
+                boundVariants = m_coreCache.asMap().putIfAbsent(parsedToken, newVariants);
+                if (boundVariants == null) {
+                    boundVariants = newVariants;
+                    // Note that there is an edge case in which more than one plan is getting counted as one
+                    // "plan insertion". This only happens when two different plans arose from the same parameterized
+                    // query (token) because one invocation used the correct constants to trigger an expression index and
+                    // another invocation did not.  These are not counted separately (which would have to happen below
+                    // after each call to boundVariants.add) because they are not evicted separately.
+                    // It seems saner to use consistent units when counting insertions vs. evictions.
+                    m_planInsertions.incrementAndGet();
                 }
-                if (matched != null) {
-                    // if a different core is found, reuse it
-                    // this is useful when updating the literal cache
-                    if (unmatched.m_core != matched.m_core) {
-                        plan = new AdHocPlannedStatement(planIn, matched.m_core);
-                        plan.setBoundConstants(matched.m_constants);
-                    }
+            }
+            for (BoundPlan boundPlan : boundVariants) {
+                if (boundPlan.equals(unmatched)) {
+                    matched = boundPlan;
+                    break;
                 }
             }
-            if (matched == null) {
+            if (matched != null) {
+                // if a different core is found, reuse it
+                // this is useful when updating the literal cache
+                if (unmatched.m_core != matched.m_core) {
+                    plan = new AdHocPlannedStatement(planIn, matched.m_core);
+                    plan.setBoundConstants(matched.m_constants);
+                }
+            }
+            else {
                 // Don't count insertions (of possibly repeated tokens) here
                 //  -- see the comment above where only UNIQUE token insertions are being counted, instead.
-                boundVariants.add(unmatched);
+                // Another planner thread may have just added the same variant.
+                boundVariants.addIfAbsent(unmatched);
             }
         }
 
         // then deal with the L1 cache
         if (! hasUserQuestionMarkParameters) {
-            AdHocPlannedStatement cachedPlan = m_literalCache.get(sql);
+            AdHocPlannedStatement cachedPlan = m_literalCache.asMap().putIfAbsent(sql, plan);
             if (cachedPlan == null) {
                 //* enable to debug */ System.out.println("DEBUG: Caching literal '" + sql + "'");
-                m_literalCache.put(sql, plan);
-                ++m_literalInsertions;
+                m_literalInsertions.incrementAndGet();
             }
             else {
                 assert(cachedPlan.equals(plan));
@@ -365,7 +317,7 @@ public class AdHocCompilerCache implements Serializable {
      * @return  literal cache size as a count
      */
     public int getLiteralCacheSize() {
-        return m_literalCache.size();
+        return (int) m_literalCache.size();
     }
 
     /**
@@ -373,6 +325,20 @@ public class AdHocCompilerCache implements Serializable {
      * @return  core cache size as a count
      */
     public int getCoreCacheSize() {
-        return m_coreCache.size();
+        return (int) m_coreCache.size();
+    }
+
+    /**
+     * @return the number of literal plans evicted from any cache since startup
+     */
+    public static long getLiteralEvictions() {
+        return s_literalEvictions.get();
+    }
+
+    /**
+     * @return the number of parameterized plans evicted from any cache since startup
+     */
+    public static long getCoreEvictions() {
+        return s_planEvictions.get();
     }
 }
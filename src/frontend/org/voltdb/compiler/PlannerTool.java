@@ -19,11 +19,13 @@ package org.voltdb.compiler;
 
 import java.util.List;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.hsqldb_voltpatches.HSQLInterface;
 import org.hsqldb_voltpatches.HSQLInterface.HSQLParseException;
 import org.voltcore.logging.VoltLogger;
 import org.voltdb.ParameterSet;
+import org.voltdb.PlannerShapeStats;
 import org.voltdb.PlannerStatsCollector;
 import org.voltdb.PlannerStatsCollector.CacheUse;
 import org.voltdb.StatsAgent;
@@ -54,13 +56,14 @@ public class PlannerTool {
 
     private Database m_database;
     private byte[] m_catalogHash;
-    private AdHocCompilerCache m_cache;
-    private long m_adHocLargeFallbackCount = 0;
-    private long m_adHocLargeModeCount = 0;
+    private volatile AdHocCompilerCache m_cache;
+    private final AtomicLong m_adHocLargeFallbackCount = new AtomicLong();
+    private final AtomicLong m_adHocLargeModeCount = new AtomicLong();
 
     private final HSQLInterface m_hsql;
 
     private static PlannerStatsCollector m_plannerStats;
+    private static PlannerShapeStats m_shapeStats;
 
     // If -Dlarge_mode_ratio=xx is specified via ant, the value will show up in the environment variables and
     // take higher priority. Otherwise, the value specified via VOLTDB_OPTS will take effect.
@@ -104,6 +107,8 @@ public class PlannerTool {
                     final StatsAgent statsAgent = VoltDB.instance().getStatsAgent();
                     // In mock test environments there may be no stats agent.
                     if (statsAgent != null) {
+                        m_shapeStats = new PlannerShapeStats();
+                        statsAgent.registerStatsSource(StatsSelector.PLANNERSHAPES, -1, m_shapeStats);
                         m_plannerStats = new PlannerStatsCollector(-1);
                         statsAgent.registerStatsSource(StatsSelector.PLANNER, -1, m_plannerStats);
                     }
@@ -125,11 +130,11 @@ public class PlannerTool {
     }
 
     public long getAdHocLargeFallbackCount() {
-        return m_adHocLargeFallbackCount;
+        return m_adHocLargeFallbackCount.get();
     }
 
     public long getAdHocLargeModeCount() {
-        return m_adHocLargeModeCount;
+        return m_adHocLargeModeCount.get();
     }
 
     public AdHocPlannedStatement planSqlForTest(String sqlIn) {
@@ -184,14 +189,20 @@ public class PlannerTool {
         return plan;
     }
 
-    public synchronized AdHocPlannedStatement planSql(String sql, StatementPartitioning partitioning,
+    /**
+     * Not synchronized, so plans can be looked up in the cache by many threads at once.
+     * Parsing and planning still take the global planner lock in QueryPlanner.
+     */
+    public AdHocPlannedStatement planSql(String sql, StatementPartitioning partitioning,
             boolean isExplainMode, final Object[] userParams, boolean isSwapTables, boolean isLargeQuery) {
+        // the cache is replaced by catalog updates, use the same one throughout
+        final AdHocCompilerCache cache = m_cache;
         // large_mode_ratio will force execution of SQL queries to use the "large" path (for read-only queries)
         // a certain percentage of the time
         if (m_largeModeRatio > 0 && !isLargeQuery) {
             if (m_largeModeRatio >= 1 || m_largeModeRatio > ThreadLocalRandom.current().nextDouble()) {
                 isLargeQuery = true;
-                m_adHocLargeModeCount++;
+                m_adHocLargeModeCount.incrementAndGet();
             }
         }
         CacheUse cacheUse = CacheUse.FAIL;
@@ -218,7 +229,7 @@ public class PlannerTool {
             // point it seems worthwhile to cache such plans, we can explore it.
             if (partitioning.isInferred() && !isLargeQuery) {
                 // Check the literal cache for a match.
-                AdHocPlannedStatement cachedPlan = m_cache.getWithSQL(sql);
+                AdHocPlannedStatement cachedPlan = cache.getWithSQL(sql);
                 if (cachedPlan != null) {
                     cacheUse = CacheUse.HIT1;
                     return cachedPlan;
@@ -288,7 +299,7 @@ public class PlannerTool {
                     // QueryPlanner.
                     assert(parsedToken != null);
                     extractedLiterals = planner.extractedParamLiteralValues();
-                    List<BoundPlan> boundVariants = m_cache.getWithParsedToken(parsedToken);
+                    List<BoundPlan> boundVariants = cache.getWithParsedToken(parsedToken);
                     if (boundVariants != null) {
                         assert( ! boundVariants.isEmpty());
                         BoundPlan matched = null;
@@ -316,8 +327,11 @@ public class PlannerTool {
                                                                                    null);
                             ahps.setBoundConstants(matched.m_constants);
                             // parameterized plan from the cache does not have exception
-                            m_cache.put(sql, parsedToken, ahps, extractedLiterals, hasUserQuestionMark, false);
+                            cache.put(sql, parsedToken, ahps, extractedLiterals, hasUserQuestionMark, false);
                             cacheUse = CacheUse.HIT2;
+                            if (m_shapeStats != null) {
+                                m_shapeStats.recordHit(parsedToken, sql);
+                            }
                             return ahps;
                         }
                     }
@@ -329,7 +343,7 @@ public class PlannerTool {
                     partitioning = plan.getStatementPartitioning();
                 }
                 if (plan.getIsLargeQuery() != isLargeQuery) {
-                    ++m_adHocLargeFallbackCount;
+                    m_adHocLargeFallbackCount.incrementAndGet();
                 }
 
                 planHasExceptionsWhenParameterized = planner.wasBadPameterized();
@@ -370,13 +384,17 @@ public class PlannerTool {
 
                 assert(parsedToken != null);
                 // Again, plans with inferred partitioning are the only ones supported in the cache.
-                m_cache.put(sql, parsedToken, ahps, extractedLiterals, hasUserQuestionMark, planHasExceptionsWhenParameterized);
+                cache.put(sql, parsedToken, ahps, extractedLiterals, hasUserQuestionMark, planHasExceptionsWhenParameterized);
+                if (m_shapeStats != null) {
+                    m_shapeStats.recordMiss(parsedToken, sql);
+                }
             }
             return ahps;
         }
         finally {
             if (m_plannerStats != null) {
-                m_plannerStats.endStatsCollection(m_cache.getLiteralCacheSize(), m_cache.getCoreCacheSize(), cacheUse, -1);
+                m_plannerStats.endStatsCollection(cache.getLiteralCacheSize(), cache.getCoreCacheSize(),
+                        AdHocCompilerCache.getLiteralEvictions(), AdHocCompilerCache.getCoreEvictions(), cacheUse, -1);
             }
         }
     }
@@ -54,6 +54,7 @@ import org.voltcore.utils.CoreUtils;
 import org.voltcore.utils.DBBPool;
 import org.voltcore.utils.DBBPool.BBContainer;
 import org.voltcore.utils.Pair;
+import org.voltcore.utils.SerialExecutorService;
 import org.voltdb.ExportStatsBase.ExportStatsRow;
 import org.voltdb.RealVoltDB;
 import org.voltdb.VoltDB;
@@ -86,6 +87,17 @@ public class ExportDataSource implements Comparable<ExportDataSource> {
     private static final VoltLogger exportLog = new VoltLogger("EXPORT");
     private static final int SEVENX_AD_VERSION = 1;     // AD version for export format 7.x
 
+    /*
+     * Every data source on the host runs its work serially on a SerialExecutorService,
+     * and all of them share this pool instead of each having a thread of its own.
+     * Decoders don't run here, GuestProcessor gives the ones without an executor of
+     * their own a dedicated thread.
+     */
+    private static final int EXPORT_THREADS = Integer.getInteger("EXPORT_DATASOURCE_THREADS",
+            Math.max(4, CoreUtils.availableProcessors()));
+    private static final ListeningExecutorService m_sharedExecutor =
+            CoreUtils.getListeningExecutorService("Export Data Source", EXPORT_THREADS);
+
     private final String m_database;
     private final String m_tableName;
     private final String m_signature;
@@ -138,7 +150,7 @@ public class ExportDataSource implements Comparable<ExportDataSource> {
             new AtomicReference<>(Pair.of((Mailbox)null, ImmutableList.<Long>builder().build()));
     private final Semaphore m_bufferPushPermits = new Semaphore(16);
 
-    private volatile ListeningExecutorService m_es;
+    private volatile SerialExecutorService m_es;
     // A place to keep unfinished export buffer when processor shuts down.
     private final AtomicReference<AckingContainer> m_pendingContainer = new AtomicReference<>();
     // Is EDS from catalog or from disk pdb?
@@ -298,8 +310,8 @@ public class ExportDataSource implements Comparable<ExportDataSource> {
                 exportLog.debug(toString() + " is a replicated export stream");
             }
         }
-        m_es = CoreUtils.getListeningExecutorService("ExportDataSource for table " +
-                    m_tableName + " partition " + m_partitionId, 1);
+        m_es = new SerialExecutorService(m_sharedExecutor, "ExportDataSource for table " +
+                    m_tableName + " partition " + m_partitionId);
     }
 
     public ExportDataSource(Generation generation, File adFile,
@@ -375,8 +387,8 @@ public class ExportDataSource implements Comparable<ExportDataSource> {
                 exportLog.debug(toString() + " is a replicated export stream");
             }
         }
-        m_es = CoreUtils.getListeningExecutorService("ExportDataSource for table " +
-                m_tableName + " partition " + m_partitionId, 1);
+        m_es = new SerialExecutorService(m_sharedExecutor, "ExportDataSource for table " +
+                m_tableName + " partition " + m_partitionId);
     }
 
     public void setReadyForPolling(boolean readyForPolling) {
@@ -618,7 +630,7 @@ public class ExportDataSource implements Comparable<ExportDataSource> {
                 return new ExportStatsRow(m_partitionId, m_siteId, m_tableName, m_exportTargetName,
                         exportingRole, m_tupleCount, m_tuplesPending.get(),
                         m_lastQueuedTimestamp, m_lastAckedTimestamp,
-                        avgLatency, maxLatency, m_queueGap, m_status.toString());
+                        avgLatency, maxLatency, m_queueGap, m_status.toString(), m_es.getQueueDepth());
             }
         });
     }
@@ -225,6 +225,7 @@ public class ExportManager
             rowValues[columnNameToIndex.get(Columns.MAX_LATENCY)] = stat.m_maxLatency;
             rowValues[columnNameToIndex.get(Columns.QUEUE_GAP)] = stat.m_queueGap;
             rowValues[columnNameToIndex.get(Columns.STATUS)] = stat.m_status;
+            rowValues[columnNameToIndex.get(Columns.TASK_QUEUE_DEPTH)] = stat.m_taskQueueDepth;
         }
 
         public ExportStatsRow getStatsRow(Object rowKey) {
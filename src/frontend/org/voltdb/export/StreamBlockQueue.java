@@ -21,18 +21,24 @@ import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.util.ArrayDeque;
 import java.util.Iterator;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 import org.voltcore.logging.VoltLogger;
+import org.voltcore.utils.CoreUtils;
 import org.voltcore.utils.DBBPool.BBContainer;
 import org.voltdb.utils.BinaryDeque;
 import org.voltdb.utils.BinaryDeque.BinaryDequeReader;
 import org.voltdb.utils.BinaryDeque.BinaryDequeScanner;
 import org.voltdb.utils.BinaryDeque.BinaryDequeTruncator;
 import org.voltdb.utils.BinaryDeque.TruncatorResponse;
+import org.voltdb.utils.GroupCommitBinaryDequeWriter;
 import org.voltdb.utils.PersistentBinaryDeque;
 import org.voltdb.utils.PersistentBinaryDeque.ByteBufferTruncatorResponse;
 import org.voltdb.utils.VoltFile;
 
+import com.google_voltpatches.common.util.concurrent.ListenableFuture;
+
 /**
  * A customized queue for StreamBlocks that contain export data. The queue is able to
  * overflow to disk when more then two stream blocks are stored
@@ -65,6 +71,13 @@ public class StreamBlockQueue {
     public static final String EXPORT_DISABLE_COMPRESSION_OPTION = "EXPORT_DISABLE_COMPRESSION";
     private static final boolean DISABLE_COMPRESSION = Boolean.getBoolean(EXPORT_DISABLE_COMPRESSION_OPTION);
 
+    /**
+     * Append overflow blocks from a dedicated writer thread rather than the export data source's
+     * executor, see {@link GroupCommitBinaryDequeWriter}
+     */
+    public static final String EXPORT_GROUP_COMMIT_OPTION = "EXPORT_PBD_GROUP_COMMIT";
+    private static final boolean GROUP_COMMIT = Boolean.getBoolean(EXPORT_GROUP_COMMIT_OPTION);
+
     /**
      * Deque containing reference to stream blocks that are in memory. Some of these
      * stream blocks may still be persisted to disk others are stored completely in memory
@@ -80,18 +93,89 @@ public class StreamBlockQueue {
     private final String m_path;
     private BinaryDequeReader m_reader;
 
+    private final boolean m_groupCommit;
+    /**
+     * Appends to the persistent deque when group commit is enabled, null otherwise.
+     * Blocks handed to the writer are only visible to m_reader once appended, so every
+     * read of the persistent deque waits for the outstanding appends first.
+     */
+    private GroupCommitBinaryDequeWriter m_writer;
+    private int m_unappendedBlocks = 0;
+    private volatile Throwable m_writeFailure;
+
     public StreamBlockQueue(String path, String nonce) throws java.io.IOException {
+        this(path, nonce, GROUP_COMMIT);
+    }
+
+    public StreamBlockQueue(String path, String nonce, boolean groupCommit) throws java.io.IOException {
         m_persistentDeque = new PersistentBinaryDeque( nonce, new VoltFile(path), exportLog);
         m_path = path;
         m_nonce = nonce;
+        m_groupCommit = groupCommit;
+        m_writer = createWriter();
         m_reader = m_persistentDeque.openForRead(m_nonce);
         if (exportLog.isDebugEnabled()) {
             exportLog.debug(m_nonce + " At SBQ creation, PBD size is " + (m_reader.sizeInBytes() - (8 * m_reader.getNumObjects())));
         }
     }
 
+    private GroupCommitBinaryDequeWriter createWriter() {
+        return m_groupCommit ? new GroupCommitBinaryDequeWriter("Export " + m_nonce, m_persistentDeque) : null;
+    }
+
+    private static IOException asIOException(Throwable t) {
+        return t instanceof IOException ? (IOException) t : new IOException(t);
+    }
+
+    private static void await(Future<Void> future) throws IOException {
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } catch (ExecutionException e) {
+            throw asIOException(e.getCause());
+        }
+    }
+
+    private void checkWriteFailure() throws IOException {
+        if (m_writeFailure != null) {
+            throw asIOException(m_writeFailure);
+        }
+    }
+
+    /**
+     * Wait for the blocks handed to the writer to be appended to the persistent deque,
+     * so that they can be read back.
+     */
+    private void awaitAppends() throws IOException {
+        if (m_unappendedBlocks > 0) {
+            await(m_writer.appendBarrier());
+            m_unappendedBlocks = 0;
+        }
+        checkWriteFailure();
+    }
+
+    private void shutdownWriter() throws IOException {
+        if (m_writer != null) {
+            try {
+                m_writer.shutdown();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException(e);
+            }
+            m_unappendedBlocks = 0;
+        }
+    }
+
     public boolean isEmpty() throws IOException {
-        if (m_memoryDeque.isEmpty() && m_reader.isEmpty()) {
+        if (!m_memoryDeque.isEmpty()) {
+            return false;
+        }
+        if (m_writer != null) {
+            awaitAppends();
+        }
+        if (m_reader.isEmpty()) {
             return true;
         }
         return false;
@@ -109,6 +193,9 @@ public class StreamBlockQueue {
     private StreamBlock pollPersistentDeque(boolean actuallyPoll) {
         BBContainer cont = null;
         try {
+            if (m_writer != null) {
+                awaitAppends();
+            }
             cont = m_reader.poll(PersistentBinaryDeque.UNSAFE_CONTAINER_FACTORY);
         } catch (IOException e) {
             exportLog.error(e);
@@ -225,7 +312,22 @@ public class StreamBlockQueue {
      * Only allow two blocks in memory, put the rest in the persistent deque
      */
     public void offer(StreamBlock streamBlock) throws IOException {
-        m_persistentDeque.offer(streamBlock.asBBContainer(), !DISABLE_COMPRESSION);
+        if (m_writer != null) {
+            checkWriteFailure();
+            final ListenableFuture<Void> synced = m_writer.offer(streamBlock.asBBContainer(), !DISABLE_COMPRESSION);
+            synced.addListener(() -> {
+                try {
+                    synced.get();
+                } catch (ExecutionException e) {
+                    // reported by the next offer or read of the deque
+                    m_writeFailure = e.getCause();
+                } catch (InterruptedException e) {
+                }
+            }, CoreUtils.LISTENINGSAMETHREADEXECUTOR);
+            m_unappendedBlocks++;
+        } else {
+            m_persistentDeque.offer(streamBlock.asBBContainer(), !DISABLE_COMPRESSION);
+        }
         long unreleasedSeqNo = streamBlock.unreleasedSequenceNumber();
         if (m_memoryDeque.size() < 2) {
             StreamBlock fromPBD = pollPersistentDeque(false);
@@ -240,13 +342,22 @@ public class StreamBlockQueue {
      * This is a no-op now with nofsync=true
      */
     public void sync(boolean nofsync) throws IOException {
-        if (!nofsync) {
+        if (m_writer != null) {
+            if (!nofsync) {
+                await(m_writer.flush());
+                m_unappendedBlocks = 0;
+            }
+            checkWriteFailure();
+        } else if (!nofsync) {
             m_persistentDeque.sync();
         }
     }
 
     // Only used in tests, should be removed.
     public long sizeInBytes() throws IOException {
+        if (m_writer != null) {
+            awaitAppends();
+        }
         long memoryBlockUsage = 0;
         for (StreamBlock b : m_memoryDeque) {
             //Use only total size, but throw in the USO
@@ -260,6 +371,8 @@ public class StreamBlockQueue {
 
     public void close() throws IOException {
         sync(true);
+        // appends and syncs whatever is still queued
+        shutdownWriter();
         m_persistentDeque.close();
         for (StreamBlock sb : m_memoryDeque) {
             sb.discard();
@@ -268,6 +381,7 @@ public class StreamBlockQueue {
     }
 
     public void closeAndDelete() throws IOException {
+        shutdownWriter();
         m_persistentDeque.closeAndDelete();
         for (StreamBlock sb : m_memoryDeque) {
             sb.discard();
@@ -277,6 +391,8 @@ public class StreamBlockQueue {
     // See PDB segment layout at beginning of this file.
     public void truncateToSequenceNumber(final long truncationSeqNo) throws IOException {
         assert(m_memoryDeque.isEmpty());
+        // the deque is reopened below, so the writer is restarted on the new one
+        shutdownWriter();
         m_persistentDeque.parseAndTruncate(new BinaryDequeTruncator() {
 
             @Override
@@ -332,6 +448,7 @@ public class StreamBlockQueue {
         // close reopen reader
         m_persistentDeque.close();
         m_persistentDeque = new PersistentBinaryDeque(m_nonce, new VoltFile(m_path), exportLog);
+        m_writer = createWriter();
         m_reader = m_persistentDeque.openForRead(m_nonce);
         // temporary debug stmt
         exportLog.info("After truncate, PBD size is " + (m_reader.sizeInBytes() - (8 * m_reader.getNumObjects())));
@@ -339,6 +456,9 @@ public class StreamBlockQueue {
 
     public ExportSequenceNumberTracker scanForGap() throws IOException {
         assert(m_memoryDeque.isEmpty());
+        if (m_writer != null) {
+            awaitAppends();
+        }
         return m_persistentDeque.scanForGap(new BinaryDequeScanner() {
 
             public ExportSequenceNumberTracker scan(BBContainer bbc) {
@@ -30,8 +30,10 @@ import java.util.Properties;
 import java.util.Set;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 
 import org.voltcore.logging.VoltLogger;
+import org.voltcore.utils.CoreUtils;
 import org.voltcore.utils.Pair;
 import org.voltdb.VoltDB;
 import org.voltdb.VoltType;
@@ -49,6 +51,7 @@ import org.voltdb.exportclient.ExportRow;
 
 import com.google_voltpatches.common.base.Preconditions;
 import com.google_voltpatches.common.util.concurrent.ListenableFuture;
+import com.google_voltpatches.common.util.concurrent.ListeningExecutorService;
 
 public class GuestProcessor implements ExportDataProcessor {
 
@@ -63,6 +66,8 @@ public class GuestProcessor implements ExportDataProcessor {
     private Map<String, String> m_targetsByTableName = new HashMap<>();
 
     private final List<Pair<ExportDecoderBase, AdvertisedDataSource>> m_decoders = new ArrayList<Pair<ExportDecoderBase, AdvertisedDataSource>>();
+    // Threads of the decoders that don't provide an executor of their own, see decoderExecutor()
+    private final List<ListeningExecutorService> m_decoderExecutors = new ArrayList<ListeningExecutorService>();
 
     private final long m_startTS = System.currentTimeMillis();
     private volatile boolean m_startPolling = false;
@@ -216,6 +221,28 @@ public class GuestProcessor implements ExportDataProcessor {
             }
         }
 
+        /*
+         * Decoders that keep the default same thread executor would process their blocks,
+         * and block on their targets, on the export pool shared by all the data sources.
+         * Give each of them a thread of its own, as each source had before the pool.
+         */
+        private ListeningExecutorService decoderExecutor(ExportClientBase client, ExportDecoderBase edb) {
+            final ListeningExecutorService executor = edb.getExecutor();
+            if (executor != CoreUtils.LISTENINGSAMETHREADEXECUTOR) {
+                return executor;
+            }
+            if (m_logger.isDebugEnabled()) {
+                m_logger.debug("Export client " + client.getClass().getCanonicalName() +
+                        " doesn't provide an executor, running table " + m_source.getTableName() +
+                        " partition " + m_source.getPartitionId() + " on a dedicated thread");
+            }
+            final ListeningExecutorService dedicated = CoreUtils.getListeningExecutorService(
+                    "ExportDecoder for table " + m_source.getTableName() +
+                    " partition " + m_source.getPartitionId(), 1);
+            m_decoderExecutors.add(dedicated);
+            return dedicated;
+        }
+
         //Utility method to build and add listener.
         private void buildListener(AdvertisedDataSource ads) {
             //Dont construct if we are shutdown
@@ -224,8 +251,9 @@ public class GuestProcessor implements ExportDataProcessor {
             detectDecoder(m_client, edb);
             Pair<ExportDecoderBase, AdvertisedDataSource> pair = Pair.of(edb, ads);
             m_decoders.add(pair);
+            final ListeningExecutorService executor = decoderExecutor(m_client, edb);
             final ListenableFuture<AckingContainer> fut = m_source.poll();
-            addBlockListener(m_source, fut, edb);
+            addBlockListener(m_source, fut, edb, executor);
             m_source.forwardAckToOtherReplicas();
         }
 
@@ -261,11 +289,14 @@ public class GuestProcessor implements ExportDataProcessor {
                                     buildListener(ads);
                                 }
                             } else {
-                                Thread.sleep(5);
-                                resubmitSelf();
+                                // Don't hold a thread of the shared export pool while waiting
+                                VoltDB.instance().scheduleWork(new Runnable() {
+                                    @Override
+                                    public void run() {
+                                        resubmitSelf();
+                                    }
+                                }, 5, 0, TimeUnit.MILLISECONDS);
                             }
-                        } catch(InterruptedException e) {
-                            resubmitSelf();
                         } catch (Exception e) {
                             VoltDB.crashLocalVoltDB("Failed to initiate export binary deque poll", true, e);
                         }
@@ -310,9 +341,10 @@ public class GuestProcessor implements ExportDataProcessor {
     private void addBlockListener(
             final ExportDataSource source,
             final ListenableFuture<AckingContainer> fut,
-            final ExportDecoderBase edb) {
+            final ExportDecoderBase edb,
+            final ListeningExecutorService executor) {
         /*
-         * The listener runs in the thread specified by the EDB.
+         * The listener runs in the thread specified by the EDB, or a dedicated one.
          *
          * For JDBC we want a dedicated thread to block on calls to the remote database
          * so the data source thread can overflow data to disk.
@@ -454,10 +486,10 @@ public class GuestProcessor implements ExportDataProcessor {
                     }
                 }
                 if (!m_shutdown) {
-                    addBlockListener(source, source.poll(), edb);
+                    addBlockListener(source, source.poll(), edb, executor);
                 }
             }
-        }, edb.getExecutor());
+        }, executor);
     }
 
     @Override
@@ -488,6 +520,12 @@ public class GuestProcessor implements ExportDataProcessor {
             }
         }
         m_decoders.clear();
+        synchronized (this) {
+            for (ListeningExecutorService executor : m_decoderExecutors) {
+                executor.shutdown();
+            }
+            m_decoderExecutors.clear();
+        }
         for (ExportClientBase client : m_clientsByTarget.values()) {
             client.shutdown();
         }
@@ -20,6 +20,8 @@ package org.voltdb.iv2;
 import java.util.List;
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.zookeeper_voltpatches.KeeperException;
 import org.apache.zookeeper_voltpatches.ZooKeeper;
@@ -35,6 +37,7 @@ import org.voltdb.ProducerDRGateway;
 import org.voltdb.Promotable;
 import org.voltdb.StartAction;
 import org.voltdb.StatsAgent;
+import org.voltdb.StatsSelector;
 import org.voltdb.TTLManager;
 import org.voltdb.VoltDB;
 import org.voltdb.VoltZK;
@@ -51,6 +54,9 @@ public class MpInitiator extends BaseInitiator implements Promotable
 {
     public static final int MP_INIT_PID = TxnEgo.PARTITIONID_MAX_VALUE;
 
+    // periodic trim of the idle read-only sites, see scheduleRoSiteTrim()
+    private ScheduledFuture<?> m_roSiteTrimTask;
+
     public MpInitiator(HostMessenger messenger, List<Long> buddyHSIds, StatsAgent agent, int leaderNodeId)
     {
         super(VoltZK.iv2mpi,
@@ -94,6 +100,8 @@ public class MpInitiator extends BaseInitiator implements Promotable
                 m_partitionId,
                 m_initiatorMailbox);
         sched.setMpRoSitePool(sitePool);
+        agent.registerStatsSource(StatsSelector.MPIREADPOOL, m_initiatorMailbox.getHSId(), sitePool.getStats());
+        scheduleRoSiteTrim();
 
         // add ourselves to the ephemeral node list which BabySitters will watch for this
         // partition
@@ -102,6 +110,32 @@ public class MpInitiator extends BaseInitiator implements Promotable
                 Long.toString(getInitiatorHSId()), null);
     }
 
+    /**
+     * Shut down read-only sites left idle after a burst of reads, the pool only
+     * trims itself when a read completes. Any trim task already scheduled is
+     * cancelled first, so there is never more than one.
+     */
+    private synchronized void scheduleRoSiteTrim()
+    {
+        cancelRoSiteTrim();
+        final MpScheduler sched = (MpScheduler)m_scheduler;
+        final long trimIntervalMs = Math.max(1000, TimeUnit.NANOSECONDS.toMillis(MpRoSitePool.IDLE_TIMEOUT_NANOS) / 2);
+        m_roSiteTrimTask = VoltDB.instance().scheduleWork(new Runnable() {
+            @Override
+            public void run() {
+                sched.trimIdleRoSites();
+            }
+        }, trimIntervalMs, trimIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    private synchronized void cancelRoSiteTrim()
+    {
+        if (m_roSiteTrimTask != null) {
+            m_roSiteTrimTask.cancel(false);
+            m_roSiteTrimTask = null;
+        }
+    }
+
     @Override
     public void initDRGateway(StartAction startAction, ProducerDRGateway nodeDRGateway, boolean createMpDRGateway)
     {
@@ -111,6 +145,8 @@ public class MpInitiator extends BaseInitiator implements Promotable
     @Override
     public void acceptPromotion()
     {
+        // restart the trim task for the promoted MPI, dropping the one from configure()
+        scheduleRoSiteTrim();
         try {
             long startTime = System.currentTimeMillis();
             Boolean success = false;
@@ -190,6 +226,13 @@ public class MpInitiator extends BaseInitiator implements Promotable
         }
     }
 
+    @Override
+    public void shutdown()
+    {
+        cancelRoSiteTrim();
+        super.shutdown();
+    }
+
     /**
      * The MPInitiator does not have user data to rejoin.
      */
@@ -26,23 +26,42 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
 import org.voltcore.logging.VoltLogger;
 import org.voltcore.utils.CoreUtils;
 import org.voltdb.BackendTarget;
 import org.voltdb.CatalogContext;
 import org.voltdb.LoadedProcedureSet;
+import org.voltdb.ParameterSet;
 import org.voltdb.StarvationTracker;
+import org.voltdb.StoredProcedureInvocation;
+import org.voltdb.compiler.AdHocPlannedStatement;
+import org.voltdb.dtxn.TransactionState;
+import org.voltdb.sysprocs.AdHocBase;
+import org.voltdb.utils.Encoder;
 
 /**
  * Provide a pool of MP Read-only sites to do MP RO work.
  * This should be owned by the MpTransactionTaskQueue and expects all operations
  * to be done while holding its lock.
+ *
+ * The pool grows up to its maximum size while reads are waiting for a site and
+ * shuts down sites which have been idle longer than the idle timeout, down to
+ * the initial size. Procedures whose recent runs took longer than the heavy
+ * threshold are only admitted while fewer than the heavy share of the pool is
+ * running heavy work, so long scans can't take every site from short reads.
  */
 class MpRoSitePool {
     final static VoltLogger tmLog = new VoltLogger("TM");
 
     static int DEFAULT_MAX_POOL_SIZE = 20;
     static int INITIAL_POOL_SIZE = 1;
+    static long IDLE_TIMEOUT_NANOS =
+            TimeUnit.MILLISECONDS.toNanos(Long.getLong("mpiReadPoolIdleTimeoutMs", 60000));
+    static long HEAVY_THRESHOLD_NANOS =
+            TimeUnit.MILLISECONDS.toNanos(Long.getLong("mpiReadPoolHeavyMs", 100));
+    static int DEFAULT_HEAVY_PERCENT = 50;
 
     class MpRoSiteContext {
         final private SiteTaskerQueue m_queue;
@@ -50,6 +69,10 @@ class MpRoSitePool {
         final private CatalogContext m_catalogContext;
         final private LoadedProcedureSet m_loadedProcedures;
         final private Thread m_siteThread;
+        private long m_idleSinceNanos;
+        private String m_costKey;
+        private long m_startNanos;
+        private boolean m_heavy;
 
         MpRoSiteContext(long siteId, BackendTarget backend,
                 CatalogContext context, int partitionId,
@@ -102,6 +125,13 @@ class MpRoSitePool {
 
     //The reference for all sites, used for shutdown
     private List<MpRoSiteContext> m_allSites = Collections.synchronizedList(new ArrayList<>());
+    // Moving average of the run time of each read-only procedure, or of each
+    // ad hoc plan, see getCostKey()
+    private final Map<String, Long> m_costNanos = new HashMap<>();
+    // Cost keys of the heavy reads held back by canAcceptWork(), hashed by txnID.
+    // Each is counted as deferred once, however often the backlog is rescanned.
+    private final Map<Long, String> m_deferredCostKeys = new HashMap<>();
+    private int m_heavySites = 0;
 
     // Stuff we need to construct new MpRoSites
     private final long m_siteId;
@@ -111,6 +141,8 @@ class MpRoSitePool {
     private CatalogContext m_catalogContext;
     private ThreadFactory m_poolThreadFactory;
     private final int m_poolSize;
+    private final int m_maxHeavySites;
+    private final MpRoSitePoolStats m_stats;
     private volatile boolean m_shuttingDown = false;
 
     MpRoSitePool(
@@ -135,20 +167,100 @@ class MpRoSitePool {
         }
         m_poolSize = poolSize;
         tmLog.info("Setting maximum size of MPI read pool to: " + m_poolSize);
+        int heavyPercent = Integer.getInteger("mpiReadPoolHeavyPercent", DEFAULT_HEAVY_PERCENT);
+        m_maxHeavySites = Math.max(1, m_poolSize * heavyPercent / 100);
+        m_stats = new MpRoSitePoolStats(m_siteId, m_poolSize, m_maxHeavySites);
 
         // Construct the initial pool
+        final long now = System.nanoTime();
         for (int i = 0; i < INITIAL_POOL_SIZE; i++) {
-            MpRoSiteContext site = new MpRoSiteContext(m_siteId,
-                    m_backend,
-                    m_catalogContext,
-                    m_partitionId,
-                    m_initiatorMailbox,
-                    m_poolThreadFactory);
+            MpRoSiteContext site = createSite();
+            site.m_idleSinceNanos = now;
             m_idleSites.push(site);
-            m_allSites.add(site);
+        }
+        updateStats();
+    }
+
+    MpRoSitePoolStats getStats()
+    {
+        return m_stats;
+    }
+
+    private MpRoSiteContext createSite()
+    {
+        MpRoSiteContext site = new MpRoSiteContext(m_siteId,
+                m_backend,
+                m_catalogContext,
+                m_partitionId,
+                m_initiatorMailbox,
+                m_poolThreadFactory);
+        m_allSites.add(site);
+        m_stats.siteCreated();
+        return site;
+    }
+
+    private void shutdownSite(MpRoSiteContext site)
+    {
+        site.shutdown();
+        m_allSites.remove(site);
+        m_stats.siteShutDown();
+    }
+
+    private void updateStats()
+    {
+        m_stats.updateOccupancy(m_allSites.size(), m_busySites.size(), m_heavySites);
+    }
+
+    /**
+     * The key the run time of this task is averaged under. This is the procedure name,
+     * except for ad hoc reads, which all run as the same system procedure; those are
+     * keyed by the hashes of the plans in the batch.
+     */
+    static String getCostKey(TransactionTask task)
+    {
+        TransactionState txnState = task.getTransactionState();
+        if (txnState == null || txnState.getInvocation() == null) {
+            return null;
+        }
+        StoredProcedureInvocation invocation = txnState.getInvocation();
+        String procName = invocation.getProcName();
+        if (!"@AdHoc_RO_MP".equals(procName)) {
+            return procName;
+        }
+        try {
+            ParameterSet params = invocation.getParams();
+            if (params.size() == 0 || !(params.getParam(0) instanceof byte[])) {
+                return procName;
+            }
+            AdHocPlannedStatement[] statements =
+                    AdHocBase.decodeSerializedBatchData((byte[]) params.getParam(0)).getSecond();
+            StringBuilder sb = new StringBuilder(procName);
+            for (AdHocPlannedStatement statement : statements) {
+                sb.append(':').append(Encoder.hexEncode(statement.core.aggregatorHash));
+                if (statement.core.collectorHash != null) {
+                    sb.append('/').append(Encoder.hexEncode(statement.core.collectorHash));
+                }
+            }
+            return sb.toString();
+        }
+        catch (RuntimeException e) {
+            // can't tell the plans apart, fall back to one estimate for all ad hoc reads
+            return procName;
         }
     }
 
+    /**
+     * Is the work with this cost key expected to be heavy, going by its recent run times?
+     */
+    private boolean isHeavy(String costKey)
+    {
+        if (costKey == null) {
+            return false;
+        }
+        Long cost = m_costNanos.get(costKey);
+        return cost != null && cost >= HEAVY_THRESHOLD_NANOS;
+    }
+
     /**
      * Update the catalog
      */
@@ -167,11 +279,13 @@ class MpRoSitePool {
             MpRoSiteContext site = siterator.next();
             if (site.getCatalogCRC() != m_catalogContext.getCatalogCRC()
                     || site.getCatalogVersion() != m_catalogContext.catalogVersion) {
-                site.shutdown();
-                m_idleSites.remove(site);
-                m_allSites.remove(site);
+                siterator.remove();
+                shutdownSite(site);
             }
         }
+        // Procedures may have changed, start costing them again
+        m_costNanos.clear();
+        updateStats();
     }
 
     /**
@@ -211,35 +325,66 @@ class MpRoSitePool {
         return (!m_idleSites.isEmpty() || m_busySites.size() < m_poolSize);
     }
 
+    /**
+     * Is there a RO site available to do this task? Heavy procedures are held back
+     * while the heavy share of the pool is busy.
+     */
+    boolean canAcceptWork(TransactionTask task)
+    {
+        if (!canAcceptWork()) {
+            return false;
+        }
+        if (m_heavySites < m_maxHeavySites) {
+            return true;
+        }
+        String costKey = m_deferredCostKeys.get(task.getTxnId());
+        if (costKey == null) {
+            costKey = getCostKey(task);
+        }
+        if (isHeavy(costKey)) {
+            if (m_deferredCostKeys.put(task.getTxnId(), costKey) == null) {
+                m_stats.heavyDeferred();
+            }
+            return false;
+        }
+        return true;
+    }
+
     /**
      * Attempt to start the transaction represented by the given task.  Need the txn ID for future reference.
      * @return true if work was started successfully, false if not.
      */
     boolean doWork(long txnId, TransactionTask task)
     {
-        boolean retval = canAcceptWork();
-        if (!retval) {
+        MpRoSiteContext site = m_busySites.get(txnId);
+        // Repair case
+        if (site != null) {
+            site.offer(task);
+            return true;
+        }
+        if (!canAcceptWork()) {
             return false;
         }
-        MpRoSiteContext site;
-        // Repair case
-        if (m_busySites.containsKey(txnId)) {
-            site = m_busySites.get(txnId);
+        if (m_idleSites.isEmpty()) {
+            m_idleSites.push(createSite());
         }
-        else {
-            if (m_idleSites.isEmpty()) {
-                MpRoSiteContext newSite = new MpRoSiteContext(m_siteId,
-                        m_backend,
-                        m_catalogContext,
-                        m_partitionId,
-                        m_initiatorMailbox,
-                        m_poolThreadFactory);
-                m_idleSites.push(newSite);
-                m_allSites.add(newSite);
-            }
-            site = m_idleSites.pop();
-            m_busySites.put(txnId, site);
+        site = m_idleSites.pop();
+        m_busySites.put(txnId, site);
+
+        final long now = System.nanoTime();
+        if (task.getQueueOfferTime() > 0) {
+            m_stats.recordWait(now - task.getQueueOfferTime());
+        }
+        site.m_costKey = m_deferredCostKeys.remove(txnId);
+        if (site.m_costKey == null) {
+            site.m_costKey = getCostKey(task);
         }
+        site.m_startNanos = now;
+        site.m_heavy = isHeavy(site.m_costKey);
+        if (site.m_heavy) {
+            m_heavySites++;
+        }
+        updateStats();
         site.offer(task);
         return true;
     }
@@ -257,22 +402,53 @@ class MpRoSitePool {
         if (site == null) {
             throw new RuntimeException("No busy site for txnID: " + txnId + " found, shouldn't happen.");
         }
+        final long now = System.nanoTime();
+        if (site.m_heavy) {
+            m_heavySites--;
+            site.m_heavy = false;
+        }
+        if (site.m_costKey != null) {
+            // exponential moving average, weight 1/8 to the latest run
+            long runNanos = now - site.m_startNanos;
+            Long cost = m_costNanos.get(site.m_costKey);
+            m_costNanos.put(site.m_costKey, cost == null ? runNanos : cost + (runNanos - cost) / 8);
+            site.m_costKey = null;
+        }
         // check the catalog versions, only push back onto idle if the catalog hasn't changed
         // otherwise, just let it get garbage collected and let doWork() construct new ones for the
         // pool with the updated catalog.
         if (site.getCatalogCRC() == m_catalogContext.getCatalogCRC()
                 && site.getCatalogVersion() == m_catalogContext.catalogVersion) {
+            site.m_idleSinceNanos = now;
             m_idleSites.push(site);
         }
         else {
-            site.shutdown();
-            m_allSites.remove(site);
+            shutdownSite(site);
+        }
+        trimIdleSites(now);
+    }
+
+    /**
+     * Shut down the sites which have been idle longer than the idle timeout,
+     * keeping at least the initial pool size. Idle sites are reused most recently
+     * idle first, so the longest idle sites are at the bottom of the stack.
+     */
+    void trimIdleSites(long now)
+    {
+        if (m_shuttingDown) {
+            return;
+        }
+        while (m_allSites.size() > INITIAL_POOL_SIZE && !m_idleSites.isEmpty()
+                && now - m_idleSites.peekLast().m_idleSinceNanos > IDLE_TIMEOUT_NANOS) {
+            shutdownSite(m_idleSites.pollLast());
         }
+        updateStats();
     }
 
     void shutdown()
     {
         m_shuttingDown = true;
+        m_deferredCostKeys.clear();
 
         // Shutdown all, then join all, hopefully save some shutdown time for tests.
         synchronized(m_allSites) {
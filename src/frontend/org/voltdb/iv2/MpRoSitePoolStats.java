@@ -0,0 +1,170 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2019 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.iv2;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.HdrHistogram_voltpatches.AbstractHistogram;
+import org.voltdb.SiteStatsSource;
+import org.voltdb.VoltTable.ColumnInfo;
+import org.voltdb.VoltType;
+import org.voltdb.dtxn.LatencyHistogramStats;
+
+/**
+ * Occupancy of the MPI read-only site pool, the sites created and shut down,
+ * and how long read-only transactions waited for a site, in microseconds.
+ * Updated by the pool under the MpTransactionTaskQueue lock, read by the stats agent.
+ */
+public class MpRoSitePoolStats extends SiteStatsSource {
+
+    private final int m_maxSites;
+    private final int m_maxHeavySites;
+    private volatile int m_sites;
+    private volatile int m_busySites;
+    private volatile int m_busyHeavySites;
+    private final AtomicLong m_sitesCreated = new AtomicLong();
+    private final AtomicLong m_sitesShutDown = new AtomicLong();
+    private final AtomicLong m_heavyDeferred = new AtomicLong();
+    private final AbstractHistogram m_waitTimes = LatencyHistogramStats.constructHistogram(true);
+
+    // totals at the last interval collection
+    private long m_lastSitesCreated = 0;
+    private long m_lastSitesShutDown = 0;
+    private long m_lastHeavyDeferred = 0;
+    private AbstractHistogram m_lastWaitTimes = LatencyHistogramStats.constructHistogram(false);
+
+    // values of the row being collected
+    private long m_rowSitesCreated;
+    private long m_rowSitesShutDown;
+    private long m_rowHeavyDeferred;
+    private AbstractHistogram m_rowWaitTimes;
+
+    public MpRoSitePoolStats(long siteId, int maxSites, int maxHeavySites) {
+        super(siteId, false);
+        m_maxSites = maxSites;
+        m_maxHeavySites = maxHeavySites;
+    }
+
+    void updateOccupancy(int sites, int busySites, int busyHeavySites) {
+        m_sites = sites;
+        m_busySites = busySites;
+        m_busyHeavySites = busyHeavySites;
+    }
+
+    void siteCreated() {
+        m_sitesCreated.incrementAndGet();
+    }
+
+    void siteShutDown() {
+        m_sitesShutDown.incrementAndGet();
+    }
+
+    void heavyDeferred() {
+        m_heavyDeferred.incrementAndGet();
+    }
+
+    void recordWait(long waitNanos) {
+        m_waitTimes.recordValue(Math.min(TimeUnit.NANOSECONDS.toMicros(waitNanos),
+                m_waitTimes.getHighestTrackableValue()));
+    }
+
+    @Override
+    protected void populateColumnSchema(ArrayList<ColumnInfo> columns) {
+        super.populateColumnSchema(columns);
+        columns.add(new ColumnInfo("MAX_SITES", VoltType.INTEGER));
+        columns.add(new ColumnInfo("MAX_HEAVY_SITES", VoltType.INTEGER));
+        columns.add(new ColumnInfo("SITES", VoltType.INTEGER));
+        columns.add(new ColumnInfo("BUSY_SITES", VoltType.INTEGER));
+        columns.add(new ColumnInfo("BUSY_HEAVY_SITES", VoltType.INTEGER));
+        columns.add(new ColumnInfo("SITES_CREATED", VoltType.BIGINT));
+        columns.add(new ColumnInfo("SITES_SHUT_DOWN", VoltType.BIGINT));
+        columns.add(new ColumnInfo("HEAVY_DEFERRED", VoltType.BIGINT));
+        columns.add(new ColumnInfo("WAIT_COUNT", VoltType.BIGINT));
+        columns.add(new ColumnInfo("WAIT_P50", VoltType.BIGINT));  // microseconds
+        columns.add(new ColumnInfo("WAIT_P95", VoltType.BIGINT));  // microseconds
+        columns.add(new ColumnInfo("WAIT_P99", VoltType.BIGINT));  // microseconds
+        columns.add(new ColumnInfo("WAIT_MAX", VoltType.BIGINT));  // microseconds
+    }
+
+    @Override
+    protected synchronized void updateStatsRow(Object rowKey, Object[] rowValues) {
+        rowValues[columnNameToIndex.get("MAX_SITES")] = m_maxSites;
+        rowValues[columnNameToIndex.get("MAX_HEAVY_SITES")] = m_maxHeavySites;
+        rowValues[columnNameToIndex.get("SITES")] = m_sites;
+        rowValues[columnNameToIndex.get("BUSY_SITES")] = m_busySites;
+        rowValues[columnNameToIndex.get("BUSY_HEAVY_SITES")] = m_busyHeavySites;
+        rowValues[columnNameToIndex.get("SITES_CREATED")] = m_rowSitesCreated;
+        rowValues[columnNameToIndex.get("SITES_SHUT_DOWN")] = m_rowSitesShutDown;
+        rowValues[columnNameToIndex.get("HEAVY_DEFERRED")] = m_rowHeavyDeferred;
+        rowValues[columnNameToIndex.get("WAIT_COUNT")] = m_rowWaitTimes.getTotalCount();
+        rowValues[columnNameToIndex.get("WAIT_P50")] = m_rowWaitTimes.getValueAtPercentile(50D);
+        rowValues[columnNameToIndex.get("WAIT_P95")] = m_rowWaitTimes.getValueAtPercentile(95D);
+        rowValues[columnNameToIndex.get("WAIT_P99")] = m_rowWaitTimes.getValueAtPercentile(99D);
+        rowValues[columnNameToIndex.get("WAIT_MAX")] = m_rowWaitTimes.getMaxValue();
+        super.updateStatsRow(rowKey, rowValues);
+    }
+
+    @Override
+    protected synchronized Iterator<Object> getStatsRowKeyIterator(boolean interval) {
+        final long sitesCreated = m_sitesCreated.get();
+        final long sitesShutDown = m_sitesShutDown.get();
+        final long heavyDeferred = m_heavyDeferred.get();
+        final AbstractHistogram waitTimes = m_waitTimes.copy();
+        if (interval) {
+            m_rowSitesCreated = sitesCreated - m_lastSitesCreated;
+            m_rowSitesShutDown = sitesShutDown - m_lastSitesShutDown;
+            m_rowHeavyDeferred = heavyDeferred - m_lastHeavyDeferred;
+            m_rowWaitTimes = waitTimes.copy();
+            m_rowWaitTimes.subtract(m_lastWaitTimes);
+            m_lastSitesCreated = sitesCreated;
+            m_lastSitesShutDown = sitesShutDown;
+            m_lastHeavyDeferred = heavyDeferred;
+            m_lastWaitTimes = waitTimes;
+        }
+        else {
+            m_rowSitesCreated = sitesCreated;
+            m_rowSitesShutDown = sitesShutDown;
+            m_rowHeavyDeferred = heavyDeferred;
+            m_rowWaitTimes = waitTimes;
+        }
+
+        // one row for the pool
+        return new Iterator<Object>() {
+            boolean m_returnRow = true;
+
+            @Override
+            public boolean hasNext() {
+                return m_returnRow;
+            }
+
+            @Override
+            public Object next() {
+                m_returnRow = false;
+                return new Object();
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+}
@@ -106,6 +106,11 @@ public class MpScheduler extends Scheduler
         m_pendingTasks.setMpRoSitePool(sitePool);
     }
 
+    void trimIdleRoSites()
+    {
+        m_pendingTasks.trimIdleRoSites();
+    }
+
     void updateCatalog(String diffCmds, CatalogContext context)
     {
         m_pendingTasks.updateCatalog(diffCmds, context);
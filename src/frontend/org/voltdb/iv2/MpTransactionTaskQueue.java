@@ -71,6 +71,11 @@ public class MpTransactionTaskQueue extends TransactionTaskQueue
         m_sitePool.updateSettings(context);
     }
 
+    synchronized void trimIdleRoSites()
+    {
+        m_sitePool.trimIdleSites(System.nanoTime());
+    }
+
     void shutdown()
     {
         if (m_sitePool != null) {
@@ -89,6 +94,8 @@ public class MpTransactionTaskQueue extends TransactionTaskQueue
     synchronized void offer(TransactionTask task)
     {
         Iv2Trace.logTransactionTaskQueueOffer(task);
+        // time waiting for a read-only site is measured from here
+        task.setQueueOfferTime();
         m_backlog.addLast(task);
         taskQueueOffer();
     }
@@ -196,6 +203,8 @@ public class MpTransactionTaskQueue extends TransactionTaskQueue
         //   - If not, are there writes outstanding?
         //     - if not, while there are reads on the backlog and the pool has capacity:
         //       - pull the read from the backlog, add it to the current read set, and queue it.
+        //         A heavy read the pool can't take yet stays in place and the reads behind
+        //         it are considered, up to the next write.
         //       - bail when done
         //     - if so, bail for now
 
@@ -212,17 +221,18 @@ public class MpTransactionTaskQueue extends TransactionTaskQueue
                 }
             }
             else if (m_currentWrites.isEmpty()) {
-                while (task != null && task.getTransactionState().isReadOnly() &&
-                       m_sitePool.canAcceptWork())
-                {
-                    task = m_backlog.pollFirst();
-                    assert(task.getTransactionState().isReadOnly());
-                    m_currentReads.put(task.getTxnId(), task);
-                    taskQueueOffer(task);
-                    retval = true;
-                    // Prime the pump with the head task, if any.  If empty,
-                    // task will be null
-                    task = m_backlog.peekFirst();
+                Iterator<TransactionTask> iter = m_backlog.iterator();
+                while (iter.hasNext() && m_sitePool.canAcceptWork()) {
+                    task = iter.next();
+                    if (!task.getTransactionState().isReadOnly()) {
+                        break;
+                    }
+                    if (m_sitePool.canAcceptWork(task)) {
+                        iter.remove();
+                        m_currentReads.put(task.getTxnId(), task);
+                        taskQueueOffer(task);
+                        retval = true;
+                    }
                 }
             }
         }
@@ -158,6 +158,8 @@ public abstract class ExecutionEngine implements FastDeserializer.Deserializatio
     String m_currentProcedureName = null;
     int m_currentBatchIndex = 0;
     boolean m_usingFallbackBuffer = false;
+    /** Pooled direct memory for intermediate batch results, released when the procedure completes */
+    protected final FragmentResultBufferPool m_fragmentResultPool = new FragmentResultBufferPool();
     private long m_startTime;
     private long m_lastMsgTime;
     private long m_logDuration = INITIAL_LOG_DURATION;
@@ -189,6 +191,10 @@ public abstract class ExecutionEngine implements FastDeserializer.Deserializatio
         return m_usingFallbackBuffer;
     }
 
+    public FragmentResultBufferPool getFragmentResultPool() {
+        return m_fragmentResultPool;
+    }
+
     public void setBatchTimeout(int batchTimeout) {
         m_batchTimeout = batchTimeout;
     }
@@ -646,6 +652,7 @@ public abstract class ExecutionEngine implements FastDeserializer.Deserializatio
 
     public void completeProcedure() {
         m_currentProcedureName = null;
+        m_fragmentResultPool.release();
     }
 
     /** Run multiple plan fragments */
@@ -912,7 +919,11 @@ public abstract class ExecutionEngine implements FastDeserializer.Deserializatio
             long tempTableMemory,
             boolean createDrReplicatedStream,
             int compactionThreshold,
-            int exportFlushTimeout);
+            int exportFlushTimeout,
+            int compactionBudgetMicros,
+            boolean useBTreeIndexes,
+            boolean useOpenHashIndexes,
+            boolean batchExecution);
 
     /**
      * Sets (or re-sets) all the shared direct byte buffers in the EE.
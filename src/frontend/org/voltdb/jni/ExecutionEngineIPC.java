@@ -879,6 +879,7 @@ public class ExecutionEngineIPC extends ExecutionEngine {
         m_connection.close();
         System.out.println("Shutdown IPC connection done.");
         m_dataNetworkOrigin.discard();
+        m_fragmentResultPool.discard();
     }
 
     private void shutDown() {
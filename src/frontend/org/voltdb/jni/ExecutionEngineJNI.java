@@ -70,6 +70,31 @@ public class ExecutionEngineJNI extends ExecutionEngine {
      */
     public static final int EE_COMPACTION_THRESHOLD;
 
+    /*
+     * Maximum time in microseconds a single compaction pass may hold the site thread. Compaction
+     * which doesn't fit in the budget is continued in budget sized slices on the following ticks.
+     * 0 compacts a table to completion as soon as it crosses the threshold.
+     */
+    public static final int EE_COMPACTION_BUDGET_MICROS;
+
+    /*
+     * Back tree indexes with a B+tree instead of the red-black tree. Indexes whose keys must own
+     * their non-inlined values (indexed expressions over variable length values) keep the red-black tree.
+     */
+    public static final boolean EE_BTREE_INDEXES = Boolean.getBoolean("EE_BTREE_INDEXES");
+
+    /*
+     * Back unique hash indexes with an open-addressing table instead of chained buckets.
+     */
+    public static final boolean EE_OPEN_HASH_INDEXES = Boolean.getBoolean("EE_OPEN_HASH_INDEXES");
+
+    /*
+     * Evaluate simple scan predicates and projections over batches of tuples instead of one
+     * tuple at a time. Off by default, the row by row expression evaluation is used unless
+     * this is set.
+     */
+    public static final boolean EE_BATCH_EXECUTION = Boolean.getBoolean("EE_BATCH_EXECUTION");
+
     private static final boolean HOST_TRACE_ENABLED;
 
     // Size of the parameter set buffer and the per-fragment stats buffer.
@@ -81,6 +106,10 @@ public class ExecutionEngineJNI extends ExecutionEngine {
         if (EE_COMPACTION_THRESHOLD < 0 || EE_COMPACTION_THRESHOLD > 99) {
             VoltDB.crashLocalVoltDB("EE_COMPACTION_THRESHOLD " + EE_COMPACTION_THRESHOLD + " is not valid, must be between 0 and 99", false, null);
         }
+        EE_COMPACTION_BUDGET_MICROS = Integer.getInteger("EE_COMPACTION_BUDGET_MICROS", 0);
+        if (EE_COMPACTION_BUDGET_MICROS < 0) {
+            VoltDB.crashLocalVoltDB("EE_COMPACTION_BUDGET_MICROS " + EE_COMPACTION_BUDGET_MICROS + " is not valid, must not be negative", false, null);
+        }
         HOST_TRACE_ENABLED = LOG.isTraceEnabled();
     }
 
@@ -182,7 +211,11 @@ public class ExecutionEngineJNI extends ExecutionEngine {
                     tempTableMemory * 1024 * 1024,
                     isLowestSiteId,
                     EE_COMPACTION_THRESHOLD,
-                    exportFlushTimeout);
+                    exportFlushTimeout,
+                    EE_COMPACTION_BUDGET_MICROS,
+                    EE_BTREE_INDEXES,
+                    EE_OPEN_HASH_INDEXES,
+                    EE_BATCH_EXECUTION);
         checkErrorCode(errorCode);
 
         setupPsetBuffer(smallBufferSize);
@@ -312,6 +345,7 @@ public class ExecutionEngineJNI extends ExecutionEngine {
         m_firstDeserializerBufferOrigin.discard();
         m_nextDeserializer = null;
         m_nextDeserializerBufferOrigin.discard();
+        m_fragmentResultPool.discard();
         m_exceptionBuffer = null;
         m_exceptionBufferOrigin.discard();
         m_emptyDeserializer = null;
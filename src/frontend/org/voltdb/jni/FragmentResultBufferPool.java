@@ -0,0 +1,121 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2019 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.jni;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.voltcore.utils.DBBPool;
+import org.voltcore.utils.DBBPool.BBContainer;
+
+/**
+ * Site owned arena of direct memory used to hold the results of intermediate
+ * SQL batches. The EE writes every batch after the first into the same shared
+ * buffer, so the results of a batch have to be moved out of the way before
+ * the next batch runs. Instead of copying them into a fresh heap array for
+ * every batch, the results are bump allocated out of a set of direct chunks
+ * that are reused for every transaction executed by the site.
+ *
+ * All slices handed out are invalidated by {@link #release()}, which must be
+ * called once the transaction is complete. Tables which escape the procedure
+ * are already converted to heap buffers by the procedure runner.
+ *
+ * This class is not thread safe, it is only ever accessed from the site thread.
+ */
+public class FragmentResultBufferPool {
+
+    public static final boolean ENABLED = Boolean.getBoolean("POOLED_FRAGMENT_RESULT_BUFFERS");
+
+    // Size of each chunk of direct memory. Results larger than this get a dedicated chunk.
+    static final int CHUNK_SIZE = Integer.getInteger("POOLED_FRAGMENT_RESULT_CHUNK_SIZE", 1024 * 1024);
+    // Number of chunks retained across transactions. Any additional chunks are discarded on release.
+    static final int RETAINED_CHUNKS = Integer.getInteger("POOLED_FRAGMENT_RESULT_RETAINED_CHUNKS", 4);
+
+    private final List<BBContainer> m_chunks = new ArrayList<>();
+    private int m_currentChunk = -1;
+
+    /**
+     * Copy {@code length} bytes from the current position of {@code source} into pooled
+     * memory, advancing the position of {@code source}.
+     *
+     * @return A buffer positioned at zero with a limit of {@code length} backed by pooled memory
+     */
+    public ByteBuffer copyFrom(ByteBuffer source, int length) {
+        ByteBuffer chunk = chunkWithRemaining(length);
+        ByteBuffer slice = chunk.slice();
+        slice.limit(length);
+
+        ByteBuffer src = source.duplicate();
+        src.limit(src.position() + length);
+        slice.put(src);
+        slice.flip();
+
+        chunk.position(chunk.position() + length);
+        source.position(source.position() + length);
+        return slice;
+    }
+
+    private ByteBuffer chunkWithRemaining(int length) {
+        if (m_currentChunk >= 0 && m_chunks.get(m_currentChunk).b().remaining() >= length) {
+            return m_chunks.get(m_currentChunk).b();
+        }
+        // Try the next retained chunk before allocating a new one
+        while (++m_currentChunk < m_chunks.size()) {
+            ByteBuffer b = m_chunks.get(m_currentChunk).b();
+            if (b.remaining() >= length) {
+                return b;
+            }
+        }
+        BBContainer container = DBBPool.allocateDirect(Math.max(CHUNK_SIZE, length));
+        m_chunks.add(container);
+        m_currentChunk = m_chunks.size() - 1;
+        return container.b();
+    }
+
+    /**
+     * Make all pooled memory available for reuse. Any buffer previously returned by
+     * {@link #copyFrom(ByteBuffer, int)} must no longer be referenced.
+     */
+    public void release() {
+        if (m_currentChunk < 0) {
+            return;
+        }
+        for (int i = m_chunks.size() - 1; i >= 0; --i) {
+            BBContainer container = m_chunks.get(i);
+            if (i >= RETAINED_CHUNKS || container.b().capacity() > CHUNK_SIZE) {
+                container.discard();
+                m_chunks.remove(i);
+            } else {
+                container.b().clear();
+            }
+        }
+        m_currentChunk = -1;
+    }
+
+    /**
+     * Free all memory held by this pool
+     */
+    public void discard() {
+        for (BBContainer container : m_chunks) {
+            container.discard();
+        }
+        m_chunks.clear();
+        m_currentChunk = -1;
+    }
+}
@@ -19,8 +19,11 @@ package org.voltdb.planner;
 
 import java.util.*;
 
+import org.voltdb.VoltType;
 import org.voltdb.catalog.Database;
+import org.voltdb.compiler.DatabaseEstimates;
 import org.voltdb.expressions.AbstractExpression;
+import org.voltdb.expressions.AbstractSubqueryExpression;
 import org.voltdb.expressions.ExpressionUtil;
 import org.voltdb.expressions.TupleValueExpression;
 import org.voltdb.planner.parseinfo.BranchNode;
@@ -32,11 +35,13 @@ import org.voltdb.plannodes.IndexSortablePlanNode;
 import org.voltdb.plannodes.AbstractJoinPlanNode;
 import org.voltdb.plannodes.AbstractPlanNode;
 import org.voltdb.plannodes.AbstractReceivePlanNode;
+import org.voltdb.plannodes.HashJoinPlanNode;
 import org.voltdb.plannodes.IndexScanPlanNode;
 import org.voltdb.plannodes.IndexUseForOrderBy;
 import org.voltdb.plannodes.MaterializedScanPlanNode;
 import org.voltdb.plannodes.NestLoopIndexPlanNode;
 import org.voltdb.plannodes.NestLoopPlanNode;
+import org.voltdb.types.ExpressionType;
 import org.voltdb.types.JoinType;
 import org.voltdb.utils.PermutationGenerator;
 
@@ -65,6 +70,18 @@ public class SelectSubPlanAssembler extends SubPlanAssembler {
     private static final short MAX_HEAP_MEMORY_USAGE_PCT = 80;
     private static final long MAX_ALLOWED_PLAN_MEMORY = RUN_TIME.maxMemory() * MAX_HEAP_MEMORY_USAGE_PCT / 100;
 
+    // Hash joins replace nest loop joins only if enabled with -DHASH_JOIN=true,
+    // and then only where HashJoinPlanNode.isCheaperThanNestLoop() says so.
+    // They stay off by default because the nest loop join estimates have no
+    // term for the predicate evaluated on every pair of tuples, so the plan
+    // selector can't fairly weigh a join order using one kind of join against
+    // another join order using the other, and existing join order choices
+    // would shift for most equi-joins without a usable index.
+    private static boolean s_hashJoinEnabled = Boolean.valueOf(System.getProperty("HASH_JOIN", "false"));
+
+    /** Used to weigh a hash join against a nest loop join of the same children. */
+    private final DatabaseEstimates m_estimates;
+
     /**
      * Stop further planning, if we have used more heap memory than we could hopefully exhaustively plan it out,
      * at the time this method is called.
@@ -81,10 +98,13 @@ public class SelectSubPlanAssembler extends SubPlanAssembler {
      * @param selectStmt The parsed and dissected statement object describing the sql to execute.
      * @param partitioning in/out param first element is partition key value, forcing a single-partition statement if non-null,
      * second may be an inferred partition key if no explicit single-partitioning was specified
+     * @param estimates The table size estimates used to cost hash joins.
      */
-    SelectSubPlanAssembler(Database db, ParsedSelectStmt selectStmt, StatementPartitioning partitioning)
+    SelectSubPlanAssembler(Database db, ParsedSelectStmt selectStmt, StatementPartitioning partitioning,
+                           DatabaseEstimates estimates)
     {
         super(db, selectStmt, partitioning);
+        m_estimates = estimates;
         if (selectStmt.hasJoinOrder()) {
             // If a join order was provided or large number of tables join
             m_joinOrders.addAll(selectStmt.getJoinOrder());
@@ -94,6 +114,10 @@ public class SelectSubPlanAssembler extends SubPlanAssembler {
         }
     }
 
+    static void setHashJoinEnabled(boolean enabled) {
+        s_hashJoinEnabled = enabled;
+    }
+
     /**
      * Compute every permutation of the list of involved tables and put them in a deque.
      * TODO(XIN): takes at least 3.3% cpu of planner. Optimize it when possible.
@@ -591,8 +615,10 @@ public class SelectSubPlanAssembler extends SubPlanAssembler {
             // Propagate information used for order by clauses in window functions
             // and the statement level order by clause.  This is only if the
             // branch node is an inner join.
+            // A hash join does not keep the outer order.
             if ((answer != null)
                     && (branchJoinNode.getJoinType() == JoinType.INNER)
+                    && ! (answer instanceof HashJoinPlanNode)
                     && outerScanPlan instanceof IndexSortablePlanNode) {
                 IndexUseForOrderBy indexUseForJoin = answer.indexUse();
                 IndexUseForOrderBy indexUseFromScan = ((IndexSortablePlanNode)outerScanPlan).indexUse();
@@ -737,7 +763,6 @@ public class SelectSubPlanAssembler extends SubPlanAssembler {
 
         AbstractJoinPlanNode ajNode = null;
         if (canHaveNLJ) {
-            NestLoopPlanNode nljNode = new NestLoopPlanNode();
             // get all the clauses that join the applicable two tables
             // Copy innerAccessPath.joinExprs to leave it unchanged,
             // avoiding accumulation of redundant expressions when
@@ -778,10 +803,28 @@ public class SelectSubPlanAssembler extends SubPlanAssembler {
                 // the inner node ONLY, that can not be pushed down.
                 joinClauses.addAll(innerAccessPath.otherExprs);
             }
-            nljNode.setJoinPredicate(ExpressionUtil.combinePredicates(joinClauses));
+
+            // An equi-join that would otherwise rescan the whole inner result for
+            // every outer tuple may be cheaper as a hash join on the same children.
+            AbstractJoinPlanNode loopJoinNode;
+            List<AbstractExpression> outerHashKeys = new ArrayList<>();
+            List<AbstractExpression> innerHashKeys = new ArrayList<>();
+            if (s_hashJoinEnabled && m_estimates != null && ! needInnerSendReceive &&
+                    (joinNode.getJoinType() == JoinType.INNER || joinNode.getJoinType() == JoinType.LEFT) &&
+                    ! isOuterOrderUsed(outerPlan) &&
+                    collectHashJoinKeys(joinNode, joinClauses, outerHashKeys, innerHashKeys) &&
+                    isHashJoinCheaper(outerPlan, innerPlan)) {
+                HashJoinPlanNode hashJoinNode = new HashJoinPlanNode();
+                hashJoinNode.setHashKeys(outerHashKeys, innerHashKeys);
+                loopJoinNode = hashJoinNode;
+            }
+            else {
+                loopJoinNode = new NestLoopPlanNode();
+            }
+            loopJoinNode.setJoinPredicate(ExpressionUtil.combinePredicates(joinClauses));
 
             // combine the tails plan graph with the new head node
-            nljNode.addAndLinkChild(outerPlan);
+            loopJoinNode.addAndLinkChild(outerPlan);
 
             // If successful in the special case, the NLJ plan must be modified to cause the
             // partitioned inner data to be sent to the coordinator prior to the join.
@@ -795,8 +838,8 @@ public class SelectSubPlanAssembler extends SubPlanAssembler {
                 innerPlan = addSendReceivePair(innerPlan);
             }
 
-            nljNode.addAndLinkChild(innerPlan);
-            ajNode = nljNode;
+            loopJoinNode.addAndLinkChild(innerPlan);
+            ajNode = loopJoinNode;
         }
         else if (canHaveNLIJ) {
             NestLoopIndexPlanNode nlijNode = new NestLoopIndexPlanNode();
@@ -825,6 +868,106 @@ public class SelectSubPlanAssembler extends SubPlanAssembler {
         return ajNode;
     }
 
+    /**
+     * Collect the equality join clauses usable as hash join keys: those with
+     * one side depending only on the outer child's tables and the other side
+     * only on the inner child's tables, with types that hash consistently.
+     *
+     * @param joinNode The join node.
+     * @param joinClauses The join clauses to pick the keys from.
+     * @param outerHashKeys Output list of the outer side expressions.
+     * @param innerHashKeys Output list of the matching inner side expressions.
+     * @return true if at least one key pair was found.
+     */
+    private static boolean collectHashJoinKeys(BranchNode joinNode, List<AbstractExpression> joinClauses,
+                                               List<AbstractExpression> outerHashKeys,
+                                               List<AbstractExpression> innerHashKeys) {
+        Collection<String> outerTables = joinNode.getLeftNode().generateTableJoinOrder();
+        Collection<String> innerTables = joinNode.getRightNode().generateTableJoinOrder();
+        for (AbstractExpression clause : joinClauses) {
+            // IS NOT DISTINCT FROM matches NULLs, which the EE hash join never does.
+            if (clause.getExpressionType() != ExpressionType.COMPARE_EQUAL) {
+                continue;
+            }
+            AbstractExpression left = clause.getLeft();
+            AbstractExpression right = clause.getRight();
+            if ( ! isHashableKeyPair(left.getValueType(), right.getValueType())) {
+                continue;
+            }
+            if (dependsOnlyOnTables(left, outerTables) && dependsOnlyOnTables(right, innerTables)) {
+                outerHashKeys.add(left);
+                innerHashKeys.add(right);
+            }
+            else if (dependsOnlyOnTables(right, outerTables) && dependsOnlyOnTables(left, innerTables)) {
+                outerHashKeys.add(right);
+                innerHashKeys.add(left);
+            }
+        }
+        return ! outerHashKeys.isEmpty();
+    }
+
+    private static boolean isHashableKeyPair(VoltType outerType, VoltType innerType) {
+        if (outerType == null || innerType == null) {
+            return false;
+        }
+        // The EE hashes all integer widths alike.
+        if (outerType.isAnyIntegerType() && innerType.isAnyIntegerType()) {
+            return true;
+        }
+        if (outerType != innerType) {
+            return false;
+        }
+        switch (outerType) {
+        case TIMESTAMP:
+        case DECIMAL:
+        case STRING:
+        case VARBINARY:
+            return true;
+        default:
+            // FLOAT has several NULL and zero representations,
+            // and the geo types have no hash in the EE.
+            return false;
+        }
+    }
+
+    private static boolean dependsOnlyOnTables(AbstractExpression expr, Collection<String> tableAliases) {
+        if (expr.hasAnySubexpressionOfClass(AbstractSubqueryExpression.class)) {
+            return false;
+        }
+        List<TupleValueExpression> tves = ExpressionUtil.getTupleValueExpressions(expr);
+        if (tves.isEmpty()) {
+            return false;
+        }
+        for (TupleValueExpression tve : tves) {
+            if ( ! tableAliases.contains(tve.getTableAlias())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * A hash join does not keep the order of its outer child. Giving up an
+     * index order that the ORDER BY or a window function relies on would add
+     * a sort, and a LIMIT could no longer stop the join early, which the
+     * cost estimates don't account for.
+     */
+    private static boolean isOuterOrderUsed(AbstractPlanNode outerPlan) {
+        return outerPlan instanceof IndexSortablePlanNode &&
+                ((IndexSortablePlanNode) outerPlan).indexUse().getWindowFunctionUsesIndex() != NO_INDEX_USE;
+    }
+
+    /**
+     * Compare the estimated work of a hash join of the given children
+     * to that of a nest loop join.
+     */
+    private boolean isHashJoinCheaper(AbstractPlanNode outerPlan, AbstractPlanNode innerPlan) {
+        PlanStatistics stats = new PlanStatistics();
+        outerPlan.computeEstimatesRecursively(stats, m_estimates, null);
+        innerPlan.computeEstimatesRecursively(stats, m_estimates, null);
+        return HashJoinPlanNode.isCheaperThanNestLoop(outerPlan, innerPlan);
+    }
+
     /**
      * A method to filter out single-TVE expressions.
      *
@@ -0,0 +1,218 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2019 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.plannodes;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import org.json_voltpatches.JSONException;
+import org.json_voltpatches.JSONObject;
+import org.json_voltpatches.JSONStringer;
+import org.voltdb.catalog.Database;
+import org.voltdb.compiler.DatabaseEstimates;
+import org.voltdb.compiler.ScalarValueHints;
+import org.voltdb.expressions.AbstractExpression;
+import org.voltdb.types.PlanNodeType;
+import org.voltdb.types.SortDirectionType;
+
+/**
+ * An equi-join of two child plans. The EE loads the inner child into a hash
+ * table keyed on the inner hash keys and probes it with the outer hash keys
+ * of each outer tuple. The hash keys are pairwise equal expressions taken from
+ * the join predicate, which is still applied in full to every candidate pair.
+ * Only INNER and LEFT joins are supported.
+ */
+public class HashJoinPlanNode extends AbstractJoinPlanNode {
+
+    public enum Members {
+        OUTER_HASH_KEYS,
+        INNER_HASH_KEYS;
+    }
+
+    // Weight of loading one inner tuple into the hash table, relative to
+    // reading it.
+    private static final double HASH_BUILD_COST_FACTOR = 2.0;
+    // Weight of probing the hash table with one outer tuple, relative to
+    // reading it.
+    private static final double HASH_PROBE_COST_FACTOR = 1.0;
+    // Weight of evaluating the join predicate on one pair of outer and inner
+    // tuples, which a nest loop join does for every pair, relative to reading
+    // a tuple.
+    private static final double NEST_LOOP_PAIR_COST_FACTOR = 0.5;
+
+    private List<AbstractExpression> m_outerHashKeys = new ArrayList<>();
+    private List<AbstractExpression> m_innerHashKeys = new ArrayList<>();
+
+    public HashJoinPlanNode() {
+        super();
+    }
+
+    @Override
+    public PlanNodeType getPlanNodeType() {
+        return PlanNodeType.HASHJOIN;
+    }
+
+    /**
+     * @param outerHashKeys the outer side expressions of the equality join clauses
+     * @param innerHashKeys the inner side expressions of the same clauses, in the same order
+     */
+    public void setHashKeys(List<AbstractExpression> outerHashKeys,
+                            List<AbstractExpression> innerHashKeys) {
+        assert(outerHashKeys.size() == innerHashKeys.size());
+        m_outerHashKeys = new ArrayList<>();
+        for (AbstractExpression expr : outerHashKeys) {
+            m_outerHashKeys.add(expr.clone());
+        }
+        m_innerHashKeys = new ArrayList<>();
+        for (AbstractExpression expr : innerHashKeys) {
+            m_innerHashKeys.add(expr.clone());
+        }
+    }
+
+    public List<AbstractExpression> getOuterHashKeys() {
+        return m_outerHashKeys;
+    }
+
+    public List<AbstractExpression> getInnerHashKeys() {
+        return m_innerHashKeys;
+    }
+
+    @Override
+    public void validate() throws Exception {
+        super.validate();
+
+        if (m_outerHashKeys.isEmpty() || m_outerHashKeys.size() != m_innerHashKeys.size()) {
+            throw new Exception("ERROR: Hash join requires matching non-empty outer and inner hash keys");
+        }
+        for (AbstractExpression expr : m_outerHashKeys) {
+            expr.validate();
+        }
+        for (AbstractExpression expr : m_innerHashKeys) {
+            expr.validate();
+        }
+    }
+
+    @Override
+    public void computeCostEstimates(long childOutputTupleCountEstimate,
+                                     DatabaseEstimates estimates,
+                                     ScalarValueHints[] paramHints)
+    {
+        m_estimatedOutputTupleCount = childOutputTupleCountEstimate;
+        // Every outer tuple probes the hash table once and every inner tuple
+        // is hashed once. Charging extra for the hashed side makes the join
+        // order with the smaller inner input the cheaper one.
+        assert(m_children.size() == 2);
+        AbstractPlanNode outerChild = m_children.get(0);
+        AbstractPlanNode innerChild = m_children.get(1);
+        m_estimatedProcessedTupleCount = discountEstimatedProcessedTupleCount(outerChild) +
+                innerChild.m_estimatedProcessedTupleCount +
+                (long) hashJoinCost(outerChild.m_estimatedOutputTupleCount,
+                                    innerChild.m_estimatedOutputTupleCount);
+    }
+
+    /**
+     * Compare the work of this join to that of a nest loop join of the same
+     * children. Both read their children once, so only the work done on the
+     * child output counts: the nest loop join evaluates the join predicate on
+     * every pair of outer and inner tuples, the hash join hashes every inner
+     * tuple and probes once per outer tuple. The nest loop join wins when one
+     * of the inputs is only a few tuples, like a unique key lookup.
+     * Both children must already have their estimates computed.
+     *
+     * @return true if the hash join is expected to do less work
+     */
+    public static boolean isCheaperThanNestLoop(AbstractPlanNode outerChild, AbstractPlanNode innerChild) {
+        long outerCount = outerChild.getEstimatedOutputTupleCount();
+        long innerCount = innerChild.getEstimatedOutputTupleCount();
+        double nestLoopCost = (double) outerCount * innerCount * NEST_LOOP_PAIR_COST_FACTOR;
+        return hashJoinCost(outerCount, innerCount) < nestLoopCost;
+    }
+
+    private static double hashJoinCost(long outerCount, long innerCount) {
+        return innerCount * HASH_BUILD_COST_FACTOR + outerCount * HASH_PROBE_COST_FACTOR;
+    }
+
+    @Override
+    public boolean isOutputOrdered(List<AbstractExpression> sortExpressions, List<SortDirectionType> sortDirections) {
+        // The outer input is scanned once per partition when the inner input
+        // spills, so the outer order is not preserved.
+        return false;
+    }
+
+    @Override
+    public void resolveSortDirection() {
+        m_sortDirection = SortDirectionType.INVALID;
+    }
+
+    @Override
+    public void resolveColumnIndexes() {
+        super.resolveColumnIndexes();
+        final NodeSchema outer_schema = m_children.get(0).getOutputSchema();
+        final NodeSchema inner_schema = m_children.get(1).getOutputSchema();
+        resolvePredicate(m_outerHashKeys, outer_schema, inner_schema);
+        resolvePredicate(m_innerHashKeys, outer_schema, inner_schema);
+    }
+
+    @Override
+    public void findAllExpressionsOfClass(Class< ? extends AbstractExpression> aeClass, Set<AbstractExpression> collected) {
+        super.findAllExpressionsOfClass(aeClass, collected);
+        for (AbstractExpression expr : m_outerHashKeys) {
+            collected.addAll(expr.findAllSubexpressionsOfClass(aeClass));
+        }
+        for (AbstractExpression expr : m_innerHashKeys) {
+            collected.addAll(expr.findAllSubexpressionsOfClass(aeClass));
+        }
+    }
+
+    @Override
+    public void toJSONString(JSONStringer stringer) throws JSONException {
+        super.toJSONString(stringer);
+        stringer.key(Members.OUTER_HASH_KEYS.name()).array();
+        for (AbstractExpression expr : m_outerHashKeys) {
+            stringer.object();
+            expr.toJSONString(stringer);
+            stringer.endObject();
+        }
+        stringer.endArray();
+        stringer.key(Members.INNER_HASH_KEYS.name()).array();
+        for (AbstractExpression expr : m_innerHashKeys) {
+            stringer.object();
+            expr.toJSONString(stringer);
+            stringer.endObject();
+        }
+        stringer.endArray();
+    }
+
+    @Override
+    public void loadFromJSONObject(JSONObject jobj, Database db) throws JSONException {
+        super.loadFromJSONObject(jobj, db);
+        m_outerHashKeys.clear();
+        AbstractExpression.loadFromJSONArrayChild(m_outerHashKeys, jobj,
+                                                  Members.OUTER_HASH_KEYS.name(), null);
+        m_innerHashKeys.clear();
+        AbstractExpression.loadFromJSONArrayChild(m_innerHashKeys, jobj,
+                                                  Members.INNER_HASH_KEYS.name(), null);
+    }
+
+    @Override
+    protected String explainPlanForNode(String indent) {
+        return "HASH " + this.m_joinType.toString() + " JOIN" + explainFilters(indent);
+    }
+
+}
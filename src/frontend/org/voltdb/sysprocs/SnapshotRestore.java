@@ -37,6 +37,7 @@ import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -135,8 +136,28 @@ public class SnapshotRestore extends VoltSystemProcedure {
     private static volatile DuplicateRowHandler m_duplicateRowHandler = null;
 
     private final static String HASHINATOR_ALL_BAD = "All hashinator snapshots are bad (%s).";
+    /*
+     * Upper bound on the chunks read ahead for one table on one host, split between
+     * that table's files. Defaults to two per local site.
+     */
+    private static final int RESTORE_READ_AHEAD_CHUNKS = Integer.getInteger("SNAPSHOT_RESTORE_READ_AHEAD_CHUNKS", 0);
+    private static final int MIN_READ_AHEAD_CHUNKS_PER_FILE = 2;
+
+    /**
+     * Tuples loaded for one table on this host. Collected from every host
+     * at the end of the restore for the per table report.
+     */
+    static class RestoreProgress {
+        final AtomicLong m_tuples = new AtomicLong(0);
+        final boolean m_replicated;
+
+        RestoreProgress(boolean replicated) {
+            m_replicated = replicated;
+        }
+    }
+
     // These keep track of count per table that are reported restored by the snapshotrestore process.
-    static final Map<String, AtomicLong> m_reportStats = new HashMap<String, AtomicLong>();
+    static final Map<String, RestoreProgress> m_reportStats = new HashMap<String, RestoreProgress>();
     static final Map<String, Integer> m_selectedReportPartition = new HashMap<String, Integer>();
     static long m_nextReportTime = 0;
     //Report every minute.
@@ -175,13 +196,21 @@ public class SnapshotRestore extends VoltSystemProcedure {
             relevantPartitionSet.add(part_id);
         }
 
+        // Every file gets its own reader thread, which also decompresses, and all of
+        // them run at once. Split the read ahead budget between them so the memory
+        // held by a table being restored doesn't grow with the number of files.
+        final int readAheadBudget = RESTORE_READ_AHEAD_CHUNKS > 0 ?
+                RESTORE_READ_AHEAD_CHUNKS : st.getLocalSites().length * 2;
+        final int readAheadChunks = Math.max(MIN_READ_AHEAD_CHUNKS_PER_FILE,
+                                             readAheadBudget / Math.max(1, originalHostIds.length));
+
         for (int originalHostId : originalHostIds) {
             final File f = getSaveFileForPartitionedTable(filePath, fileNonce,
                     tableName,
                     originalHostId);
             TableSaveFile savefile = getTableSaveFile(
                     f,
-                    st.getLocalSites().length * 2,
+                    readAheadChunks,
                     relevantPartitionSet.toArray(new Integer[relevantPartitionSet.size()]));
 
             m_saveFiles.offer(savefile);
@@ -195,6 +224,10 @@ public class SnapshotRestore extends VoltSystemProcedure {
             }
             assert(m_saveFiles.peekLast().getCompleted());
         }
+
+        for (TableSaveFile savefile : m_saveFiles) {
+            savefile.startReading();
+        }
     }
 
     private static synchronized boolean hasMoreChunks() throws IOException {
@@ -214,16 +247,7 @@ public class SnapshotRestore extends VoltSystemProcedure {
     }
 
     private static synchronized BBContainer getNextChunk() throws IOException {
-        BBContainer c = null;
-        while (c == null && m_saveFiles.peek() != null) {
-            TableSaveFile f = m_saveFiles.peek();
-            c = f.getNextChunk();
-            if (c == null) {
-                f.close();
-                m_saveFiles.poll();
-            }
-        }
-        return c;
+        return TableSaveFile.getNextChunk(m_saveFiles);
     }
 
     @Override
@@ -247,6 +271,8 @@ public class SnapshotRestore extends VoltSystemProcedure {
             SysProcFragmentId.PF_restoreHashinatorScanResults,
             SysProcFragmentId.PF_restoreDistributeHashinator,
             SysProcFragmentId.PF_restoreDistributeHashinatorResults,
+            SysProcFragmentId.PF_restoreProgressScan,
+            SysProcFragmentId.PF_restoreProgressScanResults,
             SysProcFragmentId.PF_restoreDistributeExportAndPartitionSequenceNumbers,
             SysProcFragmentId.PF_restoreDistributeExportAndPartitionSequenceNumbersResults,
             SysProcFragmentId.PF_restoreAsyncRunLoop,
@@ -464,6 +490,35 @@ public class SnapshotRestore extends VoltSystemProcedure {
             VoltTable result = VoltTableUtil.unionTables(dependencies.get(SysProcFragmentId.PF_restoreDistributeHashinator));
             return new DependencyPair.TableDependencyPair(SysProcFragmentId.PF_restoreDistributeHashinatorResults, result);
         }
+        else if (fragmentId == SysProcFragmentId.PF_restoreProgressScan)
+        {
+            VoltTable result = new VoltTable(
+                    new VoltTable.ColumnInfo("TABLE", VoltType.STRING),
+                    new VoltTable.ColumnInfo("REPLICATED", VoltType.TINYINT),
+                    new VoltTable.ColumnInfo("TUPLES", VoltType.BIGINT));
+            // The counters are per host, so only the lowest site reports and resets them.
+            if (context.isLowestSiteId())
+            {
+                synchronized (m_reportStats) {
+                    for (Map.Entry<String, RestoreProgress> e : m_reportStats.entrySet()) {
+                        result.addRow(e.getKey(),
+                                      e.getValue().m_replicated ? (byte)1 : (byte)0,
+                                      e.getValue().m_tuples.get());
+                    }
+                    m_reportStats.clear();
+                }
+                synchronized (m_selectedReportPartition) {
+                    m_selectedReportPartition.clear();
+                }
+            }
+            return new DependencyPair.TableDependencyPair(SysProcFragmentId.PF_restoreProgressScan, result);
+        }
+        else if (fragmentId == SysProcFragmentId.PF_restoreProgressScanResults)
+        {
+            assert(dependencies.size() > 0);
+            VoltTable result = VoltTableUtil.unionTables(dependencies.get(SysProcFragmentId.PF_restoreProgressScan));
+            return new DependencyPair.TableDependencyPair(SysProcFragmentId.PF_restoreProgressScanResults, result);
+        }
         else if (fragmentId == SysProcFragmentId.PF_restoreScan)
         {
             Object paramsArray[] = params.toArray();
@@ -753,7 +808,8 @@ public class SnapshotRestore extends VoltSystemProcedure {
             result.addRow(m_hostId, CoreUtils.getHostnameOrAddress(), CoreUtils.getSiteIdFromHSId(m_siteId), table_name,
                             ((checkUniqueViolations == K_CHECK_UNIQUE_VIOLATIONS_PARTITIONED) ? partition_ids[0] : -1),
                     result_str, error_msg);
-            reportProgress(table_name, cnt, (partition_ids == null), context.getPartitionId());
+            reportProgress(table_name, cnt, (checkUniqueViolations == K_CHECK_UNIQUE_VIOLATIONS_REPLICATED),
+                           context.getPartitionId());
             return new DependencyPair.TableDependencyPair(dependency_id, result);
         }
         else if (fragmentId == SysProcFragmentId.PF_restoreReceiveResultTables) {
@@ -1342,7 +1398,10 @@ public class SnapshotRestore extends VoltSystemProcedure {
             return results;
         }
 
+        m_tableRestoreDurations.clear();
         results = performTableRestoreWork(savefile_state, ctx.getSiteTrackerForSnapshot(), isRecover, includeList, excludeList);
+        VoltTable progress = performRestoreProgressScan(ctx.getSiteTrackerForSnapshot());
+        results = new VoltTable[] { results[0], progress };
 
         final long endTime = System.currentTimeMillis();
         final double duration = (endTime - startTime) / 1000.0;
@@ -1350,12 +1409,13 @@ public class SnapshotRestore extends VoltSystemProcedure {
         final PrintWriter pw = new PrintWriter(sw);
         pw.toString();
         pw.printf("%.2f", duration);
-        for (String tableName : m_reportStats.keySet()) {
-            SNAP_LOG.info("Table " + tableName + " "
-                    + m_reportStats.get(tableName) + " tuples restored from snapshot. (final)");
+        while (progress.advanceRow()) {
+            SNAP_LOG.info("Table " + progress.getString("TABLE") + " "
+                    + progress.getLong("TUPLES") + " tuples restored from snapshot in "
+                    + progress.getLong("DURATION_MS") + " ms, "
+                    + progress.getLong("TUPLES_PER_SECOND") + " tuples/s. (final)");
         }
-        m_reportStats.clear();
-        m_selectedReportPartition.clear();
+        progress.resetRowPosition();
         CONSOLE_LOG.info("Finished restore of " + path + " with nonce: "
                 + nonce + " in " + sw.toString() + " seconds");
         //        m_sampler.setShouldStop();
@@ -1636,6 +1696,47 @@ public class SnapshotRestore extends VoltSystemProcedure {
                 filePath, pathType, fileNonce, dupsPath);
     }
 
+    /*
+     * Collect the tuples every host loaded for each restored table and combine them with
+     * the time the coordinator spent on the table. A partitioned chunk is loaded by every
+     * replica of its partition and a replicated table is loaded in full on every host, so
+     * the per host counts are scaled back to the number of tuples in the snapshot.
+     */
+    private VoltTable performRestoreProgressScan(SiteTracker st) {
+        VoltTable[] results = createAndExecuteSysProcPlan(SysProcFragmentId.PF_restoreProgressScan,
+                SysProcFragmentId.PF_restoreProgressScanResults);
+        final int replicas = Math.max(1, st.m_numberOfExecutionSites / Math.max(1, st.m_numberOfPartitions));
+        Map<String, Long> tuplesPerTable = new HashMap<String, Long>();
+        while (results[0].advanceRow()) {
+            String tableName = results[0].getString("TABLE");
+            long tuples = results[0].getLong("TUPLES");
+            Long prev = tuplesPerTable.get(tableName);
+            if (results[0].getLong("REPLICATED") == 1) {
+                tuples = prev == null ? tuples : Math.max(prev, tuples);
+            } else {
+                tuples = prev == null ? tuples : prev + tuples;
+            }
+            tuplesPerTable.put(tableName, tuples);
+        }
+
+        VoltTable progress = new VoltTable(
+                new VoltTable.ColumnInfo("TABLE", VoltType.STRING),
+                new VoltTable.ColumnInfo("TUPLES", VoltType.BIGINT),
+                new VoltTable.ColumnInfo("DURATION_MS", VoltType.BIGINT),
+                new VoltTable.ColumnInfo("TUPLES_PER_SECOND", VoltType.BIGINT));
+        for (Map.Entry<String, Long> e : m_tableRestoreDurations.entrySet()) {
+            Table table = getCatalogTable(e.getKey());
+            Long tuples = tuplesPerTable.get(e.getKey());
+            long count = tuples == null ? 0 : tuples;
+            if (table != null && !table.getIsreplicated()) {
+                count /= replicas;
+            }
+            long durationMs = e.getValue();
+            progress.addRow(e.getKey(), count, durationMs, count * 1000 / Math.max(1, durationMs));
+        }
+        return progress;
+    }
+
     //Keep track of count per table and if replicated take value from first partition result that arrives.
     //Display counts every 1 minute.
     public void reportProgress(String tableName, long count, boolean replicated, int partitionId) {
@@ -1650,17 +1751,17 @@ public class SnapshotRestore extends VoltSystemProcedure {
                 m_selectedReportPartition.put(tableName, partitionId);
             }
         }
-        AtomicLong counter;
+        RestoreProgress progress;
         synchronized (m_reportStats) {
-            counter = m_reportStats.get(tableName);
-            if (counter == null) {
-                counter = new AtomicLong(0);
-                m_reportStats.put(tableName, counter);
+            progress = m_reportStats.get(tableName);
+            if (progress == null) {
+                progress = new RestoreProgress(replicated);
+                m_reportStats.put(tableName, progress);
             }
         }
         if (count != 0) {
             //we add regardless of displaying....final count is displayed at the end.
-            count = counter.addAndGet(count);
+            count = progress.m_tuples.addAndGet(count);
             long curTime = System.currentTimeMillis();
             if (m_nextReportTime == 0 || curTime > m_nextReportTime) {
                 m_nextReportTime = curTime + m_reportInterval;
@@ -2141,7 +2242,9 @@ public class SnapshotRestore extends VoltSystemProcedure {
                      * This isn't ye olden executeSysProcPlanFragments. It uses the provided mailbox
                      * and has it's own tiny run loop to process incoming fragments.
                      */
+                    final long tableStartTime = System.currentTimeMillis();
                     results = executeSysProcPlanFragments(restore_plan, m);
+                    m_tableRestoreDurations.put(table.getTypeName(), System.currentTimeMillis() - tableStartTime);
                     verifyRestoreWorkResult(results, restore_results);
                 }
 
@@ -2895,6 +2998,8 @@ public class SnapshotRestore extends VoltSystemProcedure {
 
     private Mailbox m_mbox;
     private final Map<Long, Long> m_actualToGenerated = new HashMap<Long, Long>();
+    // Wall clock time the coordinator spent restoring each table, in restore order
+    private final Map<String, Long> m_tableRestoreDurations = new LinkedHashMap<String, Long>();
     private Database m_database;
     private long m_siteId;
     private int m_hostId;
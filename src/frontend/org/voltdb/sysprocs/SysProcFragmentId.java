@@ -144,6 +144,12 @@ public class SysProcFragmentId
      */
     public static final int PF_restoreDistributeHashinator = 79;
     public static final int PF_restoreDistributeHashinatorResults = 80;
+    /*
+     * Plan fragments for collecting the number of tuples each host loaded
+     * for every table, reported per table in the restore results.
+     */
+    public static final int PF_restoreProgressScan = 81;
+    public static final int PF_restoreProgressScanResults = 82;
 
     // @StartSampler -- UNUSED
     public static final int PF_startSampler = 90;
@@ -29,6 +29,7 @@ import java.util.concurrent.atomic.AtomicInteger;
 import org.json_voltpatches.JSONObject;
 import org.voltcore.utils.CoreUtils;
 import org.voltcore.utils.InstanceId;
+import org.voltcore.utils.Pair;
 import org.voltdb.DefaultSnapshotDataTarget;
 import org.voltdb.ExtensibleSnapshotDigestData;
 import org.voltdb.SnapshotDataFilter;
@@ -45,6 +46,7 @@ import org.voltdb.dtxn.SiteTracker;
 import org.voltdb.export.ExportManager;
 import org.voltdb.sysprocs.SnapshotRegistry;
 import org.voltdb.utils.CatalogUtil;
+import org.voltdb.utils.CompressionService;
 
 import com.google_voltpatches.common.collect.Maps;
 
@@ -153,11 +155,21 @@ public class NativeSnapshotWritePlan extends SnapshotWritePlan
             isTruncationSnapshot = jsData.has("truncReqId");
         }
 
+        // Validated by SnapshotInitiationInfo for user requests, fall back to the default otherwise
+        Pair<CompressionService.Codec, Integer> compression = DefaultSnapshotDataTarget.SNAPSHOT_COMPRESSION;
+        if (jsData != null && jsData.has(SnapshotUtil.JSON_COMPRESSION)) {
+            try {
+                compression = CompressionService.Codec.parse(jsData.optString(SnapshotUtil.JSON_COMPRESSION));
+            } catch (IllegalArgumentException e) {
+                SNAP_LOG.warn("Ignoring invalid snapshot compression: " + e.getMessage());
+            }
+        }
+
         // All IO work will be deferred and be run on the dedicated snapshot IO thread
         return createDeferredSetup(file_path, pathType, file_nonce, txnId, partitionTransactionIds,
                 context, extraSnapshotData, tracker, hashinatorData, timestamp,
                 newPartitionCount, tableArray, m_snapshotRecord, partitionedSnapshotTasks,
-                replicatedSnapshotTasks, isTruncationSnapshot);
+                replicatedSnapshotTasks, isTruncationSnapshot, compression);
     }
 
     private Callable<Boolean> createDeferredSetup(final String file_path,
@@ -175,7 +187,8 @@ public class NativeSnapshotWritePlan extends SnapshotWritePlan
                                                   final SnapshotRegistry.Snapshot snapshotRecord,
                                                   final ArrayList<SnapshotTableTask> partitionedSnapshotTasks,
                                                   final ArrayList<SnapshotTableTask> replicatedSnapshotTasks,
-                                                  final boolean isTruncationSnapshot)
+                                                  final boolean isTruncationSnapshot,
+                                                  final Pair<CompressionService.Codec, Integer> compression)
     {
         return new Callable<Boolean>() {
             private final HashMap<Integer, SnapshotDataTarget> m_createdTargets = Maps.newHashMap();
@@ -235,7 +248,7 @@ public class NativeSnapshotWritePlan extends SnapshotWritePlan
                                                       context.getHostId(), context.getCluster().getTypeName(),
                                                       context.getDatabase().getTypeName(), context.getNumberOfPartitions(),
                                                       DrRoleType.XDCR.value().equals(context.getCluster().getDrrole()),
-                                                      tracker, timestamp, numTables, snapshotRecord);
+                                                      tracker, timestamp, numTables, snapshotRecord, compression);
                     m_createdTargets.put(task.m_table.getRelativeIndex(), target);
                 }
                 return target;
@@ -255,7 +268,8 @@ public class NativeSnapshotWritePlan extends SnapshotWritePlan
                                                         SiteTracker tracker,
                                                         long timestamp,
                                                         AtomicInteger numTables,
-                                                        SnapshotRegistry.Snapshot snapshotRecord)
+                                                        SnapshotRegistry.Snapshot snapshotRecord,
+                                                        Pair<CompressionService.Codec, Integer> compression)
             throws IOException
     {
         SnapshotDataTarget sdt;
@@ -280,7 +294,9 @@ public class NativeSnapshotWritePlan extends SnapshotWritePlan
                     tracker.getPartitionsForHost(hostId),
                     CatalogUtil.getVoltTable(table, CatalogUtil.DR_HIDDEN_COLUMN_INFO),
                     txnId,
-                    timestamp);
+                    timestamp,
+                    compression.getFirst(),
+                    compression.getSecond());
         }
         else if (CatalogUtil.needsViewHiddenColumn(table)) {
             sdt = new DefaultSnapshotDataTarget(saveFilePath,
@@ -293,7 +309,9 @@ public class NativeSnapshotWritePlan extends SnapshotWritePlan
                     tracker.getPartitionsForHost(hostId),
                     CatalogUtil.getVoltTable(table, CatalogUtil.VIEW_HIDDEN_COLUMN_INFO),
                     txnId,
-                    timestamp);
+                    timestamp,
+                    compression.getFirst(),
+                    compression.getSecond());
         }
         else {
             sdt = new DefaultSnapshotDataTarget(saveFilePath,
@@ -306,7 +324,9 @@ public class NativeSnapshotWritePlan extends SnapshotWritePlan
                     tracker.getPartitionsForHost(hostId),
                     CatalogUtil.getVoltTable(table),
                     txnId,
-                    timestamp);
+                    timestamp,
+                    compression.getFirst(),
+                    compression.getSecond());
         }
 
         m_targets.add(sdt);
@@ -26,7 +26,9 @@ import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.Set;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.Semaphore;
@@ -243,6 +245,7 @@ public class TableSaveFile
                 m_tableName = fd.readString();
                 m_isReplicated = fd.readBoolean();
                 m_isCompressed = false;
+                m_codec = CompressionService.Codec.SNAPPY;
                 m_checksumType = ChecksumType.CRC32;
                 if (!m_isReplicated) {
                     m_partitionIds = (int[])fd.readArray(int.class);
@@ -288,6 +291,13 @@ public class TableSaveFile
                 m_tableName = obj.getString("tableName");
                 m_isReplicated = obj.getBoolean("isReplicated");
                 m_isCompressed = obj.optBoolean("isCompressed", false);
+                //Files written before the codec was selectable are all Snappy
+                final String codecName = obj.optString("compressionCodec", CompressionService.Codec.SNAPPY.name());
+                try {
+                    m_codec = CompressionService.Codec.valueOf(codecName);
+                } catch (IllegalArgumentException e) {
+                    throw new IOException("Unsupported snapshot compression codec " + codecName);
+                }
                 m_checksumType = ChecksumType.valueOf(obj.optString("checksumType", "CRC32"));
                 if (!m_isReplicated) {
                     JSONArray partitionIds = obj.getJSONArray("partitionIds");
@@ -368,6 +378,10 @@ public class TableSaveFile
         return m_isCompressed;
     }
 
+    public CompressionService.Codec getCompressionCodec() {
+        return m_codec;
+    }
+
     public int getTotalPartitions() {
         return m_totalPartitions;
     }
@@ -435,11 +449,7 @@ public class TableSaveFile
             return c;
         }
 
-        if (m_chunkReader == null) {
-            m_chunkReader = new ChunkReader();
-            m_chunkReaderThread = new Thread(m_chunkReader, "ChunkReader");
-            m_chunkReaderThread.start();
-        }
+        startReading();
 
         Container c = null;
         while (c == null && (m_hasMoreChunks.get() || !m_availableChunks.isEmpty())) {
@@ -462,6 +472,65 @@ public class TableSaveFile
         return c;
     }
 
+    /**
+     * Take the next chunk from one of several files, round robin so that all of
+     * their readers keep making progress. A file that already has a chunk ready
+     * is preferred over waiting on the one at the head of the queue. Files that
+     * have no more chunks are closed and removed from the queue.
+     *
+     * @return the chunk, or null once all the files are done
+     */
+    public static BBContainer getNextChunk(Deque<TableSaveFile> saveFiles) throws IOException
+    {
+        for (Iterator<TableSaveFile> iter = saveFiles.iterator(); iter.hasNext();) {
+            TableSaveFile f = iter.next();
+            if (f.hasAvailableChunk()) {
+                BBContainer c = f.getNextChunk();
+                if (c != null) {
+                    iter.remove();
+                    saveFiles.offer(f);
+                    return c;
+                }
+            }
+        }
+
+        BBContainer c = null;
+        while (c == null && saveFiles.peek() != null) {
+            TableSaveFile f = saveFiles.peek();
+            c = f.getNextChunk();
+            if (c == null) {
+                f.close();
+                saveFiles.poll();
+            } else {
+                saveFiles.offer(saveFiles.poll());
+            }
+        }
+        return c;
+    }
+
+    /**
+     * Start the chunk reader thread if it isn't running yet. Normally it is started
+     * by the first call to {@link #getNextChunk()}; starting it early lets several
+     * files be read and decompressed concurrently, each up to its read ahead limit.
+     */
+    public synchronized void startReading()
+    {
+        if (m_chunkReader == null && m_hasMoreChunks.get()) {
+            m_chunkReader = new ChunkReader();
+            m_chunkReaderThread = new Thread(m_chunkReader, "ChunkReader");
+            m_chunkReaderThread.start();
+        }
+    }
+
+    /**
+     * @return true if a chunk has already been read and {@link #getNextChunk()}
+     * will return it without waiting on the reader thread
+     */
+    public synchronized boolean hasAvailableChunk()
+    {
+        return !m_availableChunks.isEmpty();
+    }
+
     public synchronized boolean hasMoreChunks() throws IOException
     {
         if (m_chunkReaderException != null) {
@@ -483,6 +552,7 @@ public class TableSaveFile
     private final String m_tableName;
     private final boolean m_isReplicated;
     private final boolean m_isCompressed;
+    private final CompressionService.Codec m_codec;
     private final int m_partitionIds[];
     private final int m_totalPartitions;
     private final long m_txnId;
@@ -658,7 +728,7 @@ public class TableSaveFile
                         sinceLastFAdvise += read;
                     }
                     fileInputBuffer.flip();
-                    nextChunkLength = CompressionService.uncompressedLength(fileInputBuffer);
+                    nextChunkLength = m_codec.uncompressedLength(fileInputBuffer);
 
                     /*
                      * Validate the rest of the chunk. This can fail if the data is corrupted
@@ -704,7 +774,7 @@ public class TableSaveFile
                         m_tableHeader.position(0);
                         buf.put(m_tableHeader);
                         //Doesn't move buffer position, does change the limit
-                        CompressionService.decompressBuffer(fileInputBuffer, buf);
+                        m_codec.decompress(fileInputBuffer, buf);
                         completedRead = true;
                     } finally {
                         if (!completedRead) {
@@ -880,7 +950,7 @@ public class TableSaveFile
                             }
                         }
                         fileInputBuffer.flip();
-                        nextChunkLength = CompressionService.uncompressedLength(fileInputBuffer);
+                        nextChunkLength = m_codec.uncompressedLength(fileInputBuffer);
                     }
 
                     /*
@@ -926,7 +996,7 @@ public class TableSaveFile
                         c.b().position(c.b().position() + 4);//Leave space for row count to be moved into
                         checksumStartPosition = c.b().position();
                         if (isCompressed()) {
-                            CompressionService.decompressBuffer(fileInputBuffer, c.b());
+                            m_codec.decompress(fileInputBuffer, c.b());
                             c.b().position(c.b().limit());
                         } else {
                             while (c.b().hasRemaining()) {
@@ -27,6 +27,7 @@ import org.voltdb.client.ClientResponse;
 import org.voltdb.client.VoltBulkLoader.BulkLoaderFailureCallBack;
 import org.voltdb.client.VoltBulkLoader.BulkLoaderSuccessCallback;
 import org.voltdb.client.VoltBulkLoader.VoltBulkLoader;
+import org.voltdb.client.VoltBulkLoader.VoltBulkLoaderWriter;
 
 /**
  * A CSVDataLoader implementation that uses the bulk loader to insert batched rows.
@@ -95,6 +96,11 @@ public class CSVBulkDataLoader implements CSVDataLoader {
         m_loader.insertRow(metaData, values);
     }
 
+    @Override
+    public VoltBulkLoaderWriter createWriter() {
+        return m_loader.createWriter();
+    }
+
     @Override
     public void close() throws Exception {
         m_loader.close();
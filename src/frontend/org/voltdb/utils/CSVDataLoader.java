@@ -22,6 +22,7 @@ import java.util.concurrent.ExecutionException;
 
 import org.voltdb.VoltType;
 import org.voltdb.client.NoConnectionsException;
+import org.voltdb.client.VoltBulkLoader.VoltBulkLoaderWriter;
 
 /**
  * The interface CSVLoader uses to insert rows into the database.
@@ -42,6 +43,16 @@ public interface CSVDataLoader {
      */
     public void insertRow(RowWithMetaData metaData, Object[] values) throws InterruptedException;
 
+    /**
+     * Create a writer for one thread to insert rows with, which serializes their values straight
+     * into batches per partition. The rows are reported like those given to insertRow.
+     *
+     * @return The writer, or null if this loader only takes rows through insertRow.
+     */
+    public default VoltBulkLoaderWriter createWriter() {
+        return null;
+    }
+
     /**
      * Close the loader.
      * @throws InterruptedException
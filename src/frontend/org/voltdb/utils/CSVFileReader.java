@@ -41,16 +41,16 @@ import com.google_voltpatches.common.collect.HashBiMap;
  *
  */
 class CSVFileReader implements Runnable {
-    private static final String COLUMN_COUNT_ERROR =
+    static final String COLUMN_COUNT_ERROR =
             "Incorrect number of columns. %d found, %d expected. Please check the table schema " +
             "and the line content";
-    private static final String HEADER_COUNT_ERROR =
+    static final String HEADER_COUNT_ERROR =
             "Incorrect number of columns. %d found, %d expected. Please check the csv file header " +
             "and the line content";
-    private static final String BLANK_ERROR =
+    static final String BLANK_ERROR =
             "A blank value is detected in column %d while \"--blank error\" is used. " +
             "To proceed, either fill in the blank column or use \"--blank {null|empty}\".";
-    private static final String WHITESPACE_ERROR =
+    static final String WHITESPACE_ERROR =
             "Whitespace detected in column %d while --nowhitespace is used. " +
             "To proceed, either remove the whitespaces from the column or remove --nowhitespace.";
 
@@ -60,7 +60,7 @@ class CSVFileReader implements Runnable {
     static Client m_csvClient = null;
     static ICsvListReader m_listReader = null;
     long m_parsingTime = 0;
-    private static final Map<VoltType, String> m_blankStrings = new EnumMap<VoltType, String>(VoltType.class);
+    static final Map<VoltType, String> m_blankStrings = new EnumMap<VoltType, String>(VoltType.class);
     private static final VoltLogger m_log = new VoltLogger("CSVLOADER");
     private final CSVDataLoader m_loader;
     private final BulkLoaderErrorHandler m_errHandler;
@@ -183,38 +183,10 @@ class CSVFileReader implements Runnable {
     private boolean checkHeader() {
         try {
             String[] firstline = m_listReader.getHeader(false);
-            Set<String> firstset = new HashSet<String>();
-            BiMap<Integer, String> colNames = HashBiMap.create(m_loader.getColumnNames());
             headerlen = firstline.length;
-            // remove duplicate.
-            for (String name : firstline) {
-                if (name != null) {
-                    firstset.add(name.toUpperCase());
-                } else {
-                    return false;
-                }
-            }
-            // whether column num matches.
-            if (headerlen < m_columnCount) {
+            order = getHeaderOrder(firstline, m_loader.getColumnNames(), m_columnCount);
+            if (order == null) {
                 return false;
-            } else {
-                // whether column name has according table column.
-                int matchColCount = 0;
-                for (String name : firstset) {
-                    if (colNames.containsValue(name.trim())) {
-                        matchColCount++;
-                    }
-                }
-                if (matchColCount != m_columnCount) {
-                    return false;
-                }
-            }
-            // get the mapping from file column num to table column num.
-            order = new Integer[headerlen];
-            for (int fileCol = 0; fileCol < headerlen; fileCol++) {
-                String name = firstline[fileCol];
-                Integer tableCol = colNames.inverse().get(name.trim().toUpperCase());
-                order[fileCol] = tableCol;
             }
         } catch (IOException ex) {
             m_log.error("Failed to read CSV line from file: " + ex);
@@ -222,6 +194,48 @@ class CSVFileReader implements Runnable {
         return true;
     }
 
+    /**
+     * Map the columns of a CSV header to the table columns.
+     * @return the table column of each file column, null for file columns not in the table,
+     *         or null if the header doesn't name every table column.
+     */
+    static Integer[] getHeaderOrder(String[] firstline, Map<Integer, String> columnNames, int columnCount) {
+        Set<String> firstset = new HashSet<String>();
+        BiMap<Integer, String> colNames = HashBiMap.create(columnNames);
+        int headerlen = firstline.length;
+        // remove duplicate.
+        for (String name : firstline) {
+            if (name != null) {
+                firstset.add(name.toUpperCase());
+            } else {
+                return null;
+            }
+        }
+        // whether column num matches.
+        if (headerlen < columnCount) {
+            return null;
+        } else {
+            // whether column name has according table column.
+            int matchColCount = 0;
+            for (String name : firstset) {
+                if (colNames.containsValue(name.trim())) {
+                    matchColCount++;
+                }
+            }
+            if (matchColCount != columnCount) {
+                return null;
+            }
+        }
+        // get the mapping from file column num to table column num.
+        Integer[] order = new Integer[headerlen];
+        for (int fileCol = 0; fileCol < headerlen; fileCol++) {
+            String name = firstline[fileCol];
+            Integer tableCol = colNames.inverse().get(name.trim().toUpperCase());
+            order[fileCol] = tableCol;
+        }
+        return order;
+    }
+
     private String checkparams_trimspace_reorder(String[] lineValues, String[] reorderValues) {
         if (lineValues.length != m_columnCount && !m_config.header) {
             return String.format(COLUMN_COUNT_ERROR, lineValues.length, m_columnCount);
@@ -78,6 +78,7 @@ public class CSVLoader implements BulkLoaderErrorHandler {
     private static BufferedWriter out_logfile;
     private static BufferedWriter out_reportfile;
     private static CsvPreference csvPreference = null;
+    private static CSVParallelFileReader parallelReader = null;
     /**
      * default CSV separator
      */
@@ -331,6 +332,9 @@ public class CSVLoader implements BulkLoaderErrorHandler {
 
         @Option(desc = "Stop when all connections are lost", hasArg = false)
         boolean stopondisconnect = DEFAULT_STOP_ON_DISCONNECT;
+
+        @Option(desc = "number of threads parsing the input file, rows are not inserted in file order when more than 1 (default: 1)")
+        int parsers = 1;
         /**
          * Validate command line options.
          */
@@ -357,6 +361,12 @@ public class CSVLoader implements BulkLoaderErrorHandler {
             if (batch < 0) {
                 exitWithMessageAndUsage("batch size number must be >= 0");
             }
+            if (parsers < 1) {
+                exitWithMessageAndUsage("parsers must be >= 1");
+            }
+            if (parsers > 1 && update) {
+                exitWithMessageAndUsage("--update can't be used with more than one parser, rows would not be upserted in file order");
+            }
             if(!customNullString.isEmpty() && !blank.equals("error")){
                 blank = "empty";
             }
@@ -411,6 +421,7 @@ public class CSVLoader implements BulkLoaderErrorHandler {
     public static void main(String[] args) throws IOException,
             InterruptedException {
         start = System.currentTimeMillis();
+        parallelReader = null;
         long insertTimeStart = start;
         long insertTimeEnd;
         FileReader fr = null;
@@ -424,10 +435,19 @@ public class CSVLoader implements BulkLoaderErrorHandler {
 
         configuration();
 
+        final boolean parallelParsing = config.parsers > 1 && CSVParallelFileReader.canParse(config);
+        if (config.parsers > 1 && !parallelParsing) {
+            System.out.println("Parallel parsing needs an input file in UTF-8, US-ASCII or ISO-8859-1 with ASCII "
+                    + "separator, quote and escape characters, using a single reader.");
+        }
+
         final Tokenizer tokenizer;
         ICsvListReader listReader = null;
+        FileInputStream parallelInput = null;
         try {
-            if (CSVLoader.standin) {
+            if (parallelParsing) {
+                parallelInput = new FileInputStream(config.file);
+            } else if (CSVLoader.standin) {
                 tokenizer = new Tokenizer(new BufferedReader(new InputStreamReader(System.in)), csvPreference,
                         config.strictquotes, config.escape, config.columnsizelimit,
                         config.skip, config.header);
@@ -511,10 +531,17 @@ public class CSVLoader implements BulkLoaderErrorHandler {
 
             CSVFileReader.initializeReader(cfg, csvClient, listReader);
 
-            CSVFileReader csvReader = new CSVFileReader(dataLoader, errHandler);
-
-            Thread readerThread = new Thread(csvReader);
-            readerThread.setName("CSVFileReader");
+            CSVFileReader csvReader = null;
+            Thread readerThread;
+            if (parallelParsing) {
+                parallelReader = new CSVParallelFileReader(cfg, dataLoader, errHandler, parallelInput, config.parsers);
+                readerThread = new Thread(parallelReader);
+                readerThread.setName("CSVFileSplitter");
+            } else {
+                csvReader = new CSVFileReader(dataLoader, errHandler);
+                readerThread = new Thread(csvReader);
+                readerThread.setName("CSVFileReader");
+            }
             readerThread.setDaemon(true);
 
             //Wait for reader to finish.
@@ -527,14 +554,19 @@ public class CSVLoader implements BulkLoaderErrorHandler {
 
             errHandler.waitForErrorFlushComplete();
 
-            readerTime = (csvReader.m_parsingTime) / 1000000;
+            readerTime = (csvReader != null ? csvReader.m_parsingTime : parallelReader.getParsingTime()) / 1000000;
             insertCount = dataLoader.getProcessedRows();
             ackCount = insertCount - dataLoader.getFailedRows();
             rowsQueued = CSVFileReader.m_totalRowCount.get();
 
             //Close the reader.
             try {
-               listReader.close();
+                if (listReader != null) {
+                    listReader.close();
+                }
+                if (parallelInput != null) {
+                    parallelInput.close();
+                }
             } catch (Exception ex) {
                 //Do nothing here.
             }
@@ -672,6 +704,11 @@ public class CSVLoader implements BulkLoaderErrorHandler {
                     + m_errorCount + "\n");
             out_reportfile.write("CSVLoader rate: " + insertCount
                     / elapsedTimeSec + " row/s\n");
+            if (parallelReader != null) {
+                String stageReport = parallelReader.getStageReport();
+                System.out.print(stageReport);
+                out_reportfile.write(stageReport);
+            }
 
             System.out.println("Invalid row file: " + pathInvalidrowfile);
             System.out.println("Log file: " + pathLogfile);
@@ -0,0 +1,1000 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2019 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.voltcore.logging.VoltLogger;
+import org.voltdb.ParameterConverter;
+import org.voltdb.VoltType;
+import org.voltdb.client.VoltBulkLoader.VoltBulkLoaderWriter;
+import org.voltdb.common.Constants;
+import org.voltdb.types.GeographyPointValue;
+import org.voltdb.types.GeographyValue;
+import org.voltdb.types.TimestampType;
+
+/**
+ * Reads a CSV file with several parser threads.
+ *
+ * The splitter, which runs in the calling thread, reads the file into large buffers and
+ * scans the raw bytes for record boundaries, following quotes and escapes so a quoted
+ * newline stays inside its record. It hands chunks of whole records to the parser threads.
+ * Each parser splits its records into fields by the rules of the SuperCSV Tokenizer used by
+ * CSVFileReader, applies the same blank, whitespace and null checks, converts integer
+ * columns straight from the bytes and inserts the rows into the CSVDataLoader itself.
+ * When the loader has a {@link VoltBulkLoaderWriter}, each parser writes the values into its
+ * own batches per partition, without an Object[] per row.
+ *
+ * The separator, quote and escape characters must be ASCII and the file must be in a
+ * charset where ASCII bytes only ever stand for themselves, see {@link #canParse}.
+ * Unlike BufferedReader, only \n and \r\n end a line, a lone \r is data.
+ */
+class CSVParallelFileReader implements Runnable {
+    static final int DEFAULT_CHUNK_SIZE = Integer.getInteger("CSV_PARSE_CHUNK_SIZE", 4 * 1024 * 1024);
+
+    private static final VoltLogger m_log = new VoltLogger("CSVLOADER");
+    private static final byte NEWLINE = '\n';
+    private static final byte CR = '\r';
+    private static final byte SPACE = ' ';
+    private static final byte[] NULL_BYTES = "NULL".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] CSV_NULL_BYTES = Constants.CSV_NULL.getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] QUOTED_CSV_NULL_BYTES = Constants.QUOTED_CSV_NULL.getBytes(StandardCharsets.US_ASCII);
+
+    // scanning states
+    private static final int NORMAL = 0;
+    private static final int QUOTED = 1;
+    private static final int ESCAPED = 2;
+
+    // start of a checked value which is null, or blank and replaced by an empty value
+    private static final int NULL_VALUE = -1;
+    private static final int BLANK_VALUE = -2;
+
+    private static class Chunk {
+        final byte[] m_data;
+        final int m_offset;
+        final int m_end;
+        // line number of the first byte
+        final long m_firstLine;
+
+        Chunk(byte[] data, int offset, int end, long firstLine) {
+            m_data = data;
+            m_offset = offset;
+            m_end = end;
+            m_firstLine = firstLine;
+        }
+    }
+
+    private static final Chunk END_OF_INPUT = new Chunk(new byte[0], 0, 0, 0);
+
+    /**
+     * The untokenized record, only decoded when it is reported as invalid.
+     */
+    private static class RawRecord {
+        final byte[] m_data;
+        final int m_offset;
+        final int m_end;
+        final Charset m_charset;
+
+        RawRecord(byte[] data, int offset, int end, Charset charset) {
+            m_data = data;
+            m_offset = offset;
+            m_end = end;
+            m_charset = charset;
+        }
+
+        @Override
+        public String toString() {
+            int end = m_end;
+            while (end > m_offset && (m_data[end - 1] == NEWLINE || m_data[end - 1] == CR)) {
+                end--;
+            }
+            return new String(m_data, m_offset, end - m_offset, m_charset);
+        }
+    }
+
+    private final CSVLoader.CSVConfig m_config;
+    private final CSVDataLoader m_loader;
+    private final BulkLoaderErrorHandler m_errHandler;
+    private final InputStream m_input;
+    private final Charset m_charset;
+    private final int m_parserCount;
+    private final int m_chunkSize;
+    private final VoltType[] m_columnTypes;
+    private final int m_columnCount;
+    private final byte m_separator;
+    private final byte m_quote;
+    private final byte m_escape;
+    private final byte[] m_customNull;
+    // bytes the splitter has to look at, everything else is skipped
+    private final boolean[] m_splitSpecial = new boolean[256];
+    // bytes which end a run of plain field content for the parsers
+    private final boolean[] m_parseSpecial = new boolean[256];
+    private final BlockingQueue<Chunk> m_chunks;
+    private volatile boolean m_stop = false;
+
+    // set up by the splitter before the first chunk is queued
+    private Integer[] m_order;
+    private int m_headerLength;
+
+    // stage statistics, the splitter's are only read after it's done
+    private long m_splitRows = 0;
+    private long m_splitLines = 0;
+    private long m_splitBytes = 0;
+    private long m_splitNanos = 0;
+    private long m_elapsedNanos = 0;
+    private final AtomicLong m_parsedRows = new AtomicLong(0);
+    // records the Tokenizer would have failed to read
+    private final AtomicLong m_unreadRows = new AtomicLong(0);
+    private final AtomicLong m_parseNanos = new AtomicLong(0);
+    private final AtomicLong m_insertedRows = new AtomicLong(0);
+    private final AtomicLong m_insertNanos = new AtomicLong(0);
+
+    /**
+     * Can the input described by the configuration be split on raw bytes?
+     */
+    static boolean canParse(CSVLoader.CSVConfig config) {
+        if (config.file.isEmpty()) {
+            return false;
+        }
+        if (config.separator > 0x7f || config.quotechar > 0x7f || config.escape > 0x7f) {
+            return false;
+        }
+        try {
+            Charset charset = Charset.forName(config.charset);
+            return charset.equals(StandardCharsets.UTF_8) || charset.equals(StandardCharsets.US_ASCII)
+                    || charset.equals(StandardCharsets.ISO_8859_1);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    CSVParallelFileReader(CSVLoader.CSVConfig config, CSVDataLoader loader, BulkLoaderErrorHandler errorHandler,
+            InputStream input, int parserCount) {
+        this(config, loader, errorHandler, input, parserCount, DEFAULT_CHUNK_SIZE);
+    }
+
+    CSVParallelFileReader(CSVLoader.CSVConfig config, CSVDataLoader loader, BulkLoaderErrorHandler errorHandler,
+            InputStream input, int parserCount, int chunkSize) {
+        m_config = config;
+        m_loader = loader;
+        m_errHandler = errorHandler;
+        m_input = input;
+        m_charset = Charset.forName(config.charset);
+        m_parserCount = parserCount;
+        m_chunkSize = chunkSize;
+        m_columnTypes = loader.getColumnTypes();
+        m_columnCount = m_columnTypes.length;
+        m_separator = (byte) config.separator;
+        m_quote = (byte) config.quotechar;
+        m_escape = (byte) config.escape;
+        m_customNull = config.customNullString.isEmpty() ? null : config.customNullString.getBytes(m_charset);
+        // a couple of chunks per parser keeps them busy without reading too far ahead
+        m_chunks = new ArrayBlockingQueue<Chunk>(parserCount * 2);
+
+        m_splitSpecial[NEWLINE] = true;
+        m_splitSpecial[m_quote & 0xff] = true;
+        m_splitSpecial[m_escape & 0xff] = true;
+        m_parseSpecial[NEWLINE] = true;
+        m_parseSpecial[CR] = true;
+        m_parseSpecial[m_quote & 0xff] = true;
+        m_parseSpecial[m_escape & 0xff] = true;
+        m_parseSpecial[m_separator & 0xff] = true;
+    }
+
+    @Override
+    public void run() {
+        final long start = System.nanoTime();
+        Thread[] parsers = new Thread[m_parserCount];
+        for (int i = 0; i < m_parserCount; i++) {
+            parsers[i] = new Thread(new Parser(), "CSVParser-" + i);
+            parsers[i].setDaemon(true);
+            parsers[i].start();
+        }
+        try {
+            split();
+        } catch (IOException ex) {
+            m_log.error("Failed to read CSV line from file: " + ex);
+        } catch (InterruptedException e) {
+            m_log.error("CSVLoader interrupted: " + e);
+        }
+
+        try {
+            for (int i = 0; i < m_parserCount; i++) {
+                m_chunks.put(END_OF_INPUT);
+            }
+            for (Thread parser : parsers) {
+                parser.join();
+            }
+        } catch (InterruptedException e) {
+            m_log.error("CSVLoader interrupted: " + e);
+        }
+        m_elapsedNanos = System.nanoTime() - start;
+        CSVFileReader.m_totalLineCount.set(m_splitLines);
+        CSVFileReader.m_totalRowCount.set(m_splitRows - m_unreadRows.get());
+
+        //Now wait for processors to see endOfData and count down. After that drain to finish all callbacks
+        try {
+            m_log.debug("Waiting for CSVDataLoader to finish.");
+            m_loader.close();
+            m_log.debug("CSVDataLoader Done.");
+        } catch (Exception ex) {
+            m_log.warn("Stopped processing because of connection error. "
+                    + "A report will be generated with what we processed so far. Error: " + ex);
+        }
+    }
+
+    /**
+     * Read the input and queue the chunks of records for the parsers.
+     */
+    private void split() throws IOException, InterruptedException {
+        final long skipLimit = m_config.header ? m_config.skip + 1 : m_config.skip;
+        final long rowLimit = m_config.limitrows;
+        final RecordScanner scanner = new RecordScanner();
+        boolean headerPending = m_config.header;
+        boolean skippingLine = false;
+        boolean eof = false;
+
+        byte[] buf = new byte[m_chunkSize];
+        int len = 0;
+        int pos = 0;            // next byte to scan
+        int recordStart = 0;    // start of the record being scanned
+        int chunkStart = 0;     // start of the records not queued yet
+        long chunkLine = 1;     // line number at chunkStart
+        long recordLine = 1;    // line number at recordStart
+        long blockedNanos = 0;
+        final long start = System.nanoTime();
+
+        while (!m_stop && m_splitRows < rowLimit) {
+            if (pos == len) {
+                if (eof) {
+                    break;
+                }
+                // queue the whole records and carry the partial one over,
+                // growing the buffer when a single record is longer than a chunk
+                final boolean queued = recordStart > chunkStart;
+                if (queued) {
+                    blockedNanos += queueChunk(new Chunk(buf, chunkStart, recordStart, chunkLine));
+                }
+                int carry = len - recordStart;
+                byte[] next = (queued || carry * 2 > buf.length) ? new byte[Math.max(m_chunkSize, carry * 2)] : buf;
+                System.arraycopy(buf, recordStart, next, 0, carry);
+                buf = next;
+                pos -= recordStart;
+                len = carry;
+                recordStart = chunkStart = 0;
+                chunkLine = recordLine;
+                while (len < buf.length) {
+                    int read = m_input.read(buf, len, buf.length - len);
+                    if (read < 0) {
+                        eof = true;
+                        break;
+                    }
+                    len += read;
+                    m_splitBytes += read;
+                }
+                continue;
+            }
+
+            if (skippingLine) {
+                // skipped lines aren't tokenized, like in the Tokenizer
+                int newline = indexOf(buf, NEWLINE, pos, len);
+                if (newline < 0) {
+                    pos = len;
+                    continue;
+                }
+                pos = recordStart = chunkStart = newline + 1;
+                scanner.m_lines++;
+                recordLine = chunkLine = scanner.m_lines + 1;
+                skippingLine = false;
+                continue;
+            }
+            if (pos == recordStart && !headerPending && scanner.m_lines < skipLimit) {
+                skippingLine = true;
+                continue;
+            }
+
+            int end = scanner.findRecordEnd(buf, pos, len);
+            if (end < 0) {
+                pos = len;
+                continue;
+            }
+            pos = end;
+            if (headerPending) {
+                if (!scanner.m_recordBlank) {
+                    readHeader(buf, recordStart, end);
+                    headerPending = false;
+                }
+                chunkStart = end;
+                chunkLine = scanner.m_lines + 1;
+            }
+            else if (!scanner.m_recordBlank) {
+                m_splitRows++;
+            }
+            recordStart = end;
+            recordLine = scanner.m_lines + 1;
+            if (m_errHandler.hasReachedErrorLimit()) {
+                m_stop = true;
+            }
+        }
+
+        if (eof && pos == len && !m_stop && m_splitRows < rowLimit) {
+            // the last record has no newline, or ends inside quotes
+            if (recordStart < len) {
+                if (buf[len - 1] != NEWLINE) {
+                    scanner.m_lines++;
+                }
+                if (skippingLine) {
+                    chunkStart = len;
+                }
+                else if (headerPending) {
+                    if (!scanner.m_blank) {
+                        readHeader(buf, recordStart, len);
+                    }
+                    chunkStart = len;
+                }
+                else if (!scanner.m_blank) {
+                    m_splitRows++;
+                }
+            }
+            recordStart = len;
+        }
+        if (recordStart > chunkStart && !m_stop) {
+            blockedNanos += queueChunk(new Chunk(buf, chunkStart, recordStart, chunkLine));
+        }
+        m_splitNanos = System.nanoTime() - start - blockedNanos;
+        m_splitLines = scanner.m_lines;
+    }
+
+    private long queueChunk(Chunk chunk) throws InterruptedException {
+        final long start = System.nanoTime();
+        m_chunks.put(chunk);
+        return System.nanoTime() - start;
+    }
+
+    private static int indexOf(byte[] buf, byte b, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (buf[i] == b) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void readHeader(byte[] buf, int start, int end) {
+        Parser parser = new Parser();
+        parser.m_line = 1;
+        parser.tokenize(buf, start, end);
+        String[] header = new String[parser.m_fieldCount];
+        for (int i = 0; i < header.length; i++) {
+            int length = parser.m_fieldEnds[i] - parser.m_fieldStarts[i];
+            header[i] = length == 0 ? null : new String(parser.m_field, parser.m_fieldStarts[i], length, m_charset);
+        }
+        m_headerLength = header.length;
+        m_order = CSVFileReader.getHeaderOrder(header, m_loader.getColumnNames(), m_columnCount);
+        if (m_order == null) {
+            m_log.error("In the CSV file " + m_config.file + ", the header "
+                    + new RawRecord(buf, start, end, m_charset) + " does not match "
+                    + "an existing column in the table " + m_config.table + ".");
+            System.exit(-1);
+        }
+    }
+
+    /**
+     * Finds the ends of records without tokenizing them. Outside quotes an escape takes the
+     * next character literally, unless it is \N; inside quotes only a quote matters, a doubled
+     * quote leaves and re-enters the quotes.
+     */
+    private final class RecordScanner {
+        int m_state = NORMAL;
+        long m_lines = 0;
+        // no visible character in the record so far
+        boolean m_blank = true;
+        // whether the last record found was blank
+        boolean m_recordBlank;
+
+        /**
+         * @return the index after the newline ending the record, -1 if the record doesn't end before to
+         */
+        int findRecordEnd(byte[] buf, int from, int to) {
+            final boolean[] special = m_splitSpecial;
+            int state = m_state;
+            boolean blank = m_blank;
+            for (int i = from; i < to; i++) {
+                final int b = buf[i] & 0xff;
+                if (b > SPACE) {
+                    blank = false;
+                }
+                if (!special[b] && state != ESCAPED) {
+                    continue;
+                }
+                if (state == ESCAPED) {
+                    state = NORMAL;
+                    if (b != NEWLINE) {
+                        continue;
+                    }
+                }
+                else if (state == QUOTED) {
+                    if (b == NEWLINE) {
+                        m_lines++;
+                    }
+                    else if (b == (m_quote & 0xff)) {
+                        state = NORMAL;
+                    }
+                    continue;
+                }
+                if (b == NEWLINE) {
+                    m_lines++;
+                    m_state = NORMAL;
+                    m_recordBlank = blank;
+                    m_blank = true;
+                    return i + 1;
+                }
+                else if (b == (m_escape & 0xff)) {
+                    // \N is not an escape, the N is plain content either way
+                    state = ESCAPED;
+                }
+                else if (b == (m_quote & 0xff)) {
+                    state = QUOTED;
+                }
+            }
+            m_state = state;
+            m_blank = blank;
+            return -1;
+        }
+    }
+
+    /**
+     * Tokenizes and converts the records of the chunks it takes, and inserts the rows.
+     */
+    private final class Parser implements Runnable {
+        // content of the fields of the current record
+        byte[] m_field = new byte[1024];
+        int m_length;
+        int[] m_fieldStarts = new int[64];
+        int[] m_fieldEnds = new int[64];
+        int m_fieldCount;
+        boolean m_quotedOrEscaped;
+        String m_error;
+        // line of the next byte, and the last line of the current record
+        long m_line;
+        long m_recordLine;
+        // the checked values in table column order, bounds in m_field or NULL_VALUE or BLANK_VALUE
+        final int[] m_valueStarts = new int[m_columnCount];
+        final int[] m_valueEnds = new int[m_columnCount];
+        // batches of this parser, null if the loader takes the rows one at a time
+        final VoltBulkLoaderWriter m_writer = m_loader.createWriter();
+
+        @Override
+        public void run() {
+            try {
+                while (true) {
+                    Chunk chunk = m_chunks.take();
+                    if (chunk == END_OF_INPUT) {
+                        break;
+                    }
+                    if (!m_stop) {
+                        parse(chunk);
+                    }
+                }
+                if (m_writer != null) {
+                    m_writer.close();
+                }
+            } catch (InterruptedException e) {
+                m_log.error("CSVLoader interrupted: " + e);
+                m_stop = true;
+            }
+        }
+
+        private void parse(Chunk chunk) {
+            final long start = System.nanoTime();
+            final byte[] buf = chunk.m_data;
+            long insertNanos = 0;
+            long rows = 0;
+            long insertedRows = 0;
+            long unreadRows = 0;
+            int pos = chunk.m_offset;
+            m_line = chunk.m_firstLine;
+            try {
+                while (pos < chunk.m_end) {
+                    if (m_errHandler.hasReachedErrorLimit()) {
+                        m_stop = true;
+                        break;
+                    }
+                    final int recordStart = pos;
+                    final long firstLine = m_line;
+                    pos = tokenize(buf, pos, chunk.m_end);
+                    if (isBlank()) {
+                        continue;
+                    }
+                    rows++;
+                    if (m_error != null) {
+                        unreadRows++;
+                    }
+                    String error = m_error != null ? m_error : check();
+                    if (error != null) {
+                        final RowWithMetaData metaData
+                                = new RowWithMetaData(new RawRecord(buf, recordStart, pos, m_charset), firstLine);
+                        if (m_errHandler.handleError(metaData, null, error)) {
+                            m_stop = true;
+                            break;
+                        }
+                        continue;
+                    }
+                    RowWithMetaData lineData
+                            = new RowWithMetaData(new RawRecord(buf, recordStart, pos, m_charset), m_recordLine);
+                    final long insertStart = System.nanoTime();
+                    if (m_writer != null) {
+                        write(lineData);
+                    }
+                    else {
+                        m_loader.insertRow(lineData, values());
+                    }
+                    insertNanos += System.nanoTime() - insertStart;
+                    insertedRows++;
+                }
+            } catch (InterruptedException e) {
+                m_log.error("CSVLoader interrupted: " + e);
+                m_stop = true;
+            }
+            m_parsedRows.addAndGet(rows);
+            m_insertedRows.addAndGet(insertedRows);
+            m_unreadRows.addAndGet(unreadRows);
+            m_insertNanos.addAndGet(insertNanos);
+            m_parseNanos.addAndGet(System.nanoTime() - start - insertNanos);
+        }
+
+        /**
+         * Split the record starting at pos into fields, the same way as the SuperCSV Tokenizer.
+         * An empty field, quoted or not, is null. The first error is kept in m_error.
+         * @return the index after the record
+         */
+        int tokenize(byte[] buf, int pos, int end) {
+            final boolean strict = m_config.strictquotes;
+            final boolean[] special = m_parseSpecial;
+            m_length = 0;
+            m_fieldCount = 0;
+            m_quotedOrEscaped = false;
+            m_error = null;
+            int fieldStart = 0;
+            int state = NORMAL;
+            boolean expectQuote = strict;
+            long quoteStartLine = 0;
+            while (true) {
+                if (pos == end) {
+                    if (state == QUOTED) {
+                        // the line count doesn't include the end of the file
+                        long lastLine = buf[end - 1] == NEWLINE ? m_line - 1 : m_line;
+                        setError(String.format("unexpected end of file while reading quoted column %d " +
+                                "beginning on line %d and ending on line %d",
+                                m_fieldCount + 1, quoteStartLine, lastLine));
+                    }
+                    addField(fieldStart);
+                    m_recordLine = m_line;
+                    return pos;
+                }
+                final byte b = buf[pos++];
+                if (b == CR && (pos == end || buf[pos] == NEWLINE)) {
+                    // line terminators are dropped, as by BufferedReader.readLine()
+                    continue;
+                }
+                if (state == ESCAPED) {
+                    state = NORMAL;
+                    if (b != NEWLINE) {
+                        if (strict && expectQuote) {
+                            setStrictQuotesError();
+                        }
+                        append(b);
+                        continue;
+                    }
+                }
+                else if (state == QUOTED) {
+                    if (b == NEWLINE) {
+                        checkColumnSize(fieldStart, quoteStartLine);
+                        m_line++;
+                        append(NEWLINE);
+                    }
+                    else if (b == m_quote) {
+                        if (pos < end && buf[pos] == m_quote) {
+                            append(b);
+                            pos++;
+                        }
+                        else {
+                            state = NORMAL;
+                            checkColumnSize(fieldStart, quoteStartLine);
+                        }
+                    }
+                    else {
+                        append(b);
+                    }
+                    continue;
+                }
+
+                if (!special[b & 0xff] && !(strict && expectQuote)) {
+                    // copy the run of plain content in one go
+                    int runEnd = pos;
+                    while (runEnd < end && !special[buf[runEnd] & 0xff]) {
+                        runEnd++;
+                    }
+                    append(buf, pos - 1, runEnd);
+                    pos = runEnd;
+                }
+                else if (b == NEWLINE) {
+                    addField(fieldStart);
+                    m_recordLine = m_line++;
+                    return pos;
+                }
+                else if (b == m_escape && !(pos < end && buf[pos] == 'N')) {
+                    m_quotedOrEscaped = true;
+                    state = ESCAPED;
+                }
+                else if (b == m_separator) {
+                    expectQuote = true;
+                    addField(fieldStart);
+                    fieldStart = m_length;
+                }
+                else if (b == m_quote) {
+                    m_quotedOrEscaped = true;
+                    expectQuote = false;
+                    state = QUOTED;
+                    quoteStartLine = m_line;
+                }
+                else {
+                    // spaces before an opening quote are fine
+                    if (strict && expectQuote && b != SPACE) {
+                        setStrictQuotesError();
+                    }
+                    append(b);
+                }
+            }
+        }
+
+        /**
+         * A line with only whitespace is skipped, like in the Tokenizer.
+         */
+        private boolean isBlank() {
+            if (m_fieldCount != 1 || m_quotedOrEscaped) {
+                return false;
+            }
+            for (int i = 0; i < m_length; i++) {
+                if ((m_field[i] & 0xff) > SPACE) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void setError(String error) {
+            if (m_error == null) {
+                m_error = error;
+            }
+        }
+
+        private void setStrictQuotesError() {
+            setError(String.format("strictQuotes: quotes needed at line %d column %d. To proceed, " +
+                    "either quote the column or remove --strictquotes", m_line, m_fieldCount + 1));
+        }
+
+        private void checkColumnSize(int fieldStart, long quoteStartLine) {
+            if (m_length - fieldStart > m_config.columnsizelimit) {
+                setError(String.format("oversized column while reading quoted column %d beginning on line %d " +
+                        "and ending on line %d. See --columnsizelimit.", m_fieldCount + 1, quoteStartLine, m_line));
+            }
+        }
+
+        private void append(byte b) {
+            if (m_length == m_field.length) {
+                m_field = Arrays.copyOf(m_field, m_length * 2);
+            }
+            m_field[m_length++] = b;
+        }
+
+        private void append(byte[] buf, int from, int to) {
+            final int count = to - from;
+            if (m_length + count > m_field.length) {
+                m_field = Arrays.copyOf(m_field, Math.max(m_field.length * 2, m_length + count));
+            }
+            System.arraycopy(buf, from, m_field, m_length, count);
+            m_length += count;
+        }
+
+        private void addField(int fieldStart) {
+            if (m_fieldCount == m_fieldStarts.length) {
+                m_fieldStarts = Arrays.copyOf(m_fieldStarts, m_fieldCount * 2);
+                m_fieldEnds = Arrays.copyOf(m_fieldEnds, m_fieldCount * 2);
+            }
+            m_fieldStarts[m_fieldCount] = fieldStart;
+            m_fieldEnds[m_fieldCount++] = m_length;
+        }
+
+        /**
+         * Check the fields of the record and find their values in table column order, the same
+         * way as CSVFileReader.
+         * @return the error, or null if the values are fine
+         */
+        private String check() {
+            Arrays.fill(m_valueStarts, NULL_VALUE);
+            if (!m_config.header && m_fieldCount != m_columnCount) {
+                return String.format(CSVFileReader.COLUMN_COUNT_ERROR, m_fieldCount, m_columnCount);
+            }
+            if (m_config.header && m_fieldCount != m_headerLength) {
+                return String.format(CSVFileReader.HEADER_COUNT_ERROR, m_fieldCount, m_headerLength);
+            }
+            for (int fileCol = 0; fileCol < m_fieldCount; fileCol++) {
+                int i = fileCol;
+                if (m_config.header) {
+                    if (m_order[fileCol] != null) {
+                        i = m_order[fileCol];
+                    } else {
+                        continue;
+                    }
+                }
+                int start = m_fieldStarts[fileCol];
+                int end = m_fieldEnds[fileCol];
+                if (start == end) {
+                    if (m_config.blank.equalsIgnoreCase("error")) {
+                        return String.format(CSVFileReader.BLANK_ERROR, i + 1);
+                    } else if (m_config.blank.equalsIgnoreCase("empty")) {
+                        m_valueStarts[i] = BLANK_VALUE;
+                    }
+                    continue;
+                }
+                if (m_config.nowhitespace && (m_field[start] == SPACE || m_field[end - 1] == SPACE)) {
+                    return String.format(CSVFileReader.WHITESPACE_ERROR, i + 1);
+                }
+                if (m_customNull != null && equals(start, end, m_customNull)) {
+                    continue;
+                }
+                // trim like String.trim()
+                int trimmedStart = start;
+                int trimmedEnd = end;
+                while (trimmedStart < trimmedEnd && (m_field[trimmedStart] & 0xff) <= SPACE) {
+                    trimmedStart++;
+                }
+                while (trimmedEnd > trimmedStart && (m_field[trimmedEnd - 1] & 0xff) <= SPACE) {
+                    trimmedEnd--;
+                }
+                if (m_customNull == null && (equals(trimmedStart, trimmedEnd, NULL_BYTES)
+                        || equals(trimmedStart, trimmedEnd, CSV_NULL_BYTES)
+                        || equals(trimmedStart, trimmedEnd, QUOTED_CSV_NULL_BYTES))) {
+                    continue;
+                }
+                m_valueStarts[i] = trimmedStart;
+                m_valueEnds[i] = trimmedEnd;
+            }
+            return null;
+        }
+
+        /**
+         * @return the checked values for insertRow, with integer columns parsed from the bytes
+         */
+        private Object[] values() {
+            Object[] values = new Object[m_columnCount];
+            for (int i = 0; i < m_columnCount; i++) {
+                final int start = m_valueStarts[i];
+                if (start == BLANK_VALUE) {
+                    values[i] = CSVFileReader.m_blankStrings.get(m_columnTypes[i]);
+                }
+                else if (start != NULL_VALUE) {
+                    values[i] = convertValue(m_columnTypes[i], start, m_valueEnds[i]);
+                }
+            }
+            return values;
+        }
+
+        private Object convertValue(VoltType type, int start, int end) {
+            switch (type) {
+            case TINYINT:
+            case SMALLINT:
+            case INTEGER:
+            case BIGINT:
+                Long value = parseLong(m_field, start, end);
+                if (value != null) {
+                    return value;
+                }
+                // not a plain decimal, leave the conversion and its errors to the loader
+                break;
+            default:
+                break;
+            }
+            return new String(m_field, start, end - start, m_charset);
+        }
+
+        /**
+         * Write the checked values into the batch of their partition. A value the writer can't
+         * take is given to insertRow instead, for the loader to report the error.
+         */
+        private void write(RowWithMetaData lineData) throws InterruptedException {
+            try {
+                for (int i = 0; i < m_columnCount; i++) {
+                    writeValue(m_columnTypes[i], m_valueStarts[i], m_valueEnds[i]);
+                }
+            } catch (RuntimeException e) {
+                m_writer.discardRow();
+                m_loader.insertRow(lineData, values());
+                return;
+            }
+            m_writer.endRow(lineData);
+        }
+
+        private void writeValue(VoltType type, int start, int end) {
+            if (start == NULL_VALUE) {
+                m_writer.addNull();
+                return;
+            }
+            if (start == BLANK_VALUE) {
+                writeConverted(type, CSVFileReader.m_blankStrings.get(type));
+                return;
+            }
+            switch (type) {
+            case TINYINT:
+            case SMALLINT:
+            case INTEGER:
+            case BIGINT:
+                // Long.MIN_VALUE also stands for not a plain decimal, the conversion handles both
+                final long value = parseLong(m_field, start, end, Long.MIN_VALUE);
+                if (value != Long.MIN_VALUE) {
+                    m_writer.addLong(value);
+                    return;
+                }
+                break;
+            case STRING:
+                m_writer.addString(new String(m_field, start, end - start, m_charset));
+                return;
+            default:
+                break;
+            }
+            writeConverted(type, new String(m_field, start, end - start, m_charset));
+        }
+
+        /**
+         * Write a value converted the same way as the loader converts the values of insertRow.
+         */
+        private void writeConverted(VoltType type, String value) {
+            if (value == null) {
+                m_writer.addNull();
+                return;
+            }
+            final Object converted = ParameterConverter.tryToMakeCompatible(type.classFromType(), value);
+            switch (type) {
+            case TINYINT:
+            case SMALLINT:
+            case INTEGER:
+            case BIGINT:
+                m_writer.addLong(((Number) converted).longValue());
+                break;
+            case FLOAT:
+                m_writer.addDouble(((Number) converted).doubleValue());
+                break;
+            case DECIMAL:
+                m_writer.addDecimal((BigDecimal) converted);
+                break;
+            case TIMESTAMP:
+                m_writer.addTimestamp((TimestampType) converted);
+                break;
+            case STRING:
+                m_writer.addString((String) converted);
+                break;
+            case VARBINARY:
+                m_writer.addBytes((byte[]) converted);
+                break;
+            case GEOGRAPHY_POINT:
+                m_writer.addGeographyPoint((GeographyPointValue) converted);
+                break;
+            case GEOGRAPHY:
+                m_writer.addGeography((GeographyValue) converted);
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported column type " + type);
+            }
+        }
+
+        private boolean equals(int start, int end, byte[] expected) {
+            if (end - start != expected.length) {
+                return false;
+            }
+            for (int i = 0; i < expected.length; i++) {
+                if (m_field[start + i] != expected[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Parse a decimal integer with an optional sign.
+     * @return the value, or null if the bytes aren't a decimal integer in the range of a long
+     */
+    static Long parseLong(byte[] buf, int from, int to) {
+        final long value = parseLong(buf, from, to, Long.MAX_VALUE);
+        if (value == Long.MAX_VALUE && parseLong(buf, from, to, Long.MIN_VALUE) == Long.MIN_VALUE) {
+            return null;
+        }
+        return value;
+    }
+
+    /**
+     * Parse a decimal integer with an optional sign, without boxing.
+     * @return the value, or invalid if the bytes aren't a decimal integer in the range of a long
+     */
+    static long parseLong(byte[] buf, int from, int to, long invalid) {
+        int i = from;
+        boolean negative = false;
+        if (i < to && (buf[i] == '-' || buf[i] == '+')) {
+            negative = buf[i] == '-';
+            i++;
+        }
+        if (i == to) {
+            return invalid;
+        }
+        // accumulate negatively, the same as Long.parseLong()
+        final long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+        final long multmin = limit / 10;
+        long result = 0;
+        for (; i < to; i++) {
+            int digit = buf[i] - '0';
+            if (digit < 0 || digit > 9 || result < multmin) {
+                return invalid;
+            }
+            result *= 10;
+            if (result < limit + digit) {
+                return invalid;
+            }
+            result -= digit;
+        }
+        return negative ? result : -result;
+    }
+
+    /**
+     * @return the time the parsers spent tokenizing and converting, in nanoseconds
+     */
+    long getParsingTime() {
+        return m_parseNanos.get();
+    }
+
+    /**
+     * Rows and rates of each stage, one line per stage. A rate is the rows over the time the
+     * stage was busy, for all its threads together, so the slowest stage limits the load rate.
+     */
+    String getStageReport() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("Splitting: %d rows, %d bytes, %.0f row/s\n",
+                m_splitRows, m_splitBytes, rate(m_splitRows, m_splitNanos, 1)));
+        sb.append(String.format("Parsing: %d rows on %d threads, %.0f row/s\n",
+                m_parsedRows.get(), m_parserCount, rate(m_parsedRows.get(), m_parseNanos.get(), m_parserCount)));
+        sb.append(String.format("Inserting: %d rows, %.0f row/s\n",
+                m_insertedRows.get(), rate(m_insertedRows.get(), m_insertNanos.get(), m_parserCount)));
+        sb.append(String.format("Reading elapsed: %.3f seconds\n", m_elapsedNanos / 1000000000.0));
+        return sb.toString();
+    }
+
+    private static double rate(long rows, long busyNanos, int threads) {
+        if (busyNanos <= 0) {
+            return 0;
+        }
+        return rows * 1000000000.0 * threads / busyNanos;
+    }
+}
@@ -30,11 +30,16 @@ import java.util.zip.InflaterOutputStream;
 import org.voltcore.utils.CoreUtils;
 import org.voltcore.utils.DBBPool;
 import org.voltcore.utils.DBBPool.BBContainer;
+import org.voltcore.utils.Pair;
 import org.voltdb.VoltDB;
 import org.voltdb.VoltDBInterface;
 import org.voltdb.common.Constants;
 import org.xerial.snappy.Snappy;
 
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4FastDecompressor;
+
 import com.google_voltpatches.common.util.concurrent.ListenableFuture;
 import com.google_voltpatches.common.util.concurrent.ListeningExecutorService;
 import com.google_voltpatches.common.util.concurrent.MoreExecutors;
@@ -50,6 +55,207 @@ public final class CompressionService {
         };
     }
 
+    /**
+     * Block codecs which can be selected for snapshot data. All of them work on direct buffers
+     * with the same contract as the Snappy ByteBuffer API: the input is read from position to limit
+     * and neither buffer's position is moved, the output is written at its position and its limit
+     * is set to the end of the written data.
+     *
+     * The level is only used when compressing. For LZ4, level 0 selects the fast compressor and
+     * level {@link #MAX_LZ4_LEVEL} the high compression one, which is slower
+     * to compress but decompresses just as fast. Snappy has no levels.
+     */
+    public static enum Codec {
+        SNAPPY {
+            @Override
+            public int compress(ByteBuffer input, ByteBuffer output, int level) throws IOException {
+                return Snappy.compress(input, output);
+            }
+
+            @Override
+            public int maxCompressedLength(int uncompressedSize) {
+                return Snappy.maxCompressedLength(uncompressedSize);
+            }
+
+            @Override
+            public int uncompressedLength(ByteBuffer compressed) throws IOException {
+                return Snappy.uncompressedLength(compressed);
+            }
+
+            @Override
+            public int decompress(ByteBuffer compressed, ByteBuffer uncompressed) throws IOException {
+                return Snappy.uncompress(compressed, uncompressed);
+            }
+        },
+
+        /*
+         * Raw LZ4 blocks don't carry their uncompressed length, so it is stored
+         * as a 4-byte prefix in front of the block. The LZ4 library on the classpath
+         * only works on arrays, so direct buffers go through per thread scratch arrays.
+         */
+        LZ4 {
+            @Override
+            public int compress(ByteBuffer input, ByteBuffer output, int level) throws IOException {
+                final int outputStart = output.position();
+                final int inputLength = input.remaining();
+                final int maxOutputLength = output.capacity() - outputStart - 4;
+                final LZ4Scratch scratch = m_lz4Scratch.get();
+                final byte[] in = scratch.input(inputLength);
+                input.duplicate().get(in, 0, inputLength);
+                final byte[] out = scratch.output(maxOutputLength);
+                final int compressedSize;
+                try {
+                    compressedSize = lz4Compressor(level).compress(in, 0, inputLength, out, 0, maxOutputLength);
+                } catch (net.jpountz.lz4.LZ4Exception e) {
+                    throw new IOException("LZ4 block of " + inputLength + " bytes doesn't fit the " +
+                            maxOutputLength + " byte output", e);
+                }
+                output.putInt(outputStart, inputLength);
+                final ByteBuffer dest = output.duplicate();
+                dest.clear();
+                dest.position(outputStart + 4);
+                dest.put(out, 0, compressedSize);
+                output.limit(outputStart + 4 + compressedSize);
+                return compressedSize + 4;
+            }
+
+            @Override
+            public int maxCompressedLength(int uncompressedSize) {
+                return m_lz4Compressors[0].maxCompressedLength(uncompressedSize) + 4;
+            }
+
+            @Override
+            public int uncompressedLength(ByteBuffer compressed) throws IOException {
+                final int length = compressed.getInt(compressed.position());
+                if (length < 0) {
+                    throw new IOException("Corrupted LZ4 block has negative uncompressed length");
+                }
+                return length;
+            }
+
+            @Override
+            public int decompress(ByteBuffer compressed, ByteBuffer uncompressed) throws IOException {
+                final int uncompressedLength = uncompressedLength(compressed);
+                final int outputStart = uncompressed.position();
+                if (uncompressedLength > uncompressed.capacity() - outputStart) {
+                    throw new IOException("Uncompressed LZ4 block of " + uncompressedLength +
+                            " bytes doesn't fit the " + (uncompressed.capacity() - outputStart) + " byte output");
+                }
+                final int compressedLength = compressed.remaining() - 4;
+                final LZ4Scratch scratch = m_lz4Scratch.get();
+                final byte[] in = scratch.input(compressedLength);
+                final ByteBuffer src = compressed.duplicate();
+                src.position(src.position() + 4);
+                src.get(in, 0, compressedLength);
+                final byte[] out = scratch.output(uncompressedLength);
+                try {
+                    final int read = m_lz4Decompressor.decompress(in, 0, out, 0, uncompressedLength);
+                    if (read != compressedLength) {
+                        throw new IOException("LZ4 block length mismatch, read " + read + " of " +
+                                compressedLength + " bytes");
+                    }
+                } catch (net.jpountz.lz4.LZ4Exception e) {
+                    throw new IOException("Corrupted LZ4 block", e);
+                }
+                final ByteBuffer dest = uncompressed.duplicate();
+                dest.clear();
+                dest.position(outputStart);
+                dest.put(out, 0, uncompressedLength);
+                uncompressed.limit(outputStart + uncompressedLength);
+                return uncompressedLength;
+            }
+        };
+
+        public static final int MAX_LZ4_LEVEL = 1;
+
+        public abstract int compress(ByteBuffer input, ByteBuffer output, int level) throws IOException;
+        public abstract int maxCompressedLength(int uncompressedSize);
+        public abstract int uncompressedLength(ByteBuffer compressed) throws IOException;
+        public abstract int decompress(ByteBuffer compressed, ByteBuffer uncompressed) throws IOException;
+
+        /**
+         * Parse a codec specification of the form <code>codec[:level]</code>, e.g. <code>snappy</code>,
+         * <code>lz4</code> or <code>lz4:1</code>.
+         * @throws IllegalArgumentException if the codec is unknown or the level is out of range
+         */
+        public static Pair<Codec, Integer> parse(String spec) {
+            final String trimmed = spec.trim();
+            final int colon = trimmed.indexOf(':');
+            final String name = colon < 0 ? trimmed : trimmed.substring(0, colon);
+            final Codec codec;
+            try {
+                codec = valueOf(name.trim().toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown compression codec \"" + name +
+                        "\", should be one of " + Arrays.toString(values()));
+            }
+            int level = 0;
+            if (colon >= 0) {
+                try {
+                    level = Integer.parseInt(trimmed.substring(colon + 1).trim());
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Invalid compression level in \"" + spec + "\"");
+                }
+                final int maxLevel = codec == LZ4 ? MAX_LZ4_LEVEL : 0;
+                if (level < 0 || level > maxLevel) {
+                    throw new IllegalArgumentException("Compression level for " + codec +
+                            " must be between 0 and " + maxLevel + ", got " + level);
+                }
+            }
+            return Pair.of(codec, level);
+        }
+    }
+
+    private static final LZ4Factory m_lz4Factory = LZ4Factory.fastestInstance();
+    // Indexed by level, 0 is the fast compressor and 1 the high compression one
+    private static final LZ4Compressor m_lz4Compressors[] =
+            new LZ4Compressor[] { m_lz4Factory.fastCompressor(), m_lz4Factory.highCompressor() };
+    private static final LZ4FastDecompressor m_lz4Decompressor = m_lz4Factory.fastDecompressor();
+
+    private static LZ4Compressor lz4Compressor(int level) {
+        return m_lz4Compressors[level];
+    }
+
+    /*
+     * Heap arrays used to stage LZ4 blocks, grown on demand and kept for the life of the thread
+     */
+    private static final class LZ4Scratch {
+        private byte[] m_input = new byte[0];
+        private byte[] m_output = new byte[0];
+
+        byte[] input(int length) {
+            if (m_input.length < length) {
+                m_input = new byte[length];
+            }
+            return m_input;
+        }
+
+        byte[] output(int length) {
+            if (m_output.length < length) {
+                m_output = new byte[length];
+            }
+            return m_output;
+        }
+    }
+
+    private static final ThreadLocal<LZ4Scratch> m_lz4Scratch = new ThreadLocal<LZ4Scratch>() {
+        @Override
+        protected LZ4Scratch initialValue() {
+            return new LZ4Scratch();
+        }
+    };
+
+    /**
+     * @return the largest compressed size any of the {@link Codec}s may produce for the input size
+     */
+    public static int maxCompressedLengthOfAnyCodec(int uncompressedSize) {
+        int maxLength = 0;
+        for (Codec codec : Codec.values()) {
+            maxLength = Math.max(maxLength, codec.maxCompressedLength(uncompressedSize));
+        }
+        return maxLength;
+    }
+
     private static class IOBuffers {
         private final BBContainer input;
         private final BBContainer output;
@@ -129,6 +335,11 @@ public final class CompressionService {
     }
 
     public static Future<BBContainer> compressAndCRC32cBufferAsync(final ByteBuffer inBuffer, final BBContainer outBufferC) {
+        return compressAndCRC32cBufferAsync(inBuffer, outBufferC, Codec.SNAPPY, 0);
+    }
+
+    public static Future<BBContainer> compressAndCRC32cBufferAsync(final ByteBuffer inBuffer, final BBContainer outBufferC,
+            final Codec codec, final int level) {
         assert(inBuffer.isDirect());
         assert(outBufferC.b().isDirect());
         return submitCompressionTask(new Callable<BBContainer>() {
@@ -140,7 +351,7 @@ public final class CompressionService {
                 final int crcPosition = outBuffer.position();
                 outBuffer.position(outBuffer.position() + 4);
                 final int crcCalcStart = outBuffer.position();
-                compressBuffer(inBuffer, outBuffer);
+                codec.compress(inBuffer, outBuffer, level);
                 final int crc32c =
                         DBBPool.getCRC32C( outBufferC.address(), crcCalcStart, outBuffer.limit() - crcCalcStart);
                 outBuffer.putInt(crcPosition, crc32c);
@@ -0,0 +1,308 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2019 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.utils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.LinkedTransferQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.voltcore.logging.VoltLogger;
+import org.voltcore.utils.CoreUtils;
+import org.voltcore.utils.DBBPool.BBContainer;
+
+import com.google_voltpatches.common.util.concurrent.ListenableFuture;
+import com.google_voltpatches.common.util.concurrent.SettableFuture;
+
+/**
+ * Opt-in asynchronous appender for a {@link BinaryDeque}. Producers enqueue objects without
+ * contending on the deque and a single writer thread appends them in batches, holding the deque
+ * monitor once per batch. The writer syncs the deque once enough bytes have been appended or
+ * enough time has passed since the oldest unsynced append, and then completes the futures of
+ * every object covered by that sync.
+ *
+ * Producers which don't need durability can ignore the returned futures, the objects are still
+ * appended in offer order.
+ */
+public class GroupCommitBinaryDequeWriter {
+    private static final VoltLogger LOG = new VoltLogger("HOST");
+
+    public static final long DEFAULT_SYNC_INTERVAL_MS = Long.getLong("PBD_GROUP_COMMIT_INTERVAL_MS", 10);
+    public static final long DEFAULT_SYNC_BYTES = Long.getLong("PBD_GROUP_COMMIT_BYTES", 8 * 1024 * 1024);
+
+    // How long the writer waits for work when it has nothing left to sync
+    private static final long IDLE_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    /**
+     * Remembers whether the deque discarded the container. The deque discards it once it has started
+     * writing the object, even if the write fails, but not when it rejects the object up front.
+     */
+    private static class OfferedContainer extends BBContainer {
+        private final BBContainer m_origin;
+        private boolean m_discarded = false;
+
+        OfferedContainer(BBContainer origin) {
+            super(origin.b());
+            m_origin = origin;
+        }
+
+        @Override
+        public void discard() {
+            checkDoubleFree();
+            m_discarded = true;
+            m_origin.discard();
+        }
+
+        void discardIfOwned() {
+            if (!m_discarded) {
+                discard();
+            }
+        }
+    }
+
+    private static class PendingWrite {
+        // null for a flush, barrier or shutdown request
+        final OfferedContainer m_cont;
+        final boolean m_allowCompression;
+        final int m_size;
+        // completed once everything before it has been appended, without a sync
+        final boolean m_barrier;
+        final SettableFuture<Void> m_future = SettableFuture.create();
+
+        PendingWrite(BBContainer cont, boolean allowCompression) {
+            this(cont, allowCompression, false);
+        }
+
+        PendingWrite(BBContainer cont, boolean allowCompression, boolean barrier) {
+            m_cont = cont == null ? null : new OfferedContainer(cont);
+            m_allowCompression = allowCompression;
+            m_size = cont == null ? 0 : cont.b().remaining();
+            m_barrier = barrier;
+        }
+    }
+
+    private final BinaryDeque m_deque;
+    private final long m_syncIntervalNanos;
+    private final long m_syncBytes;
+    private final LinkedTransferQueue<PendingWrite> m_queue = new LinkedTransferQueue<>();
+    private final PendingWrite m_shutdownRequest = new PendingWrite(null, false);
+    private final Thread m_writer;
+    private volatile boolean m_shutdown = false;
+    // Set by the writer thread before it rejects whatever is left in the queue
+    private volatile boolean m_writerDone = false;
+
+    // Stats, only updated by the writer thread
+    private volatile long m_syncCount = 0;
+    private volatile long m_objectsWritten = 0;
+
+    public GroupCommitBinaryDequeWriter(String name, BinaryDeque deque) {
+        this(name, deque, DEFAULT_SYNC_INTERVAL_MS, DEFAULT_SYNC_BYTES);
+    }
+
+    /**
+     * @param name          Name used for the writer thread
+     * @param deque         Deque to append to
+     * @param syncIntervalMs Maximum time an append is left unsynced
+     * @param syncBytes     Number of appended bytes which triggers a sync
+     */
+    public GroupCommitBinaryDequeWriter(String name, BinaryDeque deque, long syncIntervalMs, long syncBytes) {
+        m_deque = deque;
+        m_syncIntervalNanos = TimeUnit.MILLISECONDS.toNanos(syncIntervalMs);
+        m_syncBytes = syncBytes;
+        m_writer = CoreUtils.getThreadFactory(name + " PBD Writer").newThread(new Runnable() {
+            @Override
+            public void run() {
+                writerLoop();
+            }
+        });
+        m_writer.start();
+    }
+
+    /**
+     * Queue an object to be appended to the deque. Ownership of the container passes to the writer.
+     * @return a future which completes once the object has been synced to disk
+     */
+    public ListenableFuture<Void> offer(BBContainer cont, boolean allowCompression) {
+        final PendingWrite write = new PendingWrite(cont, allowCompression);
+        if (m_shutdown) {
+            reject(write);
+            return write.m_future;
+        }
+        enqueue(write);
+        return write.m_future;
+    }
+
+    /**
+     * Request a sync of everything queued so far, without waiting for the time or byte budget.
+     * @return a future which completes once all previously queued objects have been synced
+     */
+    public ListenableFuture<Void> flush() {
+        final PendingWrite flush = new PendingWrite(null, false);
+        if (m_shutdown) {
+            reject(flush);
+            return flush.m_future;
+        }
+        enqueue(flush);
+        return flush.m_future;
+    }
+
+    /**
+     * Wait for everything queued so far to be appended to the deque, without syncing it,
+     * so that a producer can read back what it has offered.
+     * @return a future which completes once all previously queued objects have been appended
+     */
+    public ListenableFuture<Void> appendBarrier() {
+        final PendingWrite barrier = new PendingWrite(null, false, true);
+        if (m_shutdown) {
+            reject(barrier);
+            return barrier.m_future;
+        }
+        enqueue(barrier);
+        return barrier.m_future;
+    }
+
+    private void enqueue(PendingWrite write) {
+        m_queue.offer(write);
+        // An offer which passed the shutdown check may land after the writer's final drain,
+        // in which case nobody else will ever look at the queue again
+        if (m_writerDone) {
+            rejectQueued();
+        }
+    }
+
+    private void rejectQueued() {
+        PendingWrite write;
+        while ((write = m_queue.poll()) != null) {
+            reject(write);
+        }
+    }
+
+    private static void reject(PendingWrite write) {
+        if (write.m_cont != null) {
+            write.m_cont.discard();
+        }
+        write.m_future.setException(new IOException("PBD writer has been shut down"));
+    }
+
+    /**
+     * Append and sync everything already queued and stop the writer thread.
+     * Objects offered after this call are rejected.
+     */
+    public void shutdown() throws InterruptedException {
+        m_shutdown = true;
+        m_queue.offer(m_shutdownRequest);
+        m_writer.join();
+    }
+
+    public long getSyncCount() {
+        return m_syncCount;
+    }
+
+    public long getObjectsWritten() {
+        return m_objectsWritten;
+    }
+
+    private void writerLoop() {
+        final List<PendingWrite> unsynced = new ArrayList<>();
+        long unsyncedBytes = 0;
+        long firstUnsyncedNanos = 0;
+        boolean done = false;
+        boolean interrupted = false;
+
+        while (!done) {
+            PendingWrite write;
+            try {
+                long waitNanos = unsynced.isEmpty() ? IDLE_WAIT_NANOS :
+                    Math.max(0, firstUnsyncedNanos + m_syncIntervalNanos - System.nanoTime());
+                write = m_queue.poll(waitNanos, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                // Treat an interrupt as a shutdown request, what is already queued is still
+                // appended and synced. The interrupt status is restored once the writer is done.
+                interrupted = true;
+                if (!m_shutdown) {
+                    m_shutdown = true;
+                    m_queue.offer(m_shutdownRequest);
+                }
+                continue;
+            }
+
+            boolean forceSync = false;
+            if (write != null) {
+                // Hold the deque monitor across the whole batch so that offers don't bounce it
+                synchronized (m_deque) {
+                    do {
+                        if (write.m_barrier) {
+                            // Everything offered before the barrier has been appended
+                            write.m_future.set(null);
+                            continue;
+                        }
+                        if (unsynced.isEmpty()) {
+                            firstUnsyncedNanos = System.nanoTime();
+                        }
+                        unsynced.add(write);
+                        if (write.m_cont == null) {
+                            forceSync = true;
+                            done = write == m_shutdownRequest;
+                            break;
+                        }
+                        try {
+                            m_deque.offer(write.m_cont, write.m_allowCompression);
+                            unsyncedBytes += write.m_size;
+                            m_objectsWritten++;
+                        } catch (Throwable t) {
+                            // A closed or full deque rejects the object without taking the container
+                            write.m_cont.discardIfOwned();
+                            unsynced.remove(unsynced.size() - 1);
+                            write.m_future.setException(t);
+                        }
+                    } while (unsyncedBytes < m_syncBytes && (write = m_queue.poll()) != null);
+                }
+            }
+
+            if (!unsynced.isEmpty() &&
+                    (forceSync || unsyncedBytes >= m_syncBytes ||
+                     System.nanoTime() - firstUnsyncedNanos >= m_syncIntervalNanos)) {
+                Throwable failure = null;
+                try {
+                    m_deque.sync();
+                    m_syncCount++;
+                } catch (Throwable t) {
+                    LOG.error("Failed to sync PBD", t);
+                    failure = t;
+                }
+                for (PendingWrite w : unsynced) {
+                    if (failure == null) {
+                        w.m_future.set(null);
+                    } else {
+                        w.m_future.setException(failure);
+                    }
+                }
+                unsynced.clear();
+                unsyncedBytes = 0;
+            }
+        }
+
+        // Reject anything which raced with shutdown, offers that arrive after this drain reject themselves
+        m_writerDone = true;
+        rejectQueued();
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -22,8 +22,12 @@ import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.voltcore.logging.VoltLogger;
 import org.voltcore.utils.DBBPool;
@@ -38,10 +42,17 @@ import com.google_voltpatches.common.base.Preconditions;
  * Segments only support appending objects. A segment will throw an IOException if an attempt
  * to insert an object that exceeds the remaining space is made. A segment can be used
  * for reading and writing, but not both at the same time.
+ *
+ * When PBD_MMAP_READS is enabled a segment which is only opened for reading is memory mapped.
+ * Uncompressed entries are then handed out as slices of the mapping instead of being read into
+ * a container, and compressed entries are decompressed straight out of the mapping. Slices stay
+ * readable if the segment is truncated while they are held, see detachFromMappedSlices().
  */
 public class PBDRegularSegment extends PBDSegment {
     private static final VoltLogger LOG = new VoltLogger("HOST");
 
+    static boolean MMAP_READS = Boolean.getBoolean("PBD_MMAP_READS");
+
     private final Map<String, SegmentReader> m_readCursors = new HashMap<>();
     private final Map<String, SegmentReader> m_closedCursors = new HashMap<>();
 
@@ -53,6 +64,53 @@ public class PBDRegularSegment extends PBDSegment {
 
     private DBBPool.BBContainer m_tmpHeaderBuf = null;
 
+    // true if the file is currently open in read/write mode
+    private boolean m_openForWrite = false;
+    // Read only mapping of the segment, only present when reading a sealed segment with PBD_MMAP_READS
+    private MappedSegment m_mapped = null;
+    // Mapping released by close() while readers still held slices of it
+    private MappedSegment m_retiredMapping = null;
+
+    /**
+     * Reference counted read only mapping of a segment file. The mapping is released once the segment
+     * is closed and every slice handed out by a reader has been discarded.
+     */
+    private static class MappedSegment {
+        private final DBBPool.MBBContainer m_mapping;
+        private final ByteBuffer m_buf;
+        // One reference for the segment plus one for every outstanding slice
+        private final AtomicInteger m_refs = new AtomicInteger(1);
+
+        private MappedSegment(ByteBuffer buf) {
+            m_mapping = DBBPool.wrapMBB(buf);
+            m_buf = buf;
+        }
+
+        private DBBPool.BBContainer slice(int offset, int length) {
+            final ByteBuffer dup = m_buf.duplicate();
+            dup.limit(offset + length);
+            dup.position(offset);
+            m_refs.incrementAndGet();
+            return new DBBPool.BBContainer(dup.slice()) {
+                @Override
+                public void discard() {
+                    checkDoubleFree();
+                    release();
+                }
+            };
+        }
+
+        private void release() {
+            if (m_refs.decrementAndGet() == 0) {
+                m_mapping.discard();
+            }
+        }
+
+        private boolean isReleased() {
+            return m_refs.get() == 0;
+        }
+    }
+
     public PBDRegularSegment(Long index, File file) {
         super(file);
         m_index = index;
@@ -124,6 +182,9 @@ public class PBDRegularSegment extends PBDSegment {
         if (m_closed) {
             open(false, false);
         }
+        if (MMAP_READS && !m_openForWrite && m_mapped == null) {
+            mapForRead();
+        }
         SegmentReader reader = new SegmentReader(cursorId);
         m_readCursors.put(cursorId, reader);
         return reader;
@@ -135,6 +196,25 @@ public class PBDRegularSegment extends PBDSegment {
         return (reader == null) ? m_readCursors.get(cursorId) : reader;
     }
 
+    private void mapForRead() throws IOException {
+        final long size = m_fc.size();
+        if (size <= SEGMENT_HEADER_BYTES) {
+            return;
+        }
+        final ByteBuffer buf = m_fc.map(MapMode.READ_ONLY, 0, size);
+        m_mapped = new MappedSegment(buf);
+        // Readers consume the segment front to back, let the kernel read ahead aggressively
+        try {
+            final long address = m_mapped.m_mapping.address();
+            final long retval = PosixAdvise.madvise(address, size, PosixAdvise.POSIX_MADV_SEQUENTIAL);
+            if (retval != 0) {
+                LOG.warn("Error madvising PBD segment " + m_file + ": " + retval);
+            }
+        } catch (Throwable t) {
+            LOG.warn("Error madvising PBD segment " + m_file, t);
+        }
+    }
+
     @Override
     protected void openForWrite(boolean emptyFile) throws IOException {
         open(true, emptyFile);
@@ -155,6 +235,7 @@ public class PBDRegularSegment extends PBDSegment {
         m_ras = new RandomAccessFile( m_file, forWrite ? "rw" : "r");
         m_fc = m_ras.getChannel();
         m_tmpHeaderBuf = DBBPool.allocateDirect(SEGMENT_HEADER_BYTES);
+        m_openForWrite = forWrite;
 
         if (emptyFile) {
             initNumEntries(0, 0);
@@ -209,8 +290,52 @@ public class PBDRegularSegment extends PBDSegment {
         m_size = -1;
     }
 
+    /**
+     * Is a slice of a mapping of this file still held by a reader?
+     */
+    private boolean hasMappedSlices() {
+        return (m_mapped != null && m_mapped.m_refs.get() > 1)
+                || (m_retiredMapping != null && !m_retiredMapping.isReleased());
+    }
+
+    /**
+     * Shrinking a file under a live mapping makes any access to the pages cut off fault (SIGBUS).
+     * If readers still hold slices of this segment, replace the file with a copy, or with an empty
+     * file when the contents are about to be thrown away. The slices keep the unlinked original
+     * alive until they are discarded, and the segment is free to truncate the replacement.
+     */
+    private void detachFromMappedSlices(boolean keepContents) throws IOException {
+        if (!hasMappedSlices()) {
+            return;
+        }
+        if (!m_closed) {
+            close();
+        }
+        final File replacement = new File(m_file.getPath() + ".tmp");
+        if (keepContents) {
+            Files.copy(m_file.toPath(), replacement.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } else {
+            Files.deleteIfExists(replacement.toPath());
+            Files.createFile(replacement.toPath());
+        }
+        Files.move(replacement.toPath(), m_file.toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        m_retiredMapping = null;
+    }
+
+    @Override
+    int parseAndTruncate(BinaryDeque.BinaryDequeTruncator truncator) throws IOException {
+        detachFromMappedSlices(true);
+        return super.parseAndTruncate(truncator);
+    }
+
     @Override
     public void closeAndTruncate() throws IOException {
+        detachFromMappedSlices(false);
+        if (!m_closed && !m_openForWrite) {
+            // a file opened for reading can't be truncated through its own handle
+            closeReadersAndFile();
+        }
         try
         {
             if (m_ras == null) {
@@ -245,6 +370,14 @@ public class PBDRegularSegment extends PBDSegment {
             m_ras = null;
             m_fc = null;
             m_closed = true;
+            m_openForWrite = false;
+            if (m_mapped != null) {
+                m_mapped.release();
+                if (!m_mapped.isReleased()) {
+                    m_retiredMapping = m_mapped;
+                }
+                m_mapped = null;
+            }
             reset();
         }
     }
@@ -409,6 +542,10 @@ public class PBDRegularSegment extends PBDSegment {
                 return null;
             }
 
+            if (m_mapped != null) {
+                return pollMapped(factory);
+            }
+
             final long writePos = m_fc.position();
             m_fc.position(m_readOffset);
 
@@ -466,28 +603,72 @@ public class PBDRegularSegment extends PBDSegment {
                 m_bytesRead += uncompressedLen;
                 m_objectReadIndex++;
 
-                return new DBBPool.BBContainer(retcont.b()) {
-                    private boolean m_discarded = false;
-
-                    @Override
-                    public void discard() {
-                        checkDoubleFree();
-                        if (m_discarded) {
-                            LOG.error("PBD Container discarded more than once");
-                            return;
-                        }
-
-                        m_discarded = true;
-                        retcont.discard();
-                        m_discardCount++;
-                    }
-                };
+                return wrapForDiscard(retcont);
             } finally {
                 m_readOffset = m_fc.position();
                 m_fc.position(writePos);
             }
         }
 
+        private BBContainer pollMapped(OutputContainerFactory factory) throws IOException {
+            final ByteBuffer mapped = m_mapped.m_buf;
+            if (m_readOffset + OBJECT_HEADER_BYTES > mapped.limit()) {
+                throw new EOFException();
+            }
+            final int headerOffset = (int) m_readOffset;
+            final int length = mapped.getInt(headerOffset);
+            final int flags = mapped.getInt(headerOffset + 4);
+            final boolean compressed = (flags & FLAG_COMPRESSED) != 0;
+            final int dataOffset = headerOffset + OBJECT_HEADER_BYTES;
+
+            if (length < 1) {
+                throw new IOException("Read an invalid length");
+            }
+            if (dataOffset + length > mapped.limit()) {
+                throw new EOFException();
+            }
+
+            final int uncompressedLen;
+            final DBBPool.BBContainer retcont;
+            if (compressed) {
+                final ByteBuffer compressedBuf = mapped.duplicate();
+                compressedBuf.limit(dataOffset + length);
+                compressedBuf.position(dataOffset);
+                uncompressedLen = CompressionService.uncompressedLength(compressedBuf.slice());
+                retcont = factory.getContainer(uncompressedLen);
+                retcont.b().limit(uncompressedLen);
+                CompressionService.decompressBuffer(compressedBuf.slice(), retcont.b());
+            } else {
+                uncompressedLen = length;
+                retcont = m_mapped.slice(dataOffset, length);
+            }
+
+            m_readOffset = dataOffset + length;
+            m_bytesRead += uncompressedLen;
+            m_objectReadIndex++;
+
+            return wrapForDiscard(retcont);
+        }
+
+        private BBContainer wrapForDiscard(final BBContainer retcont) {
+            return new DBBPool.BBContainer(retcont.b()) {
+                private boolean m_discarded = false;
+
+                @Override
+                public void discard() {
+                    checkDoubleFree();
+                    if (m_discarded) {
+                        LOG.error("PBD Container discarded more than once");
+                        return;
+                    }
+
+                    m_discarded = true;
+                    retcont.discard();
+                    m_discardCount++;
+                }
+            };
+        }
+
         @Override
         public int uncompressedBytesToRead() {
             if (m_closed) throw new RuntimeException("Reader closed");
@@ -0,0 +1,423 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2019 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+#include <set>
+#include <sstream>
+#include <string>
+#include <tuple>
+#include <vector>
+
+#include <boost/foreach.hpp>
+#include <boost/optional.hpp>
+#include <boost/unordered_map.hpp>
+
+#include "harness.h"
+
+#include "test_utils/LargeTempTableTopend.hpp"
+#include "test_utils/Tools.hpp"
+#include "test_utils/UniqueEngine.hpp"
+
+#include "common/executorcontext.hpp"
+#include "common/tabletuple.h"
+#include "execution/ExecutorVector.h"
+#include "executors/abstractexecutor.h"
+#include "executors/hashjoinexecutor.h"
+#include "plannodes/hashjoinnode.h"
+#include "storage/AbstractTempTable.hpp"
+#include "storage/table.h"
+#include "storage/tableiterator.h"
+
+using namespace voltdb;
+
+namespace {
+
+// Catalog for the following DDL:
+//
+// CREATE TABLE O (ID INTEGER NOT NULL, K INTEGER, S VARCHAR(64));
+// CREATE TABLE I (ID INTEGER NOT NULL, K INTEGER, S VARCHAR(64));
+// PARTITION TABLE O ON COLUMN ID;
+// PARTITION TABLE I ON COLUMN ID;
+//
+// S is long enough not to be inlined.
+std::string tableCatalog(const std::string& name) {
+    const std::string table = "/clusters#cluster/databases#database/tables#" + name;
+    std::ostringstream oss;
+    oss << "add /clusters#cluster/databases#database tables " << name << "\n"
+        << "set " << table << " isreplicated false\n"
+        << "set $PREV partitioncolumn " << table << "/columns#ID\n"
+        << "set $PREV estimatedtuplecount 0\n"
+        << "set $PREV materializer null\n"
+        << "set $PREV signature \"" << name << "|iiv\"\n"
+        << "set $PREV tuplelimit 2147483647\n"
+        << "set $PREV isDRed false\n";
+    const char* columns[] = { "ID", "K", "S" };
+    for (int i = 0; i < 3; i++) {
+        oss << "add " << table << " columns " << columns[i] << "\n"
+            << "set " << table << "/columns#" << columns[i] << " index " << i << "\n"
+            << "set $PREV type " << (i == 2 ? VALUE_TYPE_VARCHAR : VALUE_TYPE_INTEGER) << "\n"
+            << "set $PREV size " << (i == 2 ? 64 : 4) << "\n"
+            << "set $PREV nullable " << (i == 0 ? "false" : "true") << "\n"
+            << "set $PREV name \"" << columns[i] << "\"\n"
+            << "set $PREV defaultvalue null\n"
+            << "set $PREV defaulttype 0\n"
+            << "set $PREV aggregatetype 0\n"
+            << "set $PREV matviewsource null\n"
+            << "set $PREV matview null\n"
+            << "set $PREV inbytes false\n";
+    }
+    return oss.str();
+}
+
+const std::string catalogPayload =
+    "add / clusters cluster\n"
+    "set /clusters#cluster localepoch 1199145600\n"
+    "set $PREV securityEnabled false\n"
+    "set $PREV httpdportno -1\n"
+    "set $PREV jsonapi true\n"
+    "set $PREV networkpartition false\n"
+    "set $PREV heartbeatTimeout 90\n"
+    "set $PREV useddlschema false\n"
+    "set $PREV drConsumerEnabled false\n"
+    "set $PREV drProducerEnabled true\n"
+    "set $PREV drRole \"master\"\n"
+    "set $PREV drClusterId 0\n"
+    "set $PREV drProducerPort 5555\n"
+    "set $PREV drMasterHost \"\"\n"
+    "set $PREV drFlushInterval 1000\n"
+    "set $PREV preferredSource 0\n"
+    "add /clusters#cluster databases database\n"
+    "set /clusters#cluster/databases#database isActiveActiveDRed false\n"
+    "set $PREV securityprovider \"hash\"\n"
+    + tableCatalog("O")
+    + tableCatalog("I") +
+    "add /clusters#cluster deployment deployment\n"
+    "set /clusters#cluster/deployment#deployment kfactor 0\n"
+    "add /clusters#cluster/deployment#deployment systemsettings systemsettings\n"
+    "set /clusters#cluster/deployment#deployment/systemsettings#systemsettings temptablemaxsize 100\n"
+    "set $PREV snapshotpriority 6\n"
+    "set $PREV elasticduration 50\n"
+    "set $PREV elasticthroughput 2\n"
+    "set $PREV querytimeout 10000\n";
+
+std::string columnJson(int index, bool inner) {
+    std::ostringstream oss;
+    oss << "{\"TYPE\":" << EXPRESSION_TYPE_VALUE_TUPLE
+        << ",\"VALUE_TYPE\":" << (index % 3 == 2 ? VALUE_TYPE_VARCHAR : VALUE_TYPE_INTEGER);
+    if (index % 3 == 2) {
+        oss << ",\"VALUE_SIZE\":64";
+    }
+    oss << ",\"COLUMN_IDX\":" << index;
+    if (inner) {
+        oss << ",\"TABLE_IDX\":1";
+    }
+    oss << "}";
+    return oss.str();
+}
+
+// The plan for
+//
+// SELECT * FROM O <joinType> JOIN I ON O.<key> = I.<key>;
+//
+// with the key being K (column 1) or S (column 2).
+std::string hashJoinPlan(const std::string& joinType, int keyColumn) {
+    const char* names[] = { "O_ID", "O_K", "O_S", "I_ID", "I_K", "I_S" };
+    std::ostringstream oss;
+    oss << "{\"PLAN_NODES\":["
+        << "{\"ID\":1,\"PLAN_NODE_TYPE\":\"HASHJOIN\",\"CHILDREN_IDS\":[2,3],\"OUTPUT_SCHEMA\":[";
+    for (int i = 0; i < 6; i++) {
+        oss << (i == 0 ? "" : ",")
+            << "{\"COLUMN_NAME\":\"" << names[i] << "\",\"EXPRESSION\":" << columnJson(i, false) << "}";
+    }
+    oss << "],\"JOIN_TYPE\":\"" << joinType << "\",\"PRE_JOIN_PREDICATE\":null"
+        << ",\"JOIN_PREDICATE\":{\"TYPE\":" << EXPRESSION_TYPE_COMPARE_EQUAL
+        << ",\"VALUE_TYPE\":" << VALUE_TYPE_BOOLEAN
+        << ",\"LEFT\":" << columnJson(keyColumn, false)
+        << ",\"RIGHT\":" << columnJson(keyColumn, true) << "}"
+        << ",\"WHERE_PREDICATE\":null"
+        << ",\"OUTER_HASH_KEYS\":[" << columnJson(keyColumn, false) << "]"
+        << ",\"INNER_HASH_KEYS\":[" << columnJson(keyColumn, true) << "]},"
+        << "{\"ID\":2,\"PLAN_NODE_TYPE\":\"SEQSCAN\",\"TARGET_TABLE_NAME\":\"O\",\"TARGET_TABLE_ALIAS\":\"O\"},"
+        << "{\"ID\":3,\"PLAN_NODE_TYPE\":\"SEQSCAN\",\"TARGET_TABLE_NAME\":\"I\",\"TARGET_TABLE_ALIAS\":\"I\"}"
+        << "],\"EXECUTE_LIST\":[2,3,1]}";
+    return oss.str();
+}
+
+typedef std::tuple<int32_t, boost::optional<int32_t>, boost::optional<std::string>> Row;
+
+void loadTable(Table* table, const std::vector<Row>& rows) {
+    StandAloneTupleStorage storage(table->schema());
+    TableTuple tuple = storage.tuple();
+    BOOST_FOREACH(const Row& row, rows) {
+        Tools::initTuple(&tuple, row);
+        table->insertTuple(tuple);
+    }
+}
+
+std::string cellString(const boost::optional<int32_t>& value) {
+    if (! value) {
+        return "null";
+    }
+    std::ostringstream oss;
+    oss << *value;
+    return oss.str();
+}
+
+std::string cellString(const boost::optional<std::string>& value) {
+    return value ? *value : "null";
+}
+
+std::string rowString(const Row& row) {
+    return cellString(std::get<0>(row)) + "|" + cellString(std::get<1>(row)) + "|" + cellString(std::get<2>(row));
+}
+
+const std::string NULL_ROW = "null|null|null";
+
+/** The join result computed the slow way, one row per string */
+std::multiset<std::string> expectedJoin(const std::vector<Row>& outer, const std::vector<Row>& inner,
+                                        int keyColumn, bool left) {
+    boost::unordered_multimap<std::string, const Row*> innerByKey;
+    BOOST_FOREACH(const Row& innerRow, inner) {
+        std::string key = keyColumn == 1 ? cellString(std::get<1>(innerRow)) : cellString(std::get<2>(innerRow));
+        if (key != "null") {
+            innerByKey.insert(std::make_pair(key, &innerRow));
+        }
+    }
+    std::multiset<std::string> expected;
+    BOOST_FOREACH(const Row& outerRow, outer) {
+        std::string key = keyColumn == 1 ? cellString(std::get<1>(outerRow)) : cellString(std::get<2>(outerRow));
+        bool matched = false;
+        if (key != "null") {
+            auto range = innerByKey.equal_range(key);
+            for (auto it = range.first; it != range.second; ++it) {
+                expected.insert(rowString(outerRow) + "|" + rowString(*it->second));
+                matched = true;
+            }
+        }
+        if (left && ! matched) {
+            expected.insert(rowString(outerRow) + "|" + NULL_ROW);
+        }
+    }
+    return expected;
+}
+
+std::multiset<std::string> actualJoin(const Table* result) {
+    std::multiset<std::string> actual;
+    TableTuple tuple(result->schema());
+    TableIterator iter = const_cast<Table*>(result)->iterator();
+    while (iter.next(tuple)) {
+        std::string row;
+        for (int i = 0; i < tuple.getSchema()->columnCount(); i++) {
+            row += (i == 0 ? "" : "|") + tuple.getNValue(i).toString();
+        }
+        actual.insert(row);
+    }
+    return actual;
+}
+
+// A few outer rows have no match, a few match more than one inner row,
+// and each side has NULL keys which must not match each other.
+const std::vector<Row> outerRows{
+    Row{1, 10,          std::string("ten")},
+    Row{2, 20,          std::string("twenty")},
+    Row{3, 30,          std::string("thirty")},
+    Row{4, boost::none, boost::none},
+    Row{5, 50,          std::string("fifty")},
+    Row{6, 10,          std::string("ten")},
+    Row{7, boost::none, std::string("seventy")},
+    Row{8, 80,          boost::none}
+};
+
+const std::vector<Row> innerRows{
+    Row{101, 10,          std::string("ten")},
+    Row{102, 10,          std::string("ten")},
+    Row{103, 30,          std::string("thirty")},
+    Row{104, boost::none, boost::none},
+    Row{105, 40,          std::string("forty")},
+    Row{106, boost::none, std::string("seventy")},
+    Row{107, 80,          boost::none},
+    Row{108, 20,          std::string("twenty-one")}
+};
+
+}
+
+class HashJoinExecutorTest : public Test {
+public:
+    ~HashJoinExecutorTest() {
+        voltdb::globalDestroyOncePerProcess();
+    }
+
+protected:
+    std::multiset<std::string> runJoin(VoltDBEngine* engine, const std::string& joinType, int keyColumn) {
+        auto ev = ExecutorVector::fromJsonPlan(engine, hashJoinPlan(joinType, keyColumn), 0);
+        UniqueTempTableResult result = engine->executePlanFragment(ev.get(), NULL);
+        std::multiset<std::string> actual = actualJoin(result.get());
+        ExecutorContext::getExecutorContext()->cleanupAllExecutors();
+        return actual;
+    }
+};
+
+TEST_F(HashJoinExecutorTest, verifyPlan) {
+    UniqueEngine engine = UniqueEngineBuilder().build();
+    ASSERT_TRUE(engine->loadCatalog(0, catalogPayload));
+
+    auto ev = ExecutorVector::fromJsonPlan(engine.get(), hashJoinPlan("LEFT", 1), 0);
+    ASSERT_NE(NULL, ev.get());
+    auto execList = ev->getExecutorList();
+    ASSERT_EQ(3, execList.size());
+
+    HashJoinPlanNode* node = dynamic_cast<HashJoinPlanNode*>(execList[2]->getPlanNode());
+    ASSERT_NE(NULL, node);
+    ASSERT_EQ(JOIN_TYPE_LEFT, node->getJoinType());
+    ASSERT_EQ(1, node->getOuterHashKeys().size());
+    ASSERT_EQ(1, node->getInnerHashKeys().size());
+    ASSERT_NE(NULL, dynamic_cast<HashJoinExecutor*>(execList[2]));
+}
+
+TEST_F(HashJoinExecutorTest, innerJoinIntegerKey) {
+    UniqueEngine engine = UniqueEngineBuilder().build();
+    ASSERT_TRUE(engine->loadCatalog(0, catalogPayload));
+    loadTable(engine->getTableByName("O"), outerRows);
+    loadTable(engine->getTableByName("I"), innerRows);
+
+    std::multiset<std::string> actual = runJoin(engine.get(), "INNER", 1);
+    ASSERT_TRUE(expectedJoin(outerRows, innerRows, 1, false) == actual);
+    // Outer rows 1 and 6 match two inner rows each, 3 and 8 one, and 2 its one inner row
+    ASSERT_EQ(7, actual.size());
+    // NULL keys never match, not even each other
+    BOOST_FOREACH(const std::string& row, actual) {
+        ASSERT_EQ(std::string::npos, row.find("|null|null|null|"));
+        ASSERT_NE(0, row.find("4|"));
+    }
+
+    // Executing again gives the same answer, so the hash table is released
+    ASSERT_TRUE(actual == runJoin(engine.get(), "INNER", 1));
+}
+
+TEST_F(HashJoinExecutorTest, innerJoinStringKey) {
+    UniqueEngine engine = UniqueEngineBuilder().build();
+    ASSERT_TRUE(engine->loadCatalog(0, catalogPayload));
+    loadTable(engine->getTableByName("O"), outerRows);
+    loadTable(engine->getTableByName("I"), innerRows);
+
+    std::multiset<std::string> actual = runJoin(engine.get(), "INNER", 2);
+    ASSERT_TRUE(expectedJoin(outerRows, innerRows, 2, false) == actual);
+    // "twenty" doesn't match "twenty-one", and the NULL strings of rows 8 and 107 don't match
+    ASSERT_EQ(6, actual.size());
+}
+
+TEST_F(HashJoinExecutorTest, leftJoinPadsUnmatchedRows) {
+    UniqueEngine engine = UniqueEngineBuilder().build();
+    ASSERT_TRUE(engine->loadCatalog(0, catalogPayload));
+    loadTable(engine->getTableByName("O"), outerRows);
+    loadTable(engine->getTableByName("I"), innerRows);
+
+    for (int keyColumn = 1; keyColumn <= 2; keyColumn++) {
+        std::multiset<std::string> actual = runJoin(engine.get(), "LEFT", keyColumn);
+        ASSERT_TRUE(expectedJoin(outerRows, innerRows, keyColumn, true) == actual);
+    }
+
+    // Outer rows 4 and 7 have a NULL key and 5 has no match, each is padded exactly once
+    std::multiset<std::string> actual = runJoin(engine.get(), "LEFT", 1);
+    ASSERT_EQ(1, actual.count("4|null|null|" + NULL_ROW));
+    ASSERT_EQ(1, actual.count("5|50|fifty|" + NULL_ROW));
+    ASSERT_EQ(1, actual.count("7|null|seventy|" + NULL_ROW));
+    ASSERT_EQ(10, actual.size());
+}
+
+TEST_F(HashJoinExecutorTest, emptyInner) {
+    UniqueEngine engine = UniqueEngineBuilder().build();
+    ASSERT_TRUE(engine->loadCatalog(0, catalogPayload));
+    loadTable(engine->getTableByName("O"), outerRows);
+
+    ASSERT_EQ(0, runJoin(engine.get(), "INNER", 1).size());
+    std::multiset<std::string> actual = runJoin(engine.get(), "LEFT", 1);
+    ASSERT_TRUE(expectedJoin(outerRows, std::vector<Row>(), 1, true) == actual);
+    ASSERT_EQ(outerRows.size(), actual.size());
+}
+
+// The hash table for the inner input doesn't fit in the temp table limit,
+// so the inner input is split into large temp table partitions which are
+// joined one at a time.
+TEST_F(HashJoinExecutorTest, spillToLargeTempTablePartitions) {
+    // An LTT block cache that can hold three blocks, and a hash table limit of the same size
+    UniqueEngine engine = UniqueEngineBuilder()
+        .setTopend(std::unique_ptr<Topend>(new LargeTempTableTopend()))
+        .setTempTableMemoryLimit(24 * 1024 * 1024)
+        .build();
+    ASSERT_TRUE(engine->loadCatalog(0, catalogPayload));
+
+    // More inner rows than hash table entries fit in the limit. Every
+    // tenth row has a non-inlined string, which must survive the copy
+    // out of the partition blocks. The last rows repeat some keys.
+    const int innerCount = 550000;
+    std::vector<Row> inner;
+    inner.reserve(innerCount + 100);
+    for (int i = 0; i < innerCount; i++) {
+        boost::optional<std::string> s;
+        if (i % 10 == 0) {
+            std::ostringstream oss;
+            oss << "inner " << i;
+            s = oss.str();
+        }
+        inner.push_back(Row{i, i, s});
+    }
+    for (int i = 0; i < 100; i++) {
+        inner.push_back(Row{innerCount + i, i * 200, boost::none});
+    }
+
+    // Outer keys beyond the inner ones have no match, and some are NULL
+    std::vector<Row> outer;
+    for (int i = 0; i < 3000; i++) {
+        boost::optional<int32_t> k;
+        if (i % 7 != 3) {
+            k = i * 200;
+        }
+        outer.push_back(Row{i, k, std::string("outer")});
+    }
+
+    loadTable(engine->getTableByName("O"), outer);
+    loadTable(engine->getTableByName("I"), inner);
+
+    for (int left = 0; left <= 1; left++) {
+        std::multiset<std::string> actual = runJoin(engine.get(), left ? "LEFT" : "INNER", 1);
+        std::multiset<std::string> expected = expectedJoin(outer, inner, 1, left);
+        ASSERT_EQ(expected.size(), actual.size());
+        ASSERT_TRUE(expected == actual);
+
+        // The partitions are released once the join is done
+        LargeTempTableBlockCache* lttBlockCache = ExecutorContext::getExecutorContext()->lttBlockCache();
+        ASSERT_EQ(0, lttBlockCache->totalBlockCount());
+        ASSERT_EQ(0, lttBlockCache->allocatedMemory());
+    }
+
+    // The outer rows with a NULL key or no match are padded once, not once per partition
+    std::multiset<std::string> actual = runJoin(engine.get(), "LEFT", 1);
+    ASSERT_EQ(1, actual.count("3|null|outer|" + NULL_ROW));
+    ASSERT_EQ(1, actual.count("2998|599600|outer|" + NULL_ROW));
+    ASSERT_EQ(0, actual.count("1|200|outer|" + NULL_ROW));
+    ASSERT_EQ(2, actual.count("1|200|outer|200|200|inner 200") + actual.count("1|200|outer|550001|200|null"));
+}
+
+int main() {
+    return TestSuite::globalInstance()->runAll();
+}
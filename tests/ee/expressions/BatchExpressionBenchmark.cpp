@@ -0,0 +1,191 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2019 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+#include <cstdio>
+#include <cstdlib>
+#include <cstring>
+#include <sys/time.h>
+#include <vector>
+#include <boost/scoped_ptr.hpp>
+
+#include "harness.h"
+#include "common/NValue.hpp"
+#include "common/ValueFactory.hpp"
+#include "common/tabletuple.h"
+#include "expressions/batchexpression.h"
+#include "expressions/comparisonexpression.h"
+#include "expressions/conjunctionexpression.h"
+#include "expressions/constantvalueexpression.h"
+#include "expressions/operatorexpression.h"
+#include "expressions/tuplevalueexpression.h"
+
+using namespace voltdb;
+using namespace std;
+
+/**
+ * Scan and filter throughput of a table of fixed width columns, evaluating
+ * the predicate row by row through eval(), the way the executors did, and a
+ * batch at a time through BatchExpression.  A projection of an arithmetic
+ * expression over the selected tuples is timed the same way.
+ */
+
+static const int COLUMN_COUNT = 8;
+
+static int64_t getMicrosNow() {
+    timeval tv;
+    gettimeofday(&tv, NULL);
+    return tv.tv_sec * 1000000 + tv.tv_usec;
+}
+
+static AbstractExpression *col(int column) {
+    return new TupleValueExpression(0, column);
+}
+
+static AbstractExpression *bigint(int64_t value) {
+    return new ConstantValueExpression(ValueFactory::getBigIntValue(value));
+}
+
+static void runBenchmark(const char *name, AbstractExpression *predicate, AbstractExpression *projection,
+                         TupleSchema *schema, const vector<char*> &tuples, int passes) {
+    boost::scoped_ptr<AbstractExpression> predicateOwner(predicate);
+    boost::scoped_ptr<AbstractExpression> projectionOwner(projection);
+    boost::scoped_ptr<BatchExpression> batchPredicate(BatchExpression::compilePredicate(predicate, schema));
+    boost::scoped_ptr<BatchExpression> batchProjection(BatchExpression::compileProjection(projection, schema));
+    if (batchPredicate == NULL || batchProjection == NULL ||
+            ! batchPredicate->bind() || ! batchProjection->bind()) {
+        printf("%s: does not compile for batches\n", name);
+        return;
+    }
+    const int tupleCount = static_cast<int>(tuples.size());
+
+    TableTuple tuple(schema);
+    int64_t rowChecksum = 0;
+    int64_t start = getMicrosNow();
+    for (int pass = 0; pass < passes; pass++) {
+        for (int i = 0; i < tupleCount; i++) {
+            tuple.move(tuples[i]);
+            if (predicate->eval(&tuple, NULL).isTrue()) {
+                rowChecksum += ValuePeeker::peekAsBigInt(projection->eval(&tuple, NULL));
+            }
+        }
+    }
+    int64_t rowMicros = getMicrosNow() - start;
+
+    int selected[BatchExpression::BATCH_SIZE];
+    int64_t batchChecksum = 0;
+    start = getMicrosNow();
+    for (int pass = 0; pass < passes; pass++) {
+        for (int first = 0; first < tupleCount; first += BatchExpression::BATCH_SIZE) {
+            int count = std::min(tupleCount - first, static_cast<int>(BatchExpression::BATCH_SIZE));
+            int found = batchPredicate->filter(&tuples[first], count, selected);
+            batchProjection->evaluate(&tuples[first], selected, found);
+            for (int j = 0; j < found; j++) {
+                batchChecksum += ValuePeeker::peekAsBigInt(batchProjection->valueAt(j));
+            }
+        }
+    }
+    int64_t batchMicros = getMicrosNow() - start;
+
+    const double scanned = static_cast<double>(tupleCount) * passes;
+    printf("%-28s row by row %7.2f ns/tuple, batch %7.2f ns/tuple, speedup %.1fx%s\n",
+           name, rowMicros * 1000.0 / scanned, batchMicros * 1000.0 / scanned,
+           static_cast<double>(rowMicros) / batchMicros,
+           rowChecksum == batchChecksum ? "" : " (RESULTS DIFFER)");
+}
+
+int main(int argc, char *argv[]) {
+    if (argc < 2 || *argv[1] == '-') {
+        printf("To run the benchmark, execute %s with command line arguments "
+               "(tuple_count<int>, [passes<int>])\n", argv[0]);
+        return 0;
+    }
+    int tupleCount = std::atoi(argv[1]);
+    int passes = argc > 2 ? std::atoi(argv[2]) : 10;
+
+    // A wide row of mixed fixed width columns, 10% NULLs in each
+    vector<ValueType> columnTypes;
+    for (int i = 0; i < COLUMN_COUNT; i++) {
+        columnTypes.push_back(i % 3 == 0 ? VALUE_TYPE_BIGINT : (i % 3 == 1 ? VALUE_TYPE_INTEGER : VALUE_TYPE_DOUBLE));
+    }
+    vector<int32_t> columnLengths;
+    for (int i = 0; i < COLUMN_COUNT; i++) {
+        columnLengths.push_back(NValue::getTupleStorageSize(columnTypes[i]));
+    }
+    vector<bool> columnAllowNull(COLUMN_COUNT, true);
+    TupleSchema *schema = TupleSchema::createTupleSchemaForTest(columnTypes,
+                                                                columnLengths,
+                                                                columnAllowNull);
+
+    TableTuple tuple(schema);
+    const int tupleLength = tuple.tupleLength();
+    char *data = new char[static_cast<size_t>(tupleCount) * tupleLength];
+    memset(data, 0, static_cast<size_t>(tupleCount) * tupleLength);
+    vector<char*> tuples;
+    srand(0);
+    for (int i = 0; i < tupleCount; i++) {
+        tuples.push_back(data + static_cast<size_t>(i) * tupleLength);
+        tuple.move(tuples.back());
+        for (int c = 0; c < COLUMN_COUNT; c++) {
+            if (rand() % 10 == 0) {
+                tuple.setNValue(c, NValue::getNullValue(columnTypes[c]));
+            }
+            else if (columnTypes[c] == VALUE_TYPE_DOUBLE) {
+                tuple.setNValue(c, ValueFactory::getDoubleValue((rand() % 10000) / 10.0));
+            }
+            else if (columnTypes[c] == VALUE_TYPE_INTEGER) {
+                tuple.setNValue(c, ValueFactory::getIntegerValue(rand() % 1000));
+            }
+            else {
+                tuple.setNValue(c, ValueFactory::getBigIntValue(rand() % 1000));
+            }
+        }
+    }
+
+    printf("%d tuples of %d bytes, %d passes\n", tupleCount, tupleLength, passes);
+    // WHERE c0 > 500: about half selected
+    runBenchmark("c0 > 500",
+                 new ComparisonExpression<CmpGt>(EXPRESSION_TYPE_COMPARE_GREATERTHAN, col(0), bigint(500)),
+                 new OperatorExpression<OpPlus>(EXPRESSION_TYPE_OPERATOR_PLUS, col(3), col(4)),
+                 schema, tuples, passes);
+    // WHERE c0 > 100 AND c1 < 200 AND c2 >= c5: a few percent selected
+    runBenchmark("c0 > 100 AND c1 < 200 ...",
+                 new ConjunctionExpression<ConjunctionAnd>(EXPRESSION_TYPE_CONJUNCTION_AND,
+                     new ConjunctionExpression<ConjunctionAnd>(EXPRESSION_TYPE_CONJUNCTION_AND,
+                         new ComparisonExpression<CmpGt>(EXPRESSION_TYPE_COMPARE_GREATERTHAN, col(0), bigint(100)),
+                         new ComparisonExpression<CmpLt>(EXPRESSION_TYPE_COMPARE_LESSTHAN, col(1), bigint(200))),
+                     new ComparisonExpression<CmpGte>(EXPRESSION_TYPE_COMPARE_GREATERTHANOREQUALTO, col(2), col(5))),
+                 new OperatorExpression<OpMultiply>(EXPRESSION_TYPE_OPERATOR_MULTIPLY, col(6), col(7)),
+                 schema, tuples, passes);
+    // WHERE c3 + c4 * 2 > c6: arithmetic in the predicate
+    runBenchmark("c3 + c4 * 2 > c6",
+                 new ComparisonExpression<CmpGt>(EXPRESSION_TYPE_COMPARE_GREATERTHAN,
+                     new OperatorExpression<OpPlus>(EXPRESSION_TYPE_OPERATOR_PLUS, col(3),
+                         new OperatorExpression<OpMultiply>(EXPRESSION_TYPE_OPERATOR_MULTIPLY, col(4), bigint(2))),
+                     col(6)),
+                 new OperatorExpression<OpMinus>(EXPRESSION_TYPE_OPERATOR_MINUS, col(0), col(1)),
+                 schema, tuples, passes);
+
+    delete[] data;
+    TupleSchema::freeTupleSchema(schema);
+    return 0;
+}
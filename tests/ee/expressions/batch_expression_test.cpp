@@ -0,0 +1,350 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2019 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+#include <cstdlib>
+#include <vector>
+#include <boost/scoped_array.hpp>
+#include <boost/scoped_ptr.hpp>
+
+#include "harness.h"
+
+#include "common/SQLException.h"
+#include "common/TupleSchema.h"
+#include "common/ValueFactory.hpp"
+#include "common/ValuePeeker.hpp"
+#include "common/tabletuple.h"
+#include "expressions/batchexpression.h"
+#include "expressions/comparisonexpression.h"
+#include "expressions/conjunctionexpression.h"
+#include "expressions/constantvalueexpression.h"
+#include "expressions/operatorexpression.h"
+#include "expressions/tuplevalueexpression.h"
+
+using namespace std;
+using namespace voltdb;
+
+namespace {
+
+const int TUPLE_COUNT = 3000;
+
+enum Column {
+    COL_TINYINT,
+    COL_INTEGER,
+    COL_BIGINT,
+    COL_DOUBLE,
+    COL_TIMESTAMP,
+    COL_VARCHAR
+};
+
+AbstractExpression* col(int column) {
+    return new TupleValueExpression(0, column);
+}
+
+AbstractExpression* constant(const NValue& value) {
+    return new ConstantValueExpression(value);
+}
+
+AbstractExpression* bigint(int64_t value) {
+    return constant(ValueFactory::getBigIntValue(value));
+}
+
+template <typename OP>
+AbstractExpression* arith(ExpressionType type, AbstractExpression* left, AbstractExpression* right) {
+    return new OperatorExpression<OP>(type, left, right);
+}
+
+template <typename CMP>
+AbstractExpression* cmp(ExpressionType type, AbstractExpression* left, AbstractExpression* right) {
+    return new ComparisonExpression<CMP>(type, left, right);
+}
+
+AbstractExpression* conjunctionAnd(AbstractExpression* left, AbstractExpression* right) {
+    return new ConjunctionExpression<ConjunctionAnd>(EXPRESSION_TYPE_CONJUNCTION_AND, left, right);
+}
+
+AbstractExpression* conjunctionOr(AbstractExpression* left, AbstractExpression* right) {
+    return new ConjunctionExpression<ConjunctionOr>(EXPRESSION_TYPE_CONJUNCTION_OR, left, right);
+}
+
+}
+
+class BatchExpressionTest : public Test {
+public:
+    BatchExpressionTest() {
+        vector<ValueType> types;
+        vector<int32_t> sizes;
+        types.push_back(VALUE_TYPE_TINYINT);
+        sizes.push_back(1);
+        types.push_back(VALUE_TYPE_INTEGER);
+        sizes.push_back(4);
+        types.push_back(VALUE_TYPE_BIGINT);
+        sizes.push_back(8);
+        types.push_back(VALUE_TYPE_DOUBLE);
+        sizes.push_back(8);
+        types.push_back(VALUE_TYPE_TIMESTAMP);
+        sizes.push_back(8);
+        types.push_back(VALUE_TYPE_VARCHAR);
+        sizes.push_back(16);
+        vector<bool> allowNull(types.size(), true);
+        m_schema = TupleSchema::createTupleSchemaForTest(types, sizes, allowNull);
+        m_tupleLength = m_schema->tupleLength() + TUPLE_HEADER_SIZE;
+        m_storage.reset(new char[TUPLE_COUNT * m_tupleLength]);
+        ::memset(m_storage.get(), 0, TUPLE_COUNT * m_tupleLength);
+
+        srand(1234);
+        TableTuple tuple(m_schema);
+        for (int i = 0; i < TUPLE_COUNT; ++i) {
+            char* address = m_storage.get() + i * m_tupleLength;
+            m_tuples.push_back(address);
+            tuple.move(address);
+            tuple.setNValue(COL_TINYINT, randomNull() ? NValue::getNullValue(VALUE_TYPE_TINYINT) :
+                            ValueFactory::getTinyIntValue(static_cast<int8_t>(rand() % 200 - 100)));
+            tuple.setNValue(COL_INTEGER, randomNull() ? NValue::getNullValue(VALUE_TYPE_INTEGER) :
+                            ValueFactory::getIntegerValue(rand() % 2000001 - 1000000));
+            // Mostly small values, with a few that overflow when added or multiplied
+            int64_t big = rand() % 100000 - 50000;
+            if (rand() % 50 == 0) {
+                big = rand() % 2 ? INT64_MAX - rand() % 10 : INT64_MIN + 1 + rand() % 10;
+            }
+            tuple.setNValue(COL_BIGINT, randomNull() ? NValue::getNullValue(VALUE_TYPE_BIGINT) :
+                            ValueFactory::getBigIntValue(big));
+            tuple.setNValue(COL_DOUBLE, randomNull() ? NValue::getNullValue(VALUE_TYPE_DOUBLE) :
+                            ValueFactory::getDoubleValue((rand() % 20001 - 10000) / 7.0));
+            tuple.setNValue(COL_TIMESTAMP, randomNull() ? NValue::getNullValue(VALUE_TYPE_TIMESTAMP) :
+                            ValueFactory::getTimestampValue(rand() % 1000000));
+            tuple.setNValue(COL_VARCHAR, NValue::getNullValue(VALUE_TYPE_VARCHAR));
+        }
+    }
+
+    ~BatchExpressionTest() {
+        TupleSchema::freeTupleSchema(m_schema);
+    }
+
+    static bool randomNull() {
+        return rand() % 10 == 0;
+    }
+
+    /**
+     * Run a predicate over all tuples in batches and check that each batch
+     * selects exactly the tuples eval() is true for, or throws when eval()
+     * throws for some tuple of the batch.
+     */
+    void checkPredicate(AbstractExpression* expression) {
+        boost::scoped_ptr<AbstractExpression> owner(expression);
+        boost::scoped_ptr<BatchExpression> batch(BatchExpression::compilePredicate(expression, m_schema));
+        ASSERT_TRUE(batch != NULL);
+        ASSERT_TRUE(batch->bind());
+
+        TableTuple tuple(m_schema);
+        int selected[BatchExpression::BATCH_SIZE];
+        for (int start = 0; start < TUPLE_COUNT; start += BatchExpression::BATCH_SIZE) {
+            const int count = std::min(TUPLE_COUNT - start, static_cast<int>(BatchExpression::BATCH_SIZE));
+            vector<int> expected;
+            bool expectThrow = false;
+            for (int k = 0; k < count; ++k) {
+                tuple.move(m_tuples[start + k]);
+                try {
+                    if (expression->eval(&tuple, NULL).isTrue()) {
+                        expected.push_back(k);
+                    }
+                }
+                catch (const SQLException&) {
+                    expectThrow = true;
+                }
+            }
+            int found = -1;
+            bool thrown = false;
+            try {
+                found = batch->filter(&m_tuples[start], count, selected);
+            }
+            catch (const SQLException&) {
+                thrown = true;
+            }
+            ASSERT_EQ(expectThrow, thrown);
+            if (thrown) {
+                continue;
+            }
+            ASSERT_EQ(expected.size(), found);
+            for (int j = 0; j < found; ++j) {
+                ASSERT_EQ(expected[j], selected[j]);
+            }
+        }
+    }
+
+    /**
+     * Evaluate a projection over every other tuple and compare each value
+     * with eval()'s.
+     */
+    void checkProjection(AbstractExpression* expression, bool expectThrow) {
+        boost::scoped_ptr<AbstractExpression> owner(expression);
+        boost::scoped_ptr<BatchExpression> batch(BatchExpression::compileProjection(expression, m_schema));
+        ASSERT_TRUE(batch != NULL);
+        ASSERT_TRUE(batch->bind());
+
+        TableTuple tuple(m_schema);
+        int rows[BatchExpression::BATCH_SIZE];
+        bool anyThrown = false;
+        for (int start = 0; start < TUPLE_COUNT; start += BatchExpression::BATCH_SIZE) {
+            const int available = std::min(TUPLE_COUNT - start, static_cast<int>(BatchExpression::BATCH_SIZE));
+            int count = 0;
+            for (int k = 0; k < available; k += 2) {
+                rows[count++] = k;
+            }
+            vector<NValue> expected;
+            bool batchThrows = false;
+            for (int j = 0; j < count; ++j) {
+                tuple.move(m_tuples[start + rows[j]]);
+                try {
+                    expected.push_back(expression->eval(&tuple, NULL));
+                }
+                catch (const SQLException&) {
+                    batchThrows = true;
+                    expected.push_back(NValue());
+                }
+            }
+            bool thrown = false;
+            try {
+                batch->evaluate(&m_tuples[start], rows, count);
+            }
+            catch (const SQLException&) {
+                thrown = true;
+            }
+            ASSERT_EQ(batchThrows, thrown);
+            anyThrown |= thrown;
+            if (thrown) {
+                continue;
+            }
+            for (int j = 0; j < count; ++j) {
+                const NValue actual = batch->valueAt(j);
+                ASSERT_EQ(expected[j].isNull(), actual.isNull());
+                if ( ! actual.isNull()) {
+                    ASSERT_EQ(ValuePeeker::peekValueType(expected[j]), ValuePeeker::peekValueType(actual));
+                    ASSERT_EQ(0, expected[j].compare(actual));
+                }
+            }
+        }
+        ASSERT_EQ(expectThrow, anyThrown);
+    }
+
+    TupleSchema* m_schema;
+    int m_tupleLength;
+    boost::scoped_array<char> m_storage;
+    vector<char*> m_tuples;
+};
+
+TEST_F(BatchExpressionTest, Comparisons) {
+    checkPredicate(cmp<CmpLt>(EXPRESSION_TYPE_COMPARE_LESSTHAN, col(COL_TINYINT), bigint(10)));
+    checkPredicate(cmp<CmpEq>(EXPRESSION_TYPE_COMPARE_EQUAL, col(COL_TINYINT), col(COL_TINYINT)));
+    checkPredicate(cmp<CmpNe>(EXPRESSION_TYPE_COMPARE_NOTEQUAL, col(COL_INTEGER), bigint(0)));
+    checkPredicate(cmp<CmpGte>(EXPRESSION_TYPE_COMPARE_GREATERTHANOREQUALTO, col(COL_BIGINT), col(COL_INTEGER)));
+    checkPredicate(cmp<CmpGt>(EXPRESSION_TYPE_COMPARE_GREATERTHAN, col(COL_DOUBLE), col(COL_TINYINT)));
+    checkPredicate(cmp<CmpLte>(EXPRESSION_TYPE_COMPARE_LESSTHANOREQUALTO,
+                               constant(ValueFactory::getDoubleValue(12.5)), col(COL_INTEGER)));
+    checkPredicate(cmp<CmpLt>(EXPRESSION_TYPE_COMPARE_LESSTHAN, col(COL_TIMESTAMP),
+                              constant(ValueFactory::getTimestampValue(500000))));
+    // Comparing with NULL is never true
+    checkPredicate(cmp<CmpEq>(EXPRESSION_TYPE_COMPARE_EQUAL, col(COL_INTEGER),
+                              constant(NValue::getNullValue(VALUE_TYPE_INTEGER))));
+}
+
+TEST_F(BatchExpressionTest, Conjunctions) {
+    checkPredicate(conjunctionAnd(
+            cmp<CmpGt>(EXPRESSION_TYPE_COMPARE_GREATERTHAN, col(COL_TINYINT), bigint(0)),
+            cmp<CmpLt>(EXPRESSION_TYPE_COMPARE_LESSTHAN, col(COL_DOUBLE), bigint(100))));
+    checkPredicate(conjunctionOr(
+            cmp<CmpGt>(EXPRESSION_TYPE_COMPARE_GREATERTHAN, col(COL_TINYINT), bigint(50)),
+            cmp<CmpLt>(EXPRESSION_TYPE_COMPARE_LESSTHAN, col(COL_INTEGER), bigint(-500000))));
+    // Three valued logic: (a > 0 OR b > 0) AND (c < 0 OR d < 0) over nullable columns
+    checkPredicate(conjunctionAnd(
+            conjunctionOr(cmp<CmpGt>(EXPRESSION_TYPE_COMPARE_GREATERTHAN, col(COL_TINYINT), bigint(0)),
+                          cmp<CmpGt>(EXPRESSION_TYPE_COMPARE_GREATERTHAN, col(COL_INTEGER), bigint(0))),
+            conjunctionOr(cmp<CmpLt>(EXPRESSION_TYPE_COMPARE_LESSTHAN, col(COL_BIGINT), bigint(0)),
+                          cmp<CmpLt>(EXPRESSION_TYPE_COMPARE_LESSTHAN, col(COL_DOUBLE), bigint(0)))));
+}
+
+TEST_F(BatchExpressionTest, ArithmeticInPredicates) {
+    checkPredicate(cmp<CmpGt>(EXPRESSION_TYPE_COMPARE_GREATERTHAN,
+                              arith<OpPlus>(EXPRESSION_TYPE_OPERATOR_PLUS, col(COL_TINYINT), col(COL_INTEGER)),
+                              arith<OpMultiply>(EXPRESSION_TYPE_OPERATOR_MULTIPLY, col(COL_DOUBLE), bigint(3))));
+    // The extreme BIGINT values overflow, so some batches must raise the error
+    checkPredicate(cmp<CmpGt>(EXPRESSION_TYPE_COMPARE_GREATERTHAN,
+                              arith<OpPlus>(EXPRESSION_TYPE_OPERATOR_PLUS, col(COL_BIGINT), bigint(100)),
+                              bigint(0)));
+}
+
+TEST_F(BatchExpressionTest, RightSideOnlyWhereEvalEvaluatesIt) {
+    // BIGINT * 1000000 overflows only for the extreme values, which are all
+    // outside the range the left side lets through to the right side.
+    AbstractExpression* guard = conjunctionAnd(
+            cmp<CmpGt>(EXPRESSION_TYPE_COMPARE_GREATERTHAN, col(COL_BIGINT), bigint(-60000)),
+            cmp<CmpLt>(EXPRESSION_TYPE_COMPARE_LESSTHAN, col(COL_BIGINT), bigint(60000)));
+    checkPredicate(conjunctionAnd(guard,
+            cmp<CmpGt>(EXPRESSION_TYPE_COMPARE_GREATERTHAN,
+                       arith<OpMultiply>(EXPRESSION_TYPE_OPERATOR_MULTIPLY, col(COL_BIGINT), bigint(1000000)),
+                       bigint(0))));
+    checkPredicate(conjunctionOr(
+            cmp<CmpLt>(EXPRESSION_TYPE_COMPARE_LESSTHAN, col(COL_BIGINT), bigint(-60000)),
+            conjunctionOr(
+                    cmp<CmpGt>(EXPRESSION_TYPE_COMPARE_GREATERTHAN, col(COL_BIGINT), bigint(60000)),
+                    cmp<CmpEq>(EXPRESSION_TYPE_COMPARE_EQUAL,
+                               arith<OpMultiply>(EXPRESSION_TYPE_OPERATOR_MULTIPLY, col(COL_BIGINT), bigint(1000000)),
+                               bigint(0)))));
+}
+
+TEST_F(BatchExpressionTest, Projections) {
+    checkProjection(arith<OpPlus>(EXPRESSION_TYPE_OPERATOR_PLUS, col(COL_TINYINT), col(COL_INTEGER)), false);
+    checkProjection(arith<OpMinus>(EXPRESSION_TYPE_OPERATOR_MINUS, col(COL_DOUBLE), col(COL_INTEGER)), false);
+    checkProjection(arith<OpMultiply>(EXPRESSION_TYPE_OPERATOR_MULTIPLY,
+                                      arith<OpPlus>(EXPRESSION_TYPE_OPERATOR_PLUS, col(COL_INTEGER), bigint(1)),
+                                      col(COL_INTEGER)), false);
+    checkProjection(arith<OpMultiply>(EXPRESSION_TYPE_OPERATOR_MULTIPLY, col(COL_BIGINT), bigint(2)), true);
+    checkProjection(arith<OpMinus>(EXPRESSION_TYPE_OPERATOR_MINUS, col(COL_BIGINT), bigint(-100)), true);
+    // Landing on the BIGINT NULL value gives NULL rather than an error
+    checkProjection(arith<OpMinus>(EXPRESSION_TYPE_OPERATOR_MINUS, col(COL_BIGINT), bigint(1)), false);
+}
+
+TEST_F(BatchExpressionTest, Unsupported) {
+    // Only predicates compile as predicates and only arithmetic as projections
+    boost::scoped_ptr<AbstractExpression> column(col(COL_INTEGER));
+    ASSERT_TRUE(BatchExpression::compilePredicate(column.get(), m_schema) == NULL);
+    ASSERT_TRUE(BatchExpression::compileProjection(column.get(), m_schema) == NULL);
+
+    boost::scoped_ptr<AbstractExpression> varchar(
+            cmp<CmpEq>(EXPRESSION_TYPE_COMPARE_EQUAL, col(COL_VARCHAR), col(COL_VARCHAR)));
+    ASSERT_TRUE(BatchExpression::compilePredicate(varchar.get(), m_schema) == NULL);
+
+    boost::scoped_ptr<AbstractExpression> divide(
+            arith<OpDivide>(EXPRESSION_TYPE_OPERATOR_DIVIDE, col(COL_INTEGER), bigint(2)));
+    ASSERT_TRUE(BatchExpression::compileProjection(divide.get(), m_schema) == NULL);
+
+    // TIMESTAMP only compares with TIMESTAMP in a batch, and is decided at bind time
+    boost::scoped_ptr<AbstractExpression> mixed(
+            cmp<CmpLt>(EXPRESSION_TYPE_COMPARE_LESSTHAN, col(COL_TIMESTAMP), bigint(10)));
+    boost::scoped_ptr<BatchExpression> batch(BatchExpression::compilePredicate(mixed.get(), m_schema));
+    ASSERT_TRUE(batch != NULL);
+    ASSERT_FALSE(batch->bind());
+}
+
+int main() {
+    return TestSuite::globalInstance()->runAll();
+}
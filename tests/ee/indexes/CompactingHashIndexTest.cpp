@@ -123,6 +123,65 @@ TEST_F(CompactingHashIndexTest, ENG1193) {
     delete tuple4;
 }
 
+TEST_F(CompactingHashIndexTest, OpenHashUniqueIndex) {
+    vector<int> columnIndices;
+    vector<ValueType> columnTypes;
+    vector<int32_t> columnLengths;
+    vector<bool> columnAllowNull;
+
+    columnIndices.push_back(0);
+    columnTypes.push_back(VALUE_TYPE_BIGINT);
+    columnLengths.push_back(NValue::getTupleStorageSize(VALUE_TYPE_BIGINT));
+    columnAllowNull.push_back(false);
+
+    TupleSchema *schema = TupleSchema::createTupleSchemaForTest(columnTypes,
+                                                         columnLengths,
+                                                         columnAllowNull);
+
+    TableIndexScheme scheme("test_index", HASH_TABLE_INDEX,
+                            columnIndices, TableIndex::simplyIndexColumns(),
+                            true, false, schema);
+    TableIndexFactory::setUseOpenHashIndexes(true);
+    TableIndex *index = TableIndexFactory::getInstance(scheme);
+    TableIndexFactory::setUseOpenHashIndexes(false);
+    EXPECT_EQ(std::string("OpenHashUniqueIndex"), index->getTypeName());
+
+    // Enough entries to resize the table several times
+    vector<TableTuple*> tuples;
+    for (int i = 0; i < 5000; i++) {
+        TableTuple *tuple = newTuple(schema, 0, i);
+        index->addEntry(tuple, NULL);
+        tuples.push_back(tuple);
+    }
+    EXPECT_EQ(5000, index->getSize());
+
+    TableTuple *duplicate = newTuple(schema, 0, 42);
+    TableTuple conflict(schema);
+    index->addEntry(duplicate, &conflict);
+    EXPECT_EQ(tuples[42]->address(), conflict.address());
+    EXPECT_TRUE(index->replaceEntryNoKeyChange(*duplicate, *tuples[42]));
+    EXPECT_EQ(duplicate->address(), index->uniqueMatchingTuple(*tuples[42]).address());
+
+    for (int i = 0; i < 5000; i += 2) {
+        if (i != 42) {
+            EXPECT_TRUE(index->deleteEntry(tuples[i]));
+        }
+    }
+    EXPECT_EQ(2501, index->getSize());
+    for (int i = 0; i < 5000; i++) {
+        EXPECT_EQ(i % 2 == 1 || i == 42, index->exists(tuples[i]));
+    }
+
+    delete index;
+    TupleSchema::freeTupleSchema(schema);
+    delete[] duplicate->address();
+    delete duplicate;
+    for (int i = 0; i < tuples.size(); i++) {
+        delete[] tuples[i]->address();
+        delete tuples[i];
+    }
+}
+
 int main()
 {
     return TestSuite::globalInstance()->runAll();
@@ -255,6 +255,66 @@ TEST_F(CompactingTreeMultiIndexTest, SimpleDeleteTuple) {
     delete tuple4;
 }
 
+TEST_F(CompactingTreeMultiIndexTest, BTreeBackedIndex) {
+    vector<int> columnIndices;
+    vector<ValueType> columnTypes;
+    vector<int32_t> columnLengths;
+    vector<bool> columnAllowNull;
+
+    columnIndices.push_back(0);
+    columnTypes.push_back(VALUE_TYPE_BIGINT);
+    columnLengths.push_back(NValue::getTupleStorageSize(VALUE_TYPE_BIGINT));
+    columnAllowNull.push_back(false);
+
+    TupleSchema *schema = TupleSchema::createTupleSchemaForTest(columnTypes,
+                                                         columnLengths,
+                                                         columnAllowNull);
+
+    TableIndexScheme scheme("test_index", BALANCED_TREE_INDEX,
+                            columnIndices, TableIndex::simplyIndexColumns(),
+                            false, true, schema);
+    TableIndexFactory::setUseBTreeIndexes(true);
+    TableIndex *index = TableIndexFactory::getInstance(scheme);
+    TableIndexFactory::setUseBTreeIndexes(false);
+    EXPECT_EQ(std::string("BTreeMultiMapIndex"), index->getTypeName());
+
+    // Enough duplicates of a handful of keys to split the tree several times
+    vector<TableTuple*> tuples;
+    for (int i = 0; i < 2000; i++) {
+        TableTuple *tuple = newTuple(schema, 0, i % 7);
+        index->addEntry(tuple, NULL);
+        tuples.push_back(tuple);
+    }
+    EXPECT_EQ(2000, index->getSize());
+
+    TableTuple *searchKey = newTuple(const_cast<TupleSchema*>(index->getKeySchema()), 0, 3);
+    IndexCursor cursor(index->getTupleSchema());
+    EXPECT_TRUE(index->moveToKey(searchKey, cursor));
+    int matches = 0;
+    while ( ! index->nextValueAtKey(cursor).isNullTuple()) {
+        ++matches;
+    }
+    EXPECT_EQ(286, matches);
+    EXPECT_EQ(4 * 286, index->getCounterLET(searchKey, true, cursor));
+
+    for (int i = 0; i < 2000; i += 2) {
+        EXPECT_TRUE(index->deleteEntry(tuples[i]));
+    }
+    EXPECT_EQ(1000, index->getSize());
+    for (int i = 0; i < 2000; i++) {
+        EXPECT_EQ(i % 2 == 1, index->exists(tuples[i]));
+    }
+
+    delete index;
+    TupleSchema::freeTupleSchema(schema);
+    delete[] searchKey->address();
+    delete searchKey;
+    for (int i = 0; i < tuples.size(); i++) {
+        delete[] tuples[i]->address();
+        delete tuples[i];
+    }
+}
+
 static int VERBOSE = 0;
 
 // create three types of index and test their performace of delete
@@ -0,0 +1,135 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2019 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+#include <cstdio>
+#include <cstdlib>
+#include <cstring>
+#include <sys/time.h>
+#include <vector>
+
+#include "harness.h"
+#include "common/NValue.hpp"
+#include "common/ValueFactory.hpp"
+#include "common/tabletuple.h"
+#include "indexes/tableindex.h"
+#include "indexes/tableindexfactory.h"
+
+using namespace voltdb;
+using namespace std;
+
+/**
+ * Compares unique BIGINT hash indexes backed by the chained CompactingHashTable
+ * and by the open-addressing OpenHashTable: bytes per entry, and nanoseconds
+ * per insert, point lookup (hit and miss) and delete.
+ */
+
+static int64_t getMicrosNow() {
+    timeval tv;
+    gettimeofday(&tv, NULL);
+    return tv.tv_sec * 1000000 + tv.tv_usec;
+}
+
+static void runBenchmark(bool useOpenHash, TupleSchema *schema, int entryCount, int lookupCount) {
+    vector<int> columnIndices(1, 0);
+    TableIndexScheme scheme("benchmark_index", HASH_TABLE_INDEX,
+                            columnIndices, TableIndex::simplyIndexColumns(),
+                            true, false, schema);
+    TableIndexFactory::setUseOpenHashIndexes(useOpenHash);
+    TableIndex *index = TableIndexFactory::getInstance(scheme);
+    TableIndexFactory::setUseOpenHashIndexes(false);
+
+    // Keys are spread out so that roughly half of the random lookups miss
+    TableTuple tuple(schema);
+    const int tupleLength = tuple.tupleLength();
+    char *data = new char[static_cast<size_t>(entryCount) * tupleLength];
+    memset(data, 0, static_cast<size_t>(entryCount) * tupleLength);
+
+    int64_t start = getMicrosNow();
+    for (int i = 0; i < entryCount; i++) {
+        tuple.move(data + static_cast<size_t>(i) * tupleLength);
+        tuple.setNValue(0, ValueFactory::getBigIntValue(static_cast<int64_t>(i) * 2));
+        index->addEntry(&tuple, NULL);
+    }
+    int64_t insertMicros = getMicrosNow() - start;
+
+    TableTuple searchKey(index->getKeySchema());
+    char *keyData = new char[searchKey.tupleLength()];
+    memset(keyData, 0, searchKey.tupleLength());
+    searchKey.move(keyData);
+    IndexCursor cursor(index->getTupleSchema());
+
+    srand(0);
+    int found = 0;
+    start = getMicrosNow();
+    for (int i = 0; i < lookupCount; i++) {
+        int64_t key = (static_cast<int64_t>(rand()) * RAND_MAX + rand()) % (static_cast<int64_t>(entryCount) * 2);
+        searchKey.setNValue(0, ValueFactory::getBigIntValue(key));
+        if (index->moveToKey(&searchKey, cursor)) {
+            ++found;
+        }
+    }
+    int64_t lookupMicros = getMicrosNow() - start;
+
+    double bytesPerEntry = static_cast<double>(index->getMemoryEstimate()) / index->getSize();
+
+    start = getMicrosNow();
+    for (int i = 0; i < entryCount; i++) {
+        tuple.move(data + static_cast<size_t>(i) * tupleLength);
+        index->deleteEntry(&tuple);
+    }
+    int64_t deleteMicros = getMicrosNow() - start;
+
+    printf("%-26s %7.1f bytes/entry, insert %7.1f ns/op, lookup %7.1f ns/op (%d hits), delete %7.1f ns/op\n",
+           index->getTypeName().c_str(), bytesPerEntry,
+           insertMicros * 1000.0 / entryCount,
+           lookupMicros * 1000.0 / lookupCount, found,
+           deleteMicros * 1000.0 / entryCount);
+
+    delete index;
+    delete[] keyData;
+    delete[] data;
+}
+
+int main(int argc, char *argv[]) {
+    if (argc < 2 || *argv[1] == '-') {
+        printf("To run the benchmark, execute %s with command line arguments "
+               "(entry_count<int>, [lookup_count<int>])\n", argv[0]);
+        return 0;
+    }
+    int entryCount = std::atoi(argv[1]);
+    int lookupCount = argc > 2 ? std::atoi(argv[2]) : 1000000;
+
+    vector<ValueType> columnTypes(1, VALUE_TYPE_BIGINT);
+    vector<int32_t> columnLengths(1, NValue::getTupleStorageSize(VALUE_TYPE_BIGINT));
+    vector<bool> columnAllowNull(1, false);
+    TupleSchema *schema = TupleSchema::createTupleSchemaForTest(columnTypes,
+                                                                columnLengths,
+                                                                columnAllowNull);
+
+    printf("%d entries, %d lookups\n", entryCount, lookupCount);
+    runBenchmark(false, schema, entryCount, lookupCount);
+    runBenchmark(true, schema, entryCount, lookupCount);
+
+    TupleSchema::freeTupleSchema(schema);
+    return 0;
+}
@@ -58,6 +58,7 @@ TEST_F(PlanNodeUtilTest, getEmptyPlanNode) {
 
             PLAN_NODE_TYPE_NESTLOOP,
             PLAN_NODE_TYPE_NESTLOOPINDEX,
+            PLAN_NODE_TYPE_HASHJOIN,
 
             PLAN_NODE_TYPE_UPDATE,
             PLAN_NODE_TYPE_INSERT,
@@ -381,6 +381,49 @@ TEST_F(CompactionTest, BasicCompaction) {
     ASSERT_EQ( m_table->activeTupleCount(), 0);
 }
 
+TEST_F(CompactionTest, BudgetedCompaction) {
+    initTable();
+#ifdef MEMCHECK
+    int tupleCount = 1000;
+#else
+    int tupleCount = 645260;
+#endif
+    addRandomUniqueTuples( m_table, tupleCount);
+    size_t blockCountBefore = m_table->m_data.size();
+
+    voltdb::TableIndex *pkeyIndex = m_table->primaryKeyIndex();
+    TableTuple key(pkeyIndex->getKeySchema());
+    boost::scoped_array<char> backingStore(new char[pkeyIndex->getKeySchema()->tupleLength()]);
+    key.moveNoHeader(backingStore.get());
+
+    IndexCursor indexCursor(pkeyIndex->getTupleSchema());
+
+    for (int ii = 0; ii < tupleCount; ii += 2) {
+        key.setNValue(0, ValueFactory::getIntegerValue(ii));
+        ASSERT_TRUE(pkeyIndex->moveToKey(&key, indexCursor));
+        TableTuple tuple = pkeyIndex->nextValueAtKey(indexCursor);
+        m_table->deleteTuple(tuple, true);
+    }
+    ASSERT_TRUE(m_table->compactionPredicate());
+    ASSERT_EQ(0, m_table->compactionReclaimedMemory());
+
+    // A budget this small only allows a single merge per pass
+    PersistentTable::setCompactionBudgetMicros(1);
+    ASSERT_TRUE(m_table->doForcedCompaction());
+
+    int passes = 0;
+    while (m_table->compactionPredicate()) {
+        m_table->doBudgetedCompaction();
+        ASSERT_TRUE(++passes < tupleCount);
+    }
+    PersistentTable::setCompactionBudgetMicros(0);
+
+    ASSERT_EQ(tupleCount / 2, m_table->activeTupleCount());
+    ASSERT_TRUE(m_table->m_data.size() < blockCountBefore);
+    int64_t blocksFreed = static_cast<int64_t>(blockCountBefore - m_table->m_data.size());
+    ASSERT_EQ(blocksFreed * m_table->getTableAllocationSize(), m_table->compactionReclaimedMemory());
+}
+
 TEST_F(CompactionTest, CompactionWithCopyOnWrite) {
     initTable();
 #ifdef MEMCHECK
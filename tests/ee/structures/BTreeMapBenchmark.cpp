@@ -0,0 +1,157 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2019 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+#include <cstdio>
+#include <cstdlib>
+#include <cstring>
+#include <sys/time.h>
+#include <vector>
+#include <algorithm>
+
+#include "harness.h"
+#include "structures/CompactingMap.h"
+#include "structures/BTreeMap.h"
+
+using namespace voltdb;
+using namespace std;
+
+/**
+ * Compares the red-black CompactingMap with the BTreeMap as used by a
+ * single BIGINT column tree index: memory per key, and the latency of
+ * inserts, seeks, short range scans, full scans and deletes.
+ */
+
+class Int64Comparator {
+public:
+    inline int operator()(const int64_t &lhs, const int64_t &rhs) const {
+        if (lhs > rhs) return 1;
+        else if (lhs < rhs) return -1;
+        else return 0;
+    }
+
+    int compareWithoutPointer(const int64_t &lhs, const int64_t &rhs) const {
+        return operator()(lhs, rhs);
+    }
+};
+
+typedef NormalKeyValuePair<int64_t, const void*> Entry;
+
+static int64_t getMicrosNow() {
+    timeval tv;
+    gettimeofday(&tv, NULL);
+    return tv.tv_sec * 1000000 + tv.tv_usec;
+}
+
+// Length of the short range scans, in entries
+#define RANGE_LENGTH 100
+
+template<typename MapType>
+void runBenchmark(const char *name, const std::vector<int64_t> &keys,
+                  const std::vector<int64_t> &probes, int passes) {
+    MapType map(true, Int64Comparator());
+    int64_t sum = 0;
+
+    int64_t start = getMicrosNow();
+    for (size_t i = 0; i < keys.size(); i++) {
+        map.insert(keys[i], reinterpret_cast<const void*>(keys[i]));
+    }
+    int64_t insertMicros = getMicrosNow() - start;
+
+    int64_t seekMicros = 0, rangeMicros = 0, scanMicros = 0;
+    for (int pass = 0; pass < passes; pass++) {
+        start = getMicrosNow();
+        for (size_t i = 0; i < probes.size(); i++) {
+            typename MapType::iterator iter = map.lowerBound(probes[i]);
+            if (!iter.isEnd()) {
+                sum += iter.key();
+            }
+        }
+        seekMicros += getMicrosNow() - start;
+
+        start = getMicrosNow();
+        for (size_t i = 0; i < probes.size(); i++) {
+            typename MapType::iterator iter = map.lowerBound(probes[i]);
+            for (int j = 0; j < RANGE_LENGTH && !iter.isEnd(); j++) {
+                sum += iter.key();
+                iter.moveNext();
+            }
+        }
+        rangeMicros += getMicrosNow() - start;
+
+        start = getMicrosNow();
+        for (typename MapType::iterator iter = map.begin(); !iter.isEnd(); iter.moveNext()) {
+            sum += iter.key();
+        }
+        scanMicros += getMicrosNow() - start;
+    }
+
+    size_t bytes = map.bytesAllocated();
+
+    start = getMicrosNow();
+    for (size_t i = 0; i < keys.size(); i += 2) {
+        map.erase(keys[i]);
+    }
+    int64_t deleteMicros = getMicrosNow() - start;
+
+    printf("%-18s %8.1f bytes/key, insert %6.3f us/op, seek %6.3f us/op, "
+           "range(%d) %7.3f us/op, full scan %8ld us, delete %6.3f us/op, "
+           "%8.1f bytes/key after deleting half (checksum %ld)\n",
+           name, static_cast<double>(bytes) / keys.size(),
+           static_cast<double>(insertMicros) / keys.size(),
+           static_cast<double>(seekMicros) / (probes.size() * passes),
+           RANGE_LENGTH, static_cast<double>(rangeMicros) / (probes.size() * passes),
+           static_cast<long>(scanMicros / passes),
+           static_cast<double>(deleteMicros) / ((keys.size() + 1) / 2),
+           static_cast<double>(map.bytesAllocated()) / (keys.size() / 2),
+           static_cast<long>(sum));
+}
+
+int main(int argc, char *argv[]) {
+    if (argc < 2 || *argv[1] == '-') {
+        printf("To run the benchmark, execute %s with command line arguments "
+               "(key_count<int>, [probe_count<int>], [passes<int>])\n", argv[0]);
+        return 0;
+    }
+    int keyCount = std::atoi(argv[1]);
+    int probeCount = argc > 2 ? std::atoi(argv[2]) : 100000;
+    int passes = argc > 3 ? std::atoi(argv[3]) : 5;
+
+    // Distinct keys in random order, as for a unique index
+    std::vector<int64_t> keys(keyCount);
+    for (int i = 0; i < keyCount; i++) {
+        keys[i] = static_cast<int64_t>(i) * 7;
+    }
+    srand(0);
+    std::random_shuffle(keys.begin(), keys.end());
+    std::vector<int64_t> probes(probeCount);
+    for (int i = 0; i < probeCount; i++) {
+        probes[i] = (static_cast<int64_t>(rand()) * RAND_MAX + rand()) % (static_cast<int64_t>(keyCount) * 7);
+    }
+
+    printf("%d keys, %d probes, %d passes\n", keyCount, probeCount, passes);
+    runBenchmark<CompactingMap<Entry, Int64Comparator, false> >("CompactingMap", keys, probes, passes);
+    runBenchmark<BTreeMap<Entry, Int64Comparator, false> >("BTreeMap", keys, probes, passes);
+    runBenchmark<CompactingMap<Entry, Int64Comparator, true> >("CompactingMap+rank", keys, probes, passes);
+    runBenchmark<BTreeMap<Entry, Int64Comparator, true> >("BTreeMap+rank", keys, probes, passes);
+    return 0;
+}
@@ -0,0 +1,275 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2019 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+#include <iostream>
+#include <map>
+#include <vector>
+#include <algorithm>
+#include <cstdlib>
+#include <cstdio>
+#include "harness.h"
+#include "structures/BTreeMap.h"
+
+using namespace voltdb;
+using namespace std;
+
+class IntComparator {
+public:
+    inline int operator()(const int &lhs, const int &rhs) const {
+        if (lhs > rhs) return 1;
+        else if (lhs < rhs) return -1;
+        else return 0;
+    }
+
+    int compareWithoutPointer(const int &lhs, const int &rhs) const {
+        return operator()(lhs, rhs);
+    }
+};
+
+/**
+ * Mimics the keys of multimap indexes, which order entries with equal
+ * values by the address of their tuple.
+ */
+struct PointerKey {
+    PointerKey() : m_value(0), m_pointer(NULL) {}
+    PointerKey(int value, const void *pointer) : m_value(value), m_pointer(pointer) {}
+    int m_value;
+    const void *m_pointer;
+};
+
+inline void setPointerValue(PointerKey &key, const void *pointer) { key.m_pointer = pointer; }
+
+class PointerKeyComparator {
+public:
+    inline int operator()(const PointerKey &lhs, const PointerKey &rhs) const {
+        int rv = compareWithoutPointer(lhs, rhs);
+        if (rv != 0) {
+            return rv;
+        }
+        const uintptr_t l = reinterpret_cast<const uintptr_t>(lhs.m_pointer);
+        const uintptr_t r = reinterpret_cast<const uintptr_t>(rhs.m_pointer);
+        return l == r ? 0 : (l < r ? -1 : 1);
+    }
+
+    int compareWithoutPointer(const PointerKey &lhs, const PointerKey &rhs) const {
+        if (lhs.m_value > rhs.m_value) return 1;
+        else if (lhs.m_value < rhs.m_value) return -1;
+        else return 0;
+    }
+};
+
+typedef BTreeMap<NormalKeyValuePair<int, int>, IntComparator, true> RankedIntMap;
+typedef BTreeMap<NormalKeyValuePair<PointerKey, int>, PointerKeyComparator, true> RankedPointerMap;
+
+class BTreeMapTest : public Test {
+public:
+    BTreeMapTest() {
+    }
+
+    ~BTreeMapTest() {
+    }
+
+    // Compare every entry, both ways, and every rank against an ordered STL map
+    void verifyAgainst(const std::map<int, int> &stl, const RankedIntMap &volt) {
+        ASSERT_TRUE(volt.verify());
+        ASSERT_EQ((int64_t)stl.size(), volt.size());
+
+        RankedIntMap::iterator volti = volt.begin();
+        int64_t rank = 1;
+        for (std::map<int, int>::const_iterator stli = stl.begin(); stli != stl.end(); ++stli, ++rank) {
+            ASSERT_FALSE(volti.isEnd());
+            ASSERT_EQ(stli->first, volti.key());
+            ASSERT_EQ(stli->second, volti.value());
+            ASSERT_EQ(rank, volt.rankLower(stli->first));
+            ASSERT_EQ(rank, volt.rankUpper(stli->first));
+            ASSERT_EQ(stli->first, volt.findRank(rank).key());
+            volti.moveNext();
+        }
+        ASSERT_TRUE(volti.isEnd());
+        ASSERT_TRUE(volt.findRank(rank).isEnd());
+
+        volti = volt.rbegin();
+        for (std::map<int, int>::const_reverse_iterator stli = stl.rbegin(); stli != stl.rend(); ++stli) {
+            ASSERT_FALSE(volti.isEnd());
+            ASSERT_EQ(stli->first, volti.key());
+            volti.movePrev();
+        }
+        ASSERT_TRUE(volti.isEnd());
+    }
+};
+
+TEST_F(BTreeMapTest, Trivial) {
+    RankedIntMap m(true, IntComparator());
+    ASSERT_TRUE(m.begin().isEnd());
+    ASSERT_TRUE(m.rbegin().isEnd());
+    ASSERT_TRUE(m.lowerBound(1).isEnd());
+    ASSERT_TRUE(m.insert(std::pair<int,int>(2,2)));
+    ASSERT_TRUE(m.insert(std::pair<int,int>(1,1)));
+    ASSERT_TRUE(m.insert(std::pair<int,int>(3,3)));
+    ASSERT_FALSE(m.insert(std::pair<int,int>(3,4)));
+    ASSERT_EQ(3, *m.insert(3, 5));
+    ASSERT_TRUE(m.verify());
+
+    ASSERT_EQ(2, m.lowerBound(2).key());
+    ASSERT_EQ(3, m.upperBound(2).key());
+    ASSERT_TRUE(m.upperBound(3).isEnd());
+    ASSERT_EQ(-1, m.rankLower(4));
+
+    ASSERT_TRUE(m.erase(2));
+    ASSERT_FALSE(m.erase(2));
+    ASSERT_TRUE(m.erase(1));
+    ASSERT_TRUE(m.erase(3));
+    ASSERT_EQ(0, m.size());
+    ASSERT_TRUE(m.begin().isEnd());
+    ASSERT_TRUE(m.verify());
+}
+
+TEST_F(BTreeMapTest, RandomUnique) {
+    const int ITERATIONS = 200000;
+    const int BIGGEST_VAL = 20000;
+
+    std::map<int, int> stl;
+    RankedIntMap volt(true, IntComparator());
+
+    srand(0);
+
+    for (int i = 0; i < ITERATIONS; i++) {
+        // Grow the map for the first half, then shrink it back down to empty
+        bool insert = (i < ITERATIONS / 2) ? (rand() % 3 != 0) : (rand() % 3 == 0);
+        int val = rand() % BIGGEST_VAL;
+        bool inStl = stl.find(val) != stl.end();
+        ASSERT_EQ(inStl, !volt.find(val).isEnd());
+        if (insert) {
+            ASSERT_EQ(!inStl, volt.insert(std::pair<int,int>(val, i)));
+            stl.insert(std::pair<int,int>(val, i));
+        }
+        else {
+            ASSERT_EQ(inStl, volt.erase(val));
+            stl.erase(val);
+        }
+
+        std::map<int, int>::iterator stlLower = stl.lower_bound(val);
+        RankedIntMap::iterator voltLower = volt.lowerBound(val);
+        ASSERT_EQ(stlLower == stl.end(), voltLower.isEnd());
+        if (stlLower != stl.end()) {
+            ASSERT_EQ(stlLower->first, voltLower.key());
+        }
+        std::map<int, int>::iterator stlUpper = stl.upper_bound(val);
+        RankedIntMap::iterator voltUpper = volt.upperBound(val);
+        ASSERT_EQ(stlUpper == stl.end(), voltUpper.isEnd());
+        if (stlUpper != stl.end()) {
+            ASSERT_EQ(stlUpper->first, voltUpper.key());
+        }
+
+        if ((i % 20000) == 0) {
+            verifyAgainst(stl, volt);
+        }
+    }
+    verifyAgainst(stl, volt);
+
+    // Drain what is left in key order, which empties leaves from the left
+    while (!stl.empty()) {
+        ASSERT_TRUE(volt.erase(stl.begin()->first));
+        stl.erase(stl.begin());
+    }
+    verifyAgainst(stl, volt);
+}
+
+TEST_F(BTreeMapTest, SequentialInsertAndErase) {
+    const int COUNT = 100000;
+    RankedIntMap volt(true, IntComparator());
+    std::map<int, int> stl;
+    for (int i = 0; i < COUNT; i++) {
+        ASSERT_TRUE(volt.insert(std::pair<int,int>(i, i)));
+        stl.insert(std::pair<int,int>(i, i));
+    }
+    verifyAgainst(stl, volt);
+
+    // Erase from the right through iterators
+    for (int i = COUNT - 1; i >= COUNT / 2; i--) {
+        RankedIntMap::iterator iter = volt.rbegin();
+        ASSERT_EQ(i, iter.key());
+        ASSERT_TRUE(volt.erase(iter));
+        stl.erase(i);
+    }
+    verifyAgainst(stl, volt);
+
+    // Erase every other remaining key, leaving half empty leaves to be merged
+    for (int i = 0; i < COUNT / 2; i += 2) {
+        ASSERT_TRUE(volt.erase(i));
+        stl.erase(i);
+    }
+    verifyAgainst(stl, volt);
+}
+
+TEST_F(BTreeMapTest, DuplicateValuesWithPointers) {
+    const int ITERATIONS = 20000;
+    const int BIGGEST_VAL = 500;
+    // Tuple addresses are stood in for by offsets into this array
+    std::vector<char> tuples(ITERATIONS);
+
+    std::multimap<int, const void*> stl;
+    RankedPointerMap volt(false, PointerKeyComparator());
+
+    srand(1);
+
+    for (int i = 0; i < ITERATIONS; i++) {
+        int val = rand() % BIGGEST_VAL;
+        if (rand() % 4 != 0 || stl.empty()) {
+            const void *pointer = &tuples[i];
+            ASSERT_TRUE(volt.insert(std::pair<PointerKey, int>(PointerKey(val, pointer), val)));
+            stl.insert(std::pair<int, const void*>(val, pointer));
+        }
+        else {
+            std::multimap<int, const void*>::iterator victim = stl.lower_bound(val);
+            if (victim == stl.end()) {
+                continue;
+            }
+            ASSERT_TRUE(volt.erase(PointerKey(victim->first, victim->second)));
+            stl.erase(victim);
+        }
+
+        // Search keys carry no tuple address, as in the multimap indexes
+        PointerKey searchKey(val, NULL);
+        std::pair<RankedPointerMap::iterator, RankedPointerMap::iterator> range = volt.equalRange(searchKey);
+        int matches = 0;
+        for (RankedPointerMap::iterator iter = range.first; !iter.equals(range.second); iter.moveNext()) {
+            ASSERT_EQ(val, iter.key().m_value);
+            matches++;
+        }
+        ASSERT_EQ((int)stl.count(val), matches);
+
+        if (matches > 0) {
+            int64_t less = std::distance(stl.begin(), stl.lower_bound(val));
+            int64_t lessOrEqual = std::distance(stl.begin(), stl.upper_bound(val));
+            ASSERT_EQ(less + 1, volt.rankLower(range.first.key()));
+            ASSERT_EQ(lessOrEqual, volt.rankUpper(range.first.key()));
+        }
+    }
+    ASSERT_TRUE(volt.verify());
+    ASSERT_EQ((int64_t)stl.size(), volt.size());
+}
+
+int main() {
+    return TestSuite::globalInstance()->runAll();
+}
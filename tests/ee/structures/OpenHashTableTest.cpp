@@ -0,0 +1,179 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2019 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+#include <map>
+#include <string>
+#include <cstdlib>
+#include <cstdio>
+#include "harness.h"
+#include "structures/OpenHashTable.h"
+
+using namespace voltdb;
+using namespace std;
+
+/** Hashes every key into one of four values, so all probing goes through collisions */
+struct CollidingHasher {
+    size_t operator()(const int64_t &key) const {
+        return static_cast<size_t>(key & 3);
+    }
+};
+
+class OpenHashTableTest : public Test {
+public:
+    template<typename Table>
+    void verifyAgainst(Table &volt, const map<int64_t,int64_t> &stl) {
+        ASSERT_TRUE(volt.verify());
+        ASSERT_EQ(stl.size(), volt.size());
+        for (map<int64_t,int64_t>::const_iterator iter = stl.begin(); iter != stl.end(); ++iter) {
+            typename Table::iterator voltIter = volt.find(iter->first);
+            ASSERT_FALSE(voltIter.isEnd());
+            ASSERT_EQ(iter->second, voltIter.value());
+        }
+    }
+
+    template<typename Table>
+    void fuzz(Table &volt, int iterations, int64_t range) {
+        map<int64_t,int64_t> stl;
+        for (int i = 0; i < iterations; i++) {
+            // drift between mostly inserting and mostly deleting to grow and shrink the table
+            bool insertHeavy = (i / (iterations / 8)) % 2 == 0;
+            bool insert = (rand() % 4) != 0 ? insertHeavy : !insertHeavy;
+            int64_t key = rand() % range;
+            if (insert) {
+                bool stlInserted = stl.insert(pair<int64_t,int64_t>(key, i)).second;
+                const int64_t *conflict = volt.insert(key, i);
+                ASSERT_EQ(stlInserted, conflict == NULL);
+                if ( ! stlInserted) {
+                    ASSERT_EQ(stl[key], *conflict);
+                }
+            }
+            else {
+                bool stlErased = stl.erase(key) == 1;
+                ASSERT_EQ(stlErased, volt.erase(key));
+            }
+            ASSERT_EQ(stl.size(), volt.size());
+            if (i % 1000 == 0) {
+                verifyAgainst(volt, stl);
+            }
+        }
+        verifyAgainst(volt, stl);
+    }
+};
+
+TEST_F(OpenHashTableTest, Fuzz) {
+    srand(0);
+    OpenHashTable<int64_t,int64_t> volt(true);
+    fuzz(volt, 200000, 20000);
+}
+
+TEST_F(OpenHashTableTest, FuzzColliding) {
+    srand(1);
+    OpenHashTable<int64_t,int64_t,CollidingHasher> volt(true);
+    fuzz(volt, 20000, 2000);
+}
+
+TEST_F(OpenHashTableTest, IteratorAndValueUpdates) {
+    OpenHashTable<int64_t,int64_t> volt(true);
+    OpenHashTable<int64_t,int64_t>::iterator iter = volt.find(1);
+    ASSERT_TRUE(iter.isEnd());
+    ASSERT_FALSE(volt.erase(iter));
+
+    ASSERT_TRUE(volt.insert(1, 10) == NULL);
+    iter = volt.find(1);
+    ASSERT_FALSE(iter.isEnd());
+    ASSERT_EQ(1, iter.key());
+    iter.setValue(11);
+    ASSERT_EQ(11, *volt.insert(1, 12));
+    ASSERT_FALSE(volt.erase(1, 12));
+    ASSERT_TRUE(volt.find(1, 12).isEnd());
+    ASSERT_FALSE(volt.find(1, 11).isEnd());
+
+    iter.moveNext();
+    ASSERT_TRUE(iter.isEnd());
+
+    iter = volt.find(1, 11);
+    ASSERT_TRUE(volt.erase(iter));
+    ASSERT_TRUE(iter.isEnd());
+    ASSERT_EQ(0, volt.size());
+    ASSERT_TRUE(volt.verify());
+}
+
+TEST_F(OpenHashTableTest, IncrementalResize) {
+    typedef OpenHashTable<int64_t,int64_t> Table;
+    const int64_t COUNT = 100000;
+    Table volt(true);
+
+    // Every insert or erase migrates a bounded number of old slots, so a resize of a
+    // table with N slots stays in progress for N / MIGRATION_SLOTS_PER_OPERATION operations.
+    bool sawMigration = false;
+    for (int64_t i = 0; i < COUNT; i++) {
+        uint64_t capacityBefore = volt.capacity();
+        ASSERT_TRUE(volt.insert(i, i) == NULL);
+        if (volt.capacity() != capacityBefore) {
+            ASSERT_EQ(capacityBefore * 2, volt.capacity());
+            if (capacityBefore > Table::MIGRATION_SLOTS_PER_OPERATION) {
+                ASSERT_TRUE(volt.isMigrating());
+                sawMigration = true;
+                // lookups see keys on both sides of the migration
+                for (int64_t j = 0; j <= i; j += 97) {
+                    ASSERT_FALSE(volt.find(j).isEnd());
+                }
+                ASSERT_TRUE(volt.verify());
+            }
+        }
+    }
+    ASSERT_TRUE(sawMigration);
+    ASSERT_TRUE(volt.verify());
+    size_t fullBytes = volt.bytesAllocated();
+
+    for (int64_t i = 0; i < COUNT; i++) {
+        ASSERT_TRUE(volt.erase(i));
+        if (i % 5000 == 0) {
+            ASSERT_TRUE(volt.verify());
+        }
+    }
+    ASSERT_EQ(0, volt.size());
+    ASSERT_TRUE(volt.verify());
+    ASSERT_TRUE(volt.bytesAllocated() < fullBytes / 100);
+}
+
+TEST_F(OpenHashTableTest, DeletedSlotsAreReclaimed) {
+    typedef OpenHashTable<int64_t,int64_t> Table;
+    Table volt(true);
+
+    // A steady population with constant churn must not keep growing the table
+    for (int64_t i = 0; i < 20; i++) {
+        ASSERT_TRUE(volt.insert(i, i) == NULL);
+    }
+    for (int64_t i = 20; i < 200000; i++) {
+        ASSERT_TRUE(volt.insert(i, i) == NULL);
+        ASSERT_TRUE(volt.erase(i - 20));
+    }
+    ASSERT_EQ(20, volt.size());
+    ASSERT_EQ(Table::INITIAL_CAPACITY, volt.capacity());
+    ASSERT_TRUE(volt.verify());
+}
+
+int main() {
+    return TestSuite::globalInstance()->runAll();
+}
@@ -196,4 +196,28 @@ public class TestPicoNetwork extends TestCase {
             rawChannel.read(buf);
         }
     }
+
+    @Test
+    public void testManySmallMessages() throws Exception {
+        // Enough to span many pool buffers and more than one gathering write
+        final int count = 20000;
+        for (int ii = 0; ii < count; ii++) {
+            ByteBuffer buf = ByteBuffer.allocate(100);
+            buf.putInt(buf.capacity() - 4);
+            buf.putInt(ii);
+            buf.position(0);
+            pn.enqueue(buf);
+        }
+
+        ByteBuffer received = ByteBuffer.allocate(count * 100);
+        while (received.hasRemaining()) {
+            rawChannel.read(received);
+        }
+        received.flip();
+        for (int ii = 0; ii < count; ii++) {
+            assertEquals(96, received.getInt());
+            assertEquals(ii, received.getInt());
+            received.position(received.position() + 92);
+        }
+    }
 }
@@ -31,9 +31,14 @@ import java.nio.ByteBuffer;
 import java.nio.channels.SelectableChannel;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
 import java.nio.channels.spi.SelectorProvider;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
 
 import io.netty.buffer.CompositeByteBuf;
 import jsr166y.ThreadLocalRandom;
@@ -135,6 +140,49 @@ public class TestVoltNetwork extends TestCase {
         }
     }
 
+    /** Writes every message back to the sender and records the thread that handled it */
+    private static class EchoHandler extends VoltProtocolHandler {
+        final BlockingQueue<String> m_handledOn = new LinkedBlockingQueue<String>();
+
+        @Override
+        public int getMaxRead() {
+            return Math.max(8192, getNextMessageLength());
+        }
+
+        @Override
+        public void handleMessage(ByteBuffer message, Connection c) {
+            m_handledOn.offer(Thread.currentThread().getName());
+            ByteBuffer echo = ByteBuffer.allocate(message.remaining() + 4);
+            echo.putInt(message.remaining());
+            echo.put(message).flip();
+            c.writeStream().enqueue(echo);
+        }
+
+        @Override
+        public Runnable offBackPressure() {
+            return new Runnable() {
+                @Override
+                public void run() {}
+            };
+        }
+
+        @Override
+        public Runnable onBackPressure() {
+            return new Runnable() {
+                @Override
+                public void run() {}
+            };
+        }
+
+        @Override
+        public QueueMonitor writestreamMonitor() {
+            return null;
+        }
+    }
+
+    private static class ThreadBoundEchoHandler extends EchoHandler implements NetworkThreadBound {
+    }
+
     public static class MockSelectionKey extends SelectionKey {
         @Override
         public
@@ -184,6 +232,7 @@ public class TestVoltNetwork extends TestCase {
 
     public static class MockSelector extends Selector {
         public SelectionKey m_fakeKey = null;
+        public Set<SelectionKey> m_fakeKeys = null;
 
         MockSelector() {
         }
@@ -235,6 +284,9 @@ public class TestVoltNetwork extends TestCase {
 
         @Override
         public Set<SelectionKey> selectedKeys() {
+            if (m_fakeKeys != null) {
+                return m_fakeKeys;
+            }
             Set<SelectionKey> aset = new HashSet<SelectionKey>();
             aset.add(m_fakeKey);
             return aset;
@@ -308,4 +360,158 @@ public class TestVoltNetwork extends TestCase {
         runInvokeCallbacks(selector, vn, vp);
     }
 
+    public void testShedLoadMovesPort() throws Exception {
+        ServerSocketChannel ssc = ServerSocketChannel.open();
+        ssc.socket().bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        SocketChannel client = SocketChannel.open(ssc.socket().getLocalSocketAddress());
+        SocketChannel server = ssc.accept();
+        VoltNetwork from = new VoltNetwork(0, null, "Test");
+        VoltNetwork to = new VoltNetwork(1, null, "Test");
+        from.start();
+        to.start();
+        try {
+            VoltPort port = (VoltPort)from.registerChannel(
+                    server, new MockInputHandler(), SelectionKey.OP_READ, ReverseDNSPolicy.NONE, null, null);
+            // Pretend the port has kept the network busy so that it is worth moving
+            port.m_callbackNanos = 1000000;
+            from.shedLoadTo(to, 1.0, 1);
+
+            // Stats requests queue behind the move on each network
+            assertEquals(0, from.getReactorStats(false).get().getSecond()[VoltNetworkPool.REACTOR_CONNECTIONS]);
+            assertEquals(1, to.getReactorStats(false).get().getSecond()[VoltNetworkPool.REACTOR_CONNECTIONS]);
+            assertSame(to, port.m_network);
+            assertEquals(0, from.numPorts());
+            assertEquals(1, to.numPorts());
+
+            // The port keeps working from its new network
+            port.unregister().get();
+            assertEquals(0, to.numPorts());
+        } finally {
+            from.shutdown();
+            to.shutdown();
+            client.close();
+            ssc.close();
+        }
+    }
+
+    public void testInvokeCallbacksSkipsDetachedKeys() throws Exception {
+        MockSelector selector = new MockSelector();
+        VoltNetwork vn = new VoltNetwork(selector);
+        // Every other key lost its port to unregistration or migration after it was selected
+        MockVoltPort ports[] = new MockVoltPort[4];
+        for (int start = 0; start < 16; start++) {
+            selector.m_fakeKeys = new LinkedHashSet<SelectionKey>();
+            for (int ii = 0; ii < ports.length; ii++) {
+                MockSelectionKey detached = new MockSelectionKey();
+                selector.m_fakeKeys.add(detached);
+
+                ports[ii] = new MockVoltPort(vn, new MockInputHandler());
+                MockSelectionKey key = new MockSelectionKey();
+                key.interestOps(SelectionKey.OP_READ);
+                key.readyOps(SelectionKey.OP_READ);
+                ports[ii].m_selectionKey = key;
+                key.attach(ports[ii]);
+                selector.m_fakeKeys.add(key);
+            }
+
+            vn.invokeCallbacks(ThreadLocalRandom.current());
+            for (MockVoltPort port : ports) {
+                assertEquals(SelectionKey.OP_READ, port.readyOps());
+            }
+            assertTrue(selector.m_fakeKeys.isEmpty());
+        }
+        vn.shutdown();
+    }
+
+    private static void roundTrip(SocketChannel client, byte payload) throws IOException {
+        ByteBuffer out = ByteBuffer.allocate(5);
+        out.putInt(1).put(payload).flip();
+        while (out.hasRemaining()) {
+            client.write(out);
+        }
+        ByteBuffer in = ByteBuffer.allocate(5);
+        while (in.hasRemaining()) {
+            if (client.read(in) < 0) {
+                fail("Connection closed");
+            }
+        }
+        in.flip();
+        assertEquals(1, in.getInt());
+        assertEquals(payload, in.get());
+    }
+
+    public void testShedLoadMovesLiveConnection() throws Exception {
+        ServerSocketChannel ssc = ServerSocketChannel.open();
+        ssc.socket().bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        SocketChannel client = SocketChannel.open(ssc.socket().getLocalSocketAddress());
+        SocketChannel server = ssc.accept();
+        server.configureBlocking(false);
+        VoltNetwork from = new VoltNetwork(0, null, "Test");
+        VoltNetwork to = new VoltNetwork(1, null, "Test");
+        from.start();
+        to.start();
+        try {
+            EchoHandler handler = new EchoHandler();
+            VoltPort port = (VoltPort)from.registerChannel(
+                    server, handler, SelectionKey.OP_READ, ReverseDNSPolicy.NONE, null, null);
+            roundTrip(client, (byte)1);
+            assertEquals(from.networkThreadName, handler.m_handledOn.take());
+
+            port.m_callbackNanos = 1000000;
+            from.shedLoadTo(to, 1.0, 1);
+            assertEquals(0, from.getReactorStats(false).get().getSecond()[VoltNetworkPool.REACTOR_CONNECTIONS]);
+            assertEquals(1, to.getReactorStats(false).get().getSecond()[VoltNetworkPool.REACTOR_CONNECTIONS]);
+            assertSame(to, port.m_network);
+
+            // Reads, handling and the reply now all happen on the new network
+            for (byte ii = 2; ii < 10; ii++) {
+                roundTrip(client, ii);
+                assertEquals(to.networkThreadName, handler.m_handledOn.take());
+            }
+
+            // The peer closing the connection is noticed by the new network
+            client.close();
+            while (to.numPorts() > 0) {
+                Thread.sleep(10);
+            }
+            assertEquals(0, from.numPorts());
+        } finally {
+            from.shutdown();
+            to.shutdown();
+            client.close();
+            ssc.close();
+        }
+    }
+
+    public void testShedLoadKeepsThreadBoundConnection() throws Exception {
+        ServerSocketChannel ssc = ServerSocketChannel.open();
+        ssc.socket().bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        SocketChannel client = SocketChannel.open(ssc.socket().getLocalSocketAddress());
+        SocketChannel server = ssc.accept();
+        server.configureBlocking(false);
+        VoltNetwork from = new VoltNetwork(0, null, "Test");
+        VoltNetwork to = new VoltNetwork(1, null, "Test");
+        from.start();
+        to.start();
+        try {
+            EchoHandler handler = new ThreadBoundEchoHandler();
+            VoltPort port = (VoltPort)from.registerChannel(
+                    server, handler, SelectionKey.OP_READ, ReverseDNSPolicy.NONE, null, null);
+            assertFalse(port.canMigrate());
+            port.m_callbackNanos = 1000000;
+            from.shedLoadTo(to, 1.0, 1);
+
+            assertEquals(1, from.getReactorStats(false).get().getSecond()[VoltNetworkPool.REACTOR_CONNECTIONS]);
+            assertEquals(0, to.getReactorStats(false).get().getSecond()[VoltNetworkPool.REACTOR_CONNECTIONS]);
+            assertSame(from, port.m_network);
+            roundTrip(client, (byte)1);
+            assertEquals(from.networkThreadName, handler.m_handledOn.take());
+        } finally {
+            from.shutdown();
+            to.shutdown();
+            client.close();
+            ssc.close();
+        }
+    }
+
 }
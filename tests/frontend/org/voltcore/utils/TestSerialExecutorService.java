@@ -0,0 +1,139 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2019 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltcore.utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import junit.framework.TestCase;
+
+public class TestSerialExecutorService extends TestCase {
+
+    @Test
+    public void testTasksRunInOrderOneAtATime() throws Exception {
+        ExecutorService shared = Executors.newFixedThreadPool(4);
+        try {
+            final int executorCount = 8;
+            final int taskCount = 1000;
+            List<SerialExecutorService> executors = new ArrayList<SerialExecutorService>();
+            List<List<Integer>> results = new ArrayList<List<Integer>>();
+            final AtomicInteger running[] = new AtomicInteger[executorCount];
+            final AtomicInteger overlaps = new AtomicInteger();
+            for (int ii = 0; ii < executorCount; ii++) {
+                executors.add(new SerialExecutorService(shared, "Serial " + ii));
+                // Not synchronized on purpose, the executor has to provide the ordering
+                results.add(new ArrayList<Integer>());
+                running[ii] = new AtomicInteger();
+            }
+            for (int task = 0; task < taskCount; task++) {
+                for (int ii = 0; ii < executorCount; ii++) {
+                    final int executor = ii;
+                    final int value = task;
+                    final List<Integer> result = results.get(ii);
+                    executors.get(ii).execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            if (running[executor].incrementAndGet() != 1) {
+                                overlaps.incrementAndGet();
+                            }
+                            result.add(value);
+                            running[executor].decrementAndGet();
+                        }
+                    });
+                }
+            }
+            for (SerialExecutorService es : executors) {
+                es.shutdown();
+                assertTrue(es.awaitTermination(10, TimeUnit.SECONDS));
+                assertEquals(0, es.getQueueDepth());
+            }
+            assertEquals(0, overlaps.get());
+            for (List<Integer> result : results) {
+                assertEquals(taskCount, result.size());
+                for (int task = 0; task < taskCount; task++) {
+                    assertEquals(task, result.get(task).intValue());
+                }
+            }
+        } finally {
+            shared.shutdown();
+        }
+    }
+
+    @Test
+    public void testQueueDepthAndShutdown() throws Exception {
+        ExecutorService shared = Executors.newSingleThreadExecutor();
+        try {
+            SerialExecutorService es = new SerialExecutorService(shared, "Serial");
+            final CountDownLatch started = new CountDownLatch(1);
+            final CountDownLatch release = new CountDownLatch(1);
+            final List<Integer> ran = Collections.synchronizedList(new ArrayList<Integer>());
+            es.execute(new Runnable() {
+                @Override
+                public void run() {
+                    started.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {}
+                }
+            });
+            started.await();
+            for (int ii = 0; ii < 3; ii++) {
+                final int value = ii;
+                es.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        ran.add(value);
+                    }
+                });
+            }
+            assertEquals(3, es.getQueueDepth());
+
+            // Queued tasks still run after shutdown, new ones are rejected
+            es.shutdown();
+            assertFalse(es.isTerminated());
+            try {
+                es.execute(new Runnable() {
+                    @Override
+                    public void run() {}
+                });
+                fail("Expected the task to be rejected");
+            } catch (RejectedExecutionException expected) {}
+
+            release.countDown();
+            assertTrue(es.awaitTermination(10, TimeUnit.SECONDS));
+            assertEquals(3, ran.size());
+        } finally {
+            shared.shutdown();
+        }
+    }
+}
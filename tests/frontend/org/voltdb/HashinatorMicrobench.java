@@ -0,0 +1,132 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2019 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb;
+
+import java.util.Random;
+
+import org.voltdb.client.HashinatorLite;
+import org.voltdb.common.Constants;
+
+/**
+ * Measures partition lookups per second of the server (ElasticHashinator) and client
+ * (HashinatorLite) hashinators, hashing one boxed key at a time the way procedure
+ * routing does and hashing the same keys through the batch methods.
+ * Optional arguments are the partition count and number of keys.
+ */
+public class HashinatorMicrobench {
+
+    static final int ITERATIONS = 10;
+
+    interface Pass {
+        void run();
+    }
+
+    static void time(String hashinator, String method, int keyCount, Pass pass) {
+        long bestNanos = Long.MAX_VALUE;
+        // Report the best of several passes, the first ones warm up the JIT
+        for (int iteration = 0; iteration < ITERATIONS; iteration++) {
+            final long start = System.nanoTime();
+            pass.run();
+            bestNanos = Math.min(bestNanos, System.nanoTime() - start);
+        }
+        System.out.printf("%-10s %-12s %14.1f%n", hashinator, method, keyCount / (bestNanos / 1e9) / 1e6);
+    }
+
+    public static void main(String[] args) throws Exception {
+        final int partitionCount = args.length > 0 ? Integer.parseInt(args[0]) : 24;
+        final int keyCount = args.length > 1 ? Integer.parseInt(args[1]) : 1000000;
+
+        final byte configBytes[] = ElasticHashinator.getConfigureBytes(partitionCount,
+                ElasticHashinator.DEFAULT_TOTAL_TOKENS);
+        final ElasticHashinator server = new ElasticHashinator(configBytes, false);
+        final HashinatorLite client = new HashinatorLite(configBytes, false);
+
+        final Random r = new Random(0);
+        final long longs[] = new long[keyCount];
+        final byte bytes[][] = new byte[keyCount][];
+        for (int ii = 0; ii < keyCount; ii++) {
+            longs[ii] = r.nextLong();
+            bytes[ii] = ("customer_" + r.nextInt()).getBytes(Constants.UTF8ENCODING);
+        }
+        final int partitions[] = new int[keyCount];
+
+        System.out.printf("%-10s %-12s %14s%n", "HASHINATOR", "METHOD", "M KEYS/s");
+        time("server", "long", keyCount, new Pass() {
+            @Override
+            public void run() {
+                for (int ii = 0; ii < keyCount; ii++) {
+                    partitions[ii] = server.getHashedPartitionForParameter(VoltType.BIGINT, longs[ii]);
+                }
+            }
+        });
+        time("server", "long batch", keyCount, new Pass() {
+            @Override
+            public void run() {
+                server.getHashedPartitionsForLongs(longs, partitions);
+            }
+        });
+        time("server", "bytes", keyCount, new Pass() {
+            @Override
+            public void run() {
+                for (int ii = 0; ii < keyCount; ii++) {
+                    partitions[ii] = server.getHashedPartitionForParameter(VoltType.VARBINARY, bytes[ii]);
+                }
+            }
+        });
+        time("server", "bytes batch", keyCount, new Pass() {
+            @Override
+            public void run() {
+                server.getHashedPartitionsForBytes(bytes, partitions);
+            }
+        });
+        time("client", "long", keyCount, new Pass() {
+            @Override
+            public void run() {
+                for (int ii = 0; ii < keyCount; ii++) {
+                    partitions[ii] = client.getHashedPartitionForParameter(VoltType.BIGINT.getValue(), longs[ii]);
+                }
+            }
+        });
+        time("client", "long batch", keyCount, new Pass() {
+            @Override
+            public void run() {
+                client.getHashedPartitionsForLongs(longs, partitions);
+            }
+        });
+        time("client", "bytes", keyCount, new Pass() {
+            @Override
+            public void run() {
+                for (int ii = 0; ii < keyCount; ii++) {
+                    partitions[ii] = client.getHashedPartitionForParameter(VoltType.VARBINARY.getValue(), bytes[ii]);
+                }
+            }
+        });
+        time("client", "bytes batch", keyCount, new Pass() {
+            @Override
+            public void run() {
+                client.getHashedPartitionsForBytes(bytes, partitions);
+            }
+        });
+    }
+}
@@ -24,12 +24,18 @@
 package org.voltdb;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
 
 import org.junit.Test;
 import org.voltcore.network.Connection;
@@ -117,4 +123,110 @@ public class TestClientInterfaceHandleManager {
             assertEquals(31337 + i, inf.m_clientHandle);
         }
     }
+
+    @Test
+    public void testManyOutstandingOutOfOrder() throws Exception
+    {
+        Connection mockConnection = mock(Connection.class);
+        ClientInterfaceHandleManager dut =
+                new ClientInterfaceHandleManager(
+                        false,
+                        mockConnection,
+                        null,
+                        AdmissionControlGroup.getDummy());
+        Random rand = new Random(7);
+        List<Long> outstanding = new ArrayList<Long>();
+        Map<Long, Long> clientHandles = new HashMap<Long, Long>();
+        // Interleave bursts of new handles, which grow the table, with responses
+        // arriving in random order, which exercises the probing and deletion.
+        for (int round = 0; round < 50; round++) {
+            int adds = rand.nextInt(200);
+            for (int i = 0; i < adds; i++) {
+                long clientHandle = rand.nextLong();
+                long handle = dut.getHandle(true, 3, clientHandle, 10, 10l, "foo", 0, false);
+                outstanding.add(handle);
+                clientHandles.put(handle, clientHandle);
+            }
+            Collections.shuffle(outstanding, rand);
+            int removes = rand.nextInt(outstanding.size() + 1);
+            for (int i = 0; i < removes; i++) {
+                long handle = outstanding.remove(outstanding.size() - 1);
+                ClientInterfaceHandleManager.Iv2InFlight inflight = dut.findHandle(handle);
+                assertEquals(handle, inflight.m_ciHandle);
+                assertEquals((long)clientHandles.get(handle), inflight.m_clientHandle);
+                dut.releaseInFlight(inflight);
+                assertNull(dut.findHandle(handle));
+            }
+            assertEquals(outstanding.size(), dut.getOutstandingTxns());
+        }
+        for (long handle : outstanding) {
+            assertEquals((long)clientHandles.get(handle), dut.findHandle(handle).m_clientHandle);
+        }
+        assertEquals(0, dut.getOutstandingTxns());
+    }
+
+    @Test
+    public void testReleasedInFlightIsReused() throws Exception
+    {
+        Connection mockConnection = mock(Connection.class);
+        ClientInterfaceHandleManager dut =
+                new ClientInterfaceHandleManager(
+                        false,
+                        mockConnection,
+                        null,
+                        AdmissionControlGroup.getDummy());
+        long handle = dut.getHandle(true, 7, 31337, 10, 10l, "foo", 0, false);
+        ClientInterfaceHandleManager.Iv2InFlight first = dut.findHandle(handle);
+        dut.releaseInFlight(first);
+
+        handle = dut.getHandle(true, 7, 31338, 20, 20l, "bar", 0, false);
+        ClientInterfaceHandleManager.Iv2InFlight second = dut.findHandle(handle);
+        assertSame(first, second);
+        assertEquals(handle, second.m_ciHandle);
+        assertEquals(31338, second.m_clientHandle);
+        assertEquals(20, second.m_messageSize);
+        assertEquals("bar", second.m_procName);
+    }
+
+    @Test
+    public void testRemoveForInitiatorAndInFlightStats() throws Exception
+    {
+        Connection mockConnection = mock(Connection.class);
+        ClientInterfaceHandleManager dut =
+                new ClientInterfaceHandleManager(
+                        false,
+                        mockConnection,
+                        null,
+                        AdmissionControlGroup.getDummy());
+        // Even handles were sent to the old leader, odd ones to the new one
+        List<Long> handles = new ArrayList<Long>();
+        for (int i = 0; i < 10; i++) {
+            handles.add(dut.getHandle(true, 7, 31337 + i, 10, 100l + i, "foo", i % 2, false));
+        }
+        dut.getHandle(true, 8, 1, 10, 500l, "foo", 0, false);
+
+        Map<Integer, long[]> stats = new HashMap<Integer, long[]>();
+        dut.collectInFlightStats(1000l, stats);
+        assertEquals(2, stats.size());
+        assertEquals(10, stats.get(7)[0]);
+        assertEquals(900, stats.get(7)[1]);
+        assertEquals(1, stats.get(8)[0]);
+        assertEquals(500, stats.get(8)[1]);
+
+        List<ClientInterfaceHandleManager.Iv2InFlight> dropped =
+                dut.removeHandlesForPartitionAndInitiator(7, 1L);
+        assertEquals(5, dropped.size());
+        for (ClientInterfaceHandleManager.Iv2InFlight inflight : dropped) {
+            assertEquals(0, inflight.m_initiatorHSId);
+        }
+        assertEquals(6, dut.getOutstandingTxns());
+        for (int i = 0; i < 10; i++) {
+            ClientInterfaceHandleManager.Iv2InFlight inflight = dut.findHandle(handles.get(i));
+            if (i % 2 == 0) {
+                assertNull(inflight);
+            } else {
+                assertEquals(31337 + i, inflight.m_clientHandle);
+            }
+        }
+    }
 }
@@ -61,6 +61,8 @@ import junit.framework.TestCase;
 import org.apache.commons.lang3.ArrayUtils;
 import org.apache.hadoop_voltpatches.util.PureJavaCrc32C;
 import org.json_voltpatches.JSONException;
+import org.voltdb.types.GeographyPointValue;
+import org.voltdb.types.GeographyValue;
 import org.voltdb.types.TimestampType;
 import org.voltdb.types.VoltDecimalHelper;
 
@@ -537,4 +539,73 @@ public class TestParameterSet extends TestCase {
 
         assertTrue(Arrays.deepEquals(pset1array, pset2array));
     }
+
+    public void testNoCopyDecodesOnAccess() throws IOException {
+        VoltTable table = new VoltTable(new VoltTable.ColumnInfo("a", VoltType.BIGINT),
+                new VoltTable.ColumnInfo("b", VoltType.STRING));
+        table.addRow(1L, "one");
+        byte[] bigBinary = new byte[100000];
+        Arrays.fill(bigBinary, (byte) 7);
+
+        ParameterSet pset = ParameterSet.fromArrayNoCopy(bigBinary,
+                                                         new String[] { "a", null, "ccc" },
+                                                         new byte[][] { { 1, 2 }, null },
+                                                         null,
+                                                         VoltType.NULL_STRING_OR_VARBINARY,
+                                                         new TimestampType(12345L),
+                                                         new BigDecimal("1.5"),
+                                                         new GeographyPointValue(10.5, 20.5),
+                                                         new GeographyValue("POLYGON((0 0, 1 0, 1 1, 0 1, 0 0))"),
+                                                         new GeographyValue[] { null },
+                                                         table,
+                                                         new VoltTable[] { table, table },
+                                                         new long[] { 1, 2, 3 },
+                                                         "partition key");
+
+        // leave room around the set so offsets are relative to the set
+        ByteBuffer buf = ByteBuffer.allocate(pset.getSerializedSize() + 8);
+        buf.putInt(42);
+        pset.flattenToBuffer(buf);
+        buf.putInt(43);
+        buf.flip();
+        buf.getInt();
+
+        ParameterSet lazy = ParameterSet.fromByteBufferNoCopy(buf);
+        assertEquals(43, buf.getInt());
+        assertEquals(pset.getSerializedSize(), lazy.getSerializedSize());
+        assertEquals(pset.size(), lazy.size());
+
+        // single parameters decode out of order without touching the others
+        assertEquals("partition key", lazy.getParam(13));
+        assertTrue(Arrays.equals(bigBinary, (byte[]) lazy.getParam(0)));
+        assertSame(lazy.getParam(0), lazy.getParam(0));
+        assertEquals(new TimestampType(12345L), lazy.getParam(5));
+
+        // the original bytes are written back out unchanged
+        ByteBuffer expected = ByteBuffer.allocate(pset.getSerializedSize());
+        pset.flattenToBuffer(expected);
+        ByteBuffer actual = ByteBuffer.allocate(lazy.getSerializedSize());
+        lazy.flattenToBuffer(actual);
+        assertEquals(expected.flip(), actual.flip());
+
+        assertTrue(Arrays.deepEquals(ParameterSet.fromByteBuffer(expected.duplicate()).toArray(), lazy.toArray()));
+
+        // the partitioning parameter can be read by stepping over the ones before it
+        assertEquals("partition key", ParameterSet.getParameterAtIndex(13, expected.duplicate()));
+        assertEquals(new BigDecimal("1.5").setScale(VoltDecimalHelper.kDefaultScale),
+                ParameterSet.getParameterAtIndex(6, expected.duplicate()));
+    }
+
+    public void testNoCopyRejectsTruncatedBuffer() throws IOException {
+        ParameterSet pset = ParameterSet.fromArrayNoCopy("abc", new byte[1000]);
+        ByteBuffer buf = ByteBuffer.allocate(pset.getSerializedSize());
+        pset.flattenToBuffer(buf);
+        buf.flip();
+        buf.limit(buf.limit() - 1);
+        try {
+            ParameterSet.fromByteBufferNoCopy(buf);
+            fail("Expected a truncated parameter set to be rejected");
+        } catch (IOException expected) {
+        }
+    }
 }
@@ -0,0 +1,86 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2019 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.voltdb.client.ClientResponse;
+
+public class TestRestoreAgent {
+
+    private static VoltTable restoreResults(String... results) {
+        VoltTable vt = new VoltTable(
+                new VoltTable.ColumnInfo("TABLE", VoltType.STRING),
+                new VoltTable.ColumnInfo("RESULT", VoltType.STRING),
+                new VoltTable.ColumnInfo("ERR_MSG", VoltType.STRING));
+        for (String result : results) {
+            vt.addRow("T", result, "");
+        }
+        return vt;
+    }
+
+    private static VoltTable throughput() {
+        VoltTable vt = new VoltTable(
+                new VoltTable.ColumnInfo("TABLE", VoltType.STRING),
+                new VoltTable.ColumnInfo("TUPLES", VoltType.BIGINT),
+                new VoltTable.ColumnInfo("DURATION_MS", VoltType.BIGINT),
+                new VoltTable.ColumnInfo("TUPLES_PER_SECOND", VoltType.BIGINT));
+        vt.addRow("T", 1000L, 10L, 100000L);
+        return vt;
+    }
+
+    private static ClientResponse response(byte status, VoltTable... results) {
+        return new ClientResponseImpl(status, results, null);
+    }
+
+    @Test
+    public void testSingleResultTable() {
+        assertTrue(RestoreAgent.isRestoreSuccessful(
+                response(ClientResponse.SUCCESS, restoreResults("SUCCESS", "SUCCESS"))));
+        assertFalse(RestoreAgent.isRestoreSuccessful(
+                response(ClientResponse.SUCCESS, restoreResults("SUCCESS", "FAILURE"))));
+    }
+
+    @Test
+    public void testMoreThanOneResultTable() {
+        ClientResponse res = response(ClientResponse.SUCCESS, restoreResults("SUCCESS"), throughput());
+        assertTrue(RestoreAgent.isRestoreSuccessful(res));
+        // The results are left for logging
+        assertEquals(1, res.getResults()[0].getRowCount());
+        assertTrue(res.getResults()[0].advanceRow());
+
+        assertFalse(RestoreAgent.isRestoreSuccessful(
+                response(ClientResponse.SUCCESS, restoreResults("FAILURE"), throughput())));
+    }
+
+    @Test
+    public void testFailedResponse() {
+        assertFalse(RestoreAgent.isRestoreSuccessful(response(ClientResponse.SUCCESS)));
+        assertFalse(RestoreAgent.isRestoreSuccessful(
+                response(ClientResponse.UNEXPECTED_FAILURE, restoreResults("SUCCESS"), throughput())));
+    }
+}
@@ -0,0 +1,177 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2019 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestStatementStats {
+
+    private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private boolean m_wasEnabled;
+    private long m_oldLimit;
+    private long m_memoryBefore;
+
+    @Before
+    public void setUp() {
+        m_wasEnabled = StatementStats.s_histogramsEnabled;
+        m_oldLimit = StatementStats.s_histogramMemoryLimit;
+        StatementStats.s_histogramsEnabled = true;
+        m_memoryBefore = StatementStats.getHistogramMemory();
+    }
+
+    @After
+    public void tearDown() {
+        StatementStats.s_histogramsEnabled = m_wasEnabled;
+        StatementStats.s_histogramMemoryLimit = m_oldLimit;
+    }
+
+    private static void record(StatementStats.StatsData data, long duration, int count) {
+        for (int i = 0; i < count; i++) {
+            data.recordExecutionTime(duration);
+        }
+    }
+
+    // Histogram buckets are only precise to two significant digits
+    private static void assertAbout(long expected, long actual) {
+        assertTrue("expected about " + expected + " but was " + actual,
+                actual >= expected && actual <= expected * 101 / 100);
+    }
+
+    @Test
+    public void testIntervalPercentiles() {
+        StatementStats stats = new StatementStats("stmt", false);
+        record(stats.m_workerTask, MS, 100);
+
+        // The first interval covers everything so far
+        long[] interval = stats.getIncrementalExecutionTimePercentilesAndReset();
+        assertAbout(MS, interval[0]);
+        assertAbout(MS, interval[3]);
+
+        // The next one only what was recorded since
+        record(stats.m_workerTask, 10 * MS, 100);
+        interval = stats.getIncrementalExecutionTimePercentilesAndReset();
+        assertAbout(10 * MS, interval[0]);
+        assertAbout(10 * MS, interval[3]);
+
+        interval = stats.getIncrementalExecutionTimePercentilesAndReset();
+        for (long percentile : interval) {
+            assertEquals(0, percentile);
+        }
+
+        // Polls without an interval still see everything
+        long[] total = stats.getExecutionTimePercentiles();
+        assertAbout(MS, total[0]);
+        assertAbout(10 * MS, total[1]);
+        stats.releaseHistograms();
+        assertEquals(m_memoryBefore, StatementStats.getHistogramMemory());
+    }
+
+    @Test
+    public void testCoordinatorAndWorkerAdd() {
+        StatementStats stats = new StatementStats("stmt", true);
+        record(stats.m_workerTask, MS, 10);
+        assertAbout(MS, stats.getExecutionTimePercentiles()[0]);
+        record(stats.m_coordinatorTask, 2 * MS, 10);
+        assertAbout(3 * MS, stats.getExecutionTimePercentiles()[0]);
+        stats.releaseHistograms();
+        assertEquals(m_memoryBefore, StatementStats.getHistogramMemory());
+    }
+
+    @Test
+    public void testDisabled() {
+        StatementStats.s_histogramsEnabled = false;
+        StatementStats stats = new StatementStats("stmt", false);
+        record(stats.m_workerTask, MS, 10);
+        assertNull(stats.getExecutionTimePercentiles());
+        assertNull(stats.getIncrementalExecutionTimePercentilesAndReset());
+        assertEquals(m_memoryBefore, StatementStats.getHistogramMemory());
+    }
+
+    @Test
+    public void testMemoryBudgetCap() {
+        StatementStats.s_histogramMemoryLimit = m_memoryBefore + 2 * StatementStats.HISTOGRAM_FOOTPRINT;
+        StatementStats first = new StatementStats("first", false);
+        StatementStats second = new StatementStats("second", false);
+        StatementStats third = new StatementStats("third", false);
+        record(first.m_workerTask, MS, 1);
+        record(second.m_workerTask, MS, 1);
+        assertEquals(m_memoryBefore + 2 * StatementStats.HISTOGRAM_FOOTPRINT, StatementStats.getHistogramMemory());
+
+        // Over budget, no histogram and no percentiles
+        record(third.m_workerTask, MS, 1);
+        assertNull(third.getExecutionTimePercentiles());
+        // Nor a snapshot to tell the intervals apart
+        assertNull(first.getIncrementalExecutionTimePercentilesAndReset());
+        assertNotNull(first.getExecutionTimePercentiles());
+        assertEquals(m_memoryBefore + 2 * StatementStats.HISTOGRAM_FOOTPRINT, StatementStats.getHistogramMemory());
+
+        // Dropping one gives its share back to the others
+        first.releaseHistograms();
+        assertEquals(m_memoryBefore + StatementStats.HISTOGRAM_FOOTPRINT, StatementStats.getHistogramMemory());
+        record(third.m_workerTask, MS, 1);
+        assertNotNull(third.getExecutionTimePercentiles());
+
+        // Released statistics don't allocate again, and release only once
+        record(first.m_workerTask, MS, 1);
+        first.releaseHistograms();
+        assertEquals(m_memoryBefore + 2 * StatementStats.HISTOGRAM_FOOTPRINT, StatementStats.getHistogramMemory());
+
+        second.releaseHistograms();
+        third.releaseHistograms();
+        assertEquals(m_memoryBefore, StatementStats.getHistogramMemory());
+    }
+
+    @Test
+    public void testCatalogUpdateReleasesDroppedCollectors() throws Exception {
+        ProcedureStatsCollector collector = new ProcedureStatsCollector(1, 0, "proc", true, null, true);
+        collector.endProcedure(false, false, collector.beginProcedure());
+        assertEquals(m_memoryBefore + StatementStats.HISTOGRAM_FOOTPRINT, StatementStats.getHistogramMemory());
+
+        StatsAgent agent = new StatsAgent();
+        try {
+            agent.registerStatsSource(StatsSelector.PROCEDURE, 1, collector);
+            agent.notifyOfCatalogUpdate();
+            assertEquals(m_memoryBefore, StatementStats.getHistogramMemory());
+
+            // A collector registered after the update keeps its budget
+            ProcedureStatsCollector current = new ProcedureStatsCollector(1, 0, "proc", true, null, true);
+            agent.registerStatsSource(StatsSelector.PROCEDURE, 1, current);
+            current.endProcedure(false, false, current.beginProcedure());
+            assertEquals(m_memoryBefore + StatementStats.HISTOGRAM_FOOTPRINT, StatementStats.getHistogramMemory());
+            current.releaseHistograms();
+        } finally {
+            agent.shutdown();
+        }
+    }
+}
@@ -0,0 +1,161 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2019 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.voltdb.catalog.TimeToLive;
+
+public class TestTTLManager {
+
+    private static final int BATCH_SIZE = 100;
+
+    private TTLManager.TTLStats m_stats;
+    private TTLManager.PartitionDeleter m_deleter;
+
+    @Before
+    public void setUp() {
+        TimeToLive ttl = mock(TimeToLive.class);
+        doReturn(BATCH_SIZE).when(ttl).getBatchsize();
+        doReturn(1).when(ttl).getMaxfrequency();
+        TTLManager manager = TTLManager.instance();
+        m_stats = new TTLManager.TTLStats("T");
+        TTLManager.TTLTask task = manager.new TTLTask("T", ttl, m_stats, true);
+        m_deleter = manager.new PartitionDeleter(task, 0);
+    }
+
+    @Test
+    public void testFullBatchWithinBudgetDoubles() {
+        assertEquals(BATCH_SIZE, m_deleter.batchSize);
+        m_deleter.lastLatency = TTLManager.LATENCY_BUDGET / 2 - 1;
+        m_deleter.adaptBatchSize(BATCH_SIZE);
+        assertEquals(BATCH_SIZE * 2, m_deleter.batchSize);
+
+        // Capped at MAX_BATCH_FACTOR times the batch size of the table
+        for (int i = 0; i < 20; i++) {
+            m_deleter.adaptBatchSize(m_deleter.batchSize);
+        }
+        assertEquals(BATCH_SIZE * TTLManager.MAX_BATCH_FACTOR, m_deleter.batchSize);
+    }
+
+    @Test
+    public void testPartialOrSlowBatchDoesNotGrow() {
+        // Fewer rows than the batch were left
+        m_deleter.lastLatency = 0;
+        m_deleter.adaptBatchSize(BATCH_SIZE - 1);
+        assertEquals(BATCH_SIZE, m_deleter.batchSize);
+
+        // Within budget but not well within it
+        m_deleter.lastLatency = TTLManager.LATENCY_BUDGET;
+        m_deleter.adaptBatchSize(BATCH_SIZE);
+        assertEquals(BATCH_SIZE, m_deleter.batchSize);
+    }
+
+    @Test
+    public void testOverBudgetShrinksInProportion() {
+        m_deleter.lastLatency = TTLManager.LATENCY_BUDGET * 4;
+        m_deleter.adaptBatchSize(BATCH_SIZE);
+        assertEquals(BATCH_SIZE / 4, m_deleter.batchSize);
+
+        // Never below one row
+        m_deleter.lastLatency = TTLManager.LATENCY_BUDGET * 1000L;
+        m_deleter.adaptBatchSize(m_deleter.batchSize);
+        assertEquals(1, m_deleter.batchSize);
+    }
+
+    @Test
+    public void testDrLimitHalvesAndCapsBatch() {
+        m_deleter.drLimitHit();
+        assertEquals(BATCH_SIZE / 2, m_deleter.batchSize);
+        m_deleter.drLimitHit();
+        assertEquals(BATCH_SIZE / 4, m_deleter.batchSize);
+
+        // Fast full batches can't grow past the last size a DR buffer took
+        m_deleter.lastLatency = 0;
+        for (int i = 0; i < 10; i++) {
+            m_deleter.adaptBatchSize(m_deleter.batchSize);
+        }
+        assertEquals(BATCH_SIZE / 4, m_deleter.batchSize);
+
+        for (int i = 0; i < 10; i++) {
+            m_deleter.drLimitHit();
+        }
+        assertEquals(1, m_deleter.batchSize);
+    }
+
+    @Test
+    public void testLag() {
+        m_deleter.caughtUpTime = 1000;
+        m_deleter.rowsLeft = 0;
+        assertEquals(0, m_deleter.getLag(5000));
+        m_deleter.rowsLeft = 10;
+        assertEquals(4000, m_deleter.getLag(5000));
+    }
+
+    @Test
+    public void testRateAndBacklog() {
+        final long start = 1000000;
+        m_stats.update(100, 1000, start);
+        // No complete window yet
+        assertEquals(0, m_stats.rowsPerSecond);
+        assertEquals(-1, m_stats.getBacklogSeconds());
+
+        m_stats.update(400, 600, start + TTLManager.RATE_WINDOW / 2);
+        assertEquals(0, m_stats.rowsPerSecond);
+
+        // 100 + 400 + 500 rows over one window
+        m_stats.update(500, 200, start + TTLManager.RATE_WINDOW);
+        final long rate = 1000L * 1000 / TTLManager.RATE_WINDOW;
+        assertEquals(rate, m_stats.rowsPerSecond);
+        assertEquals(200 / rate, m_stats.getBacklogSeconds());
+
+        m_stats.update(200, 0, start + TTLManager.RATE_WINDOW + 1);
+        assertEquals(0, m_stats.getBacklogSeconds());
+        assertEquals(1200, m_stats.rowsDeleted);
+    }
+
+    @Test
+    public void testRowsDeletedLastRoundIsRoundTotal() {
+        m_stats.updatePartition(3, 10, 1);
+        m_stats.updatePartition(4, 6, 2);
+        assertEquals(0, m_stats.rowsLastDeleted);
+        m_stats.completeRound();
+        assertEquals(7, m_stats.rowsLastDeleted);
+
+        m_stats.updatePartition(2, 4, 3);
+        m_stats.completeRound();
+        assertEquals(2, m_stats.rowsLastDeleted);
+        m_stats.completeRound();
+        assertEquals(0, m_stats.rowsLastDeleted);
+        assertEquals(9, m_stats.rowsDeleted);
+
+        // @LowImpactDeleteNT deletes a round at a time
+        m_stats.update(5, 0, 4);
+        assertEquals(5, m_stats.rowsLastDeleted);
+    }
+}
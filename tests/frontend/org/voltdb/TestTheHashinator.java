@@ -42,6 +42,7 @@ import org.junit.Test;
 import org.voltcore.utils.InstanceId;
 import org.voltcore.utils.Pair;
 import org.voltdb.TheHashinator.HashinatorConfig;
+import org.voltdb.client.HashinatorLite;
 import org.voltdb.jni.ExecutionEngine;
 import org.voltdb.jni.ExecutionEngineJNI;
 import org.voltdb.sysprocs.saverestore.HashinatorSnapshotData;
@@ -681,6 +682,63 @@ public class TestTheHashinator {
         assertEquals( 2, hashinator.partitionForToken(Integer.MAX_VALUE - 1));
     }
 
+    @Test
+    public void testLookupAndBatchHashing() throws Exception {
+        for (int partitionCount : new int[] { 1, 3, 8, 61 }) {
+            final byte configBytes[] = ElasticHashinator.getConfigureBytes(partitionCount,
+                    ElasticHashinator.DEFAULT_TOTAL_TOKENS);
+            ElasticHashinator hashinator = new ElasticHashinator(configBytes, false);
+            HashinatorLite lite = new HashinatorLite(configBytes, false);
+            ImmutableSortedMap<Integer, Integer> tokens = hashinator.getTokens();
+
+            // The lookup table must agree with the ring everywhere, especially either side of a token
+            Set<Integer> hashes = new HashSet<Integer>();
+            for (int token : tokens.keySet()) {
+                hashes.add(token);
+                hashes.add(token - 1);
+                hashes.add(token + 1);
+            }
+            for (int i = 0; i < 10000; i++) {
+                hashes.add(r.nextInt());
+            }
+            hashes.add(Integer.MAX_VALUE);
+            for (int hash : hashes) {
+                final int expected = tokens.floorEntry(hash).getValue();
+                assertEquals(expected, hashinator.partitionForToken(hash));
+                assertEquals(expected, lite.partitionForToken(hash));
+            }
+
+            long longs[] = new long[1000];
+            byte bytes[][] = new byte[longs.length][];
+            for (int i = 0; i < longs.length; i++) {
+                longs[i] = r.nextLong();
+                bytes[i] = new byte[r.nextInt(32)];
+                r.nextBytes(bytes[i]);
+            }
+            longs[0] = Long.MIN_VALUE;
+            bytes[0] = null;
+
+            int partitions[] = new int[longs.length];
+            int litePartitions[] = new int[longs.length];
+            hashinator.getHashedPartitionsForLongs(longs, partitions);
+            lite.getHashedPartitionsForLongs(longs, litePartitions);
+            for (int i = 0; i < longs.length; i++) {
+                final int expected = hashinator.getHashedPartitionForParameter(VoltType.BIGINT, longs[i]);
+                assertEquals(expected, partitions[i]);
+                assertEquals(expected, litePartitions[i]);
+                assertEquals(expected, lite.getHashedPartitionForParameter(VoltType.BIGINT.getValue(), longs[i]));
+            }
+
+            hashinator.getHashedPartitionsForBytes(bytes, partitions);
+            lite.getHashedPartitionsForBytes(bytes, litePartitions);
+            for (int i = 0; i < bytes.length; i++) {
+                final int expected = hashinator.getHashedPartitionForParameter(VoltType.VARBINARY, bytes[i]);
+                assertEquals(expected, partitions[i]);
+                assertEquals(expected, litePartitions[i]);
+            }
+        }
+    }
+
     @Test
     public void testElasticAddPartitions() throws Exception {
         ElasticHashinator hashinator = new ElasticHashinator(ElasticHashinator.getConfigureBytes(3,
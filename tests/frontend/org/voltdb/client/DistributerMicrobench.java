@@ -0,0 +1,145 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2019 VoltDB Inc.
+ *
+ * This file contains original code and/or modifications of original code.
+ * Any modifications made by VoltDB Inc. are licensed under the following
+ * terms and conditions:
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.client;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.voltdb.ServerThread;
+import org.voltdb.VoltDB.Configuration;
+import org.voltdb.compiler.VoltProjectBuilder;
+import org.voltdb.utils.MiscUtils;
+
+/**
+ * Calls a single partition procedure from a growing number of threads sharing one client
+ * with client affinity on, reporting invocations per second for each thread count. Every
+ * invocation is routed by the Distributer, so this shows how well routing scales when many
+ * application threads use the same client.
+ */
+public class DistributerMicrobench {
+
+    static final int[] THREAD_COUNTS = { 1, 2, 4, 8, 16 };
+    static final int OUTSTANDING_PER_THREAD = 100;
+
+    static void run(final Client client, final int threadCount, final long durationMs, boolean report)
+            throws Exception {
+        final CyclicBarrier barrier = new CyclicBarrier(threadCount + 1);
+        final AtomicLong completed = new AtomicLong();
+        final AtomicLong failed = new AtomicLong();
+        final long[] window = new long[2];
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int t = 0; t < threadCount; t++) {
+            final int seed = t;
+            Thread thread = new Thread("Microbench caller " + t) {
+                @Override
+                public void run() {
+                    final Semaphore outstanding = new Semaphore(OUTSTANDING_PER_THREAD);
+                    ProcedureCallback callback = new ProcedureCallback() {
+                        @Override
+                        public void clientCallback(ClientResponse response) {
+                            if (response.getStatus() == ClientResponse.SUCCESS) {
+                                completed.incrementAndGet();
+                            } else {
+                                failed.incrementAndGet();
+                            }
+                            outstanding.release();
+                        }
+                    };
+                    try {
+                        barrier.await();
+                        long key = seed;
+                        while (System.currentTimeMillis() < window[1]) {
+                            outstanding.acquire();
+                            client.callProcedure(callback, "BENCH.select", key);
+                            key += threadCount;
+                        }
+                        outstanding.acquire(OUTSTANDING_PER_THREAD);
+                    } catch (Exception e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+            };
+            thread.start();
+            threads.add(thread);
+        }
+
+        window[0] = System.currentTimeMillis();
+        window[1] = window[0] + durationMs;
+        barrier.await();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        long elapsedMs = System.currentTimeMillis() - window[0];
+
+        if (!report) {
+            return;
+        }
+        System.out.printf("%8d %14d %16.0f %8d%n", threadCount, completed.get(),
+                completed.get() * 1000.0 / elapsedMs, failed.get());
+    }
+
+    public static void main(String[] args) throws Exception {
+        long durationMs = args.length == 0 ? 5000 : Long.parseLong(args[0]);
+
+        VoltProjectBuilder builder = new VoltProjectBuilder();
+        builder.addLiteralSchema("create table BENCH (id bigint not null, val bigint, " +
+                "primary key (id));");
+        builder.addPartitionInfo("BENCH", "id");
+        Configuration config = new Configuration();
+        config.m_pathToCatalog = Configuration.getPathToCatalogForTest("distbench.jar");
+        config.m_pathToDeployment = Configuration.getPathToCatalogForTest("distbench.xml");
+        if (!builder.compile(config.m_pathToCatalog, 4, 1, 0)) {
+            throw new RuntimeException("Failed to compile the catalog");
+        }
+        MiscUtils.copyFile(builder.getPathToDeployment(), config.m_pathToDeployment);
+        ServerThread server = new ServerThread(config);
+        server.start();
+        server.waitForInitialization();
+
+        ClientConfig clientConfig = new ClientConfig();
+        clientConfig.setClientAffinity(true);
+        clientConfig.setMaxOutstandingTxns(OUTSTANDING_PER_THREAD * THREAD_COUNTS[THREAD_COUNTS.length - 1]);
+        Client client = ClientFactory.createClient(clientConfig);
+        try {
+            client.createConnection("localhost");
+            // Warm up the JIT and wait for the topology used by client affinity
+            run(client, 1, durationMs, false);
+            System.out.printf("%8s %14s %16s %8s%n", "THREADS", "INVOCATIONS", "INVOCATIONS/s", "FAILED");
+            for (int threadCount : THREAD_COUNTS) {
+                run(client, threadCount, durationMs, true);
+            }
+        } finally {
+            client.close();
+            server.shutdown();
+            server.join();
+        }
+    }
+}
@@ -0,0 +1,118 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2019 VoltDB Inc.
+ *
+ * This file contains original code and/or modifications of original code.
+ * Any modifications made by VoltDB Inc. are licensed under the following
+ * terms and conditions:
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.client;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import org.voltdb.ClientResponseImpl;
+import org.voltdb.VoltTable;
+import org.voltdb.VoltTable.ColumnInfo;
+import org.voltdb.VoltType;
+
+/**
+ * Measures the bytes on the wire of a large result and the time taken to encode and
+ * decode it for each result encoding. The result looks like a report, a few low
+ * cardinality VARCHAR columns and some numbers.
+ */
+public class ResultEncodingMicrobench {
+
+    static final int ITERATIONS = 5;
+
+    static VoltTable generateResult(int rowCount) {
+        VoltTable t = new VoltTable(
+                new ColumnInfo("DAY", VoltType.STRING),
+                new ColumnInfo("REGION", VoltType.STRING),
+                new ColumnInfo("PRODUCT", VoltType.STRING),
+                new ColumnInfo("CHANNEL", VoltType.STRING),
+                new ColumnInfo("UNITS", VoltType.BIGINT),
+                new ColumnInfo("REVENUE", VoltType.FLOAT));
+        final String regions[] = { "north america", "south america", "europe", "asia pacific", "africa" };
+        final String channels[] = { "online", "retail store", "partner", "phone" };
+        final Random r = new Random(0);
+        for (int ii = 0; ii < rowCount; ii++) {
+            t.addRow(String.format("2019-%02d-%02d", 1 + ii / 50000 % 12, 1 + ii / 2000 % 28),
+                    regions[ii / 400 % regions.length],
+                    "product description number " + r.nextInt(2000),
+                    channels[r.nextInt(channels.length)],
+                    r.nextInt(100),
+                    r.nextInt(1000000) / 100.0);
+        }
+        return t;
+    }
+
+    static void run(VoltTable result, byte encoding) throws Exception {
+        ClientResponseImpl response = new ClientResponseImpl(ClientResponse.SUCCESS,
+                new VoltTable[] { result }, null, 0);
+        int wireBytes = 0;
+        long encodeNanos = Long.MAX_VALUE;
+        long decodeNanos = Long.MAX_VALUE;
+        // Report the best of several passes, the first ones warm up the JIT
+        for (int iteration = 0; iteration < ITERATIONS; iteration++) {
+            long start = System.nanoTime();
+            response.encodeResults(encoding);
+            wireBytes = response.getSerializedSize();
+            ByteBuffer buf = ByteBuffer.allocate(wireBytes);
+            response.flattenToBuffer(buf).flip();
+            encodeNanos = Math.min(encodeNanos, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            ClientResponseImpl decoded = new ClientResponseImpl();
+            decoded.initFromBuffer(buf);
+            decodeNanos = Math.min(decodeNanos, System.nanoTime() - start);
+            assert(decoded.getResults()[0].getRowCount() == result.getRowCount());
+        }
+
+        System.out.printf("%-22s %12d %8.2f %12.1f %12.1f%n",
+                encodingName(encoding), wireBytes,
+                result.getSerializedSize() / (double) wireBytes,
+                encodeNanos / 1e6, decodeNanos / 1e6);
+    }
+
+    static String encodingName(byte encoding) {
+        switch (encoding) {
+        case 0: return "NONE";
+        case ResultEncoding.DICTIONARY: return "DICTIONARY";
+        case ResultEncoding.COMPRESSED: return "COMPRESSED";
+        default: return "DICTIONARY+COMPRESSED";
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int rowCount = args.length == 0 ? 1000000 : Integer.parseInt(args[0]);
+        VoltTable result = generateResult(rowCount);
+
+        System.out.printf("%d rows, %d bytes%n", result.getRowCount(), result.getSerializedSize());
+        System.out.printf("%-22s %12s %8s %12s %12s%n",
+                "ENCODING", "WIRE BYTES", "RATIO", "ENCODE ms", "DECODE ms");
+        for (byte encoding : new byte[] { 0, ResultEncoding.DICTIONARY, ResultEncoding.COMPRESSED,
+                ResultEncoding.DICTIONARY | ResultEncoding.COMPRESSED }) {
+            run(result, encoding);
+        }
+    }
+}
@@ -31,11 +31,13 @@ import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.junit.Test;
 import org.voltcore.network.Connection;
@@ -45,8 +47,10 @@ import org.voltcore.network.VoltNetworkPool;
 import org.voltcore.network.VoltProtocolHandler;
 import org.voltdb.ClientResponseImpl;
 import org.voltdb.StoredProcedureInvocation;
+import org.voltdb.TheHashinator;
 import org.voltdb.VoltTable;
 import org.voltdb.VoltType;
+import org.voltdb.common.Constants;
 
 import junit.framework.TestCase;
 
@@ -281,7 +285,7 @@ public class TestDistributer extends TestCase {
         volatile ServerSocketChannel socket = null;
         volatile MockInputHandler handler = null;
         volatile VoltNetworkPool network;
-        List<SocketChannel> channels = new ArrayList<>();
+        List<SocketChannel> channels = new CopyOnWriteArrayList<>();
     }
 
     private static class CSL extends ClientStatusListenerExt {
@@ -599,6 +603,140 @@ public class TestDistributer extends TestCase {
     }
 
 
+    // @SystemCatalog PROCEDURES with procedure i1 partitioned on its first parameter
+    private static ClientResponse procedureResponse() throws Exception {
+        VoltTable vt = new VoltTable(
+                new VoltTable.ColumnInfo("PROCEDURE_CAT", VoltType.STRING),
+                new VoltTable.ColumnInfo("PROCEDURE_SCHEM", VoltType.STRING),
+                new VoltTable.ColumnInfo("PROCEDURE_NAME", VoltType.STRING),
+                new VoltTable.ColumnInfo("RESERVED1", VoltType.STRING),
+                new VoltTable.ColumnInfo("RESERVED2", VoltType.STRING),
+                new VoltTable.ColumnInfo("RESERVED3", VoltType.STRING),
+                new VoltTable.ColumnInfo("REMARKS", VoltType.STRING));
+        String remarks = "{\"" + Constants.JSON_READ_ONLY + "\":false,\"" +
+                Constants.JSON_SINGLE_PARTITION + "\":true,\"" +
+                Constants.JSON_PARTITION_PARAMETER + "\":0,\"" +
+                Constants.JSON_PARTITION_PARAMETER_TYPE + "\":" + VoltType.INTEGER.getValue() + "}";
+        vt.addRow(null, null, "i1", null, null, null, remarks);
+        return new ClientResponseImpl(ClientResponse.SUCCESS, new VoltTable[] { vt }, null);
+    }
+
+    // @Statistics TOPO with all the partitions led by leaderHost
+    private static ClientResponse topologyResponse(int partitions, int leaderHost) {
+        VoltTable topo = new VoltTable(
+                new VoltTable.ColumnInfo("Partition", VoltType.INTEGER),
+                new VoltTable.ColumnInfo("Sites", VoltType.STRING),
+                new VoltTable.ColumnInfo("Leader", VoltType.STRING));
+        for (int i = 0; i < partitions; i++) {
+            topo.addRow(i, "0:" + i + ",1:" + i, leaderHost + ":" + i);
+        }
+        VoltTable hash = new VoltTable(
+                new VoltTable.ColumnInfo("HASHTYPE", VoltType.STRING),
+                new VoltTable.ColumnInfo("HASHCONFIG", VoltType.VARBINARY));
+        hash.addRow("ELASTIC", TheHashinator.getConfigureBytes(partitions));
+        return new ClientResponseImpl(ClientResponse.SUCCESS, new VoltTable[] { topo, hash }, null);
+    }
+
+    @Test
+    public void testConcurrentRoutingWhileTopologyChanges() throws Exception {
+        // TODO: write a mock server that can grock ssl
+        if (ClientConfig.ENABLE_SSL_FOR_TEST) return;
+
+        // Invocations are routed lock free while connections come and go and the topology
+        // is replaced. Every invocation must get exactly one response and routing must not throw.
+        final int threads = 4;
+        final int invocationsPerThread = 2000;
+        MockVolt volt0, volt1, volt2;
+        volt0 = volt1 = volt2 = null;
+        try {
+            volt0 = new MockVolt(20000);
+            volt0.start();
+            volt1 = new MockVolt(20001);
+            volt1.start();
+            volt2 = new MockVolt(20002);
+            volt2.start();
+
+            CSL csl = new CSL();
+            final Distributer dist = new Distributer(false,
+                    ClientConfig.DEFAULT_PROCEDURE_TIMOUT_NANOS,
+                    ClientConfig.DEFAULT_CONNECTION_TIMOUT_MS,
+                    true, false, null /* subject */, null);
+            dist.addClientStatusListener(csl);
+            dist.createConnection("localhost", "", "", 20000, ClientAuthScheme.HASH_SHA1);
+            dist.createConnection("localhost", "", "", 20001, ClientAuthScheme.HASH_SHA1);
+            dist.new ProcUpdateCallback().clientCallback(procedureResponse());
+            dist.new TopoUpdateCallback().clientCallback(topologyResponse(4, 0));
+            assertTrue(dist.isHashinatorInitialized());
+
+            final AtomicInteger handle = new AtomicInteger();
+            final AtomicInteger responses = new AtomicInteger();
+            final AtomicReference<Throwable> failure = new AtomicReference<>();
+            final CountDownLatch done = new CountDownLatch(threads);
+            final ProcedureCallback callback = new ProcedureCallback() {
+                @Override
+                public void clientCallback(ClientResponse clientResponse) {
+                    // responses are either answered or failed by a lost connection
+                    if (clientResponse.getStatus() != ClientResponse.SUCCESS &&
+                            clientResponse.getStatus() != ClientResponse.CONNECTION_LOST) {
+                        failure.compareAndSet(null, new AssertionError(clientResponse.getStatusString()));
+                    }
+                    responses.incrementAndGet();
+                }
+            };
+            for (int t = 0; t < threads; t++) {
+                new Thread() {
+                    @Override
+                    public void run() {
+                        try {
+                            for (int i = 0; i < invocationsPerThread; i++) {
+                                ProcedureInvocation pi = new ProcedureInvocation(handle.incrementAndGet(), "i1", i);
+                                dist.queue(pi, callback, true, System.nanoTime(), 0);
+                            }
+                        } catch (Throwable t) {
+                            failure.compareAndSet(null, t);
+                        } finally {
+                            done.countDown();
+                        }
+                    }
+                }.start();
+            }
+
+            int round = 0;
+            while (done.getCount() > 0) {
+                // replace the topology, every other time with masters on a host which isn't connected
+                dist.new TopoUpdateCallback().clientCallback(topologyResponse(round % 2 == 0 ? 8 : 4, round % 2));
+                if (round % 2 == 0) {
+                    final int channels = volt2.channels.size();
+                    dist.createConnection("localhost", "", "", 20002, ClientAuthScheme.HASH_SHA1);
+                    while (volt2.channels.size() == channels) {
+                        Thread.yield();
+                    }
+                } else {
+                    volt2.channels.get(volt2.channels.size() - 1).close();
+                }
+                round++;
+            }
+
+            dist.drain();
+            assertNull(failure.get());
+            assertFalse(csl.m_exceptionHandled);
+            assertEquals(threads * invocationsPerThread, responses.get());
+            assertTrue(round > 0);
+            dist.shutdown();
+        }
+        finally {
+            if (volt0 != null) {
+                volt0.shutdown();
+            }
+            if (volt1 != null) {
+                volt1.shutdown();
+            }
+            if (volt2 != null) {
+                volt2.shutdown();
+            }
+        }
+    }
+
     /**
      * Test connection timeouts.
      * Create a fake voltdb that runs all happy for a while, but
@@ -0,0 +1,187 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2019 VoltDB Inc.
+ *
+ * This file contains original code and/or modifications of original code.
+ * Any modifications made by VoltDB Inc. are licensed under the following
+ * terms and conditions:
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.client;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import org.voltdb.ClientResponseImpl;
+import org.voltdb.StoredProcedureInvocation;
+import org.voltdb.VoltTable;
+import org.voltdb.VoltTable.ColumnInfo;
+import org.voltdb.VoltType;
+import org.voltdb.types.GeographyPointValue;
+import org.voltdb.types.GeographyValue;
+import org.voltdb.types.TimestampType;
+
+import junit.framework.TestCase;
+
+public class TestResultEncoding extends TestCase {
+
+    static final byte ENCODINGS[] = new byte[] {
+            ResultEncoding.DICTIONARY,
+            ResultEncoding.COMPRESSED,
+            ResultEncoding.DICTIONARY | ResultEncoding.COMPRESSED };
+
+    static VoltTable makeTable(int rowCount, int distinctNames) {
+        VoltTable t = new VoltTable(
+                new ColumnInfo("ID", VoltType.BIGINT),
+                new ColumnInfo("REGION", VoltType.STRING),
+                new ColumnInfo("NAME", VoltType.STRING),
+                new ColumnInfo("STATUS", VoltType.TINYINT),
+                new ColumnInfo("AMOUNT", VoltType.DECIMAL),
+                new ColumnInfo("CREATED", VoltType.TIMESTAMP),
+                new ColumnInfo("DATA", VoltType.VARBINARY),
+                new ColumnInfo("POINT", VoltType.GEOGRAPHY_POINT),
+                new ColumnInfo("AREA", VoltType.GEOGRAPHY));
+        Random r = new Random(0);
+        GeographyValue area = new GeographyValue("POLYGON((0 0, 1 0, 1 1, 0 1, 0 0))");
+        for (int ii = 0; ii < rowCount; ii++) {
+            t.addRow(ii,
+                    "region_" + (ii / 100),
+                    r.nextInt(10) == 0 ? null : "customer_" + r.nextInt(distinctNames),
+                    r.nextInt(3),
+                    r.nextInt(5) == 0 ? null : new BigDecimal(r.nextInt(1000)),
+                    new TimestampType(1500000000000000L + ii),
+                    r.nextBoolean() ? null : new byte[] { (byte) ii, 1, 2 },
+                    ii % 7 == 0 ? null : new GeographyPointValue(ii % 10, 5),
+                    ii % 2 == 0 ? null : area);
+        }
+        return t;
+    }
+
+    static VoltTable roundTrip(VoltTable table, byte encoding) throws Exception {
+        byte encoded[] = ResultEncoding.encode(table, encoding);
+        if (encoded == null) {
+            return table;
+        }
+        assertTrue(encoded.length < table.getSerializedSize());
+        return ResultEncoding.decode(ByteBuffer.wrap(encoded), encoding);
+    }
+
+    public void testRoundTrip() throws Exception {
+        for (int rowCount : new int[] { 0, 1, 2, 1000 }) {
+            for (int distinctNames : new int[] { 1, 20, 100000 }) {
+                VoltTable table = makeTable(rowCount, distinctNames);
+                for (byte encoding : ENCODINGS) {
+                    VoltTable decoded = roundTrip(table, encoding);
+                    assertTrue(table.hasSameContents(decoded));
+                    assertEquals(table.getRowCount(), decoded.getRowCount());
+                    assertEquals(table.getColumnName(2), decoded.getColumnName(2));
+                }
+            }
+        }
+    }
+
+    public void testRepetitiveStringsShrink() throws Exception {
+        VoltTable table = makeTable(10000, 20);
+        byte encoded[] = ResultEncoding.encode(table, ResultEncoding.DICTIONARY);
+        assertNotNull(encoded);
+        assertTrue(encoded.length < table.getSerializedSize() / 2);
+    }
+
+    public void testMalformed() throws Exception {
+        VoltTable table = makeTable(1000, 20);
+        for (byte encoding : ENCODINGS) {
+            byte encoded[] = ResultEncoding.encode(table, encoding);
+            try {
+                ResultEncoding.decode(ByteBuffer.wrap(encoded, 0, encoded.length / 2), encoding);
+                fail();
+            }
+            catch (java.io.IOException expected) {}
+        }
+        try {
+            ResultEncoding.decode(ByteBuffer.allocate(16), (byte) 4);
+            fail();
+        }
+        catch (java.io.IOException expected) {}
+    }
+
+    /** Mimic the path from the client interface to the client */
+    public void testClientResponse() throws Exception {
+        VoltTable small = makeTable(2, 20);
+        VoltTable large = makeTable(5000, 20);
+        ClientResponseImpl response = new ClientResponseImpl(ClientResponse.SUCCESS,
+                new VoltTable[] { small, large }, "status", 42);
+        assertTrue(response.hasEncodableResults());
+        // Sizing the response doesn't encode it, that is left to encodeResults()
+        int plainSize = response.getSerializedSize();
+        assertEquals(plainSize, 1 + 8 + 1 + 1 + 1 + 4 + 2 + 4 + "status".length() +
+                small.getSerializedSize() + large.getSerializedSize());
+        response.encodeResults((byte) (ResultEncoding.DICTIONARY | ResultEncoding.COMPRESSED));
+
+        int size = response.getSerializedSize();
+        assertTrue(size < small.getSerializedSize() + large.getSerializedSize());
+        ByteBuffer buf = ByteBuffer.allocate(size);
+        response.flattenToBuffer(buf);
+        assertFalse(buf.hasRemaining());
+        buf.flip();
+
+        ClientResponseImpl decoded = new ClientResponseImpl();
+        decoded.initFromBuffer(buf);
+        assertEquals(42, decoded.getClientHandle());
+        assertEquals("status", decoded.getStatusString());
+        assertEquals(2, decoded.getResults().length);
+        assertTrue(small.hasSameContents(decoded.getResults()[0]));
+        assertTrue(large.hasSameContents(decoded.getResults()[1]));
+    }
+
+    public void testSmallResultsStayPlain() throws Exception {
+        VoltTable small = makeTable(2, 20);
+        ClientResponseImpl response = new ClientResponseImpl(ClientResponse.SUCCESS,
+                new VoltTable[] { small }, null, 7);
+        assertFalse(response.hasEncodableResults());
+        int plainSize = response.getSerializedSize();
+        response.encodeResults(ResultEncoding.DICTIONARY);
+        // Nothing was encoded, so there is no encoding byte per table either
+        assertEquals(plainSize, response.getSerializedSize());
+
+        ByteBuffer buf = ByteBuffer.allocate(plainSize);
+        response.flattenToBuffer(buf);
+        assertFalse(buf.hasRemaining());
+        buf.flip();
+        ClientResponseImpl decoded = new ClientResponseImpl();
+        decoded.initFromBuffer(buf);
+        assertTrue(small.hasSameContents(decoded.getResults()[0]));
+    }
+
+    public void testInvocationExtension() throws Exception {
+        ProcedureInvocation pi = new ProcedureInvocation(10, BatchTimeoutOverrideType.NO_TIMEOUT, false,
+                ResultEncoding.DICTIONARY, "proc", 1, "two");
+        ByteBuffer buf = ByteBuffer.allocate(pi.getSerializedSize());
+        pi.flattenToBuffer(buf);
+        assertFalse(buf.hasRemaining());
+        buf.flip();
+
+        StoredProcedureInvocation spi = new StoredProcedureInvocation();
+        spi.initFromBuffer(buf);
+        assertEquals(ResultEncoding.DICTIONARY, spi.getResultEncoding());
+        assertEquals("two", spi.getParams().toArray()[1]);
+    }
+}
@@ -0,0 +1,119 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2019 VoltDB Inc.
+ *
+ * This file contains original code and/or modifications of original code.
+ * Any modifications made by VoltDB Inc. are licensed under the following
+ * terms and conditions:
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.compiler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.voltdb.ParameterSet;
+import org.voltdb.VoltType;
+import org.voltdb.common.Constants;
+import org.voltdb.planner.CorePlan;
+
+import junit.framework.TestCase;
+
+public class TestAdHocCompilerCache extends TestCase {
+
+    private static AdHocPlannedStatement plan(String sql) {
+        byte[] fragment = sql.getBytes(Constants.UTF8ENCODING);
+        CorePlan core = new CorePlan(fragment, null, new byte[20], null, false, true,
+                new VoltType[0], new byte[20]);
+        return new AdHocPlannedStatement(sql.getBytes(Constants.UTF8ENCODING), core,
+                ParameterSet.emptyParameterSet(), null);
+    }
+
+    private static void put(AdHocCompilerCache cache, String sql) {
+        cache.put(sql, sql, plan(sql), null, false, false);
+    }
+
+    public void testEntryBoundAndEvictions() {
+        AdHocCompilerCache cache = new AdHocCompilerCache(10, 5);
+        long literalEvictions = AdHocCompilerCache.getLiteralEvictions();
+        long coreEvictions = AdHocCompilerCache.getCoreEvictions();
+
+        for (int i = 0; i < 50; i++) {
+            put(cache, "select * from t where a = " + i);
+        }
+        assertTrue(cache.getLiteralCacheSize() <= 10);
+        assertTrue(cache.getCoreCacheSize() <= 5);
+        assertEquals(50 - cache.getLiteralCacheSize(),
+                AdHocCompilerCache.getLiteralEvictions() - literalEvictions);
+        assertEquals(50 - cache.getCoreCacheSize(),
+                AdHocCompilerCache.getCoreEvictions() - coreEvictions);
+
+        // the most recent statement is still cached at both levels
+        String last = "select * from t where a = 49";
+        assertNotNull(cache.getWithSQL(last));
+        assertEquals(1, cache.getWithParsedToken(last).size());
+
+        // putting the same statement again adds no variant
+        put(cache, last);
+        assertEquals(1, cache.getWithParsedToken(last).size());
+    }
+
+    public void testConcurrentPutAndGet() throws Exception {
+        final AdHocCompilerCache cache = new AdHocCompilerCache(100, 100);
+        ExecutorService es = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Integer>> results = new ArrayList<Future<Integer>>();
+            for (int t = 0; t < 8; t++) {
+                results.add(es.submit(new Callable<Integer>() {
+                    @Override
+                    public Integer call() {
+                        int hits = 0;
+                        for (int i = 0; i < 2000; i++) {
+                            String sql = "select * from t where a = " + (i % 50);
+                            if (cache.getWithSQL(sql) != null) {
+                                hits++;
+                            }
+                            else {
+                                put(cache, sql);
+                            }
+                        }
+                        return hits;
+                    }
+                }));
+            }
+            for (Future<Integer> result : results) {
+                assertTrue(result.get() > 0);
+            }
+        }
+        finally {
+            es.shutdown();
+        }
+        assertEquals(50, cache.getLiteralCacheSize());
+        assertEquals(50, cache.getCoreCacheSize());
+        for (int i = 0; i < 50; i++) {
+            assertEquals(1, cache.getWithParsedToken("select * from t where a = " + i).size());
+        }
+    }
+}
@@ -535,6 +535,55 @@ public class TestStreamBlockQueue {
 
     }
 
+    /**
+     * Blocks appended by the group commit writer are read back in offer order,
+     * and survive a sync, close and reopen.
+     * @throws Exception
+     */
+    @Test
+    public void testGroupCommitOfferIterateReopen() throws Exception {
+        m_sbq.close();
+        m_sbq = new StreamBlockQueue(TEST_DIR, TEST_NONCE, true);
+        for (byte ii = 0; ii < 32; ii++) {
+            m_sbq.offer(getStreamBlockWithFill(ii));
+        }
+        assertEquals(m_sbq.sizeInBytes(), 1024 * 1024 * 2 * 32);
+        m_sbq.sync(false);
+
+        Iterator<StreamBlock> iter = m_sbq.iterator();
+        long seqnum = 100;
+        for (int ii = 0; ii < 32; ii++) {
+            StreamBlock sb = iter.next();
+            assertEquals(sb.startSequenceNumber(), seqnum);
+            seqnum += 100;
+            assertEquals(sb.totalSize(), 1024 * 1024 * 2);
+        }
+        assertFalse(iter.hasNext());
+
+        m_sbq.close();
+        System.gc();
+        System.runFinalization();
+        m_sbq = new StreamBlockQueue(TEST_DIR, TEST_NONCE, true);
+        seqnum = 100;
+        for (byte ii = 0; ii < 32; ii++) {
+            StreamBlock sb = m_sbq.pop();
+            assertEquals(sb.startSequenceNumber(), seqnum);
+            seqnum += 100;
+            BBContainer cont = sb.unreleasedContainer();
+            ByteBuffer buf = cont.b();
+            try {
+                while (buf.hasRemaining()) {
+                    assertEquals(buf.get(), ii);
+                }
+            } finally {
+                cont.discard();
+            }
+            sb.discard();
+        }
+        assertEquals(m_sbq.sizeInBytes(), 0);
+        assertTrue(m_sbq.isEmpty());
+    }
+
     @Before
     public void setUp() throws Exception {
         g_seqNo = 0;
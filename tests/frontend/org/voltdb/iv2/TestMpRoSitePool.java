@@ -0,0 +1,84 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2019 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.iv2;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import org.junit.Test;
+import org.voltdb.StoredProcedureInvocation;
+import org.voltdb.VoltType;
+import org.voltdb.compiler.AdHocPlannedStmtBatch;
+
+import junit.framework.TestCase;
+
+public class TestMpRoSitePool extends TestCase
+{
+    static TransactionTask makeTask(String procName, Object... params)
+    {
+        StoredProcedureInvocation invocation = new StoredProcedureInvocation();
+        invocation.setProcName(procName);
+        invocation.setParams(params);
+        MpTransactionState state = mock(MpTransactionState.class);
+        when(state.getInvocation()).thenReturn(invocation);
+        TransactionTask task = mock(TransactionTask.class);
+        when(task.getTransactionState()).thenReturn(state);
+        return task;
+    }
+
+    static byte[] adHocBatch(int planHash) throws Exception
+    {
+        AdHocPlannedStmtBatch batch = AdHocPlannedStmtBatch.mockStatementBatch(0, "select * from t;",
+                null, new VoltType[0], new Object[0], -1, new byte[20]);
+        // the mock plans all hash to zeroes, tell them apart
+        batch.getPlannedStatement(0).core.aggregatorHash[0] = (byte) planHash;
+        return batch.flattenPlanArrayToBuffer().array();
+    }
+
+    // Procedures are costed by name
+    @Test
+    public void testProcedureCostKey()
+    {
+        assertEquals("ReadStuff", MpRoSitePool.getCostKey(makeTask("ReadStuff", 1L)));
+    }
+
+    // Ad hoc reads are costed by plan, the same plan shares an estimate
+    @Test
+    public void testAdHocCostKeyByPlan() throws Exception
+    {
+        String first = MpRoSitePool.getCostKey(makeTask("@AdHoc_RO_MP", adHocBatch(1)));
+        String same = MpRoSitePool.getCostKey(makeTask("@AdHoc_RO_MP", adHocBatch(1)));
+        String other = MpRoSitePool.getCostKey(makeTask("@AdHoc_RO_MP", adHocBatch(2)));
+        assertTrue(first.startsWith("@AdHoc_RO_MP:"));
+        assertEquals(first, same);
+        assertFalse(first.equals(other));
+    }
+
+    // An ad hoc batch which can't be decoded falls back to the procedure name
+    @Test
+    public void testAdHocCostKeyFallback()
+    {
+        assertEquals("@AdHoc_RO_MP", MpRoSitePool.getCostKey(makeTask("@AdHoc_RO_MP", new byte[] { 1, 2, 3 })));
+    }
+}
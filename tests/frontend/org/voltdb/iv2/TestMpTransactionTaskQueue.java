@@ -64,6 +64,7 @@ public class TestMpTransactionTaskQueue extends TestCase
         m_MPpool = mock(MpRoSitePool.class);
         // Accept work for a while
         when(m_MPpool.canAcceptWork()).thenReturn(true);
+        when(m_MPpool.canAcceptWork(any(TransactionTask.class))).thenReturn(true);
         m_dut = new MpTransactionTaskQueue(m_writeQueue);
         m_dut.setMpRoSitePool(m_MPpool);
     }
@@ -150,4 +151,49 @@ public class TestMpTransactionTaskQueue extends TestCase
         verify(m_MPpool).doWork(eq(readtxnid), any(TransactionTask.class));
         verify(m_MPpool).doWork(eq(readtxnid2), any(TransactionTask.class));
     }
+
+    // A read the pool won't admit yet lets the reads behind it run, but not those behind a write
+    @Test
+    public void testDeferredRead()
+    {
+        TxnEgo txnId = TxnEgo.makeZero(MpInitiator.MP_INIT_PID);
+        txnId = txnId.makeNext();
+        long runningtxnid = txnId.getTxnId();
+        m_dut.offer(makeTransactionTask(runningtxnid, true));
+        verify(m_MPpool).doWork(eq(runningtxnid), any(TransactionTask.class));
+
+        // the pool is busy with heavy reads
+        txnId = txnId.makeNext();
+        long heavytxnid = txnId.getTxnId();
+        MpProcedureTask heavy = makeTransactionTask(heavytxnid, true);
+        when(m_MPpool.canAcceptWork(heavy)).thenReturn(false);
+        m_dut.offer(heavy);
+        verify(m_MPpool, never()).doWork(eq(heavytxnid), any(TransactionTask.class));
+
+        txnId = txnId.makeNext();
+        long lighttxnid = txnId.getTxnId();
+        m_dut.offer(makeTransactionTask(lighttxnid, true));
+        verify(m_MPpool).doWork(eq(lighttxnid), any(TransactionTask.class));
+
+        txnId = txnId.makeNext();
+        long writetxnid = txnId.getTxnId();
+        m_dut.offer(makeTransactionTask(writetxnid, false));
+        txnId = txnId.makeNext();
+        long readtxnid = txnId.getTxnId();
+        m_dut.offer(makeTransactionTask(readtxnid, true));
+        verify(m_MPpool, never()).doWork(eq(readtxnid), any(TransactionTask.class));
+        assertEquals(3, m_dut.size());
+
+        // the heavy read is admitted once a site frees up, the write still waits for it
+        when(m_MPpool.canAcceptWork(heavy)).thenReturn(true);
+        m_dut.flush(runningtxnid);
+        verify(m_MPpool).doWork(eq(heavytxnid), any(TransactionTask.class));
+        verify(m_writeQueue, never()).offer(any(TransactionTask.class));
+        m_dut.flush(lighttxnid);
+        m_dut.flush(heavytxnid);
+        verify(m_writeQueue).offer(any(TransactionTask.class));
+        verify(m_MPpool, never()).doWork(eq(readtxnid), any(TransactionTask.class));
+        m_dut.flush(writetxnid);
+        verify(m_MPpool).doWork(eq(readtxnid), any(TransactionTask.class));
+    }
 }
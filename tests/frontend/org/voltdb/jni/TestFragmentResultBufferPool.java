@@ -0,0 +1,92 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2019 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.jni;
+
+import java.nio.ByteBuffer;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+import org.voltdb.PrivateVoltTableFactory;
+import org.voltdb.VoltTable;
+import org.voltdb.VoltType;
+
+public class TestFragmentResultBufferPool extends TestCase {
+
+    private static ByteBuffer serialize(VoltTable t) {
+        ByteBuffer buf = ByteBuffer.allocateDirect(t.getSerializedSize());
+        t.flattenToBuffer(buf);
+        buf.flip();
+        return buf;
+    }
+
+    @Test
+    public void testCopyAndRelease() {
+        FragmentResultBufferPool pool = new FragmentResultBufferPool();
+        try {
+            VoltTable t = new VoltTable(new VoltTable.ColumnInfo("A", VoltType.BIGINT));
+            for (int i = 0; i < 100; ++i) {
+                t.addRow(i);
+            }
+            ByteBuffer source = serialize(t);
+            int length = source.remaining();
+
+            ByteBuffer copy = pool.copyFrom(source, length);
+            assertEquals(0, source.remaining());
+            assertTrue(copy.isDirect());
+            assertEquals(length, copy.remaining());
+
+            // Source is reused by the EE for the next batch, the copy must be unaffected
+            source.clear();
+            while (source.hasRemaining()) {
+                source.put((byte) 0);
+            }
+            copy.getInt();
+            VoltTable result = PrivateVoltTableFactory.createVoltTableFromBuffer(copy.slice(), true);
+            assertEquals(t, result);
+
+            pool.release();
+            ByteBuffer reused = pool.copyFrom(serialize(t), length);
+            assertEquals(length, reused.remaining());
+        } finally {
+            pool.discard();
+        }
+    }
+
+    @Test
+    public void testLargeResult() {
+        FragmentResultBufferPool pool = new FragmentResultBufferPool();
+        try {
+            int length = FragmentResultBufferPool.CHUNK_SIZE * 2 + 7;
+            ByteBuffer source = ByteBuffer.allocate(length);
+            source.put(length - 1, (byte) 42);
+            ByteBuffer copy = pool.copyFrom(source, length);
+            assertEquals(length, copy.remaining());
+            assertEquals(42, copy.get(length - 1));
+            pool.release();
+        } finally {
+            pool.discard();
+        }
+    }
+}
@@ -0,0 +1,175 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2019 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.planner;
+
+import java.util.List;
+
+import org.voltdb.expressions.AbstractExpression;
+import org.voltdb.expressions.TupleValueExpression;
+import org.voltdb.plannodes.AbstractPlanNode;
+import org.voltdb.plannodes.HashJoinPlanNode;
+import org.voltdb.types.JoinType;
+import org.voltdb.types.PlanNodeType;
+
+public class TestPlansHashJoin extends PlannerTestCase {
+
+    public void testInnerEquiJoin() {
+        String query = "SELECT * FROM R1 JOIN R2 ON R1.C = R2.C";
+        AbstractPlanNode pn = compileToTopDownTree(query, 5, true,
+                PlanNodeType.SEND,
+                PlanNodeType.HASHJOIN,
+                PlanNodeType.SEQSCAN,
+                PlanNodeType.SEQSCAN);
+        HashJoinPlanNode hjNode = (HashJoinPlanNode) pn.getChild(0);
+        assertEquals(JoinType.INNER, hjNode.getJoinType());
+        assertHashKeys(hjNode, 1);
+
+        // Several key columns
+        query = "SELECT * FROM R1 JOIN R2 ON R1.C = R2.C AND R2.A = R1.A";
+        pn = compileToTopDownTree(query, 5, true,
+                PlanNodeType.SEND,
+                PlanNodeType.HASHJOIN,
+                PlanNodeType.SEQSCAN,
+                PlanNodeType.SEQSCAN);
+        assertHashKeys((HashJoinPlanNode) pn.getChild(0), 2);
+
+        // Not all join clauses need to be keys
+        query = "SELECT * FROM R1 JOIN R2 ON R1.C = R2.C AND R1.A > R2.A";
+        pn = compileToTopDownTree(query, 5, true,
+                PlanNodeType.SEND,
+                PlanNodeType.HASHJOIN,
+                PlanNodeType.SEQSCAN,
+                PlanNodeType.SEQSCAN);
+        hjNode = (HashJoinPlanNode) pn.getChild(0);
+        assertHashKeys(hjNode, 1);
+        assertNotNull(hjNode.getJoinPredicate());
+    }
+
+    public void testLeftEquiJoin() {
+        String query = "SELECT * FROM R1 LEFT JOIN R2 ON R1.C = R2.C";
+        AbstractPlanNode pn = compileToTopDownTree(query, 5, true,
+                PlanNodeType.SEND,
+                PlanNodeType.HASHJOIN,
+                PlanNodeType.SEQSCAN,
+                PlanNodeType.SEQSCAN);
+        HashJoinPlanNode hjNode = (HashJoinPlanNode) pn.getChild(0);
+        assertEquals(JoinType.LEFT, hjNode.getJoinType());
+        assertHashKeys(hjNode, 1);
+        // The outer table stays on the outer side of a LEFT join.
+        TupleValueExpression outerKey = (TupleValueExpression) hjNode.getOuterHashKeys().get(0);
+        assertEquals("R1", outerKey.getTableAlias());
+    }
+
+    public void testDerivedTableJoin() {
+        String query = "SELECT * FROM (SELECT C, COUNT(*) AS CT FROM R1 GROUP BY C) T " +
+                "JOIN R2 ON T.C = R2.C";
+        AbstractPlanNode pn = compile(query);
+        List<AbstractPlanNode> hashJoins = pn.findAllNodesOfType(PlanNodeType.HASHJOIN);
+        assertEquals(1, hashJoins.size());
+        assertTrue(pn.findAllNodesOfType(PlanNodeType.NESTLOOP).isEmpty());
+    }
+
+    public void testNestLoopJoinsRemain() {
+        // IS NOT DISTINCT FROM matches NULL keys
+        String query = "SELECT * FROM R1 JOIN R2 ON R1.C IS NOT DISTINCT FROM R2.C";
+        compileToTopDownTree(query, 5, true,
+                PlanNodeType.SEND,
+                PlanNodeType.NESTLOOP,
+                PlanNodeType.SEQSCAN,
+                PlanNodeType.SEQSCAN);
+
+        // No equality clause
+        query = "SELECT * FROM R1 JOIN R2 ON R1.C > R2.C";
+        compileToTopDownTree(query, 5, true,
+                PlanNodeType.SEND,
+                PlanNodeType.NESTLOOP,
+                PlanNodeType.SEQSCAN,
+                PlanNodeType.SEQSCAN);
+
+        // FULL joins are not supported by the hash join executor
+        query = "SELECT * FROM R1 FULL JOIN R2 ON R1.C = R2.C";
+        compileToTopDownTree(query, 5, true,
+                PlanNodeType.SEND,
+                PlanNodeType.NESTLOOP,
+                PlanNodeType.SEQSCAN,
+                PlanNodeType.SEQSCAN);
+
+        // Hash joins are off
+        SelectSubPlanAssembler.setHashJoinEnabled(false);
+        query = "SELECT * FROM R1 JOIN R2 ON R1.C = R2.C";
+        compileToTopDownTree(query, 5, true,
+                PlanNodeType.SEND,
+                PlanNodeType.NESTLOOP,
+                PlanNodeType.SEQSCAN,
+                PlanNodeType.SEQSCAN);
+    }
+
+    public void testCheaperJoinsRemain() {
+        // An index on the inner join key is cheaper than hashing the whole inner table
+        String query = "SELECT * FROM R1 JOIN R3 ON R1.C = R3.A";
+        AbstractPlanNode pn = compile(query);
+        assertTrue(pn.findAllNodesOfType(PlanNodeType.HASHJOIN).isEmpty());
+        assertEquals(1, pn.findAllNodesOfType(PlanNodeType.NESTLOOPINDEX).size());
+
+        // A single row from a primary key lookup is cheaper to loop over than to hash
+        query = "SELECT * FROM R1 JOIN R6 ON R1.C = R6.C WHERE R6.A = ?";
+        pn = compile(query);
+        assertTrue(pn.findAllNodesOfType(PlanNodeType.HASHJOIN).isEmpty());
+        assertEquals(1, pn.findAllNodesOfType(PlanNodeType.NESTLOOP).size());
+    }
+
+    public void testOuterIndexOrderKeepsNestLoop() {
+        // The index scan of R3 orders the rows, a hash join would need a sort instead
+        String query = "SELECT * FROM R3 JOIN R1 ON R3.C = R1.C ORDER BY R3.A LIMIT ?";
+        AbstractPlanNode pn = compile(query);
+        assertTrue(pn.findAllNodesOfType(PlanNodeType.HASHJOIN).isEmpty());
+        assertTrue(pn.findAllNodesOfType(PlanNodeType.ORDERBY).isEmpty());
+        assertEquals(1, pn.findAllNodesOfType(PlanNodeType.NESTLOOP).size());
+    }
+
+    private static void assertHashKeys(HashJoinPlanNode hjNode, int keyCount) {
+        List<AbstractExpression> outerKeys = hjNode.getOuterHashKeys();
+        List<AbstractExpression> innerKeys = hjNode.getInnerHashKeys();
+        assertEquals(keyCount, outerKeys.size());
+        assertEquals(keyCount, innerKeys.size());
+        for (int i = 0; i < keyCount; i++) {
+            // Outer keys refer to the outer tuple, inner keys to the inner one.
+            assertEquals(0, ((TupleValueExpression) outerKeys.get(i)).getTableIndex());
+            assertEquals(1, ((TupleValueExpression) innerKeys.get(i)).getTableIndex());
+        }
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        setupSchema(TestJoinOrder.class.getResource("testplans-join-ddl.sql"),
+                "testplanshashjoin", false);
+        SelectSubPlanAssembler.setHashJoinEnabled(true);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        SelectSubPlanAssembler.setHashJoinEnabled(false);
+        super.tearDown();
+    }
+}
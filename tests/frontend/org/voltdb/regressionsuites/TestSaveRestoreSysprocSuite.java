@@ -3835,8 +3835,14 @@ public class TestSaveRestoreSysprocSuite extends SaveRestoreBase {
                 Client client = ClientFactory.createClient();
                 client.createConnection(lc.getListenerAddresses().get(0));
                 try {
-                    SnapshotRestoreResultSet results = restoreTablesWithDefaultOptions(client, TESTNONCE);
+                    VoltTable[] vt = client.callProcedure("@SnapshotRestore", TMPDIR, TESTNONCE).getResults();
+                    assertEquals(2, vt.length);
+                    SnapshotRestoreResultSet results = new SnapshotRestoreResultSet();
+                    while (vt[0].advanceRow()) {
+                        results.parseRestoreResultRow(vt[0]);
+                    }
                     validateRestoreResults(lc.m_siteCount, lc.m_kfactor, results, TABLE_COUNT, true);
+                    validateRestoreThroughput(vt[1], TABLE_COUNT, num_replicated_items, num_partitioned_items);
                 }
                 finally {
                     client.close();
@@ -4025,6 +4031,41 @@ public class TestSaveRestoreSysprocSuite extends SaveRestoreBase {
         }
     }
 
+    /**
+     * Check the per table report @SnapshotRestore returns after the restore results.
+     */
+    static private void validateRestoreThroughput(
+            VoltTable throughput,
+            int tableCount,
+            int replicatedTuples,
+            int partitionedTuples)
+    {
+        assertEquals(4, throughput.getColumnCount());
+        assertEquals("TABLE", throughput.getColumnName(0));
+        assertEquals("TUPLES", throughput.getColumnName(1));
+        assertEquals("DURATION_MS", throughput.getColumnName(2));
+        assertEquals("TUPLES_PER_SECOND", throughput.getColumnName(3));
+        assertEquals(tableCount, throughput.getRowCount());
+
+        Set<String> tables = new HashSet<>();
+        while (throughput.advanceRow()) {
+            String table = throughput.getString("TABLE");
+            long tuples = throughput.getLong("TUPLES");
+            long durationMs = throughput.getLong("DURATION_MS");
+            assertTrue(tables.add(table));
+            assertTrue(durationMs >= 0);
+            assertEquals(tuples * 1000 / Math.max(1, durationMs), throughput.getLong("TUPLES_PER_SECOND"));
+            if (table.equals("REPLICATED_TESTER")) {
+                assertEquals(replicatedTuples, tuples);
+            }
+            else if (table.equals("PARTITION_TESTER")) {
+                assertEquals(partitionedTuples, tuples);
+            }
+        }
+        assertTrue(tables.contains("REPLICATED_TESTER"));
+        assertTrue(tables.contains("PARTITION_TESTER"));
+    }
+
     /**
      * Build a list of the tests to be run. Use the regression suite
      * helpers to allow multiple back ends.
@@ -40,6 +40,9 @@ import junit.framework.Test;
 
 public class TestProcedureDetails extends RegressionSuite {
 
+    // prefix of the configuration that keeps execution time histograms
+    private static final String HISTOGRAMS_PREFIX = "histograms";
+
     public TestProcedureDetails(String name) {
         super(name);
     }
@@ -168,6 +171,10 @@ public class TestProcedureDetails extends RegressionSuite {
         }
     }
 
+    private boolean histogramsEnabled() {
+        return m_config.getName().contains(HISTOGRAMS_PREFIX);
+    }
+
     private void trivialVerification(VoltTable procedureDetail) {
         assertTrue(procedureDetail.getLong("TIMESTAMP") > 0);
         assertTrue(procedureDetail.getLong("MIN_EXECUTION_TIME") > 0);
@@ -179,6 +186,17 @@ public class TestProcedureDetails extends RegressionSuite {
         assertTrue(procedureDetail.getLong("MIN_PARAMETER_SET_SIZE") >= 0);
         assertTrue(procedureDetail.getLong("MAX_PARAMETER_SET_SIZE") >= 0);
         assertTrue(procedureDetail.getLong("AVG_PARAMETER_SET_SIZE") >= 0);
+        // percentiles are only reported when histograms are enabled
+        long p50 = procedureDetail.getLong("P50_EXECUTION_TIME");
+        assertEquals(histogramsEnabled(), !procedureDetail.wasNull());
+        if (histogramsEnabled()) {
+            // Histogram buckets are only precise to two significant digits
+            assertTrue(p50 >= procedureDetail.getLong("MIN_EXECUTION_TIME") * 99 / 100);
+            assertTrue(p50 <= procedureDetail.getLong("MAX_EXECUTION_TIME") * 101 / 100);
+            assertTrue(procedureDetail.getLong("P95_EXECUTION_TIME") >= p50);
+            assertTrue(procedureDetail.getLong("P99_EXECUTION_TIME") >= procedureDetail.getLong("P95_EXECUTION_TIME"));
+            assertTrue(procedureDetail.getLong("P999_EXECUTION_TIME") >= procedureDetail.getLong("P99_EXECUTION_TIME"));
+        }
     }
 
     private void verifyRowsForStatement(String stmtName, long expectedInvocationCount,
@@ -319,6 +337,14 @@ public class TestProcedureDetails extends RegressionSuite {
         // add this config to the set of tests to run
         builder.addServerConfig(config);
 
+        // the same cluster keeping execution time histograms, every host is a separate process to get the property
+        config = new LocalCluster("proceduredetail-histograms-jni.jar", 2, 2, 0, BackendTarget.NATIVE_EE_JNI);
+        config.setPrefix(HISTOGRAMS_PREFIX);
+        config.setHasLocalServer(false);
+        config.setJavaProperty("PROCEDURE_LATENCY_HISTOGRAMS", "true");
+        assertTrue(config.compile(project));
+        builder.addServerConfig(config);
+
         return builder;
     }
 }
@@ -503,15 +503,36 @@ public class TestStatisticsSuite extends StatisticsTestSuiteBase {
         expectedSchema[8] = new ColumnInfo("MESSAGES_WRITTEN", VoltType.BIGINT);
         VoltTable expectedTable = new VoltTable(expectedSchema);
 
+        // One row per network thread
+        ColumnInfo[] expectedReactorSchema = new ColumnInfo[14];
+        expectedReactorSchema[0] = new ColumnInfo("TIMESTAMP", VoltType.BIGINT);
+        expectedReactorSchema[1] = new ColumnInfo("HOST_ID", VoltType.INTEGER);
+        expectedReactorSchema[2] = new ColumnInfo("HOSTNAME", VoltType.STRING);
+        expectedReactorSchema[3] = new ColumnInfo("THREAD_ID", VoltType.BIGINT);
+        expectedReactorSchema[4] = new ColumnInfo("THREAD_NAME", VoltType.STRING);
+        expectedReactorSchema[5] = new ColumnInfo("CONNECTIONS", VoltType.INTEGER);
+        expectedReactorSchema[6] = new ColumnInfo("SELECT_WAKEUPS", VoltType.BIGINT);
+        expectedReactorSchema[7] = new ColumnInfo("CALLBACKS", VoltType.BIGINT);
+        expectedReactorSchema[8] = new ColumnInfo("CALLBACK_TIME", VoltType.BIGINT);
+        expectedReactorSchema[9] = new ColumnInfo("BYTES_READ", VoltType.BIGINT);
+        expectedReactorSchema[10] = new ColumnInfo("BYTES_WRITTEN", VoltType.BIGINT);
+        expectedReactorSchema[11] = new ColumnInfo("MESSAGES_WRITTEN", VoltType.BIGINT);
+        expectedReactorSchema[12] = new ColumnInfo("WRITES", VoltType.BIGINT);
+        expectedReactorSchema[13] = new ColumnInfo("COALESCE_TIME", VoltType.BIGINT);
+        VoltTable expectedReactorTable = new VoltTable(expectedReactorSchema);
+
         VoltTable[] results = null;
         //
         // iostats
         //
         results = client.callProcedure("@Statistics", "iostats", 0).getResults();
         System.out.println("Test iostats table: " + results[0].toString());
-        // one aggregate table returned
-        assertEquals(1, results.length);
+        System.out.println("Test iostats reactor table: " + results[1].toString());
+        // connection and network thread tables returned
+        assertEquals(2, results.length);
         validateSchema(results[0], expectedTable);
+        validateSchema(results[1], expectedReactorTable);
+        assertTrue(results[1].getRowCount() > 0);
     }
 
     public void testTopoStatistics() throws Exception {
@@ -86,7 +86,7 @@ public class TestStatisticsSuiteDatabaseElementStats extends StatisticsTestSuite
         System.out.println("\n\nTESTING TABLE STATS\n\n\n");
         Client client  = getFullyConnectedClient();
 
-        ColumnInfo[] expectedSchema = new ColumnInfo[13];
+        ColumnInfo[] expectedSchema = new ColumnInfo[15];
         expectedSchema[0] = new ColumnInfo("TIMESTAMP", VoltType.BIGINT);
         expectedSchema[1] = new ColumnInfo("HOST_ID", VoltType.INTEGER);
         expectedSchema[2] = new ColumnInfo("HOSTNAME", VoltType.STRING);
@@ -100,6 +100,8 @@ public class TestStatisticsSuiteDatabaseElementStats extends StatisticsTestSuite
         expectedSchema[10] = new ColumnInfo("STRING_DATA_MEMORY", VoltType.BIGINT);
         expectedSchema[11] = new ColumnInfo("TUPLE_LIMIT", VoltType.INTEGER);
         expectedSchema[12] = new ColumnInfo("PERCENT_FULL", VoltType.INTEGER);
+        expectedSchema[13] = new ColumnInfo("COMPACTION_RECLAIMED_MEMORY", VoltType.BIGINT);
+        expectedSchema[14] = new ColumnInfo("COMPACTION_STALL_TIME", VoltType.BIGINT);
         VoltTable expectedTable = new VoltTable(expectedSchema);
 
         VoltTable[] results = null;
@@ -312,7 +314,7 @@ public class TestStatisticsSuiteDatabaseElementStats extends StatisticsTestSuite
         // Validate the schema of PROCEDUREDETAIL
         results = client.callProcedure("@Statistics", "proceduredetail", 0).getResults();
         assertEquals(1, results.length);
-        expectedSchema = new ColumnInfo[20];
+        expectedSchema = new ColumnInfo[24];
         expectedSchema[0] = new ColumnInfo("TIMESTAMP", VoltType.BIGINT);
         expectedSchema[1] = new ColumnInfo("HOST_ID", VoltType.INTEGER);
         expectedSchema[2] = new ColumnInfo("HOSTNAME", VoltType.STRING);
@@ -333,8 +335,23 @@ public class TestStatisticsSuiteDatabaseElementStats extends StatisticsTestSuite
         expectedSchema[17] = new ColumnInfo("AVG_PARAMETER_SET_SIZE", VoltType.INTEGER);
         expectedSchema[18] = new ColumnInfo("ABORTS", VoltType.BIGINT);
         expectedSchema[19] = new ColumnInfo("FAILURES", VoltType.BIGINT);
+        expectedSchema[20] = new ColumnInfo("P50_EXECUTION_TIME", VoltType.BIGINT);
+        expectedSchema[21] = new ColumnInfo("P95_EXECUTION_TIME", VoltType.BIGINT);
+        expectedSchema[22] = new ColumnInfo("P99_EXECUTION_TIME", VoltType.BIGINT);
+        expectedSchema[23] = new ColumnInfo("P999_EXECUTION_TIME", VoltType.BIGINT);
         expectedTable = new VoltTable(expectedSchema);
         validateSchema(results[0], expectedTable);
+        // Latency histograms are off unless PROCEDURE_LATENCY_HISTOGRAMS is set,
+        // see TestProcedureDetails for the percentiles when they are on
+        if (!Boolean.getBoolean("PROCEDURE_LATENCY_HISTOGRAMS")) {
+            while (results[0].advanceRow()) {
+                for (String percentile : new String[] { "P50", "P95", "P99", "P999" }) {
+                    results[0].getLong(percentile + "_EXECUTION_TIME");
+                    assertTrue(percentile + "_EXECUTION_TIME should be NULL", results[0].wasNull());
+                }
+            }
+            results[0].resetRowPosition();
+        }
 
         // Validate the PROCEDUREPROFILE aggregation.
         results = client.callProcedure("@Statistics", "procedureprofile", 1).getResults();
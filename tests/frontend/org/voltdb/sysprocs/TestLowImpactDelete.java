@@ -88,6 +88,9 @@ public class TestLowImpactDelete extends TestCase {
         builder.setUseDDLSchema(true);
         m_cluster = new LocalCluster("foo.jar", SPH, HOSTCOUNT, KFACTOR, BackendTarget.NATIVE_EE_JNI);
         m_cluster.setHasLocalServer(true);
+        // testTimeToLive covers the deletes from every partition in parallel, which are opt-in
+        System.setProperty("TIME_TO_LIVE_PARALLEL", "true");
+        m_cluster.setJavaProperty("TIME_TO_LIVE_PARALLEL", "true");
         m_cluster.compile(builder);
         m_cluster.startUp();
 
@@ -334,8 +337,19 @@ public class TestLowImpactDelete extends TestCase {
                 }
             }
             Thread.sleep(60*1000);
-            vt = m_client.callProcedure("@Statistics", "TTL").getResults()[0];
+            VoltTable[] ttlStats = m_client.callProcedure("@Statistics", "TTL").getResults();
+            vt = ttlStats[0];
             System.out.println(vt.toFormattedString());
+            assertTrue(vt.advanceRow());
+            assertEquals(0, vt.getLong("ROWS_REMAINING"));
+            assertEquals(0, vt.getLong("BACKLOG_SECONDS"));
+            // partitioned tables are deleted from every partition in parallel
+            assertEquals(2, ttlStats.length);
+            vt = ttlStats[1];
+            while (vt.advanceRow()) {
+                assertEquals("TTL", vt.getString("TABLE_NAME"));
+                assertEquals(0, vt.getLong("ROWS_REMAINING"));
+            }
             vt = m_client.callProcedure("@AdHoc", "select count(*) from TTL").getResults()[0];
             assertEquals(0, vt.asScalarLong());
         } catch (Exception e) {
@@ -26,7 +26,12 @@ package org.voltdb.sysprocs.saverestore;
 import java.io.File;
 import java.io.FileInputStream;
 import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
 
 import org.junit.After;
 import org.voltcore.TransactionIdManager;
@@ -40,6 +45,7 @@ import org.voltdb.VoltTable;
 import org.voltdb.VoltTable.ColumnInfo;
 import org.voltdb.VoltType;
 import org.voltdb.messaging.FastSerializer;
+import org.voltdb.utils.CompressionService;
 
 import com.google_voltpatches.common.util.concurrent.Callables;
 
@@ -101,6 +107,12 @@ public class TestTableSaveFile extends TestCase {
 
     private Pair<VoltTable, File> generateTestTable(int numberOfItems)
             throws Exception {
+        return generateTestTable(numberOfItems, CompressionService.Codec.SNAPPY, 0);
+    }
+
+    private Pair<VoltTable, File> generateTestTable(int numberOfItems,
+            CompressionService.Codec codec, int compressionLevel)
+            throws Exception {
         VoltTable.ColumnInfo columnInfo[] = new VoltTable.ColumnInfo[] {
                 new ColumnInfo("RT_ID", VoltType.INTEGER),
                 new ColumnInfo("RT_NAME", VoltType.STRING),
@@ -118,7 +130,7 @@ public class TestTableSaveFile extends TestCase {
         DefaultSnapshotDataTarget dsdt = new DefaultSnapshotDataTarget(f,
                 HOST_ID, CLUSTER_NAME, DATABASE_NAME, TABLE_NAME,
                 TOTAL_PARTITIONS, false, partIds, table,
-                TXN_ID, TIMESTAMP, VERSION2);
+                TXN_ID, TIMESTAMP, VERSION2, codec, compressionLevel);
 
         VoltTable currentChunkTable = new VoltTable(columnInfo,
                 columnInfo.length);
@@ -269,12 +281,25 @@ public class TestTableSaveFile extends TestCase {
 
     public void testChunkTable() throws Exception {
         System.out.println("Running testChunkTable");
-        Pair<VoltTable, File> generated = generateTestTable(100000);
+        checkChunkTable(generateTestTable(100000), CompressionService.Codec.SNAPPY);
+    }
+
+    public void testChunkTableLZ4() throws Exception {
+        System.out.println("Running testChunkTableLZ4");
+        checkChunkTable(generateTestTable(100000, CompressionService.Codec.LZ4, 0),
+                CompressionService.Codec.LZ4);
+        checkChunkTable(generateTestTable(100000, CompressionService.Codec.LZ4, 9),
+                CompressionService.Codec.LZ4);
+    }
+
+    private void checkChunkTable(Pair<VoltTable, File> generated, CompressionService.Codec expectedCodec)
+            throws Exception {
         VoltTable table = generated.getFirst();
         File f = generated.getSecond();
 
         FileInputStream fis = new FileInputStream(f);
         TableSaveFile savefile = new TableSaveFile(fis, 3, null);
+        assertEquals(expectedCodec, savefile.getCompressionCodec());
         try {
             int expectedPartitionId = 0;
             VoltTable test_table = null;
@@ -305,4 +330,124 @@ public class TestTableSaveFile extends TestCase {
             savefile.close();
         }
     }
+    private static void waitForAvailableChunk(TableSaveFile savefile) throws Exception {
+        final long deadline = System.currentTimeMillis() + 60000;
+        while (!savefile.hasAvailableChunk()) {
+            assertTrue("Timed out waiting for a chunk to be read", System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    public void testStartReading() throws Exception {
+        System.out.println("Running testStartReading");
+        Pair<VoltTable, File> generated = generateTestTable(5000);
+        savefile = new TableSaveFile(new FileInputStream(generated.getSecond()), 3, null);
+
+        // Nothing is read until the reader is started
+        Thread.sleep(100);
+        assertFalse(savefile.hasAvailableChunk());
+
+        savefile.startReading();
+        waitForAvailableChunk(savefile);
+        // Starting it again doesn't start a second reader
+        savefile.startReading();
+
+        int expectedPartitionId = 0;
+        BBContainer c;
+        while ((c = savefile.getNextChunk()) != null) {
+            try {
+                assertEquals(expectedPartitionId++, ((TableSaveFile.Container)c).partitionId);
+            } finally {
+                c.discard();
+            }
+        }
+        assertEquals(5, expectedPartitionId);
+        assertFalse(savefile.hasAvailableChunk());
+        assertFalse(savefile.hasMoreChunks());
+    }
+
+    public void testRoundRobinAcrossFiles() throws Exception {
+        System.out.println("Running testRoundRobinAcrossFiles");
+        final int fileCount = 3;
+        final int chunksPerFile = 3;
+        ArrayDeque<TableSaveFile> saveFiles = new ArrayDeque<TableSaveFile>();
+        Map<TableSaveFile, Integer> nextPartitionIds = new HashMap<TableSaveFile, Integer>();
+        Set<TableSaveFile> firstRound = new HashSet<TableSaveFile>();
+        try {
+            for (int ii = 0; ii < fileCount; ii++) {
+                Pair<VoltTable, File> generated = generateTestTable(chunksPerFile * 1000);
+                TableSaveFile f = new TableSaveFile(new FileInputStream(generated.getSecond()), chunksPerFile, null);
+                saveFiles.offer(f);
+                nextPartitionIds.put(f, 0);
+            }
+            for (TableSaveFile f : saveFiles) {
+                f.startReading();
+            }
+            for (TableSaveFile f : saveFiles) {
+                waitForAvailableChunk(f);
+            }
+
+            int chunks = 0;
+            BBContainer c;
+            while ((c = TableSaveFile.getNextChunk(saveFiles)) != null) {
+                try {
+                    // The file the chunk came from goes to the back of the queue
+                    TableSaveFile f = saveFiles.peekLast();
+                    int expectedPartitionId = nextPartitionIds.get(f);
+                    assertEquals(expectedPartitionId, ((TableSaveFile.Container)c).partitionId);
+                    nextPartitionIds.put(f, expectedPartitionId + 1);
+                    // Every file had a chunk ready, so the first round takes one from each
+                    if (chunks < fileCount) {
+                        assertTrue(firstRound.add(f));
+                    }
+                    chunks++;
+                } finally {
+                    c.discard();
+                }
+            }
+            assertEquals(fileCount * chunksPerFile, chunks);
+            assertTrue(saveFiles.isEmpty());
+            for (int partitionIds : nextPartitionIds.values()) {
+                assertEquals(chunksPerFile, partitionIds);
+            }
+        } finally {
+            for (TableSaveFile f : saveFiles) {
+                f.close();
+            }
+        }
+    }
+
+    public void testRoundRobinPrefersReadyFile() throws Exception {
+        System.out.println("Running testRoundRobinPrefersReadyFile");
+        ArrayDeque<TableSaveFile> saveFiles = new ArrayDeque<TableSaveFile>();
+        try {
+            TableSaveFile idle = new TableSaveFile(
+                    new FileInputStream(generateTestTable(2000).getSecond()), 3, null);
+            TableSaveFile ready = new TableSaveFile(
+                    new FileInputStream(generateTestTable(2000).getSecond()), 3, null);
+            saveFiles.offer(idle);
+            saveFiles.offer(ready);
+            ready.startReading();
+            waitForAvailableChunk(ready);
+
+            // The file at the head has nothing read yet, so the ready one is used
+            BBContainer c = TableSaveFile.getNextChunk(saveFiles);
+            assertNotNull(c);
+            c.discard();
+            assertSame(ready, saveFiles.peekLast());
+            assertSame(idle, saveFiles.peekFirst());
+
+            int chunks = 1;
+            while ((c = TableSaveFile.getNextChunk(saveFiles)) != null) {
+                c.discard();
+                chunks++;
+            }
+            assertEquals(4, chunks);
+            assertTrue(saveFiles.isEmpty());
+        } finally {
+            for (TableSaveFile f : saveFiles) {
+                f.close();
+            }
+        }
+    }
 }
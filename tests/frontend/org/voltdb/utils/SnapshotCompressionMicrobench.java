@@ -0,0 +1,141 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2019 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.utils;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.voltcore.utils.DBBPool.BBContainer;
+import org.voltdb.SnapshotSiteProcessor;
+import org.voltdb.VoltTable;
+import org.voltdb.VoltTable.ColumnInfo;
+import org.voltdb.VoltType;
+import org.voltdb.messaging.FastSerializer;
+
+/**
+ * Measures compression and decompression throughput and ratio of each snapshot codec
+ * on snapshot sized blocks. By default the blocks are serialized tables of generated rows,
+ * pass file names to measure on their contents instead, e.g. an uncompressed CSV export
+ * of real data.
+ */
+public class SnapshotCompressionMicrobench {
+
+    static final int ITERATIONS = 5;
+
+    static List<ByteBuffer> generateBlocks(int blockCount) throws Exception {
+        final ColumnInfo columns[] = new ColumnInfo[] {
+                new ColumnInfo("ID", VoltType.BIGINT),
+                new ColumnInfo("NAME", VoltType.STRING),
+                new ColumnInfo("STATUS", VoltType.TINYINT),
+                new ColumnInfo("BALANCE", VoltType.FLOAT),
+                new ColumnInfo("CREATED", VoltType.TIMESTAMP) };
+        final Random r = new Random(0);
+        List<ByteBuffer> blocks = new ArrayList<ByteBuffer>();
+        long id = 0;
+        for (int ii = 0; ii < blockCount; ii++) {
+            VoltTable t = new VoltTable(columns);
+            while (t.getSerializedSize() < SnapshotSiteProcessor.m_snapshotBufferLength - 1024) {
+                t.addRow(id++, "customer_" + r.nextInt(100000), r.nextInt(4),
+                        r.nextInt(1000000) / 100.0, 1500000000000000L + id * 1000);
+            }
+            FastSerializer fs = new FastSerializer();
+            fs.writeTable(t);
+            BBContainer c = fs.getBBContainer();
+            ByteBuffer block = ByteBuffer.allocateDirect(c.b().remaining());
+            block.put(c.b()).flip();
+            c.discard();
+            blocks.add(block);
+        }
+        return blocks;
+    }
+
+    static List<ByteBuffer> readBlocks(String files[]) throws Exception {
+        List<ByteBuffer> blocks = new ArrayList<ByteBuffer>();
+        for (String file : files) {
+            byte bytes[] = Files.readAllBytes(new File(file).toPath());
+            for (int offset = 0; offset < bytes.length; offset += SnapshotSiteProcessor.m_snapshotBufferLength) {
+                int length = Math.min(SnapshotSiteProcessor.m_snapshotBufferLength, bytes.length - offset);
+                ByteBuffer block = ByteBuffer.allocateDirect(length);
+                block.put(bytes, offset, length).flip();
+                blocks.add(block);
+            }
+        }
+        return blocks;
+    }
+
+    static void run(List<ByteBuffer> blocks, CompressionService.Codec codec, int level) throws Exception {
+        long uncompressedBytes = 0;
+        for (ByteBuffer b : blocks) {
+            uncompressedBytes += b.remaining();
+        }
+        ByteBuffer compressed[] = new ByteBuffer[blocks.size()];
+        for (int ii = 0; ii < compressed.length; ii++) {
+            compressed[ii] = ByteBuffer.allocateDirect(SnapshotSiteProcessor.m_snapshotBufferCompressedLen);
+        }
+        ByteBuffer output = ByteBuffer.allocateDirect(SnapshotSiteProcessor.m_snapshotBufferLength);
+
+        long compressedBytes = 0;
+        long compressNanos = Long.MAX_VALUE;
+        long decompressNanos = Long.MAX_VALUE;
+        // Report the best of several passes, the first ones warm up the JIT
+        for (int iteration = 0; iteration < ITERATIONS; iteration++) {
+            compressedBytes = 0;
+            long start = System.nanoTime();
+            for (int ii = 0; ii < compressed.length; ii++) {
+                compressed[ii].clear();
+                compressedBytes += codec.compress(blocks.get(ii), compressed[ii], level);
+            }
+            compressNanos = Math.min(compressNanos, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            for (ByteBuffer c : compressed) {
+                output.clear();
+                codec.decompress(c, output);
+            }
+            decompressNanos = Math.min(decompressNanos, System.nanoTime() - start);
+        }
+
+        final double mb = uncompressedBytes / (1024.0 * 1024.0);
+        System.out.printf("%-8s %5d %10.2f %14.1f %16.1f%n",
+                codec, level,
+                uncompressedBytes / (double)compressedBytes,
+                mb / (compressNanos / 1e9),
+                mb / (decompressNanos / 1e9));
+    }
+
+    public static void main(String[] args) throws Exception {
+        List<ByteBuffer> blocks = args.length == 0 ? generateBlocks(32) : readBlocks(args);
+
+        System.out.printf("%-8s %5s %10s %14s %16s%n",
+                "CODEC", "LEVEL", "RATIO", "COMPRESS MB/s", "DECOMPRESS MB/s");
+        run(blocks, CompressionService.Codec.SNAPPY, 0);
+        for (int level : new int[] { 0, CompressionService.Codec.MAX_LZ4_LEVEL }) {
+            run(blocks, CompressionService.Codec.LZ4, level);
+        }
+    }
+}
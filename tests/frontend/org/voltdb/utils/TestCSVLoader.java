@@ -40,6 +40,7 @@ import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.TimeZone;
 import java.util.concurrent.TimeUnit;
@@ -290,6 +291,56 @@ public class TestCSVLoader {
         test_Interface(myOptions, myData, invalidLineCnt, validLineCnt );
     }
 
+    //Same rows as testCommon, parsed by several threads which write them into the batches of the bulk loader.
+    @Test
+    public void testParallelParsers() throws Exception
+    {
+        String currentTime = new TimestampType().toString();
+        String []myData = {
+                "1 ,1,1,11111111,first,1.10,1.11,"+currentTime+",POINT(1 1),\"POLYGON((0 0, 1 0, 0 1, 0 0))\"",
+                "2,2,2,222222,second,3.30,NULL,"+currentTime+",POINT(2 2),\"POLYGON((0 0, 2 0, 0 2, 0 0))\"",
+                "3,3,3,333333, third ,NULL, 3.33,"+currentTime+",POINT(3 3),\"POLYGON((0 0, 3 0, 0 3, 0 0))\"",
+                "4,4,4,444444, NULL ,4.40 ,4.44,"+currentTime+",POINT(4 4),\"POLYGON((0 0, 4 0, 0 4, 0 0))\"",
+                "5,5,5,5555555,  \"abcde\"g, 5.50, 5.55,"+currentTime+",POINT(5 5),\"POLYGON((0 0, 5 0, 0 5, 0 0))\"",
+                "6,6,NULL,666666, sixth, 6.60, 6.66,"+currentTime+",POINT(6 6),\"POLYGON((0 0, 6 0, 0 6, 0 0))\"",
+                "7,NULL,7,7777777, seventh, 7.70, 7.77,"+currentTime+",POINT(7 7),\"POLYGON((0 0, 7 0, 0 7, 0 0))\"",
+                "11, 1,1,\"1,000\",first,1.10,1.11,"+currentTime+",POINT(1 1),\"POLYGON((0 0, 8 0, 0 8, 0 0))\"",
+                //empty line
+                "",
+                //invalid lines below
+                "8, 8",
+                "9, NLL,9,\"1,000\",nine,1.10,1.11,"+currentTime+",POINT(9 9),\"POLYGON((0 0, 9 0, 0 9, 0 0))\"",
+                "10,10,10,10 101 010,second,2.20,2.22"+currentTime+",POINT(10 10),\"POLYGON((0 0, 10 0, 0 10, 0 0))\"",
+                "12,n ull,12,12121212,twelveth,12.12,12.12",
+                "13,1000,13,13,overflow,13.13,13.13,"+currentTime+",POINT(13 13),\"POLYGON((0 0, 13 0, 0 13, 0 0))\""
+        };
+        String []serialOptions = {
+                "-f" + path_csv,
+                "--reportdir=" + reportDir,
+                "--maxerrors=50",
+                "--user=",
+                "--password=",
+                "--port=",
+                "--separator=,",
+                "--quotechar=\"",
+                "--escape=\\",
+                "--skip=1",
+                "--limitrows=100",
+                "BlAh"
+        };
+        test_Interface(serialOptions, myData, 5, 7);
+        VoltTable serial = client.callProcedure("@AdHoc", "SELECT * FROM BLAH ORDER BY clm_integer;").getResults()[0];
+        tearDown();
+        setup();
+
+        String []parallelOptions = Arrays.copyOf(serialOptions, serialOptions.length + 1);
+        parallelOptions[serialOptions.length - 1] = "--parsers=2";
+        parallelOptions[serialOptions.length] = "BlAh";
+        test_Interface(parallelOptions, myData, 5, 7);
+        VoltTable parallel = client.callProcedure("@AdHoc", "SELECT * FROM BLAH ORDER BY clm_integer;").getResults()[0];
+        assertTrue(serial.hasSameContents(parallel));
+    }
+
     //Test -p option where we use just one processor and one line at a time processing of callProcedure.
     @Test
     public void testProcedureOption() throws Exception {
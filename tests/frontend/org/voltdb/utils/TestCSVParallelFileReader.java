@@ -0,0 +1,267 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2019 VoltDB Inc.
+ *
+ * This file contains original code and/or modifications of original code.
+ * Any modifications made by VoltDB Inc. are licensed under the following
+ * terms and conditions:
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+
+import org.junit.Test;
+import org.supercsv.io.CsvListReader;
+import org.supercsv.prefs.CsvPreference;
+import org.supercsv_voltpatches.tokenizer.Tokenizer;
+import org.voltdb.VoltType;
+import org.voltdb.client.ClientResponse;
+
+public class TestCSVParallelFileReader {
+
+    private static final VoltType[] COLUMN_TYPES = {
+        VoltType.INTEGER, VoltType.STRING, VoltType.BIGINT, VoltType.FLOAT
+    };
+
+    // collects the rows and errors as strings, in line order
+    private static class CollectingLoader implements CSVDataLoader, BulkLoaderErrorHandler {
+        final List<String> m_rows = Collections.synchronizedList(new ArrayList<String>());
+        final List<String> m_errors = Collections.synchronizedList(new ArrayList<String>());
+        final int m_maxErrors;
+
+        CollectingLoader(int maxErrors) {
+            m_maxErrors = maxErrors;
+        }
+
+        @Override
+        public VoltType[] getColumnTypes() {
+            return COLUMN_TYPES;
+        }
+
+        @Override
+        public void insertRow(RowWithMetaData metaData, Object[] values) {
+            StringBuilder sb = new StringBuilder();
+            sb.append(metaData.lineNumber).append(':');
+            for (int i = 0; i < values.length; i++) {
+                Object value = values[i];
+                // the parallel reader parses integers itself, the loader would convert the strings
+                if (value instanceof String && COLUMN_TYPES[i].isBackendIntegerType()) {
+                    try {
+                        value = Long.parseLong((String) value);
+                    } catch (NumberFormatException e) {
+                    }
+                }
+                sb.append('[').append(value).append(']');
+            }
+            m_rows.add(sb.toString());
+        }
+
+        @Override
+        public boolean handleError(RowWithMetaData metaData, ClientResponse response, String error) {
+            // the serial reader keeps the newline of a record which ends inside quotes
+            m_errors.add(metaData.rawLine.toString().trim() + " -> " + error);
+            return false;
+        }
+
+        @Override
+        public boolean hasReachedErrorLimit() {
+            return m_errors.size() >= m_maxErrors;
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public long getProcessedRows() {
+            return m_rows.size();
+        }
+
+        @Override
+        public long getFailedRows() {
+            return m_errors.size();
+        }
+
+        @Override
+        public void setFlushInterval(int delay, int seconds) {
+        }
+
+        @Override
+        public void flush() throws ExecutionException, InterruptedException {
+        }
+
+        @Override
+        public void resumeLoading() {
+        }
+
+        @Override
+        public Map<Integer, String> getColumnNames() {
+            Map<Integer, String> names = new HashMap<>();
+            names.put(0, "ID");
+            names.put(1, "NAME");
+            names.put(2, "AMOUNT");
+            names.put(3, "RATE");
+            return names;
+        }
+
+        List<String> sortedRows() {
+            List<String> rows = new ArrayList<>(m_rows);
+            Collections.sort(rows, (a, b) -> Long.compare(Long.parseLong(a.substring(0, a.indexOf(':'))),
+                    Long.parseLong(b.substring(0, b.indexOf(':')))));
+            return rows;
+        }
+
+        List<String> sortedErrors() {
+            List<String> errors = new ArrayList<>(m_errors);
+            Collections.sort(errors);
+            return errors;
+        }
+    }
+
+    private static CSVLoader.CSVConfig config(String... args) {
+        CSVLoader.CSVConfig config = new CSVLoader.CSVConfig();
+        config.maxerrors = 100;
+        for (int i = 0; i < args.length; i += 2) {
+            switch (args[i]) {
+            case "header": config.header = Boolean.parseBoolean(args[i + 1]); break;
+            case "strictquotes": config.strictquotes = Boolean.parseBoolean(args[i + 1]); break;
+            case "skip": config.skip = Long.parseLong(args[i + 1]); break;
+            case "limitrows": config.limitrows = Integer.parseInt(args[i + 1]); break;
+            case "blank": config.blank = args[i + 1]; break;
+            case "customNullString": config.customNullString = args[i + 1]; break;
+            default: throw new IllegalArgumentException(args[i]);
+            }
+        }
+        return config;
+    }
+
+    private static CollectingLoader readSerially(String csv, CSVLoader.CSVConfig config) {
+        CsvPreference preference = new CsvPreference.Builder(config.quotechar, config.separator, "\n").build();
+        Tokenizer tokenizer = new Tokenizer(new StringReader(csv), preference, config.strictquotes, config.escape,
+                config.columnsizelimit, config.skip, config.header);
+        CollectingLoader loader = new CollectingLoader(config.maxerrors);
+        CSVFileReader.initializeReader(config, null, new CsvListReader(tokenizer, preference));
+        new CSVFileReader(loader, loader).run();
+        return loader;
+    }
+
+    private static CollectingLoader readInParallel(String csv, CSVLoader.CSVConfig config, int chunkSize) {
+        CollectingLoader loader = new CollectingLoader(config.maxerrors);
+        CSVParallelFileReader reader = new CSVParallelFileReader(config, loader, loader,
+                new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)), 3, chunkSize);
+        reader.run();
+        return loader;
+    }
+
+    private static void assertSameAsSerial(String csv, String... args) {
+        CSVFileReader.m_totalRowCount.set(0);
+        CollectingLoader serial = readSerially(csv, config(args));
+        long serialRows = CSVFileReader.m_totalRowCount.getAndSet(0);
+        long serialLines = CSVFileReader.m_totalLineCount.getAndSet(0);
+        for (int chunkSize : new int[] { 8, 64, 1024 * 1024 }) {
+            CollectingLoader parallel = readInParallel(csv, config(args), chunkSize);
+            assertEquals(serial.sortedRows(), parallel.sortedRows());
+            assertEquals(serial.sortedErrors(), parallel.sortedErrors());
+            assertEquals(serialRows, CSVFileReader.m_totalRowCount.getAndSet(0));
+            long lines = CSVFileReader.m_totalLineCount.getAndSet(0);
+            // the serial reader doesn't count the lines of the last row when it stops at limitrows
+            if (!Arrays.asList(args).contains("limitrows")) {
+                assertEquals(serialLines, lines);
+            }
+        }
+    }
+
+    @Test
+    public void testQuotesEscapesAndNulls() {
+        assertSameAsSerial(
+                "1,plain,10,1.5\n" +
+                "2,\"quoted, with separator\",-20,2.5\n" +
+                "\n" +
+                "   \n" +
+                "3,\"doubled \"\"quotes\"\"\",+30,3\r\n" +
+                "4,\"quoted\nnewline\r\nand more\",40,4.0\n" +
+                "5,escaped \\, separator and \\\"quote,50,5\n" +
+                "6,\\N,NULL,\"\\N\"\n" +
+                "7,  spaces  ,  70  , 7 \n" +
+                "8,,,\n" +
+                "9,\"\",9223372036854775807,-0.5\n" +
+                "10,too,many,columns,here\n" +
+                "11,few\n" +
+                "12,not a number,1.5e3,x\n" +
+                "13,\"1,000\",-9223372036854775808,1\n" +
+                "14,ünïcödé,99999999999999999999,1\n" +
+                "15,\"unterminated,150,1");
+    }
+
+    @Test
+    public void testHeaderSkipAndLimit() {
+        String csv = "\n" +
+                "RATE,AMOUNT,EXTRA,NAME,ID\n" +
+                "skipped,\"line\n" +
+                "1.5,10,x,one,1\n" +
+                "2.5,20,x,two,2\n" +
+                "3.5,\"30\",x,\"three\",3\n" +
+                "4.5,40,x,four,4\n";
+        assertSameAsSerial(csv, "header", "true");
+        assertSameAsSerial(csv, "header", "true", "skip", "1");
+        assertSameAsSerial(csv.substring(1), "skip", "2", "limitrows", "2");
+    }
+
+    @Test
+    public void testStrictQuotesAndBlanks() {
+        String csv = "\"1\",\"a\",\"10\",\"1.5\"\n" +
+                "\"2\", \"b\",\"20\",\"2.5\"\n" +
+                "\"3\",c,\"30\",\"3.5\"\n" +
+                "\"4\",\"\",\"40\",\"4.5\"\n";
+        assertSameAsSerial(csv, "strictquotes", "true");
+        assertSameAsSerial(csv, "blank", "error");
+        assertSameAsSerial(csv, "blank", "empty");
+        assertSameAsSerial(csv.replace("\"c\"", "\"NULL\""), "customNullString", "c");
+    }
+
+    @Test
+    public void testParseLong() {
+        byte[] bytes = "12345".getBytes(StandardCharsets.US_ASCII);
+        assertEquals(Long.valueOf(12345), CSVParallelFileReader.parseLong(bytes, 0, bytes.length));
+        assertEquals(Long.valueOf(234), CSVParallelFileReader.parseLong(bytes, 1, 4));
+        for (String value : new String[] { "0", "-1", "+7", "9223372036854775807", "-9223372036854775808" }) {
+            bytes = value.getBytes(StandardCharsets.US_ASCII);
+            assertEquals(Long.valueOf(Long.parseLong(value)), CSVParallelFileReader.parseLong(bytes, 0, bytes.length));
+        }
+        for (String value : new String[] { "", "-", "1.0", "1e3", "0x10", "9223372036854775808", "-9223372036854775809" }) {
+            bytes = value.getBytes(StandardCharsets.US_ASCII);
+            assertNull(CSVParallelFileReader.parseLong(bytes, 0, bytes.length));
+        }
+    }
+}
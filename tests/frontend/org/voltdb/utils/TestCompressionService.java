@@ -24,8 +24,13 @@
 package org.voltdb.utils;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
 import junit.framework.TestCase;
 
+import org.voltcore.utils.Pair;
 import org.voltdb.benchmark.tpcc.TPCCProjectBuilder;
 
 public class TestCompressionService extends TestCase {
@@ -46,4 +51,59 @@ public class TestCompressionService extends TestCase {
 
         assertEquals(someText, result);
     }
+
+    public void testCodecRoundTrip() throws IOException {
+        // Mostly repetitive with some noise so that the data is neither incompressible nor trivial
+        byte data[] = new byte[1024 * 1024];
+        Random r = new Random(0);
+        for (int ii = 0; ii < data.length; ii++) {
+            data[ii] = (byte)(r.nextInt(8) == 0 ? r.nextInt(256) : ii % 17);
+        }
+        ByteBuffer input = ByteBuffer.allocateDirect(data.length);
+        input.put(data).flip();
+
+        for (CompressionService.Codec codec : CompressionService.Codec.values()) {
+            int levels[] = codec == CompressionService.Codec.LZ4 ? new int[] { 0, 1 } : new int[] { 0 };
+            for (int level : levels) {
+                ByteBuffer compressed = ByteBuffer.allocateDirect(codec.maxCompressedLength(data.length) + 8);
+                compressed.position(8);
+                int compressedSize = codec.compress(input, compressed, level);
+                assertEquals(0, input.position());
+                assertEquals(8, compressed.position());
+                assertEquals(8 + compressedSize, compressed.limit());
+                assertTrue(compressedSize < data.length);
+                assertTrue(compressedSize <= CompressionService.maxCompressedLengthOfAnyCodec(data.length));
+                assertEquals(data.length, codec.uncompressedLength(compressed));
+
+                ByteBuffer output = ByteBuffer.allocateDirect(data.length + 4);
+                output.position(4);
+                assertEquals(data.length, codec.decompress(compressed, output));
+                assertEquals(4, output.position());
+                assertEquals(4 + data.length, output.limit());
+                byte result[] = new byte[data.length];
+                output.get(result);
+                assertTrue(Arrays.equals(data, result));
+            }
+        }
+    }
+
+    public void testParseCodec() {
+        Pair<CompressionService.Codec, Integer> parsed = CompressionService.Codec.parse("snappy");
+        assertEquals(CompressionService.Codec.SNAPPY, parsed.getFirst());
+        assertEquals(0, (int)parsed.getSecond());
+        parsed = CompressionService.Codec.parse(" LZ4 ");
+        assertEquals(CompressionService.Codec.LZ4, parsed.getFirst());
+        assertEquals(0, (int)parsed.getSecond());
+        parsed = CompressionService.Codec.parse("lz4:1");
+        assertEquals(CompressionService.Codec.LZ4, parsed.getFirst());
+        assertEquals(1, (int)parsed.getSecond());
+
+        for (String bad : new String[] { "zip", "lz4:2", "lz4:-1", "lz4:x", "snappy:3" }) {
+            try {
+                CompressionService.Codec.parse(bad);
+                fail("Expected " + bad + " to be rejected");
+            } catch (IllegalArgumentException expected) {
+            }
+        }
+    }
 }
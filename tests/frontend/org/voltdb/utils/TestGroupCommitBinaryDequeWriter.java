@@ -0,0 +1,239 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2019 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.voltcore.logging.VoltLogger;
+import org.voltcore.utils.DBBPool;
+import org.voltcore.utils.DBBPool.BBContainer;
+import org.voltdb.utils.BinaryDeque.BinaryDequeReader;
+
+import com.google_voltpatches.common.util.concurrent.ListenableFuture;
+
+public class TestGroupCommitBinaryDequeWriter {
+
+    private static final String CURSOR_ID = "testGroupCommit";
+    private final static VoltLogger logger = new VoltLogger("EXPORT");
+
+    private PersistentBinaryDeque m_pbd;
+
+    private static ByteBuffer getFilledSmallBuffer(long fillValue) {
+        ByteBuffer buf = ByteBuffer.allocateDirect(1024);
+        while (buf.remaining() > 7) {
+            buf.putLong(fillValue);
+        }
+        buf.clear();
+        return buf;
+    }
+
+    @Test
+    public void testConcurrentOffersAreAppendedAndSynced() throws Exception {
+        final GroupCommitBinaryDequeWriter writer =
+                new GroupCommitBinaryDequeWriter("test", m_pbd, 5, 64 * 1024);
+        final int producers = 4;
+        final int perProducer = 500;
+        final List<ListenableFuture<Void>> futures = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            final int producer = p;
+            Thread t = new Thread() {
+                @Override
+                public void run() {
+                    for (int ii = 0; ii < perProducer; ii++) {
+                        ListenableFuture<Void> f = writer.offer(
+                                DBBPool.wrapBB(getFilledSmallBuffer(producer * perProducer + ii)), false);
+                        synchronized (futures) {
+                            futures.add(f);
+                        }
+                    }
+                }
+            };
+            threads.add(t);
+            t.start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        writer.flush().get();
+        for (ListenableFuture<Void> f : futures) {
+            assertNull(f.get());
+        }
+        writer.shutdown();
+
+        assertEquals(producers * perProducer, writer.getObjectsWritten());
+        // Syncs are batched
+        assertTrue(writer.getSyncCount() < producers * perProducer);
+
+        BinaryDequeReader reader = m_pbd.openForRead(CURSOR_ID);
+        assertEquals(producers * perProducer, reader.getNumObjects());
+        boolean seen[] = new boolean[producers * perProducer];
+        BBContainer cont;
+        while ((cont = reader.poll(PersistentBinaryDeque.UNSAFE_CONTAINER_FACTORY)) != null) {
+            try {
+                seen[(int) cont.b().getLong(0)] = true;
+            } finally {
+                cont.discard();
+            }
+        }
+        for (boolean b : seen) {
+            assertTrue(b);
+        }
+    }
+
+    @Test
+    public void testOfferAfterShutdownFails() throws Exception {
+        GroupCommitBinaryDequeWriter writer = new GroupCommitBinaryDequeWriter("test", m_pbd);
+        writer.shutdown();
+        try {
+            writer.offer(DBBPool.wrapBB(getFilledSmallBuffer(0)), false).get();
+            fail();
+        } catch (ExecutionException expected) {}
+    }
+
+    private static BBContainer countingContainer(long fillValue, final AtomicInteger discards) {
+        return new BBContainer(getFilledSmallBuffer(fillValue)) {
+            @Override
+            public void discard() {
+                checkDoubleFree();
+                discards.incrementAndGet();
+            }
+        };
+    }
+
+    @Test
+    public void testFailedOfferDiscardsContainer() throws Exception {
+        GroupCommitBinaryDequeWriter writer = new GroupCommitBinaryDequeWriter("test", m_pbd);
+        m_pbd.close();
+        AtomicInteger discards = new AtomicInteger();
+        try {
+            writer.offer(countingContainer(0, discards), false).get();
+            fail();
+        } catch (ExecutionException expected) {}
+        writer.shutdown();
+        assertEquals(1, discards.get());
+    }
+
+    @Test
+    public void testOffersRacingShutdownComplete() throws Exception {
+        for (int round = 0; round < 20; round++) {
+            final GroupCommitBinaryDequeWriter writer = new GroupCommitBinaryDequeWriter("test", m_pbd);
+            final AtomicInteger discards = new AtomicInteger();
+            final List<ListenableFuture<Void>> futures = new ArrayList<>();
+            Thread producer = new Thread() {
+                @Override
+                public void run() {
+                    for (int ii = 0; ii < 2000; ii++) {
+                        futures.add(writer.offer(countingContainer(ii, discards), false));
+                    }
+                }
+            };
+            producer.start();
+            writer.shutdown();
+            producer.join();
+
+            // Every future completes, one way or the other, and every container is released
+            for (ListenableFuture<Void> f : futures) {
+                try {
+                    f.get(10, TimeUnit.SECONDS);
+                } catch (ExecutionException rejected) {}
+            }
+            assertEquals(futures.size(), discards.get());
+        }
+    }
+
+    @Test
+    public void testAppendBarrierDoesNotSync() throws Exception {
+        GroupCommitBinaryDequeWriter writer = new GroupCommitBinaryDequeWriter("test", m_pbd, 60000, Long.MAX_VALUE);
+        List<ListenableFuture<Void>> futures = new ArrayList<>();
+        for (int ii = 0; ii < 10; ii++) {
+            futures.add(writer.offer(DBBPool.wrapBB(getFilledSmallBuffer(ii)), false));
+        }
+        writer.appendBarrier().get(10, TimeUnit.SECONDS);
+        // Everything is readable, nothing is synced
+        assertEquals(10, m_pbd.openForRead(CURSOR_ID).getNumObjects());
+        assertEquals(0, writer.getSyncCount());
+        for (ListenableFuture<Void> f : futures) {
+            assertFalse(f.isDone());
+        }
+        writer.shutdown();
+        for (ListenableFuture<Void> f : futures) {
+            assertNull(f.get());
+        }
+    }
+
+    @Test
+    public void testInterruptShutsDownWriter() throws Exception {
+        GroupCommitBinaryDequeWriter writer = new GroupCommitBinaryDequeWriter("interrupted", m_pbd, 60000, Long.MAX_VALUE);
+        ListenableFuture<Void> queued = writer.offer(DBBPool.wrapBB(getFilledSmallBuffer(0)), false);
+        Thread writerThread = null;
+        for (Thread t : Thread.getAllStackTraces().keySet()) {
+            if (t.getName().startsWith("interrupted PBD Writer")) {
+                writerThread = t;
+            }
+        }
+        assertNotNull(writerThread);
+        writerThread.interrupt();
+        writerThread.join(10000);
+        assertFalse(writerThread.isAlive());
+
+        // What was queued is appended and synced, later offers are rejected
+        assertNull(queued.get(10, TimeUnit.SECONDS));
+        try {
+            writer.offer(DBBPool.wrapBB(getFilledSmallBuffer(1)), false).get(10, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException expected) {}
+        assertEquals(1, m_pbd.openForRead(CURSOR_ID).getNumObjects());
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        TestPersistentBinaryDeque.setupTestDir();
+        m_pbd = new PersistentBinaryDeque(TestPersistentBinaryDeque.TEST_NONCE, TestPersistentBinaryDeque.TEST_DIR, logger);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        try {
+            m_pbd.close();
+        } catch (Exception e) {}
+        TestPersistentBinaryDeque.tearDownTestDir();
+        m_pbd = null;
+    }
+}
@@ -32,6 +32,8 @@ import static org.junit.Assert.assertTrue;
 import java.io.File;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Random;
 import java.util.Set;
 import java.util.TreeSet;
@@ -47,6 +49,7 @@ import org.voltcore.utils.DBBPool.BBContainer;
 import org.voltdb.utils.BinaryDeque.BinaryDequeReader;
 import org.voltdb.utils.BinaryDeque.BinaryDequeTruncator;
 import org.voltdb.utils.BinaryDeque.TruncatorResponse;
+import org.voltdb.utils.PBDSegment.PBDSegmentReader;
 
 import com.google_voltpatches.common.collect.Sets;
 
@@ -861,6 +864,162 @@ public class TestPersistentBinaryDeque {
         assertTrue(names.first().equals("pbd_nonce.5.pbd"));
     }
 
+    @Test
+    public void testOfferCloseReopenPollMapped() throws Exception {
+        System.out.println("Running testOfferCloseReopenPollMapped");
+        final boolean mmapReads = PBDRegularSegment.MMAP_READS;
+        PBDRegularSegment.MMAP_READS = true;
+        try {
+            //Make it create two full segments
+            for (int ii = 0; ii < 96; ii++) {
+                m_pbd.offer(DBBPool.wrapBB(getFilledBuffer(ii)));
+            }
+            m_pbd.sync();
+            m_pbd.close();
+
+            //Sealed segments are now read through a mapping
+            m_pbd = new PersistentBinaryDeque(TEST_NONCE, TEST_DIR, logger);
+            BinaryDequeReader reader = m_pbd.openForRead(CURSOR_ID);
+            assertEquals(96, reader.getNumObjects());
+
+            for (int ii = 0; ii < 96; ii++) {
+                ByteBuffer defaultBuffer = getFilledBuffer(ii);
+                BBContainer retval = reader.poll(PersistentBinaryDeque.UNSAFE_CONTAINER_FACTORY);
+                try {
+                    assertTrue(defaultBuffer.equals(retval.b()));
+                } finally {
+                    retval.discard();
+                }
+            }
+            assertNull(reader.poll(PersistentBinaryDeque.UNSAFE_CONTAINER_FACTORY));
+        } finally {
+            PBDRegularSegment.MMAP_READS = mmapReads;
+        }
+    }
+
+    @Test
+    public void testPollMappedUncompressedReturnsSlices() throws Exception {
+        System.out.println("Running testPollMappedUncompressedReturnsSlices");
+        final boolean mmapReads = PBDRegularSegment.MMAP_READS;
+        PBDRegularSegment.MMAP_READS = true;
+        try {
+            //Uncompressed entries, two segments
+            for (int ii = 0; ii < 40; ii++) {
+                m_pbd.offer(DBBPool.wrapBB(getFilledBuffer(ii)), false);
+            }
+            m_pbd.sync();
+            m_pbd.close();
+
+            m_pbd = new PersistentBinaryDeque(TEST_NONCE, TEST_DIR, logger);
+            BinaryDequeReader reader = m_pbd.openForRead(CURSOR_ID);
+            assertEquals(40, reader.getNumObjects());
+
+            for (int ii = 0; ii < 40; ii++) {
+                BBContainer retval = reader.poll(PersistentBinaryDeque.UNSAFE_CONTAINER_FACTORY);
+                try {
+                    //Handed out as a slice of the read only mapping, not copied into a container
+                    assertTrue(retval.b().isReadOnly());
+                    assertTrue(getFilledBuffer(ii).equals(retval.b()));
+                } finally {
+                    retval.discard();
+                }
+            }
+            assertNull(reader.poll(PersistentBinaryDeque.UNSAFE_CONTAINER_FACTORY));
+        } finally {
+            PBDRegularSegment.MMAP_READS = mmapReads;
+        }
+    }
+
+    /**
+     * Write a sealed segment of uncompressed entries, then open it with a mapping and
+     * poll the first toPoll entries, which are handed out as slices of the mapping.
+     */
+    private static PBDRegularSegment pollMappedSegment(int count, int toPoll, List<BBContainer> held)
+            throws IOException {
+        PBDRegularSegment segment = new PBDRegularSegment(0L, new VoltFile(TEST_DIR, "mapped_segment.0.pbd"));
+        segment.openForWrite(true);
+        for (int ii = 0; ii < count; ii++) {
+            assertTrue(segment.offer(DBBPool.wrapBB(getFilledSmallBuffer(ii)), false));
+        }
+        segment.close();
+
+        PBDSegmentReader reader = segment.openForRead(CURSOR_ID);
+        for (int ii = 0; ii < toPoll; ii++) {
+            BBContainer retval = reader.poll(PersistentBinaryDeque.UNSAFE_CONTAINER_FACTORY);
+            held.add(retval);
+            assertTrue(retval.b().isReadOnly());
+        }
+        return segment;
+    }
+
+    @Test
+    public void testCloseAndTruncateWhileMappedSliceHeld() throws Exception {
+        System.out.println("Running testCloseAndTruncateWhileMappedSliceHeld");
+        final boolean mmapReads = PBDRegularSegment.MMAP_READS;
+        PBDRegularSegment.MMAP_READS = true;
+        List<BBContainer> held = new ArrayList<>();
+        try {
+            PBDRegularSegment segment = pollMappedSegment(40, 2, held);
+            segment.closeAndTruncate();
+            assertEquals(0, segment.file().length());
+
+            //The slices still read the original contents instead of faulting
+            for (int ii = 0; ii < held.size(); ii++) {
+                assertTrue(getFilledSmallBuffer(ii).equals(held.get(ii).b()));
+            }
+        } finally {
+            for (BBContainer cont : held) {
+                cont.discard();
+            }
+            PBDRegularSegment.MMAP_READS = mmapReads;
+        }
+    }
+
+    @Test
+    public void testParseAndTruncateWhileMappedSliceHeld() throws Exception {
+        System.out.println("Running testParseAndTruncateWhileMappedSliceHeld");
+        final boolean mmapReads = PBDRegularSegment.MMAP_READS;
+        PBDRegularSegment.MMAP_READS = true;
+        List<BBContainer> held = new ArrayList<>();
+        try {
+            //Hold slices of entries past the truncation point
+            PBDRegularSegment segment = pollMappedSegment(40, 30, held);
+            int truncated = segment.parseAndTruncate(new BinaryDequeTruncator() {
+                @Override
+                public TruncatorResponse parse(BBContainer bbc) {
+                    if (bbc.b().getLong(0) >= 10) {
+                        return PersistentBinaryDeque.fullTruncateResponse();
+                    }
+                    return null;
+                }
+            });
+            assertEquals(30, truncated);
+
+            for (int ii = 0; ii < held.size(); ii++) {
+                assertTrue(getFilledSmallBuffer(ii).equals(held.get(ii).b()));
+            }
+
+            //The segment itself was truncated
+            assertEquals(10, segment.getNumEntries());
+            PBDSegmentReader reader = segment.openForRead("afterTruncate");
+            for (int ii = 0; ii < 10; ii++) {
+                BBContainer retval = reader.poll(PersistentBinaryDeque.UNSAFE_CONTAINER_FACTORY);
+                try {
+                    assertTrue(getFilledSmallBuffer(ii).equals(retval.b()));
+                } finally {
+                    retval.discard();
+                }
+            }
+            assertNull(reader.poll(PersistentBinaryDeque.UNSAFE_CONTAINER_FACTORY));
+            segment.close();
+        } finally {
+            for (BBContainer cont : held) {
+                cont.discard();
+            }
+            PBDRegularSegment.MMAP_READS = mmapReads;
+        }
+    }
+
     @Test
     public void testOfferCloseReopenOfferSmall() throws Exception {
         System.out.println("Running testOfferCloseReopenOfferSmall");
@@ -35,12 +35,14 @@ import org.voltdb.TheHashinator;
 import org.voltdb.VoltDB;
 import org.voltdb.VoltDB.Configuration;
 import org.voltdb.VoltTable;
+import org.voltdb.VoltTypeException;
 import org.voltdb.client.Client;
 import org.voltdb.client.ClientConfig;
 import org.voltdb.client.ClientFactory;
 import org.voltdb.client.ClientResponse;
 import org.voltdb.client.VoltBulkLoader.BulkLoaderFailureCallBack;
 import org.voltdb.client.VoltBulkLoader.VoltBulkLoader;
+import org.voltdb.client.VoltBulkLoader.VoltBulkLoaderWriter;
 import org.voltdb.common.Constants;
 import org.voltdb.compiler.VoltProjectBuilder;
 import org.voltdb.types.TimestampType;
@@ -1320,6 +1322,83 @@ public class TestVoltBulkLoader extends TestCase {
         return sameTable;
     }
 
+    // Rows appended with a VoltBulkLoaderWriter, batched per partition, with failed rows
+    public void testWriter() throws Exception {
+        startServer("create table BLAH (" +
+                "clm_integer integer not null, " +
+                "clm_string varchar(10) default null, " +
+                "clm_bigint bigint default null, " +
+                "clm_float float default null, " +
+                "clm_timestamp timestamp default null);", false, "BLAH", "BLAH");
+        client1 = ClientFactory.createClient();
+        try {
+            client1.createConnection("localhost");
+            TestFailureCallback testCallback = new TestFailureCallback();
+            VoltBulkLoader bulkLoader = client1.getNewBulkLoader("BLAH", 7, testCallback);
+            VoltBulkLoaderWriter writer = bulkLoader.createWriter();
+            ArrayList<Integer> expectedFailures = new ArrayList<Integer>();
+            TimestampType currentTime = new TimestampType();
+            for (int i = 1; i <= 100; i++) {
+                // Every 7th row has a string too long for the column
+                writer.addLong(i);
+                writer.addString(i % 7 == 0 ? "much too long for the column" : "row " + i);
+                if (i % 3 == 0) {
+                    writer.addNull();
+                }
+                else {
+                    writer.addLong(i * 1000L);
+                }
+                writer.addDouble(i / 4.0);
+                writer.addTimestamp(currentTime);
+                writer.endRow(i);
+                if (i % 7 == 0) {
+                    expectedFailures.add(i);
+                }
+            }
+
+            // wrong types throw right away and don't leave part of a row behind
+            try {
+                writer.addString("not an integer");
+                fail();
+            } catch (VoltTypeException expected) {}
+            try {
+                writer.addLong(1);
+                writer.endRow(101);
+                fail();
+            } catch (IllegalStateException expected) {}
+
+            bulkLoader.drain();
+            assertEquals(0, bulkLoader.getOutstandingRowCount());
+            assertEquals(100, bulkLoader.getCompletedRowCount());
+            writer.close();
+            bulkLoader.close();
+            assertTrue(testCallback.failureRowListMatches(expectedFailures));
+
+            VoltTable result = client1.callProcedure("@AdHoc",
+                    "SELECT clm_integer, clm_string, clm_bigint FROM BLAH WHERE clm_integer = 3;").getResults()[0];
+            assertTrue(result.advanceRow());
+            assertEquals("row 3", result.getString(1));
+            result.getLong(2);
+            assertTrue(result.wasNull());
+            assertEquals(100 - expectedFailures.size(),
+                    client1.callProcedure("@AdHoc", "SELECT COUNT(*) FROM BLAH;").getResults()[0].asScalarLong());
+            VoltTable valTable = client1.callProcedure("@ValidatePartitioning", (Object)null).getResults()[0];
+            while (valTable.advanceRow()) {
+                assertEquals(0, valTable.getLong("MISPARTITIONED_ROWS"));
+            }
+        }
+        finally {
+            client1.close();
+            client1 = null;
+
+            if (localServer != null) {
+                localServer.shutdown();
+                localServer.join();
+            }
+            localServer = null;
+        }
+    }
+
     // ENG-11823
     public void testConcurrentLoaders() throws Exception {
         startServer("create table test1 (c1 int);", true, "test1", "test1");
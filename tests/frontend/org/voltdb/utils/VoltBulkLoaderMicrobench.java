@@ -0,0 +1,151 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2019 VoltDB Inc.
+ *
+ * This file contains original code and/or modifications of original code.
+ * Any modifications made by VoltDB Inc. are licensed under the following
+ * terms and conditions:
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.utils;
+
+import java.lang.management.ManagementFactory;
+
+import org.voltdb.ServerThread;
+import org.voltdb.VoltDB.Configuration;
+import org.voltdb.client.Client;
+import org.voltdb.client.ClientFactory;
+import org.voltdb.client.ClientResponse;
+import org.voltdb.client.VoltBulkLoader.BulkLoaderFailureCallBack;
+import org.voltdb.client.VoltBulkLoader.VoltBulkLoader;
+import org.voltdb.client.VoltBulkLoader.VoltBulkLoaderWriter;
+import org.voltdb.compiler.VoltProjectBuilder;
+
+/**
+ * Loads the same rows through VoltBulkLoader.insertRow() and through a VoltBulkLoaderWriter
+ * into a local server, reporting the load rate and the bytes allocated by the whole process
+ * while loading. The server does the same work either way, so the difference in allocation
+ * is the client's.
+ */
+public class VoltBulkLoaderMicrobench {
+
+    static final int ITERATIONS = 5;
+    static final int BATCH_SIZE = 1000;
+
+    static final String[] CITIES = { "amsterdam", "boston", "chennai", "dublin", "edinburgh" };
+
+    static final BulkLoaderFailureCallBack FAILURE_CALLBACK = new BulkLoaderFailureCallBack() {
+        @Override
+        public void failureCallback(Object rowHandle, Object[] fieldList, ClientResponse response) {
+            throw new RuntimeException("Row " + rowHandle + " failed: " + response.getStatusString());
+        }
+    };
+
+    static abstract class Loader {
+        abstract void load(VoltBulkLoader bulkLoader, int rowCount) throws Exception;
+    }
+
+    static final Loader INSERT_ROW = new Loader() {
+        @Override
+        void load(VoltBulkLoader bulkLoader, int rowCount) throws Exception {
+            for (int i = 0; i < rowCount; i++) {
+                bulkLoader.insertRow(null, i, CITIES[i % CITIES.length], i * 31L, i / 8.0);
+            }
+        }
+    };
+
+    static final Loader WRITER = new Loader() {
+        @Override
+        void load(VoltBulkLoader bulkLoader, int rowCount) throws Exception {
+            VoltBulkLoaderWriter writer = bulkLoader.createWriter();
+            for (int i = 0; i < rowCount; i++) {
+                writer.addLong(i);
+                writer.addString(CITIES[i % CITIES.length]);
+                writer.addLong(i * 31L);
+                writer.addDouble(i / 8.0);
+                writer.endRow(null);
+            }
+            writer.close();
+        }
+    };
+
+    static long allocatedBytes() {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long total = 0;
+        for (long bytes : threads.getThreadAllocatedBytes(threads.getAllThreadIds())) {
+            total += Math.max(0, bytes);
+        }
+        return total;
+    }
+
+    static void run(Client client, String name, Loader loader, int rowCount) throws Exception {
+        long loadNanos = Long.MAX_VALUE;
+        long allocated = Long.MAX_VALUE;
+        // Report the best of several passes, the first ones warm up the JIT
+        for (int iteration = 0; iteration < ITERATIONS; iteration++) {
+            client.callProcedure("@AdHoc", "DELETE FROM BENCH;");
+            VoltBulkLoader bulkLoader = client.getNewBulkLoader("BENCH", BATCH_SIZE, FAILURE_CALLBACK);
+            long allocatedBefore = allocatedBytes();
+            long start = System.nanoTime();
+            loader.load(bulkLoader, rowCount);
+            bulkLoader.drain();
+            loadNanos = Math.min(loadNanos, System.nanoTime() - start);
+            allocated = Math.min(allocated, allocatedBytes() - allocatedBefore);
+            bulkLoader.close();
+        }
+
+        System.out.printf("%-12s %12.1f %14.0f %16.1f%n", name, loadNanos / 1e6,
+                rowCount / (loadNanos / 1e9), allocated / (double) rowCount);
+    }
+
+    public static void main(String[] args) throws Exception {
+        int rowCount = args.length == 0 ? 1000000 : Integer.parseInt(args[0]);
+
+        VoltProjectBuilder builder = new VoltProjectBuilder();
+        builder.addLiteralSchema("create table BENCH (id bigint not null, city varchar(16), " +
+                "amount bigint, ratio float);");
+        builder.addPartitionInfo("BENCH", "id");
+        Configuration config = new Configuration();
+        config.m_pathToCatalog = Configuration.getPathToCatalogForTest("vblbench.jar");
+        config.m_pathToDeployment = Configuration.getPathToCatalogForTest("vblbench.xml");
+        if (!builder.compile(config.m_pathToCatalog, 2, 1, 0)) {
+            throw new RuntimeException("Failed to compile the catalog");
+        }
+        MiscUtils.copyFile(builder.getPathToDeployment(), config.m_pathToDeployment);
+        ServerThread server = new ServerThread(config);
+        server.start();
+        server.waitForInitialization();
+
+        Client client = ClientFactory.createClient();
+        try {
+            client.createConnection("localhost");
+            System.out.printf("%d rows, batches of %d%n", rowCount, BATCH_SIZE);
+            System.out.printf("%-12s %12s %14s %16s%n", "PATH", "LOAD ms", "ROWS/s", "BYTES/ROW ALLOC");
+            run(client, "insertRow", INSERT_ROW, rowCount);
+            run(client, "writer", WRITER, rowCount);
+        } finally {
+            client.close();
+            server.shutdown();
+            server.join();
+        }
+    }
+}